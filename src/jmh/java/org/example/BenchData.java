@@ -0,0 +1,88 @@
+// ===================== BenchData.java =====================
+package org.example;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+
+// Seeded inputs shared by the benchmarks. The net-based ones need the scenario files, so the
+// benchmarks run from the sumo/ directory like the application does.
+final class BenchData {
+
+    static final long SEED = 42L;
+
+    private BenchData() {}
+
+    static File netFile() {
+        if (!new File(Main.SUMOCFG_PATH).isFile()) {
+            throw new IllegalStateException("Run the benchmarks from the directory holding " + Main.SUMOCFG_PATH
+                    + " (working directory: " + new File(".").getAbsolutePath() + ")");
+        }
+        Logging.LOG.setLevel(Level.WARNING);
+        return MapVisualisation.resolveNetFile();
+    }
+
+    // "x,y x,y ..." like a lane shape in net.xml
+    static String shape(int points, long seed) {
+        Random r = new Random(seed);
+        StringBuilder sb = new StringBuilder(points * 16);
+        double x = 1000.0, y = 1000.0;
+        for (int i = 0; i < points; i++) {
+            x += r.nextDouble() * 10.0;
+            y += r.nextGaussian() * 3.0;
+            if (i > 0) sb.append(' ');
+            sb.append(String.format(Locale.US, "%.2f,%.2f", x, y));
+        }
+        return sb.toString();
+    }
+
+    // vehicles spread over the lane shapes of the loaded net (bounding box if there are none)
+    static VehicleFrame frame(int vehicles, long seed) {
+        Random r = new Random(seed);
+        List<MapVisualisation.RoadGeom> roads = MapVisualisation.getRoadGeoms();
+        MapVisualisation.Bounds b = MapVisualisation.getActiveBounds();
+        VehicleFrame f = new VehicleFrame(vehicles);
+        f.clear(0.0);
+        for (int i = 0; i < vehicles; i++) {
+            double x, y;
+            if (roads.isEmpty()) {
+                x = b.minX + r.nextDouble() * (b.maxX - b.minX);
+                y = b.minY + r.nextDouble() * (b.maxY - b.minY);
+            } else {
+                double[] xy = roads.get(r.nextInt(roads.size())).xy;
+                int p = r.nextInt(xy.length / 2 - 1) * 2;
+                double t = r.nextDouble();
+                x = xy[p] + t * (xy[p + 2] - xy[p]);
+                y = xy[p + 1] + t * (xy[p + 3] - xy[p + 1]);
+            }
+            int u = r.nextInt(10);
+            byte type = u < 7 ? VehicleFrame.TYPE_CAR : u < 9 ? VehicleFrame.TYPE_TRUCK : VehicleFrame.TYPE_BUS;
+            f.add(i, x, y, r.nextDouble() < 0.3 ? 0.0 : r.nextDouble() * 14.0, r.nextDouble() * 60.0, type);
+        }
+        return f;
+    }
+
+    // random-walk run of `rows` samples, one per 0.5 sim seconds
+    static MetricsStore metrics(int rows, long seed) {
+        MetricsStore store = new MetricsStore(Main.METRICS_MEMORY_BUDGET_BYTES);
+        MetricsAggregator.StepMetrics m = new MetricsAggregator.StepMetrics();
+        Random r = new Random(seed);
+        double active = 100.0;
+        for (int i = 0; i < rows; i++) {
+            active = Math.max(0.0, active + r.nextGaussian() * 3.0);
+            m.simTime = i * 0.5;
+            m.active = (int) active;
+            m.stopped = (int) (active / 3.0);
+            m.avgWaitSec = active / 10.0 + r.nextDouble();
+            m.meanSpeed = Math.max(0.0, 10.0 - active / 30.0);
+            m.congestion = Math.min(1.0, active / 300.0);
+            m.throughputVph = 500.0 + 100.0 * Math.sin(i / 2000.0);
+            m.throughput1mVph = m.throughputVph + r.nextGaussian() * 50.0;
+            for (int k = 0; k < m.pct.length; k++) m.pct[k] = i < 100 ? -1.0 : active / 5.0 + k;
+            store.append(m, 1, false);
+        }
+        return store;
+    }
+}
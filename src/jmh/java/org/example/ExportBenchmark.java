@@ -0,0 +1,52 @@
+// ===================== ExportBenchmark.java =====================
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// CSV and summary PDF export of a large metricsLog (86 400 rows = 12 h at the default 0.5 s sample)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExportBenchmark {
+
+    @Param({"86400", "604800"})
+    public int rows;
+
+    private MetricsStore.Snapshot snap;
+    private SummaryReport.Inputs inputs;
+    private File csvFile, pdfFile;
+
+    @Setup
+    public void setup() throws IOException {
+        snap = BenchData.metrics(rows, BenchData.SEED).snapshot();
+        inputs = new SummaryReport.Inputs();
+        inputs.context.add("Benchmark: " + rows + " synthetic samples");
+        inputs.metrics = snap;
+        csvFile = File.createTempFile("bench_metrics", ".csv");
+        pdfFile = File.createTempFile("bench_report", ".pdf");
+    }
+
+    @TearDown
+    public void tearDown() {
+        csvFile.delete();
+        pdfFile.delete();
+    }
+
+    @Benchmark
+    public long csv() throws IOException {
+        LiveConnectionSumo.writeCsv(csvFile, snap, "Route 1", 0.0, ExportJob.NO_PROGRESS);
+        return csvFile.length();
+    }
+
+    @Benchmark
+    public long pdf() throws IOException {
+        return SummaryReport.write(pdfFile, "Benchmark Report", inputs, ExportJob.NO_PROGRESS);
+    }
+}
@@ -0,0 +1,59 @@
+// ===================== MapPaintBenchmark.java =====================
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// One MapPanel.paintComponent (background, roads, TLS markers, vehicles) into an offscreen image.
+// paint reuses the cached road layer like a vehicle update does; paintViewChange renders it again
+// like the first paint after a zoom, pan, rotation or resize.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MapPaintBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vehicles;
+
+    @Param({"1280x800"})
+    public String size;
+
+    private MapVisualisation.MapPanel panel;
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        BenchData.netFile();
+        MapVisualisation.initBoundsFromFiles();
+        int x = size.indexOf('x');
+        int w = Integer.parseInt(size.substring(0, x)), h = Integer.parseInt(size.substring(x + 1));
+
+        panel = new MapVisualisation.MapPanel((type, speedMps) -> true);
+        panel.setSize(w, h);
+        panel.updateVehicles(BenchData.frame(vehicles, BenchData.SEED));
+        image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintViewChange() {
+        panel.invalidateRoadLayer();
+        return paint();
+    }
+}
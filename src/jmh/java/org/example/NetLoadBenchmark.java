@@ -0,0 +1,60 @@
+// ===================== NetLoadBenchmark.java =====================
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Startup parsing: lane shape strings and the three net.xml passes of MapVisualisation.initBoundsFromFiles
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetLoadBenchmark {
+
+    // ===================== parseShape =====================
+    @State(Scope.Benchmark)
+    public static class Shape {
+        @Param({"4", "32", "512"})
+        public int points;
+
+        String shape;
+
+        @Setup
+        public void setup() { shape = BenchData.shape(points, BenchData.SEED); }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] parseShape(Shape s) {
+        return MapVisualisation.parseShape(s.shape);
+    }
+
+    // ===================== net.xml passes =====================
+    private File netFile;
+
+    @Setup
+    public void setup() { netFile = BenchData.netFile(); }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object convBoundary() {
+        return MapVisualisation.readConvBoundaryFromNet(netFile);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<MapVisualisation.RoadGeom> roadGeometries() {
+        return MapVisualisation.loadRoadGeometriesFromNet(netFile);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<String, ?> tlsPositions() {
+        return MapVisualisation.loadTlsPositionsFromNet(netFile);
+    }
+}
@@ -0,0 +1,46 @@
+// ===================== RouteVariantsBenchmark.java =====================
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// buildAndInstallLongVariants for every trip route against FakeSumoGateway as the router. The fake
+// memoises findRoute, so after warm-up this measures the variant search itself, not routing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteVariantsBenchmark {
+
+    @Param({"car", "truck", "bus"})
+    public String type;
+
+    private List<VehicleInjection.RouteDef> routes;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchData.netFile();
+        VehicleInjection.loadTripRoutesFromRou();
+        MapVisualisation.initBoundsFromFiles();
+        Traci.install(new FakeSumoGateway());
+        Traci.gw().start(Collections.emptyList());
+        routes = new ArrayList<>(VehicleInjection.TRIP_ROUTES.values());
+    }
+
+    @TearDown
+    public void tearDown() { Traci.gw().close(); }
+
+    @Benchmark
+    public int allRoutes() {
+        VehicleInjection.resetLongVariantCache(BenchData.SEED);
+        int variants = 0;
+        for (VehicleInjection.RouteDef rd : routes) variants += VehicleInjection.buildAndInstallLongVariants(rd, type).size();
+        return variants;
+    }
+}
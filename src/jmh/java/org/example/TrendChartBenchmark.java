@@ -0,0 +1,51 @@
+// ===================== TrendChartBenchmark.java =====================
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// TrendChartPanel with a full history: one addSample (metrics stage) and one repaint (EDT)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TrendChartBenchmark {
+
+    @Param({"120", "1000"})
+    public int maxPoints;
+
+    private MapVisualisation.TrendChartPanel chart;
+    private BufferedImage image;
+    private final Random rnd = new Random(BenchData.SEED);
+
+    @Setup
+    public void setup() {
+        chart = new MapVisualisation.TrendChartPanel(maxPoints);
+        chart.setSize(320, 150);
+        for (int i = 0; i < maxPoints; i++) addSample();
+        image = new BufferedImage(320, 150, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public void addSample() {
+        double wait = 20.0 + rnd.nextGaussian() * 5.0;
+        chart.addSample(wait, wait * 1.8, 500.0 + rnd.nextGaussian() * 40.0, rnd.nextDouble() * 0.4);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        Graphics2D g = image.createGraphics();
+        try {
+            chart.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,46 @@
+// ===================== CsvNumbers.java =====================
+package org.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+// Allocation-free replacement for String.format(Locale.US, "%.Nf", v) when appending to a StringBuilder.
+// Output is identical to Formatter: HALF_UP on the shortest decimal representation of the double
+// (Double.toString digits), "-0.00" for small negatives, NaN/Infinity and huge values via Formatter.
+public final class CsvNumbers {
+
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+    private static final double FAST_LIMIT = 1e12;
+    private static final double TIE_EPS = 1e-6;
+
+    private CsvNumbers() {}
+
+    public static StringBuilder fixed(StringBuilder sb, double v, int decimals) {
+        if (!(Math.abs(v) < FAST_LIMIT) || decimals < 0 || decimals >= POW10.length) {
+            return sb.append(String.format(Locale.US, "%." + decimals + "f", v));
+        }
+        boolean negative = Double.doubleToRawLongBits(v) < 0;
+        double a = Math.abs(v);
+        long pow = POW10[decimals];
+        double scaled = a * pow;
+        long units = (long) scaled;
+        double frac = scaled - units;
+        if (Math.abs(frac - 0.5) < TIE_EPS) {
+            // too close to a tie to trust the binary product: round the decimal digits like Formatter
+            if (negative) sb.append('-');
+            return sb.append(BigDecimal.valueOf(a).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+        }
+        if (frac > 0.5) units++;
+
+        if (negative) sb.append('-');
+        sb.append(units / pow);
+        if (decimals > 0) {
+            long fp = units % pow;
+            sb.append('.');
+            for (long p = pow / 10; p > 1 && p > fp; p /= 10) sb.append('0');
+            sb.append(fp);
+        }
+        return sb;
+    }
+}
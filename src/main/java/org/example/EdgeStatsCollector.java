@@ -0,0 +1,204 @@
+// ===================== EdgeStatsCollector.java =====================
+package org.example;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+// Per-edge (optionally per-lane) traffic state from edge/lane subscriptions: mean speed, occupancy,
+// vehicle and halting number. Ids are interned once at subscribe(); every sample writes primitive
+// arrays indexed by that id, so the cost is constant per edge and independent of the fleet size.
+// Written on the stepper thread; readers take a copy with edges()/lanes() from any thread.
+public final class EdgeStatsCollector {
+
+    // one table of edges or lanes: last sample + run aggregates
+    public static final class Snapshot {
+        String[] ids = new String[0];
+        double simTime;
+        int samples;
+        double[] meanSpeed = new double[0], occupancy = new double[0];
+        int[] vehicles = new int[0], halting = new int[0];
+        double[] occupancySum = new double[0];
+        long[] haltingSum = new long[0];
+        int[] haltingMax = new int[0];
+
+        void resize(String[] newIds) {
+            int n = newIds.length;
+            ids = newIds;
+            meanSpeed = new double[n];
+            occupancy = new double[n];
+            vehicles = new int[n];
+            halting = new int[n];
+            occupancySum = new double[n];
+            haltingSum = new long[n];
+            haltingMax = new int[n];
+        }
+
+        void copyFrom(Snapshot o) {
+            if (ids != o.ids) resize(o.ids);
+            int n = ids.length;
+            simTime = o.simTime;
+            samples = o.samples;
+            System.arraycopy(o.meanSpeed, 0, meanSpeed, 0, n);
+            System.arraycopy(o.occupancy, 0, occupancy, 0, n);
+            System.arraycopy(o.vehicles, 0, vehicles, 0, n);
+            System.arraycopy(o.halting, 0, halting, 0, n);
+            System.arraycopy(o.occupancySum, 0, occupancySum, 0, n);
+            System.arraycopy(o.haltingSum, 0, haltingSum, 0, n);
+            System.arraycopy(o.haltingMax, 0, haltingMax, 0, n);
+        }
+
+        public int size() { return ids.length; }
+        public String id(int i) { return ids[i]; }
+        public double simTime() { return simTime; }
+        public double meanSpeed(int i) { return meanSpeed[i]; }
+        public double occupancy(int i) { return occupancy[i]; }
+        public int vehicles(int i) { return vehicles[i]; }
+        public int halting(int i) { return halting[i]; }
+        public int haltingMax(int i) { return haltingMax[i]; }
+        public double runMeanOccupancy(int i) { return samples > 0 ? occupancySum[i] / samples : 0.0; }
+        public double runMeanHalting(int i) { return samples > 0 ? haltingSum[i] / (double) samples : 0.0; }
+
+        // indices of the k worst entries: by halting, then occupancy (now, or averaged over the run)
+        public int topBottlenecks(int k, boolean overRun, int[] out) {
+            int found = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if ((overRun ? runMeanHalting(i) : halting[i]) <= 0 && (overRun ? runMeanOccupancy(i) : occupancy[i]) <= 0) {
+                    continue;
+                }
+                int pos = Math.min(found, k);
+                while (pos > 0 && worse(i, out[pos - 1], overRun)) pos--;
+                if (pos >= k) continue;
+                System.arraycopy(out, pos, out, pos + 1, Math.min(found, k - 1) - pos);
+                out[pos] = i;
+                if (found < k) found++;
+            }
+            return found;
+        }
+
+        private boolean worse(int a, int b, boolean overRun) {
+            double ha = overRun ? runMeanHalting(a) : halting[a], hb = overRun ? runMeanHalting(b) : halting[b];
+            if (ha != hb) return ha > hb;
+            return (overRun ? runMeanOccupancy(a) : occupancy[a]) > (overRun ? runMeanOccupancy(b) : occupancy[b]);
+        }
+
+        // "id halting/occupancy%" for the k worst entries
+        public String describeBottlenecks(int k, boolean overRun) {
+            int[] idx = new int[k];
+            int n = topBottlenecks(k, overRun, idx);
+            if (n == 0) return "-";
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < n; j++) {
+                int i = idx[j];
+                if (j > 0) sb.append(", ");
+                sb.append(String.format(Locale.US, "%s %.1f/%.0f%%", ids[i],
+                        overRun ? runMeanHalting(i) : halting[i],
+                        overRun ? runMeanOccupancy(i) : occupancy[i]));
+            }
+            return sb.toString();
+        }
+
+        public void writeCsv(PrintWriter pw) {
+            pw.println("id,sim_time,mean_speed_mps,occupancy_pct,vehicles,halting,run_mean_occupancy_pct,run_mean_halting,run_max_halting");
+            for (int i = 0; i < ids.length; i++) {
+                pw.println(String.format(Locale.US, "%s,%.2f,%.3f,%.2f,%d,%d,%.3f,%.3f,%d",
+                        ids[i], simTime, meanSpeed[i], occupancy[i], vehicles[i], halting[i],
+                        runMeanOccupancy(i), runMeanHalting(i), haltingMax[i]));
+            }
+        }
+    }
+
+    private final TraciGateway traci;
+    private final boolean withLanes;
+
+    private final HashMap<String, Integer> edgeIndex = new HashMap<>();
+    private final HashMap<String, Integer> laneIndex = new HashMap<>();
+    private final Snapshot edgeWork = new Snapshot(), laneWork = new Snapshot();
+    private final Snapshot edgeLatest = new Snapshot(), laneLatest = new Snapshot();
+    private boolean subscribed = false;
+
+    private Snapshot fill;
+    private HashMap<String, Integer> fillIndex;
+    private final TraciGateway.TrafficStateSink sink = (id, meanSpeed, occupancy, vehicles, halting) -> {
+        Integer i = fillIndex.get(id);
+        if (i == null) return;
+        Snapshot s = fill;
+        s.meanSpeed[i] = meanSpeed;
+        s.occupancy[i] = occupancy;
+        s.vehicles[i] = vehicles;
+        s.halting[i] = halting;
+    };
+
+    public EdgeStatsCollector(TraciGateway traci, boolean withLanes) {
+        this.traci = traci;
+        this.withLanes = withLanes;
+    }
+
+    // once after the simulation started: intern ids and subscribe every edge (and lane)
+    public void subscribe() {
+        subscribeAll(traci.edgeIds(), edgeIndex, edgeWork, true);
+        if (withLanes) subscribeAll(traci.laneIds(), laneIndex, laneWork, false);
+        subscribed = true;
+        Logging.LOG.info("Edge stats: " + edgeIndex.size() + " edges" + (withLanes ? ", " + laneIndex.size() + " lanes" : ""));
+    }
+
+    private void subscribeAll(List<String> ids, HashMap<String, Integer> index, Snapshot work, boolean edges) {
+        String[] arr = ids.toArray(new String[0]);
+        for (int i = 0; i < arr.length; i++) {
+            index.put(arr[i], i);
+            if (edges) traci.subscribeEdgeState(arr[i]);
+            else traci.subscribeLaneState(arr[i]);
+        }
+        work.resize(arr);
+    }
+
+    // stepper thread, once per sample
+    public void collect(double simTime) {
+        if (!subscribed) return;
+        read(simTime, edgeWork, edgeIndex, edgeLatest, true);
+        if (withLanes && subscribed) read(simTime, laneWork, laneIndex, laneLatest, false);
+    }
+
+    private void read(double simTime, Snapshot work, HashMap<String, Integer> index, Snapshot latest, boolean edges) {
+        fill = work;
+        fillIndex = index;
+        int n = edges ? traci.readEdgeStates(sink) : traci.readLaneStates(sink);
+        if (n < work.ids.length) {
+            // entries without a value would keep zeros or stale values: report nothing instead
+            Logging.LOG.warning("Edge stats: only " + n + " of " + work.ids.length + (edges ? " edges" : " lanes")
+                    + " returned usable subscription values; edge stats disabled.");
+            disable();
+            return;
+        }
+
+        work.simTime = simTime;
+        work.samples++;
+        for (int i = 0; i < work.ids.length; i++) {
+            work.occupancySum[i] += work.occupancy[i];
+            work.haltingSum[i] += work.halting[i];
+            if (work.halting[i] > work.haltingMax[i]) work.haltingMax[i] = work.halting[i];
+        }
+        synchronized (latest) { latest.copyFrom(work); }
+    }
+
+    private void disable() {
+        subscribed = false;
+        Snapshot empty = new Snapshot();
+        synchronized (edgeLatest) { edgeLatest.copyFrom(empty); }
+        synchronized (laneLatest) { laneLatest.copyFrom(empty); }
+    }
+
+    // copy of the latest edge / lane table into `into` (reused by the caller); safe from any thread
+    public Snapshot edges(Snapshot into) {
+        synchronized (edgeLatest) { into.copyFrom(edgeLatest); }
+        return into;
+    }
+
+    public Snapshot lanes(Snapshot into) {
+        synchronized (laneLatest) { into.copyFrom(laneLatest); }
+        return into;
+    }
+
+    public boolean hasLanes() { return withLanes; }
+}
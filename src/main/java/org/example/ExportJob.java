@@ -0,0 +1,170 @@
+// ===================== ExportJob.java =====================
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Runs one export at a time on a background thread with a ProgressMonitor (progress + Cancel),
+// so neither the EDT nor the simulation stages wait for it. The task reads lock-free snapshots;
+// the outcome (message, error, cancel) is shown on the EDT. Every file goes through
+// Progress.writes(): the task writes a temp file next to it, which replaces the real file only
+// when the whole export succeeded. A cancelled or failed export deletes its temp files and leaves
+// existing files untouched.
+public final class ExportJob {
+
+    public interface Progress {
+        void update(long done, long total);
+        boolean cancelled();
+
+        // throws CancellationException when the user pressed Cancel
+        default void checkCancelled() {
+            if (cancelled()) throw new CancellationException();
+        }
+
+        // the file to write instead of `file` (headless: `file` itself)
+        default File writes(File file) { return file; }
+    }
+
+    public interface Task {
+        String run(Progress progress) throws Exception;   // returns the success message
+    }
+
+    // for callers without a UI (headless)
+    public static final Progress NO_PROGRESS = new Progress() {
+        @Override public void update(long done, long total) {}
+        @Override public boolean cancelled() { return false; }
+    };
+
+    private static final int SCALE = 1000;
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    private ExportJob() {}
+
+    // EDT only. kind: "CSV", "PDF", ... used in the dialog titles / messages
+    public static void start(Component parent, String kind, File target, Task task) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            JOptionPane.showMessageDialog(parent, "Another export is still running.",
+                    "Export " + kind, JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        ProgressMonitor monitor = new ProgressMonitor(parent, "Exporting " + kind + " to " + target.getName(),
+                "Preparing...", 0, SCALE);
+        monitor.setMillisToDecideToPopup(150);
+        monitor.setMillisToPopup(300);
+
+        MonitorProgress progress = new MonitorProgress(monitor);
+        Timer cancelPoll = new Timer(100, e -> { if (monitor.isCanceled()) progress.cancelled = true; });
+        cancelPoll.start();
+
+        Thread worker = new Thread(() -> {
+            String message = null;
+            Exception failure = null;
+            boolean cancelled = false;
+            long t0 = System.nanoTime();
+            try {
+                message = task.run(progress);
+                progress.commit();
+            } catch (CancellationException ce) {
+                cancelled = true;
+            } catch (Exception ex) {
+                failure = ex;
+            }
+            progress.deleteTemps();
+            long ms = (System.nanoTime() - t0) / 1_000_000L;
+            if (failure != null) Logging.LOG.log(java.util.logging.Level.SEVERE, "Export " + kind + " failed", failure);
+            else Logging.LOG.info("Export " + kind + (cancelled ? " cancelled" : " done") + " after " + ms + " ms: "
+                    + target.getAbsolutePath());
+
+            final String msg = message;
+            final Exception fail = failure;
+            final boolean wasCancelled = cancelled;
+            SwingUtilities.invokeLater(() -> {
+                cancelPoll.stop();
+                monitor.close();
+                RUNNING.set(false);
+                if (fail != null) {
+                    JOptionPane.showMessageDialog(parent, kind + " export failed:\n" + fail.getMessage(),
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                } else if (wasCancelled) {
+                    JOptionPane.showMessageDialog(parent, kind + " export cancelled.",
+                            "Export " + kind, JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(parent, msg, "Export " + kind, JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
+        }, "Export-Worker");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.NORM_PRIORITY - 1);
+        worker.start();
+    }
+
+    // progress is coalesced: at most one pending EDT update, only when the permille changes
+    private static final class MonitorProgress implements Progress {
+        private final ProgressMonitor monitor;
+        volatile boolean cancelled = false;
+        private final Map<File, File> temps = new LinkedHashMap<>();   // temp -> target, worker thread only
+        private int lastPermille = -1;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile long done, total;
+
+        MonitorProgress(ProgressMonitor monitor) { this.monitor = monitor; }
+
+        @Override
+        public void update(long done, long total) {
+            int pm = total <= 0 ? 0 : (int) Math.min(SCALE, done * SCALE / total);
+            if (pm == lastPermille) return;
+            lastPermille = pm;
+            this.done = done;
+            this.total = total;
+            if (scheduled.getAndSet(true)) return;
+            SwingUtilities.invokeLater(() -> {
+                scheduled.set(false);
+                long d = this.done, t = this.total;
+                monitor.setProgress(t <= 0 ? 0 : (int) Math.min(SCALE - 1, d * SCALE / t));
+                monitor.setNote(d + " / " + t);
+            });
+        }
+
+        @Override public boolean cancelled() { return cancelled; }
+
+        // same directory, so the move is a rename; one export at a time, so the name is free
+        // (a leftover from a crash is overwritten). Created by the writer: normal permissions.
+        @Override
+        public File writes(File file) {
+            File tmp = new File(file.getAbsoluteFile().getParentFile(), "." + file.getName() + ".part");
+            temps.put(tmp, file);
+            return tmp;
+        }
+
+        // all temps into place; a failed move fails the export (files moved so far stay replaced)
+        void commit() throws IOException {
+            for (Map.Entry<File, File> e : temps.entrySet()) {
+                try {
+                    Files.move(e.getKey().toPath(), e.getValue().toPath(),
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(e.getKey().toPath(), e.getValue().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        // whatever was not moved: cancelled, failed or half-committed exports
+        void deleteTemps() {
+            for (File tmp : temps.keySet()) {
+                if (tmp.exists() && !tmp.delete()) {
+                    Logging.LOG.warning("Could not delete partial export " + tmp.getAbsolutePath());
+                }
+            }
+        }
+    }
+}
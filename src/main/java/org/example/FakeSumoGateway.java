@@ -0,0 +1,819 @@
+// ===================== FakeSumoGateway.java =====================
+package org.example;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.File;
+import java.util.*;
+
+import org.w3c.dom.*;
+
+import static org.example.TraciGateway.Command.*;
+
+// Deterministic in-memory stand-in for SUMO behind TraciGateway (benchmarks, runs without a sumo binary).
+// Loads edges, connections and static TLS programs from the net file of Main.SUMOCFG_PATH. Vehicles
+// drive their route at min(lane speed, vType maxSpeed), accelerate with the vType accel and stop at
+// red/yellow links, queueing back from the stop line. Not a traffic model: just enough behaviour
+// (departures, arrivals, halting lanes, TLS programs, routing) to exercise our side at any scale.
+// Vehicle state is kept in parallel arrays so hundreds of thousands of vehicles stay cheap.
+public final class FakeSumoGateway implements TraciGateway {
+
+    private static final double VEH_GAP_M = 7.5;         // queue spacing at a stop line
+    private static final double HALTING_SPEED = 0.1;
+    private static final String ONLINE_PROGRAM = "online";
+
+    private static final String[] ALL_VCLASSES = {
+            "private", "emergency", "authority", "army", "vip", "pedestrian", "passenger", "hov", "taxi",
+            "bus", "coach", "delivery", "truck", "trailer", "motorcycle", "moped", "bicycle", "evehicle",
+            "tram", "rail_urban", "rail", "rail_electric", "rail_fast", "ship", "container", "cable_car",
+            "subway", "aircraft", "wheelchair", "scooter", "drone", "custom1", "custom2"
+    };
+
+    // vTypes as written by LiveConnectionSumo.buildRoutesFileWithVTypesOnly (car, truck, bus)
+    private static final double[] TYPE_MAX_SPEED = {33.0, 25.0, 22.0};
+    private static final double[] TYPE_ACCEL = {2.6, 1.3, 1.1};
+    private static final String[] TYPE_VCLASS = {"passenger", "truck", "bus"};
+    private static final double[] TYPE_LENGTH = {5.0, 8.0, 12.0};
+
+    private final CallCounts calls = new CallCounts();
+    private final long stepMs;
+    private long timeMs = 0;
+
+    // ---- network (edge index based) ----
+    private String[] edgeIds = new String[0];
+    private final HashMap<String, Integer> edgeIndex = new HashMap<>();
+    private double[] edgeLength, edgeSpeed;
+    private int[] edgeLanes;
+    private double[][] shapeX, shapeY, shapeCum;       // lane 0 geometry
+    private List<Set<String>> edgeAllowed;             // lane 0 vClasses
+    private int[][] successors;
+    private final HashMap<Long, int[]> linkByPair = new HashMap<>();   // from*E+to -> {tls, linkIndex}
+    private final HashMap<String, Lane> lanes = new HashMap<>();
+    private final HashMap<String, List<String>> routeCache = new HashMap<>();
+
+    private static final class Lane {
+        final int edge, index;
+        final double length;
+        final List<String> allowed;
+        Lane(int edge, int index, double length, List<String> allowed) {
+            this.edge = edge; this.index = index; this.length = length; this.allowed = allowed;
+        }
+    }
+
+    // ---- traffic lights ----
+    private static final class Program {
+        final double[] durations;
+        final String[] states;
+        Program(double[] durations, String[] states) { this.durations = durations; this.states = states; }
+    }
+
+    private static final class Tls {
+        final String id;
+        final LinkedHashMap<String, Program> programs = new LinkedHashMap<>();
+        final ArrayList<String> controlledLanes = new ArrayList<>();
+        String programId = "0";
+        int phase = 0;
+        double remaining = 0;
+        String state = "";
+
+        Tls(String id) { this.id = id; }
+
+        void switchTo(String prog) {
+            Program p = programs.get(prog);
+            if (p == null) throw new IllegalArgumentException("Unknown program '" + prog + "' for traffic light " + id);
+            programId = prog;
+            phase = 0;
+            remaining = p.durations.length > 0 ? p.durations[0] : 0;
+            state = p.states.length > 0 ? p.states[0] : state;
+        }
+
+        void advance(double dt) {
+            Program p = programs.get(programId);
+            if (p == null || p.durations.length == 0) return;   // "online": state stays as set
+            remaining -= dt;
+            while (remaining <= 0) {
+                phase = (phase + 1) % p.durations.length;
+                remaining += Math.max(p.durations[phase], 1e-3);
+            }
+            state = p.states[phase];
+        }
+
+        boolean open(int linkIndex) {
+            if (linkIndex < 0 || linkIndex >= state.length()) return true;
+            char c = state.charAt(linkIndex);
+            return c == 'G' || c == 'g' || c == 'O' || c == 'o' || c == 's';
+        }
+    }
+
+    private final ArrayList<Tls> tls = new ArrayList<>();
+    private final HashMap<String, Tls> tlsById = new HashMap<>();
+
+    // ---- routes ----
+    private final ArrayList<int[]> routes = new ArrayList<>();
+    private final HashMap<String, Integer> routeIndex = new HashMap<>();
+
+    // ---- vehicles (slot = index into the arrays, compacted on arrival) ----
+    private int count = 0;
+    private String[] vId = new String[1024];
+    private int[] vRoute = new int[1024];
+    private int[] vLeg = new int[1024];                // index into the route's edges
+    private double[] vPos = new double[1024];
+    private double[] vSpeed = new double[1024];
+    private double[] vWait = new double[1024];
+    private double[] vX = new double[1024];
+    private double[] vY = new double[1024];
+    private byte[] vType = new byte[1024];
+    private boolean[] vSubscribed = new boolean[1024];
+    private final HashMap<String, Integer> slotById = new HashMap<>();
+
+    private final ArrayList<String[]> pending = new ArrayList<>();   // {vehId, routeId, typeId}
+    private final HashSet<String> pendingIds = new HashSet<>();
+    private final ArrayList<String> departed = new ArrayList<>();
+    private final ArrayList<String> arrived = new ArrayList<>();
+    private boolean listsSubscribed = false;
+
+    // ---- edge / lane state subscriptions ----
+    private boolean[] edgeStateSubscribed = new boolean[0];
+    private final LinkedHashMap<String, Lane> laneStateSubscribed = new LinkedHashMap<>();
+    private int[] edgeVehicles = new int[0];
+    private double[] edgeSpeedSum = new double[0], edgeOccupiedM = new double[0];
+
+    private int[] edgeHalting = new int[0];
+    private int[] edgeQueue = new int[0];
+
+    public FakeSumoGateway() { this(1.0); }
+
+    public FakeSumoGateway(double stepLengthSec) {
+        this.stepMs = Math.max(1L, Math.round(stepLengthSec * 1000.0));
+    }
+
+    @Override public CallCounts callCounts() { return calls; }
+
+    public synchronized int activeVehicles() { return count; }
+
+    // ===================== Lifecycle / clock =====================
+    @Override
+    public synchronized void start(List<String> cmd) throws Exception {
+        calls.inc(SIM_START);
+        File netFile = MapVisualisation.resolveNetFile();
+        loadNet(netFile);
+        Logging.LOG.info("Fake SUMO backend: " + edgeIds.length + " edges, " + tls.size()
+                + " traffic lights from " + netFile.getPath() + " (step " + stepMs + " ms)");
+    }
+
+    @Override
+    public synchronized void close() {
+        calls.inc(SIM_CLOSE);
+        count = 0;
+        slotById.clear();
+        pending.clear();
+        pendingIds.clear();
+    }
+
+    @Override
+    public synchronized void step(double targetTime) {
+        calls.inc(SIM_STEP);
+        long targetMs = Math.round(targetTime * 1000.0);
+        do {
+            stepOnce();
+        } while (timeMs < targetMs);
+    }
+
+    @Override public synchronized double time() { calls.inc(SIM_TIME); return timeMs / 1000.0; }
+    @Override public double deltaT() { calls.inc(SIM_DELTA_T); return stepMs / 1000.0; }
+
+    @Override
+    public synchronized int minExpectedNumber() {
+        calls.inc(SIM_MIN_EXPECTED);
+        return count + pending.size();
+    }
+
+    @Override
+    public synchronized List<String> departedIds() {
+        calls.inc(SIM_DEPARTED_IDS);
+        return new ArrayList<>(departed);
+    }
+
+    @Override
+    public synchronized List<String> arrivedIds() {
+        calls.inc(SIM_ARRIVED_IDS);
+        return new ArrayList<>(arrived);
+    }
+
+    @Override
+    public synchronized boolean subscribeDepartArrive() {
+        calls.inc(SIM_SUBSCRIBE);
+        listsSubscribed = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean readDepartArrive(List<String> departedOut, List<String> arrivedOut) {
+        calls.inc(SIM_SUBSCRIPTION_RESULTS);
+        if (!listsSubscribed) return false;
+        departedOut.addAll(departed);
+        arrivedOut.addAll(arrived);
+        return true;
+    }
+
+    // ===================== Movement =====================
+    private void stepOnce() {
+        timeMs += stepMs;
+        double dt = stepMs / 1000.0;
+        departed.clear();
+        arrived.clear();
+
+        insertPending();
+        for (Tls t : tls) t.advance(dt);
+
+        Arrays.fill(edgeHalting, 0);
+        Arrays.fill(edgeQueue, 0);
+
+        int i = 0;
+        while (i < count) {
+            if (move(i, dt)) i++;
+            else removeSlot(i);   // last slot moved into i, not yet processed this step
+        }
+    }
+
+    private void insertPending() {
+        for (String[] p : pending) {
+            int slot = allocSlot(p[0]);
+            vRoute[slot] = routeIndex.get(p[1]);
+            vLeg[slot] = 0;
+            vPos[slot] = 0.0;
+            vSpeed[slot] = 0.0;
+            vWait[slot] = 0.0;
+            vType[slot] = VehicleFrame.typeCode(p[2]);
+            vSubscribed[slot] = false;
+            locate(slot);
+            departed.add(p[0]);
+        }
+        pending.clear();
+        pendingIds.clear();
+    }
+
+    // false = vehicle arrived this step
+    private boolean move(int i, double dt) {
+        int[] route = routes.get(vRoute[i]);
+        int leg = vLeg[i];
+        int e = route[leg];
+        byte type = vType[i];
+
+        double vmax = Math.min(edgeSpeed[e], TYPE_MAX_SPEED[type]);
+        double sp = Math.min(vmax, vSpeed[i] + TYPE_ACCEL[type] * dt);
+        double pos = vPos[i] + sp * dt;
+
+        while (pos >= edgeLength[e]) {
+            if (leg + 1 >= route.length) {
+                arrived.add(vId[i]);
+                return false;
+            }
+            int next = route[leg + 1];
+            if (!linkOpen(e, next)) {
+                double stopAt = Math.max(0.0, edgeLength[e] - 0.1 - edgeQueue[e] * VEH_GAP_M);
+                pos = Math.max(Math.min(vPos[i], edgeLength[e] - 0.1), stopAt);
+                sp = 0.0;
+                edgeQueue[e]++;
+                break;
+            }
+            pos -= edgeLength[e];
+            leg++;
+            e = next;
+        }
+
+        vLeg[i] = leg;
+        vPos[i] = pos;
+        vSpeed[i] = sp;
+        if (sp < HALTING_SPEED) {
+            vWait[i] += dt;
+            edgeHalting[e]++;
+        } else {
+            vWait[i] = 0.0;
+        }
+        locate(i);
+        return true;
+    }
+
+    private boolean linkOpen(int from, int to) {
+        int[] link = linkByPair.get((long) from * edgeIds.length + to);
+        return link == null || tls.get(link[0]).open(link[1]);
+    }
+
+    // x/y on lane 0 of the vehicle's current edge
+    private void locate(int i) {
+        int e = routes.get(vRoute[i])[vLeg[i]];
+        double[] xs = shapeX[e], ys = shapeY[e], cum = shapeCum[e];
+        int n = xs.length;
+        if (n == 1) { vX[i] = xs[0]; vY[i] = ys[0]; return; }
+
+        // shape length may differ from the lane length attribute
+        double d = cum[n - 1] * Math.min(1.0, vPos[i] / Math.max(1e-9, edgeLength[e]));
+        int s = 1;
+        while (s < n - 1 && cum[s] < d) s++;
+        double seg = cum[s] - cum[s - 1];
+        double f = seg > 1e-9 ? (d - cum[s - 1]) / seg : 0.0;
+        vX[i] = xs[s - 1] + (xs[s] - xs[s - 1]) * f;
+        vY[i] = ys[s - 1] + (ys[s] - ys[s - 1]) * f;
+    }
+
+    private int allocSlot(String id) {
+        if (count == vId.length) {
+            int cap = vId.length * 2;
+            vId = Arrays.copyOf(vId, cap);
+            vRoute = Arrays.copyOf(vRoute, cap);
+            vLeg = Arrays.copyOf(vLeg, cap);
+            vPos = Arrays.copyOf(vPos, cap);
+            vSpeed = Arrays.copyOf(vSpeed, cap);
+            vWait = Arrays.copyOf(vWait, cap);
+            vX = Arrays.copyOf(vX, cap);
+            vY = Arrays.copyOf(vY, cap);
+            vType = Arrays.copyOf(vType, cap);
+            vSubscribed = Arrays.copyOf(vSubscribed, cap);
+        }
+        int slot = count++;
+        vId[slot] = id;
+        slotById.put(id, slot);
+        return slot;
+    }
+
+    private void removeSlot(int i) {
+        slotById.remove(vId[i]);
+        int last = --count;
+        if (i != last) {
+            vId[i] = vId[last];
+            vRoute[i] = vRoute[last];
+            vLeg[i] = vLeg[last];
+            vPos[i] = vPos[last];
+            vSpeed[i] = vSpeed[last];
+            vWait[i] = vWait[last];
+            vX[i] = vX[last];
+            vY[i] = vY[last];
+            vType[i] = vType[last];
+            vSubscribed[i] = vSubscribed[last];
+            slotById.put(vId[i], i);
+        }
+        vId[last] = null;
+    }
+
+    // ===================== Vehicles =====================
+    @Override
+    public synchronized List<String> vehicleIds() {
+        calls.inc(VEH_ID_LIST);
+        return new ArrayList<>(Arrays.asList(vId).subList(0, count));
+    }
+
+    @Override
+    public synchronized int vehicleCount() {
+        calls.inc(VEH_ID_COUNT);
+        return count;
+    }
+
+    @Override
+    public synchronized void subscribeVehicle(String vehId) {
+        calls.inc(VEH_SUBSCRIBE);
+        vSubscribed[slotOf(vehId)] = true;
+    }
+
+    @Override
+    public synchronized int readVehicleSubscriptions(VehicleSink sink) {
+        calls.inc(VEH_SUBSCRIPTION_RESULTS);
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!vSubscribed[i]) continue;
+            emit(i, sink);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized boolean readVehicleSubscription(String vehId, VehicleSink sink) {
+        calls.inc(VEH_SUBSCRIPTION_RESULTS);
+        Integer slot = slotById.get(vehId);
+        if (slot == null || !vSubscribed[slot]) return false;
+        emit(slot, sink);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean readVehicle(String vehId, VehicleSink sink) {
+        calls.inc(VEH_POSITION);
+        Integer slot = slotById.get(vehId);
+        if (slot == null) return false;
+        calls.inc(VEH_SPEED);
+        calls.inc(VEH_WAITING_TIME);
+        emit(slot, sink);
+        return true;
+    }
+
+    private void emit(int i, VehicleSink sink) {
+        sink.vehicle(vId[i], vX[i], vY[i], vSpeed[i], vWait[i], VehicleFrame.typeName(vType[i]));
+    }
+
+    @Override
+    public synchronized void addVehicle(String vehId, String routeId, String typeId) {
+        calls.inc(VEH_ADD);
+        if (!routeIndex.containsKey(routeId)) throw new IllegalArgumentException("Invalid route '" + routeId + "' for vehicle " + vehId);
+        if (slotById.containsKey(vehId) || !pendingIds.add(vehId)) {
+            throw new IllegalArgumentException("Vehicle '" + vehId + "' to add already exists.");
+        }
+        pending.add(new String[]{vehId, routeId, typeId});
+    }
+
+    private int slotOf(String vehId) {
+        Integer slot = slotById.get(vehId);
+        if (slot == null) throw new IllegalArgumentException("Vehicle '" + vehId + "' is not known.");
+        return slot;
+    }
+
+    // ===================== Network / routes =====================
+    @Override
+    public synchronized void addRoute(String routeId, List<String> edges) {
+        calls.inc(ROUTE_ADD);
+        if (routeIndex.containsKey(routeId)) throw new IllegalArgumentException("Could not add route '" + routeId + "'.");
+        if (edges == null || edges.isEmpty()) throw new IllegalArgumentException("Route '" + routeId + "' has no edges.");
+        int[] r = new int[edges.size()];
+        for (int i = 0; i < r.length; i++) r[i] = edgeOf(edges.get(i));
+        routeIndex.put(routeId, routes.size());
+        routes.add(r);
+    }
+
+    // fastest path by free-flow travel time, like SUMO's default router
+    @Override
+    public synchronized List<String> findRoute(String fromEdge, String toEdge, String vTypeId) {
+        calls.inc(SIM_FIND_ROUTE);
+        Integer from = edgeIndex.get(fromEdge), to = edgeIndex.get(toEdge);
+        if (from == null || to == null) return null;
+
+        String vClass = TYPE_VCLASS[VehicleFrame.typeCode(vTypeId)];
+        String key = fromEdge + '|' + toEdge + '|' + vClass;
+        if (routeCache.containsKey(key)) return routeCache.get(key);
+
+        int n = edgeIds.length;
+        double[] cost = new double[n];
+        int[] prev = new int[n];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        PriorityQueue<double[]> pq = new PriorityQueue<>(Comparator.comparingDouble((double[] a) -> a[0]));
+
+        List<String> result = null;
+        if (edgeAllowed.get(from).contains(vClass)) {
+            cost[from] = travelTime(from, vClass);
+            pq.add(new double[]{cost[from], from});
+        }
+        while (!pq.isEmpty()) {
+            double[] top = pq.poll();
+            int e = (int) top[1];
+            if (top[0] > cost[e]) continue;
+            if (e == to) break;
+            for (int next : successors[e]) {
+                if (!edgeAllowed.get(next).contains(vClass)) continue;
+                double c = cost[e] + travelTime(next, vClass);
+                if (c < cost[next]) {
+                    cost[next] = c;
+                    prev[next] = e;
+                    pq.add(new double[]{c, next});
+                }
+            }
+        }
+        if (cost[to] < Double.POSITIVE_INFINITY) {
+            ArrayList<String> path = new ArrayList<>();
+            for (int e = to; e >= 0; e = prev[e]) path.add(edgeIds[e]);
+            Collections.reverse(path);
+            result = Collections.unmodifiableList(path);
+        }
+        routeCache.put(key, result);
+        return result;
+    }
+
+    private double travelTime(int e, String vClass) {
+        double maxSpeed = TYPE_MAX_SPEED[VehicleFrame.typeCode(typeForVClass(vClass))];
+        return edgeLength[e] / Math.max(0.1, Math.min(edgeSpeed[e], maxSpeed));
+    }
+
+    private static String typeForVClass(String vClass) {
+        for (int t = 0; t < TYPE_VCLASS.length; t++) {
+            if (TYPE_VCLASS[t].equals(vClass)) return VehicleFrame.typeName((byte) t);
+        }
+        return Main.TYPE_CAR;
+    }
+
+    @Override
+    public synchronized int edgeLaneNumber(String edgeId) {
+        calls.inc(EDGE_LANE_NUMBER);
+        return edgeLanes[edgeOf(edgeId)];
+    }
+
+    @Override
+    public synchronized List<String> laneAllowed(String laneId) {
+        calls.inc(LANE_ALLOWED);
+        Lane l = lanes.get(laneId);
+        return l == null ? null : l.allowed;
+    }
+
+    @Override
+    public synchronized double laneLength(String laneId) {
+        calls.inc(LANE_LENGTH);
+        Lane l = lanes.get(laneId);
+        return l == null ? Double.NaN : l.length;
+    }
+
+    // vehicles only use lane 0, so the edge's halting count is reported there
+    @Override
+    public synchronized int laneHalting(String laneId) {
+        calls.inc(LANE_HALTING);
+        Lane l = lanes.get(laneId);
+        if (l == null) return -1;
+        return l.index == 0 ? edgeHalting[l.edge] : 0;
+    }
+
+    // ===================== Edge / lane state =====================
+    @Override
+    public synchronized List<String> edgeIds() {
+        calls.inc(EDGE_ID_LIST);
+        return new ArrayList<>(Arrays.asList(edgeIds));
+    }
+
+    @Override
+    public synchronized List<String> laneIds() {
+        calls.inc(LANE_ID_LIST);
+        return new ArrayList<>(lanes.keySet());
+    }
+
+    @Override
+    public synchronized void subscribeEdgeState(String edgeId) {
+        calls.inc(EDGE_SUBSCRIBE);
+        edgeStateSubscribed[edgeOf(edgeId)] = true;
+    }
+
+    @Override
+    public synchronized void subscribeLaneState(String laneId) {
+        calls.inc(LANE_SUBSCRIBE);
+        Lane l = lanes.get(laneId);
+        if (l == null) throw new IllegalArgumentException("Lane '" + laneId + "' is not known.");
+        laneStateSubscribed.put(laneId, l);
+    }
+
+    @Override
+    public synchronized int readEdgeStates(TrafficStateSink sink) {
+        calls.inc(EDGE_SUBSCRIPTION_RESULTS);
+        sumEdgeState();
+        int n = 0;
+        for (int e = 0; e < edgeIds.length; e++) {
+            if (!edgeStateSubscribed[e]) continue;
+            emitState(edgeIds[e], e, edgeLength[e] * edgeLanes[e], sink);
+            n++;
+        }
+        return n;
+    }
+
+    // vehicles only use lane 0, so other lanes report empty
+    @Override
+    public synchronized int readLaneStates(TrafficStateSink sink) {
+        calls.inc(LANE_SUBSCRIPTION_RESULTS);
+        sumEdgeState();
+        for (Map.Entry<String, Lane> le : laneStateSubscribed.entrySet()) {
+            Lane l = le.getValue();
+            if (l.index == 0) emitState(le.getKey(), l.edge, l.length, sink);
+            else sink.state(le.getKey(), edgeSpeed[l.edge], 0.0, 0, 0);
+        }
+        return laneStateSubscribed.size();
+    }
+
+    private void sumEdgeState() {
+        Arrays.fill(edgeVehicles, 0);
+        Arrays.fill(edgeSpeedSum, 0.0);
+        Arrays.fill(edgeOccupiedM, 0.0);
+        for (int i = 0; i < count; i++) {
+            int e = routes.get(vRoute[i])[vLeg[i]];
+            edgeVehicles[e]++;
+            edgeSpeedSum[e] += vSpeed[i];
+            edgeOccupiedM[e] += TYPE_LENGTH[vType[i]];
+        }
+    }
+
+    // SUMO reports the lane speed limit as mean speed of an empty edge
+    private void emitState(String id, int e, double capacityM, TrafficStateSink sink) {
+        int n = edgeVehicles[e];
+        double mean = n > 0 ? edgeSpeedSum[e] / n : edgeSpeed[e];
+        double occ = capacityM > 0 ? Math.min(100.0, 100.0 * edgeOccupiedM[e] / capacityM) : 0.0;
+        sink.state(id, mean, occ, n, edgeHalting[e]);
+    }
+
+    private int edgeOf(String edgeId) {
+        Integer e = edgeIndex.get(edgeId);
+        if (e == null) throw new IllegalArgumentException("Edge '" + edgeId + "' is not known.");
+        return e;
+    }
+
+    // ===================== Traffic lights =====================
+    @Override
+    public synchronized List<String> tlsIds() {
+        calls.inc(TLS_ID_LIST);
+        ArrayList<String> out = new ArrayList<>(tls.size());
+        for (Tls t : tls) out.add(t.id);
+        return out;
+    }
+
+    @Override
+    public synchronized String tlsProgram(String tlsId) {
+        calls.inc(TLS_PROGRAM);
+        return tlsOf(tlsId).programId;
+    }
+
+    @Override
+    public synchronized String tlsState(String tlsId) {
+        calls.inc(TLS_STATE);
+        return tlsOf(tlsId).state;
+    }
+
+    // like SUMO: setting a state switches the light to the "online" program until setProgram()
+    @Override
+    public synchronized void setTlsState(String tlsId, String state) {
+        calls.inc(TLS_SET_STATE);
+        Tls t = tlsOf(tlsId);
+        t.programId = ONLINE_PROGRAM;
+        t.state = state == null ? "" : state;
+    }
+
+    @Override
+    public synchronized void setTlsProgram(String tlsId, String program) {
+        calls.inc(TLS_SET_PROGRAM);
+        tlsOf(tlsId).switchTo(program);
+    }
+
+    @Override
+    public synchronized void setTlsPhaseDuration(String tlsId, double sec) {
+        calls.inc(TLS_SET_PHASE_DURATION);
+        tlsOf(tlsId).remaining = sec;
+    }
+
+    @Override
+    public synchronized List<String> tlsControlledLanes(String tlsId) {
+        calls.inc(TLS_CONTROLLED_LANES);
+        return new ArrayList<>(tlsOf(tlsId).controlledLanes);
+    }
+
+    private Tls tlsOf(String tlsId) {
+        Tls t = tlsById.get(tlsId);
+        if (t == null) throw new IllegalArgumentException("Traffic light '" + tlsId + "' is not known.");
+        return t;
+    }
+
+    // ===================== Net loading =====================
+    private void loadNet(File netFile) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        dbf.setExpandEntityReferences(false);
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document doc = db.parse(netFile);
+        doc.getDocumentElement().normalize();
+
+        // edges (internal junction edges are skipped: vehicles jump from edge to edge)
+        ArrayList<Element> edgeEls = new ArrayList<>();
+        NodeList edges = doc.getElementsByTagName("edge");
+        for (int i = 0; i < edges.getLength(); i++) {
+            Element e = (Element) edges.item(i);
+            if ("internal".equals(e.getAttribute("function")) || e.getAttribute("id").startsWith(":")) continue;
+            edgeEls.add(e);
+        }
+
+        int n = edgeEls.size();
+        edgeIds = new String[n];
+        edgeLength = new double[n];
+        edgeSpeed = new double[n];
+        edgeLanes = new int[n];
+        shapeX = new double[n][];
+        shapeY = new double[n][];
+        shapeCum = new double[n][];
+        edgeAllowed = new ArrayList<>(n);
+        edgeIndex.clear();
+        lanes.clear();
+
+        for (int i = 0; i < n; i++) {
+            Element e = edgeEls.get(i);
+            edgeIds[i] = e.getAttribute("id");
+            edgeIndex.put(edgeIds[i], i);
+
+            NodeList laneEls = e.getElementsByTagName("lane");
+            edgeLanes[i] = laneEls.getLength();
+            Set<String> allowed0 = new HashSet<>(Arrays.asList(ALL_VCLASSES));
+            for (int k = 0; k < laneEls.getLength(); k++) {
+                Element l = (Element) laneEls.item(k);
+                int idx = parseInt(l.getAttribute("index"), k);
+                double len = parseDouble(l.getAttribute("length"), 1.0);
+                List<String> allowed = allowedClasses(l.getAttribute("allow"), l.getAttribute("disallow"));
+                lanes.put(l.getAttribute("id"), new Lane(i, idx, len, allowed));
+
+                if (idx == 0) {
+                    edgeLength[i] = Math.max(0.1, len);
+                    edgeSpeed[i] = parseDouble(l.getAttribute("speed"), 13.89);
+                    allowed0 = new HashSet<>(allowed.isEmpty() ? Arrays.asList(ALL_VCLASSES) : allowed);
+                    setShape(i, l.getAttribute("shape"));
+                }
+            }
+            if (shapeX[i] == null) setShape(i, e.getAttribute("shape"));
+            if (edgeLength[i] <= 0) edgeLength[i] = Math.max(0.1, shapeCum[i][shapeCum[i].length - 1]);
+            if (edgeSpeed[i] <= 0) edgeSpeed[i] = 13.89;
+            edgeAllowed.add(allowed0);
+        }
+
+        // traffic lights: the first program of each id is active
+        tls.clear();
+        tlsById.clear();
+        NodeList logics = doc.getElementsByTagName("tlLogic");
+        for (int i = 0; i < logics.getLength(); i++) {
+            Element tl = (Element) logics.item(i);
+            String id = tl.getAttribute("id");
+            Tls t = tlsById.get(id);
+            if (t == null) {
+                t = new Tls(id);
+                tlsById.put(id, t);
+                tls.add(t);
+            }
+            NodeList phases = tl.getElementsByTagName("phase");
+            double[] dur = new double[phases.getLength()];
+            String[] st = new String[phases.getLength()];
+            for (int k = 0; k < phases.getLength(); k++) {
+                Element ph = (Element) phases.item(k);
+                dur[k] = parseDouble(ph.getAttribute("duration"), 1.0);
+                st[k] = ph.getAttribute("state");
+            }
+            String prog = tl.getAttribute("programID");
+            t.programs.put(prog == null || prog.isBlank() ? "0" : prog, new Program(dur, st));
+        }
+        for (Tls t : tls) t.switchTo(t.programs.keySet().iterator().next());
+
+        // connections -> successor graph + TLS links
+        linkByPair.clear();
+        ArrayList<LinkedHashSet<Integer>> succ = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) succ.add(new LinkedHashSet<>());
+        NodeList conns = doc.getElementsByTagName("connection");
+        for (int i = 0; i < conns.getLength(); i++) {
+            Element c = (Element) conns.item(i);
+            Integer from = edgeIndex.get(c.getAttribute("from"));
+            Integer to = edgeIndex.get(c.getAttribute("to"));
+            if (from == null || to == null) continue;
+            succ.get(from).add(to);
+
+            Tls t = tlsById.get(c.getAttribute("tl"));
+            int linkIndex = parseInt(c.getAttribute("linkIndex"), -1);
+            if (t == null || linkIndex < 0) continue;
+            linkByPair.putIfAbsent((long) from * n + to, new int[]{tls.indexOf(t), linkIndex});
+            while (t.controlledLanes.size() <= linkIndex) t.controlledLanes.add("");
+            t.controlledLanes.set(linkIndex, c.getAttribute("from") + "_" + parseInt(c.getAttribute("fromLane"), 0));
+        }
+        successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            successors[i] = succ.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        edgeHalting = new int[n];
+        edgeQueue = new int[n];
+        edgeStateSubscribed = new boolean[n];
+        edgeVehicles = new int[n];
+        edgeSpeedSum = new double[n];
+        edgeOccupiedM = new double[n];
+        routeCache.clear();
+    }
+
+    private void setShape(int e, String shape) {
+        double[] xy = MapVisualisation.parseShape(shape);
+        int pts = Math.max(1, xy.length / 2);
+        double[] xs = new double[pts], ys = new double[pts], cum = new double[pts];
+        for (int k = 0; k < pts && 2 * k + 1 < xy.length; k++) {
+            xs[k] = xy[2 * k];
+            ys[k] = xy[2 * k + 1];
+            if (k > 0) cum[k] = cum[k - 1] + Math.hypot(xs[k] - xs[k - 1], ys[k] - ys[k - 1]);
+        }
+        shapeX[e] = xs;
+        shapeY[e] = ys;
+        shapeCum[e] = cum;
+    }
+
+    // like Lane.getAllowed: explicit list, or the complement of disallow; empty = everything
+    private static List<String> allowedClasses(String allow, String disallow) {
+        if (allow != null && !allow.isBlank()) {
+            return Collections.unmodifiableList(Arrays.asList(allow.trim().split("\\s+")));
+        }
+        if (disallow != null && !disallow.isBlank()) {
+            Set<String> no = new HashSet<>(Arrays.asList(disallow.trim().split("\\s+")));
+            ArrayList<String> out = new ArrayList<>();
+            for (String c : ALL_VCLASSES) if (!no.contains(c)) out.add(c);
+            return Collections.unmodifiableList(out);
+        }
+        return Collections.emptyList();
+    }
+
+    private static int parseInt(String s, int dflt) {
+        try { return (s == null || s.isBlank()) ? dflt : Integer.parseInt(s.trim()); }
+        catch (NumberFormatException ex) { return dflt; }
+    }
+
+    private static double parseDouble(String s, double dflt) {
+        try { return (s == null || s.isBlank()) ? dflt : Double.parseDouble(s.trim()); }
+        catch (NumberFormatException ex) { return dflt; }
+    }
+}
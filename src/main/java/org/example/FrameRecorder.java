@@ -0,0 +1,254 @@
+// ===================== FrameRecorder.java =====================
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Binary recording of collected VehicleFrames (+ cumulative arrivals and TLS states) for FrameReplay.
+//
+// File:   "SUMOREC" version | varint keyframeMs | varint #tls, tls ids | frames... | index footer
+// Frame:  kind ('K' keyframe / 'D' delta) | varint payload length | payload
+// Payload: varlong time ms, varlong arrivedTotal (absolute in K, delta in D) | varint #vehicles,
+//          per vehicle: varint zigzag(slot - prevSlot) << 1 | isNew,
+//            new:   id, type, zigzag x cm, y cm, speed cm/s, wait 0.1 s (-1 = n/a)
+//            known: zigzag deltas of the same four values vs. the slot's previous frame
+//          | varint #tls changes, (varint index, state)...
+// Slots are VehicleCollector handles (bounded by concurrent vehicles); a keyframe restates everything,
+// so a reader can start decoding at any keyframe. The footer indexes keyframes by time.
+public final class FrameRecorder implements Closeable {
+
+    static final byte[] MAGIC = "SUMOREC".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INDEX_MAGIC = "SUMOIDX".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final byte KIND_KEY = 'K';
+    static final byte KIND_DELTA = 'D';
+    static final byte KIND_END = 'X';
+
+    private final DataOutputStream out;
+    private long offset;
+    private final long keyframeEveryMs;
+    private final int tlsCount;
+
+    // last written value per slot (same quantized values the reader reconstructs)
+    private String[] slotId = new String[256];
+    private int[] qx = new int[256], qy = new int[256], qs = new int[256], qw = new int[256];
+
+    private final String[] lastTls;
+    private long lastTimeMs = 0, lastArrived = 0;
+    private long lastKeyframeMs = Long.MIN_VALUE;
+    private final ArrayList<long[]> index = new ArrayList<>();   // {timeMs, offset}
+    private final Payload payload = new Payload();
+    private long frames = 0;
+
+    private List<String> gatewayTlsIds = null;   // set by open(file, traci)
+    private String[] tlsBuf = null;
+
+    public FrameRecorder(File file, List<String> tlsIds, double keyframeEverySec) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.keyframeEveryMs = Math.max(1000L, Math.round(keyframeEverySec * 1000.0));
+        this.tlsCount = tlsIds == null ? 0 : tlsIds.size();
+        this.lastTls = new String[tlsCount];
+
+        Payload h = new Payload();
+        h.bytes(MAGIC);
+        h.varint(VERSION);
+        h.varlong(keyframeEveryMs);
+        h.varint(tlsCount);
+        for (int i = 0; i < tlsCount; i++) h.string(tlsIds.get(i));
+        out.write(h.buf, 0, h.len);
+        offset = h.len;
+    }
+
+    public long framesWritten() { return frames; }
+
+    // ---- convenience for the simulation loops: TLS ids/states read through the gateway ----
+    public static FrameRecorder open(File file, TraciGateway traci) throws IOException {
+        List<String> ids = traci.tlsIds();
+        FrameRecorder r = new FrameRecorder(file, ids, Main.RECORD_KEYFRAME_EVERY_SEC);
+        r.gatewayTlsIds = ids;
+        r.tlsBuf = new String[ids.size()];
+        Logging.LOG.info("Recording frames to " + file.getAbsolutePath() + " (" + ids.size() + " traffic lights)");
+        return r;
+    }
+
+    // one tlsState() call per light per recorded frame
+    public void record(VehicleFrame f, IntFunction<String> idOf, long arrivedTotal, TraciGateway traci) throws IOException {
+        for (int i = 0; i < tlsBuf.length; i++) {
+            try { tlsBuf[i] = traci.tlsState(gatewayTlsIds.get(i)); }
+            catch (Exception ex) { tlsBuf[i] = lastTls[i]; }
+        }
+        record(f, idOf, arrivedTotal, tlsBuf);
+    }
+
+    // idOf: handle -> vehicle id (VehicleCollector::idOf); tlsStates in the order of the header ids
+    public void record(VehicleFrame f, IntFunction<String> idOf, long arrivedTotal, String[] tlsStates) throws IOException {
+        long timeMs = Math.round(f.simTime * 1000.0);
+        boolean key = lastKeyframeMs == Long.MIN_VALUE || timeMs - lastKeyframeMs >= keyframeEveryMs;
+
+        Payload p = payload;
+        p.len = 0;
+        p.varlong(key ? timeMs : timeMs - lastTimeMs);
+        p.varlong(key ? arrivedTotal : arrivedTotal - lastArrived);
+
+        int n = f.size;
+        p.varint(n);
+        int prevSlot = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = f.handles[i];
+            ensureSlot(slot);
+            String id = idOf.apply(slot);
+            if (id == null) id = "";
+            boolean isNew = key || !id.equals(slotId[slot]);
+
+            int x = quantize(f.x[i], 100.0), y = quantize(f.y[i], 100.0), s = quantize(f.speed[i], 100.0);
+            int w = Double.isNaN(f.wait[i]) ? -1 : quantize(f.wait[i], 10.0);
+
+            p.varlong((zigzag(slot - prevSlot) << 1) | (isNew ? 1 : 0));
+            prevSlot = slot;
+            if (isNew) {
+                p.string(id);
+                p.b(f.type[i]);
+                p.varlong(zigzag(x));
+                p.varlong(zigzag(y));
+                p.varlong(zigzag(s));
+                p.varlong(zigzag(w));
+                slotId[slot] = id;
+            } else {
+                p.varlong(zigzag((long) x - qx[slot]));
+                p.varlong(zigzag((long) y - qy[slot]));
+                p.varlong(zigzag((long) s - qs[slot]));
+                p.varlong(zigzag((long) w - qw[slot]));
+            }
+            qx[slot] = x; qy[slot] = y; qs[slot] = s; qw[slot] = w;
+        }
+
+        int changed = 0;
+        for (int i = 0; i < tlsCount; i++) if (tlsChanged(key, i, tlsStates)) changed++;
+        p.varint(changed);
+        for (int i = 0; i < tlsCount; i++) {
+            if (!tlsChanged(key, i, tlsStates)) continue;
+            String st = tlsStates[i] == null ? "" : tlsStates[i];
+            p.varint(i);
+            p.string(st);
+            lastTls[i] = st;
+        }
+
+        if (key) {
+            index.add(new long[]{timeMs, offset});
+            lastKeyframeMs = timeMs;
+        }
+        out.writeByte(key ? KIND_KEY : KIND_DELTA);
+        int lenBytes = writeVarint(out, p.len);
+        out.write(p.buf, 0, p.len);
+        offset += 1 + lenBytes + p.len;
+
+        lastTimeMs = timeMs;
+        lastArrived = arrivedTotal;
+        frames++;
+    }
+
+    private boolean tlsChanged(boolean key, int i, String[] states) {
+        String st = (states == null || i >= states.length || states[i] == null) ? "" : states[i];
+        return key || !st.equals(lastTls[i]);
+    }
+
+    // index footer: 'X' | varint #keys, (varlong time ms, varlong offset)... | long footer offset | INDEX_MAGIC
+    @Override
+    public void close() throws IOException {
+        try {
+            long footer = offset;
+            out.writeByte(KIND_END);
+            writeVarint(out, index.size());
+            for (long[] k : index) {
+                writeVarlong(out, k[0]);
+                writeVarlong(out, k[1]);
+            }
+            out.writeLong(footer);
+            out.write(INDEX_MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot < slotId.length) return;
+        int cap = Math.max(slot + 1, slotId.length * 2);
+        slotId = Arrays.copyOf(slotId, cap);
+        qx = Arrays.copyOf(qx, cap);
+        qy = Arrays.copyOf(qy, cap);
+        qs = Arrays.copyOf(qs, cap);
+        qw = Arrays.copyOf(qw, cap);
+    }
+
+    private static int quantize(double v, double scale) {
+        if (!Double.isFinite(v)) return 0;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(v * scale)));
+    }
+
+    // ===================== Encoding helpers (shared with FrameReplay) =====================
+    static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+    static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+    static int writeVarint(DataOutput o, int v) throws IOException { return writeVarlong(o, v & 0xFFFFFFFFL); }
+
+    static int writeVarlong(DataOutput o, long v) throws IOException {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            o.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+            n++;
+        }
+        o.writeByte((int) v);
+        return n;
+    }
+
+    static long readVarlong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int len = (int) readVarlong(in);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // growable byte buffer for one frame payload (reused)
+    private static final class Payload {
+        byte[] buf = new byte[4096];
+        int len = 0;
+
+        void b(int v) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[len++] = (byte) v;
+        }
+
+        void bytes(byte[] src) { for (byte x : src) b(x); }
+
+        void varint(int v) { varlong(v & 0xFFFFFFFFL); }
+
+        void varlong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                b((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            b((int) v);
+        }
+
+        void string(String s) {
+            byte[] u = s.getBytes(StandardCharsets.UTF_8);
+            varint(u.length);
+            bytes(u);
+        }
+    }
+}
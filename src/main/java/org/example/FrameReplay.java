@@ -0,0 +1,276 @@
+// ===================== FrameReplay.java =====================
+package org.example;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.example.FrameRecorder.*;
+
+// Reader for FrameRecorder files: sequential next() plus keyframe-based seek().
+// Uses the index footer; files without one (recorder not closed) are indexed by a scan on open.
+public final class FrameReplay implements Closeable {
+
+    private final FileChannel ch;
+    private final List<String> tlsIds;
+    private final long keyframeEveryMs;
+    private final long dataStart;
+    private final long[] keyTimeMs;
+    private final long[] keyOffset;
+    private final long endTimeMs;
+
+    private DataInputStream in;
+    private long pos;             // file offset of the next frame
+
+    // decoder state (valid after next())
+    private String[] slotId = new String[256];
+    private byte[] slotType = new byte[256];
+    private int[] qx = new int[256], qy = new int[256], qs = new int[256], qw = new int[256];
+    private final String[] tlsStates;
+    private long timeMs = 0, arrivedTotal = 0;
+    private boolean haveKeyframe = false;
+
+    private FrameReplay(File file) throws IOException {
+        ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        openAt(0);
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a frame recording: " + file);
+        int version = (int) readVarlong(in);
+        if (version != VERSION) throw new IOException("Unsupported recording version " + version + ": " + file);
+        keyframeEveryMs = readVarlong(in);
+        int n = (int) readVarlong(in);
+        ArrayList<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) ids.add(readString(in));
+        tlsIds = Collections.unmodifiableList(ids);
+        tlsStates = new String[n];
+        Arrays.fill(tlsStates, "");
+        dataStart = pos;
+
+        long[][] idx = readIndexFooter();
+        if (idx == null) idx = scanIndex();
+        keyTimeMs = idx[0];
+        keyOffset = idx[1];
+        endTimeMs = idx[2].length > 0 ? idx[2][0] : 0;
+
+        openAt(dataStart);
+    }
+
+    public static FrameReplay open(File file) throws IOException {
+        return new FrameReplay(file);
+    }
+
+    public List<String> tlsIds() { return tlsIds; }
+    public int keyframeCount() { return keyTimeMs.length; }
+    public double keyframeEverySec() { return keyframeEveryMs / 1000.0; }
+    public double startTime() { return keyTimeMs.length > 0 ? keyTimeMs[0] / 1000.0 : 0.0; }
+    public double endTime() { return endTimeMs / 1000.0; }
+
+    // state of the frame returned by the last next()
+    public double simTime() { return timeMs / 1000.0; }
+    public long arrivedTotal() { return arrivedTotal; }
+    public String tlsState(int i) { return tlsStates[i]; }
+    public String idOf(int slot) { return (slot >= 0 && slot < slotId.length) ? slotId[slot] : null; }
+
+    // position at the last keyframe at or before simTime; returns that keyframe's time
+    public double seek(double simTime) throws IOException {
+        if (keyTimeMs.length == 0) { openAt(dataStart); return 0.0; }
+        long t = Math.round(simTime * 1000.0);
+        int k = Arrays.binarySearch(keyTimeMs, t);
+        if (k < 0) k = Math.max(0, -k - 2);
+        while (k > 0 && keyTimeMs[k - 1] == keyTimeMs[k]) k--;
+        openAt(keyOffset[k]);
+        haveKeyframe = false;
+        return keyTimeMs[k] / 1000.0;
+    }
+
+    // decode the next frame into out (handles = recording slots); false at end of recording
+    public boolean next(VehicleFrame out) throws IOException {
+        while (true) {
+            int kind;
+            try { kind = in.readUnsignedByte(); }
+            catch (EOFException eof) { return false; }
+            if (kind == KIND_END) return false;
+
+            long len = readVarlong(in);
+            long frameStart = pos;
+            if (kind != KIND_KEY && kind != KIND_DELTA) throw new IOException("Corrupt recording at offset " + frameStart);
+            if (kind == KIND_DELTA && !haveKeyframe) {   // only after a raw open/seek mid-stream
+                skipFully(len);
+                continue;
+            }
+            decode(kind == KIND_KEY, out);
+            return true;
+        }
+    }
+
+    private void decode(boolean key, VehicleFrame out) throws IOException {
+        long t = readVarlong(in);
+        long a = readVarlong(in);
+        timeMs = key ? t : timeMs + t;
+        arrivedTotal = key ? a : arrivedTotal + a;
+        if (key) {
+            Arrays.fill(slotId, null);
+            haveKeyframe = true;
+        }
+
+        int n = (int) readVarlong(in);
+        out.clear(timeMs / 1000.0);
+        out.ensureCapacity(n);
+        int slot = 0;
+        for (int i = 0; i < n; i++) {
+            long h = readVarlong(in);
+            slot += (int) unzigzag(h >>> 1);
+            ensureSlot(slot);
+            if ((h & 1) != 0) {
+                slotId[slot] = readString(in);
+                slotType[slot] = in.readByte();
+                qx[slot] = (int) unzigzag(readVarlong(in));
+                qy[slot] = (int) unzigzag(readVarlong(in));
+                qs[slot] = (int) unzigzag(readVarlong(in));
+                qw[slot] = (int) unzigzag(readVarlong(in));
+            } else {
+                qx[slot] += (int) unzigzag(readVarlong(in));
+                qy[slot] += (int) unzigzag(readVarlong(in));
+                qs[slot] += (int) unzigzag(readVarlong(in));
+                qw[slot] += (int) unzigzag(readVarlong(in));
+            }
+            out.add(slot, qx[slot] / 100.0, qy[slot] / 100.0, qs[slot] / 100.0,
+                    qw[slot] < 0 ? Double.NaN : qw[slot] / 10.0, slotType[slot]);
+        }
+
+        int changed = (int) readVarlong(in);
+        for (int i = 0; i < changed; i++) {
+            int idx = (int) readVarlong(in);
+            String st = readString(in);
+            if (idx >= 0 && idx < tlsStates.length) tlsStates[idx] = st;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    // ===================== Index =====================
+    // {keyTimes, keyOffsets, {lastFrameTime}} or null if the footer is missing
+    private long[][] readIndexFooter() throws IOException {
+        long size = ch.size();
+        int tail = 8 + INDEX_MAGIC.length;
+        if (size < dataStart + tail) return null;
+
+        openAt(size - tail);
+        long footer = in.readLong();
+        byte[] magic = new byte[INDEX_MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, INDEX_MAGIC) || footer < dataStart || footer >= size) return null;
+
+        openAt(footer);
+        if (in.readUnsignedByte() != KIND_END) return null;
+        int n = (int) readVarlong(in);
+        long[] times = new long[n], offs = new long[n];
+        for (int i = 0; i < n; i++) {
+            times[i] = readVarlong(in);
+            offs[i] = readVarlong(in);
+        }
+        return new long[][]{times, offs, {lastFrameTime(n > 0 ? offs[n - 1] : dataStart, n > 0 ? times[n - 1] : 0)}};
+    }
+
+    // time of the last frame: decode frame headers from the last keyframe on
+    private long lastFrameTime(long fromOffset, long fromTime) throws IOException {
+        openAt(fromOffset);
+        long t = fromTime;
+        while (true) {
+            int kind;
+            try { kind = in.readUnsignedByte(); } catch (EOFException eof) { return t; }
+            if (kind != KIND_KEY && kind != KIND_DELTA) return t;
+            long len;
+            long payloadStart;
+            try {
+                len = readVarlong(in);
+                payloadStart = pos;
+                long v = readVarlong(in);
+                t = kind == KIND_KEY ? v : t + v;
+                skipFully(len - (pos - payloadStart));
+            } catch (EOFException eof) {
+                return t;
+            }
+        }
+    }
+
+    private long[][] scanIndex() throws IOException {
+        Logging.LOG.info("Recording has no index footer; scanning keyframes...");
+        openAt(dataStart);
+        ArrayList<long[]> keys = new ArrayList<>();
+        long t = 0;
+        while (true) {
+            long frameStart = pos;
+            int kind;
+            try { kind = in.readUnsignedByte(); } catch (EOFException eof) { break; }
+            if (kind != KIND_KEY && kind != KIND_DELTA) break;
+            try {
+                long len = readVarlong(in);
+                long payloadStart = pos;
+                long v = readVarlong(in);
+                t = kind == KIND_KEY ? v : t + v;
+                if (kind == KIND_KEY) keys.add(new long[]{t, frameStart});
+                skipFully(len - (pos - payloadStart));
+            } catch (EOFException eof) {
+                break;   // truncated last frame
+            }
+        }
+        long[] times = new long[keys.size()], offs = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) { times[i] = keys.get(i)[0]; offs[i] = keys.get(i)[1]; }
+        return new long[][]{times, offs, {t}};
+    }
+
+    // ===================== Stream plumbing =====================
+    private void openAt(long offset) throws IOException {
+        ch.position(offset);
+        pos = offset;
+        // count above the buffer, so pos is the offset of the next unread byte
+        InputStream buffered = new BufferedInputStream(Channels.newInputStream(ch), 1 << 16);
+        in = new DataInputStream(new FilterInputStream(buffered) {
+            @Override public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) pos++;
+                return b;
+            }
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                int r = super.read(b, off, len);
+                if (r > 0) pos += r;
+                return r;
+            }
+            @Override public long skip(long n) throws IOException {
+                long s = super.skip(n);
+                if (s > 0) pos += s;
+                return s;
+            }
+        });
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            int s = in.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (s <= 0) throw new EOFException();
+            n -= s;
+        }
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot < slotId.length) return;
+        int cap = Math.max(slot + 1, slotId.length * 2);
+        slotId = Arrays.copyOf(slotId, cap);
+        slotType = Arrays.copyOf(slotType, cap);
+        qx = Arrays.copyOf(qx, cap);
+        qy = Arrays.copyOf(qy, cap);
+        qs = Arrays.copyOf(qs, cap);
+        qw = Arrays.copyOf(qw, cap);
+    }
+}
@@ -0,0 +1,108 @@
+// ===================== FrameRing.java =====================
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Bounded single-producer / single-consumer ring of preallocated slots (no locks, no per-item allocation).
+// Producer: claim() -> fill slot -> publish().   Consumer: take() -> read slot -> release().
+// A slot is only reused after the consumer released it, so a published slot is effectively immutable.
+public final class FrameRing<T> {
+
+    public enum Overflow {
+        BLOCK,        // producer waits for space (back-pressure)
+        DROP_NEWEST,  // producer drops the item it was about to write
+        KEEP_LATEST   // producer drops when full; consumer always skips to the newest item
+    }
+
+    private static final int SPINS = 200;
+    private static final long PARK_NANOS = 100_000L;
+
+    private final String name;
+    private final Object[] slots;
+    private final int mask;
+    private final Overflow overflow;
+
+    private final AtomicLong head = new AtomicLong(0);   // next slot to read (consumer owned)
+    private final AtomicLong tail = new AtomicLong(0);   // next slot to write (producer owned)
+    private final AtomicLong dropped = new AtomicLong(0);
+    private volatile long waitedNanos = 0;               // BLOCK: producer time spent waiting for space
+    private volatile boolean closed = false;
+
+    public FrameRing(String name, int capacity, Overflow overflow, Supplier<T> slotFactory) {
+        int cap = 2;
+        while (cap < capacity) cap <<= 1;
+        this.name = name;
+        this.slots = new Object[cap];
+        this.mask = cap - 1;
+        this.overflow = overflow == null ? Overflow.BLOCK : overflow;
+        for (int i = 0; i < cap; i++) slots[i] = slotFactory.get();
+    }
+
+    public String name() { return name; }
+    public long droppedCount() { return dropped.get(); }
+    public long waitedNanos() { return waitedNanos; }
+    public int capacity() { return slots.length; }
+    public boolean isClosed() { return closed; }
+
+    // ===================== Producer =====================
+    // slot to fill, or null when the item must be dropped (or the ring is closed)
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        long t = tail.get();
+        if (t - head.get() < slots.length) return (T) slots[(int) (t & mask)];
+        if (overflow != Overflow.BLOCK || closed) {
+            if (!closed) dropped.incrementAndGet();
+            return null;
+        }
+        long waitStart = System.nanoTime();
+        int spins = 0;
+        while (t - head.get() >= slots.length) {
+            if (closed) break;
+            if (spins++ < SPINS) Thread.onSpinWait();
+            else LockSupport.parkNanos(PARK_NANOS);
+        }
+        waitedNanos += System.nanoTime() - waitStart;    // single producer
+        return closed ? null : (T) slots[(int) (t & mask)];
+    }
+
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    public void close() { closed = true; }
+
+    // ===================== Consumer =====================
+    // next published slot, or null once the ring is closed and drained
+    @SuppressWarnings("unchecked")
+    public T take() {
+        int spins = 0;
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (t > h) {
+                if (overflow == Overflow.KEEP_LATEST && t - h > 1) {
+                    dropped.addAndGet(t - h - 1);
+                    h = t - 1;
+                    head.lazySet(h);
+                }
+                return (T) slots[(int) (h & mask)];
+            }
+            if (closed) return null;
+            if (spins++ < SPINS) Thread.onSpinWait();
+            else LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    // next published slot without waiting, or null when none is ready (for batching consumers)
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        return tail.get() > h ? (T) slots[(int) (h & mask)] : null;
+    }
+
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+}
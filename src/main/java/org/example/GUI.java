@@ -4,9 +4,12 @@ package org.example;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class GUI {
 
@@ -21,6 +24,8 @@ public final class GUI {
     private static final Color TEXT_MUTED = new Color(0x9CA3AF);
     private static final Color BORDER_COL = new Color(0x1F2937);
 
+    private static final int SPEED_UNTHROTTLED = 11;
+
     // ===================== FILTER STATE =====================
     public static class VehicleFilter implements MapVisualisation.Filter {
         public volatile boolean showCars = true;
@@ -52,10 +57,19 @@ public final class GUI {
     private static final JLabel congestionLabel = new JLabel("Congestion Index: 0.00");
     private static final JLabel throughputLabel = new JLabel("Throughput: 0 v/h");
     private static final JLabel meanSpeedLabel = new JLabel("Mean Speed: 0.0 m/s");
+    private static final JLabel realTimeFactorLabel = new JLabel("Real-time Factor: -");
 
     private static final JLabel tlStateLabel = new JLabel("TL State: -");
+    private static final JLabel bottleneckLabel = new JLabel("Bottlenecks (halting/occ): -");
 
     public static void launch() {
+        launch(null, null, Main.METRICS_HTTP_PORT);
+    }
+
+    // recordFile: optional FrameRecorder output for the live run (--record)
+    // streamDir: directory for the continuous metrics CSV, null = off
+    // metricsPort: OpenMetrics endpoint on localhost, <= 0 = off
+    public static void launch(File recordFile, File streamDir, int metricsPort) {
         try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); }
         catch (Exception e) { Logging.LOG.log(java.util.logging.Level.WARNING, "LookAndFeel set failed", e); }
 
@@ -82,14 +96,15 @@ public final class GUI {
         JButton stopBtn = new JButton("Stop");
 
         JLabel speedLabel = new JLabel("Speed");
-        JSlider simSpeedSlider = new JSlider(1, 10, 1);
+        // 1..10 = real-time factor, SPEED_UNTHROTTLED = as fast as SUMO allows
+        JSlider simSpeedSlider = new JSlider(1, SPEED_UNTHROTTLED, 1);
         simSpeedSlider.setMajorTickSpacing(1);
         simSpeedSlider.setPaintTicks(true);
 
         Hashtable<Integer, JLabel> speedLabelTable = new Hashtable<>();
-        JLabel minL = new JLabel("1x"), maxL = new JLabel("10x");
-        minL.setForeground(Color.WHITE); maxL.setForeground(Color.WHITE);
-        speedLabelTable.put(1, minL); speedLabelTable.put(10, maxL);
+        JLabel minL = new JLabel("1x"), tenL = new JLabel("10x"), maxL = new JLabel("Max");
+        minL.setForeground(Color.WHITE); tenL.setForeground(Color.WHITE); maxL.setForeground(Color.WHITE);
+        speedLabelTable.put(1, minL); speedLabelTable.put(10, tenL); speedLabelTable.put(SPEED_UNTHROTTLED, maxL);
         simSpeedSlider.setLabelTable(speedLabelTable);
         simSpeedSlider.setPaintLabels(true);
         simSpeedSlider.setBackground(BG_PANEL);
@@ -99,6 +114,8 @@ public final class GUI {
 
         JButton exportBtn = new JButton("Export CSV");
         JButton exportPdfBtn = new JButton("Export PDF");
+        JButton exportColumnarBtn = new JButton("Export SMC");
+        exportColumnarBtn.setToolTipText("Compressed columnar metrics file (MetricsColumnFile)");
 
         JLabel routeLabel = new JLabel("Select scenario (same destination, 4 long variants)");
         JComboBox<VehicleInjection.RouteDef> routeCombo = new JComboBox<>();
@@ -177,6 +194,7 @@ public final class GUI {
         stylePrimaryButton(stopBtn, ACCENT_RED);
         stylePrimaryButton(exportBtn, ACCENT_BLUE);
         stylePrimaryButton(exportPdfBtn, ACCENT_BLUE);
+        stylePrimaryButton(exportColumnarBtn, ACCENT_BLUE);
 
         stylePrimaryButton(carBtn, ACCENT_BLUE);
         stylePrimaryButton(truckBtn, ACCENT_BLUE);
@@ -190,7 +208,7 @@ public final class GUI {
         controls.add(Box.createVerticalStrut(6));
         controls.add(rowPanel(startBtn, stopBtn));
         controls.add(Box.createVerticalStrut(6));
-        controls.add(rowPanel(exportBtn, exportPdfBtn));
+        controls.add(rowPanel(exportBtn, exportPdfBtn, exportColumnarBtn));
 
         controls.add(Box.createVerticalStrut(10));
         controls.add(speedLabel);
@@ -256,8 +274,8 @@ public final class GUI {
         Font metricsFont = new Font("SansSerif", Font.BOLD, 12);
         for (JLabel l : new JLabel[]{
                 activeVehiclesLabel, visibleVehiclesLabel, byTypeLabel,
-                avgWaitLabel, congestionLabel, throughputLabel, meanSpeedLabel,
-                tlStateLabel
+                avgWaitLabel, congestionLabel, throughputLabel, meanSpeedLabel, realTimeFactorLabel,
+                tlStateLabel, bottleneckLabel
         }) {
             l.setForeground(Color.WHITE); l.setFont(metricsFont);
         }
@@ -283,9 +301,26 @@ public final class GUI {
         metrics.add(throughputLabel);
         metrics.add(Box.createVerticalStrut(4));
         metrics.add(meanSpeedLabel);
+        metrics.add(Box.createVerticalStrut(4));
+        metrics.add(realTimeFactorLabel);
 
         metrics.add(Box.createVerticalStrut(10));
         metrics.add(tlStateLabel);
+        metrics.add(Box.createVerticalStrut(4));
+        metrics.add(bottleneckLabel);
+
+        // loop latency per phase over the last second, refreshed by perfTimer below
+        JPanel perf = new JPanel();
+        perf.setLayout(new BoxLayout(perf, BoxLayout.Y_AXIS));
+        perf.setBackground(BG_PANEL);
+        perf.setAlignmentX(Component.LEFT_ALIGNMENT);
+        styleTitledBorder(perf, "Performance");
+        JLabel perfLabel = new JLabel(perfHtml(null));
+        perfLabel.setForeground(Color.WHITE);
+        perfLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        perf.add(perfLabel);
+        metrics.add(Box.createVerticalStrut(10));
+        metrics.add(perf);
         metrics.add(Box.createVerticalGlue());
 
         frame.add(metrics, BorderLayout.EAST);
@@ -293,7 +328,9 @@ public final class GUI {
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
 
+        AtomicReference<MetricsEndpoint> endpoint = new AtomicReference<>();
         Runnable onStopped = () -> {
+            closeEndpoint(endpoint);
             frame.dispose();
             System.exit(0);
         };
@@ -313,22 +350,47 @@ public final class GUI {
                 congestionLabel,
                 throughputLabel,
                 meanSpeedLabel,
+                realTimeFactorLabel,
                 tlStateLabel,
+                bottleneckLabel,
                 routeCombo,
                 tlCombo,
                 trafficControl,
                 onStopped
         );
 
+        mapPanel.recordPaintTo(live.phaseStats());
+        if (recordFile != null) live.recordTo(recordFile);
+        live.streamTo(streamDir);
+        live.connect();
+        if (metricsPort > 0) {
+            endpoint.set(MetricsEndpoint.start(metricsPort, Main.METRICS_HTTP_THREADS, live::liveSnapshot));
+            frame.addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override public void windowClosing(java.awt.event.WindowEvent e) { closeEndpoint(endpoint); }
+            });
+        }
+
+        AtomicReference<PhaseStats.Snapshot> perfPrev = new AtomicReference<>(live.phaseStats().snapshot());
+        javax.swing.Timer perfTimer = new javax.swing.Timer(Main.PERF_PANEL_REFRESH_MS, e -> {
+            PhaseStats.Snapshot now = live.phaseStats().snapshot();
+            PhaseStats.Snapshot window = now.since(perfPrev.getAndSet(now));
+            if (window.count(PhaseStats.Phase.LOOP) > 0) perfLabel.setText(perfHtml(window));
+        });
+        perfTimer.start();
+
         // ===== UI actions =====
         startBtn.addActionListener(e -> { live.startSimulation(); startBtn.setEnabled(false); });
         stopBtn.addActionListener(e -> live.stopSimulation());
 
         simSpeedSlider.addChangeListener(e -> {
             int factor = simSpeedSlider.getValue();
-            int delayMs = 110 - 10 * factor;
-            live.setSpeedDelay(delayMs, factor);
-            Logging.LOG.info("Sim speed set: " + factor + "x (delay=" + delayMs + "ms)");
+            if (factor >= SPEED_UNTHROTTLED) {
+                live.setRealTimeFactor(Pacer.UNTHROTTLED, 0);
+                Logging.LOG.info("Sim speed set: unthrottled");
+            } else {
+                live.setRealTimeFactor(factor, factor);
+                Logging.LOG.info("Sim speed set: " + factor + "x real time");
+            }
         });
 
         exportBtn.addActionListener(e -> {
@@ -337,11 +399,16 @@ public final class GUI {
             live.exportMetricsCsv(frame, routeName);
         });
 
+        exportColumnarBtn.addActionListener(e -> {
+            Object sel = routeCombo.getSelectedItem();
+            String routeName = (sel instanceof VehicleInjection.RouteDef) ? ((VehicleInjection.RouteDef) sel).name : "";
+            live.exportMetricsColumnar(frame, routeName);
+        });
+
         exportPdfBtn.addActionListener(e -> {
             Object sel = routeCombo.getSelectedItem();
             String routeName = (sel instanceof VehicleInjection.RouteDef) ? ((VehicleInjection.RouteDef) sel).name : "";
-            BufferedImage chartImg = MapVisualisation.renderComponentToImage(trendChart, 900, 320);
-            live.exportSummaryPdf(frame, routeName, chartImg);
+            live.exportSummaryPdf(frame, routeName);
         });
 
         java.util.function.Supplier<Integer> numVehiclesSupplier = () -> {
@@ -390,6 +457,198 @@ public final class GUI {
         Logging.LOG.info("UI ready. Scenarios + long variants will populate after SUMO starts.");
     }
 
+    // frees the port; safe to call from both the stop callback and the window listener
+    private static void closeEndpoint(AtomicReference<MetricsEndpoint> endpoint) {
+        MetricsEndpoint e = endpoint.getAndSet(null);
+        if (e != null) e.close();
+    }
+
+    // ===================== REPLAY WINDOW =====================
+    // Plays a FrameRecorder file without SUMO: map + trend chart + metrics, with play/pause, speed and seek.
+    public static void launchReplay(File file) {
+        FrameReplay replay;
+        try {
+            replay = FrameReplay.open(file);
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Cannot open recording " + file, ex);
+            JOptionPane.showMessageDialog(null, ex.getMessage(), "Replay", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); }
+        catch (Exception e) { Logging.LOG.log(java.util.logging.Level.WARNING, "LookAndFeel set failed", e); }
+
+        JFrame frame = new JFrame("Traffic Grid Replay - " + file.getName());
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(1220, 680);
+        frame.setLayout(new BorderLayout());
+        frame.getContentPane().setBackground(BG_DARK);
+
+        MapVisualisation.MapPanel mapPanel = new MapVisualisation.MapPanel(FILTER);
+        mapPanel.setBackground(Color.WHITE);
+        frame.add(mapPanel, BorderLayout.CENTER);
+
+        Font titleFont = new Font("SansSerif", Font.BOLD, 13);
+
+        // ===== Left controls =====
+        JPanel controls = new JPanel();
+        controls.setLayout(new BoxLayout(controls, BoxLayout.Y_AXIS));
+        controls.setBackground(BG_PANEL);
+        styleTitledBorder(controls, "Replay Controls");
+        controls.setPreferredSize(new Dimension(400, 0));
+
+        JButton playBtn = new JButton("Play");
+        stylePrimaryButton(playBtn, ACCENT_GREEN);
+
+        JLabel speedLabel = new JLabel("Speed");
+        styleSectionLabel(speedLabel, titleFont);
+        String[] speedNames = {"1x", "2x", "5x", "10x", "30x", "60x", "Max"};
+        double[] speedFactors = {1, 2, 5, 10, 30, 60, Pacer.UNTHROTTLED};
+        JComboBox<String> speedCombo = new JComboBox<>(speedNames);
+        speedCombo.setMaximumSize(new Dimension(160, 28));
+        speedCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        JLabel timeLabel = new JLabel();
+        styleSectionLabel(timeLabel, titleFont);
+        int startSec = (int) Math.floor(replay.startTime());
+        int endSec = Math.max(startSec + 1, (int) Math.ceil(replay.endTime()));
+        JSlider seekSlider = new JSlider(startSec, endSec, startSec);
+        seekSlider.setBackground(BG_PANEL);
+        seekSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
+        seekSlider.setMaximumSize(new Dimension(320, 30));
+
+        JLabel tlLabel = new JLabel("Traffic Light");
+        styleSectionLabel(tlLabel, titleFont);
+        JComboBox<String> tlCombo = new JComboBox<>(replay.tlsIds().toArray(new String[0]));
+        tlCombo.setMaximumSize(new Dimension(360, 30));
+        tlCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        JLabel infoLabel = new JLabel(String.format(Locale.US, "%s: %.0f-%.0f s, %d keyframes",
+                file.getName(), replay.startTime(), replay.endTime(), replay.keyframeCount()));
+        infoLabel.setForeground(TEXT_MUTED);
+        infoLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        controls.add(Box.createVerticalStrut(6));
+        controls.add(rowPanel(playBtn));
+        controls.add(Box.createVerticalStrut(10));
+        controls.add(speedLabel);
+        controls.add(Box.createVerticalStrut(4));
+        controls.add(speedCombo);
+        controls.add(Box.createVerticalStrut(10));
+        controls.add(timeLabel);
+        controls.add(Box.createVerticalStrut(4));
+        controls.add(seekSlider);
+        controls.add(Box.createVerticalStrut(12));
+        controls.add(tlLabel);
+        controls.add(Box.createVerticalStrut(4));
+        controls.add(tlCombo);
+        controls.add(Box.createVerticalStrut(12));
+        controls.add(infoLabel);
+        controls.add(Box.createVerticalGlue());
+        frame.add(controls, BorderLayout.WEST);
+
+        // ===== Right metrics + chart =====
+        JPanel metrics = new JPanel();
+        metrics.setLayout(new BoxLayout(metrics, BoxLayout.Y_AXIS));
+        metrics.setBackground(BG_PANEL);
+        styleTitledBorder(metrics, "Metrics");
+
+        Font metricsFont = new Font("SansSerif", Font.BOLD, 12);
+        JLabel[] labels = {
+                activeVehiclesLabel, visibleVehiclesLabel, byTypeLabel,
+                avgWaitLabel, congestionLabel, throughputLabel, meanSpeedLabel, realTimeFactorLabel,
+                tlStateLabel
+        };
+        MapVisualisation.TrendChartPanel trendChart = new MapVisualisation.TrendChartPanel(120);
+        trendChart.setAlignmentX(Component.LEFT_ALIGNMENT);
+        metrics.add(Box.createVerticalStrut(6));
+        metrics.add(trendChart);
+        for (JLabel l : labels) {
+            l.setForeground(Color.WHITE); l.setFont(metricsFont);
+            metrics.add(Box.createVerticalStrut(6));
+            metrics.add(l);
+        }
+        metrics.add(Box.createVerticalGlue());
+        frame.add(metrics, BorderLayout.EAST);
+
+        // ===== Player =====
+        // latest published state; the EDT applies at most one pending update at a time
+        AtomicReference<Object[]> pending = new AtomicReference<>();
+        AtomicBoolean scheduled = new AtomicBoolean(false);
+        AtomicBoolean seekSliderFromCode = new AtomicBoolean(false);
+
+        Runnable apply = () -> {
+            scheduled.set(false);
+            Object[] st = pending.getAndSet(null);
+            if (st == null) return;
+            MetricsAggregator.StepMetrics m = (MetricsAggregator.StepMetrics) st[0];
+            double simTime = (Double) st[1];
+            double achieved = (Double) st[2];
+            String[] tls = (String[]) st[3];
+
+            timeLabel.setText(String.format(Locale.US, "Sim time: %.1f s", simTime));
+            if (!seekSlider.getValueIsAdjusting()) {
+                seekSliderFromCode.set(true);
+                seekSlider.setValue((int) Math.round(simTime));
+                seekSliderFromCode.set(false);
+            }
+            activeVehiclesLabel.setText("Active Vehicles (all): " + m.active);
+            visibleVehiclesLabel.setText("Visible Vehicles (filtered): " + m.visible);
+            byTypeLabel.setText("By Type: car=" + m.visCar + " truck=" + m.visTruck + " bus=" + m.visBus);
+            avgWaitLabel.setText(m.avgWaitSec >= 0
+                    ? String.format(Locale.US, "Avg Wait Time: %.1f s | p90 %.1f s | p99 %.1f s", m.avgWaitSec,
+                            m.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P90),
+                            m.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P99))
+                    : "Avg Wait Time: N/A (not recorded)");
+            congestionLabel.setText(String.format(Locale.US, "Congestion Index: %.2f (stopped=%d)", m.congestion, m.stopped));
+            throughputLabel.setText(String.format(Locale.US,
+                    "Throughput: %.1f v/h (last %.0f s) | 1m %.0f | 15m %.0f",
+                    m.throughputVph, Main.THROUGHPUT_WINDOW_SEC, m.throughput1mVph, m.throughput15mVph));
+            meanSpeedLabel.setText(String.format(Locale.US, "Mean Speed: %.2f m/s", m.meanSpeed));
+            realTimeFactorLabel.setText(String.format(Locale.US, "Real-time Factor: %.1fx", achieved));
+
+            int sel = tlCombo.getSelectedIndex();
+            tlStateLabel.setText(sel >= 0 && sel < tls.length
+                    ? "TL State: " + tlCombo.getItemAt(sel) + " = " + tls[sel]
+                    : "TL State: -");
+        };
+
+        ReplayPlayer player = new ReplayPlayer(replay, mapPanel, trendChart, FILTER, new ReplayPlayer.View() {
+            @Override
+            public void show(MetricsAggregator.StepMetrics m, FrameReplay r, double achievedFactor) {
+                String[] tls = new String[r.tlsIds().size()];
+                for (int i = 0; i < tls.length; i++) tls[i] = r.tlsState(i);
+                pending.set(new Object[]{m, r.simTime(), achievedFactor, tls});
+                if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(apply);
+            }
+
+            @Override
+            public void ended() {
+                SwingUtilities.invokeLater(() -> playBtn.setText("Play"));
+            }
+        });
+
+        playBtn.addActionListener(e -> {
+            boolean play = !player.isPlaying();
+            player.setPlaying(play);
+            playBtn.setText(play ? "Pause" : "Play");
+        });
+        speedCombo.addActionListener(e -> player.setRealTimeFactor(speedFactors[speedCombo.getSelectedIndex()]));
+        seekSlider.addChangeListener(e -> {
+            if (seekSliderFromCode.get() || seekSlider.getValueIsAdjusting()) return;
+            player.seek(seekSlider.getValue());
+        });
+
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override public void windowClosing(java.awt.event.WindowEvent e) { player.close(); }
+        });
+
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        player.start();
+        Logging.LOG.info("Replay ready: " + file.getAbsolutePath());
+    }
+
     // ===================== UI HELPERS =====================
     private static void stylePrimaryButton(AbstractButton b, Color bg) {
         b.setBackground(bg);
@@ -413,6 +672,26 @@ public final class GUI {
         l.setAlignmentX(Component.LEFT_ALIGNMENT);
     }
 
+    // mean / p99 / max in ms and share of the loop per phase; null: not running yet
+    static String perfHtml(PhaseStats.Snapshot s) {
+        StringBuilder sb = new StringBuilder("<html><table cellspacing=0 cellpadding=1>"
+                + "<tr><td>phase</td><td align=right>mean</td><td align=right>p99</td>"
+                + "<td align=right>max</td><td align=right>loop</td></tr>");
+        for (PhaseStats.Phase p : PhaseStats.PHASES) {
+            sb.append("<tr><td>").append(p.label).append("</td>");
+            if (s == null || s.count(p) == 0) {
+                sb.append("<td align=right>-</td><td align=right>-</td><td align=right>-</td><td align=right>-</td>");
+            } else {
+                sb.append(String.format(Locale.US,
+                        "<td align=right>%.2f</td><td align=right>%.2f</td><td align=right>%.2f</td>"
+                                + "<td align=right>%s</td>",
+                        s.meanMs(p), s.percentileMs(p, 0.99), s.maxNs(p) / 1e6, s.loopSharePercent(p, 0)));
+            }
+            sb.append("</tr>");
+        }
+        return sb.append("</table>ms, last second</html>").toString();
+    }
+
     private static void styleTitledBorder(JPanel panel, String title) {
         TitledBorder tb = BorderFactory.createTitledBorder(
                 BorderFactory.createLineBorder(BORDER_COL),
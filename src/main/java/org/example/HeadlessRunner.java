@@ -0,0 +1,226 @@
+// ===================== HeadlessRunner.java =====================
+package org.example;
+
+import java.io.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+// Batch mode without Swing: plain `sumo`, no per-step sleep, MetricRows streamed to a CSV file.
+// Usage: java -jar app.jar --headless [--until SEC] [--sample SEC] [--inject N] [--type car|truck|bus|mix]
+//                                      [--rule-tls] [--out FILE] [--sumo BINARY] [--fake] [--record FILE]
+//                                      [--edges FILE] [--columnar FILE] [--pdf FILE]
+// --fake runs against FakeSumoGateway (no SUMO binary needed) to measure our own per-step overhead.
+public final class HeadlessRunner {
+
+    private HeadlessRunner() {}
+
+    static final class Options {
+        double untilSimSec = 0.0;          // <= 0: run until the network is empty
+        double sampleEverySimSec = Main.SAMPLE_EVERY_SIM_SECONDS;
+        int injectPerScenario = 10;
+        String type = "mix";
+        boolean ruleBasedTls = false;
+        String outPath = "traffic_metrics_batch.csv";
+        String sumoBinary = Main.SUMO_BINARY;
+        boolean fakeBackend = false;
+        String recordPath = null;          // frame recording for --replay
+        String edgesPath = null;           // per-edge state at the end of the run
+        String columnarPath = null;        // MetricsColumnFile of all rows at the end of the run
+        String pdfPath = null;             // SummaryReport at the end of the run
+    }
+
+    static Options parseArgs(String[] args) throws Main.Milestone3Exception {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--until": o.untilSimSec = parseDouble(a, value(args, ++i, a)); break;
+                case "--sample": o.sampleEverySimSec = Math.max(0.0, parseDouble(a, value(args, ++i, a))); break;
+                case "--inject": o.injectPerScenario = (int) parseDouble(a, value(args, ++i, a)); break;
+                case "--type": o.type = value(args, ++i, a).toLowerCase(Locale.ROOT); break;
+                case "--rule-tls": o.ruleBasedTls = true; break;
+                case "--out": o.outPath = value(args, ++i, a); break;
+                case "--sumo": o.sumoBinary = value(args, ++i, a); break;
+                case "--fake": o.fakeBackend = true; break;
+                case "--record": o.recordPath = value(args, ++i, a); break;
+                case "--edges": o.edgesPath = value(args, ++i, a); break;
+                case "--columnar": o.columnarPath = value(args, ++i, a); break;
+                case "--pdf": o.pdfPath = value(args, ++i, a); break;
+                default: throw new Main.Milestone3Exception("Unknown headless option: " + a);
+            }
+        }
+        if (!o.type.equals("mix") && !o.type.equals(Main.TYPE_CAR)
+                && !o.type.equals(Main.TYPE_TRUCK) && !o.type.equals(Main.TYPE_BUS)) {
+            throw new Main.Milestone3Exception("--type must be car, truck, bus or mix (got '" + o.type + "')");
+        }
+        return o;
+    }
+
+    private static String value(String[] args, int i, String opt) throws Main.Milestone3Exception {
+        if (i >= args.length) throw new Main.Milestone3Exception("Missing value for " + opt);
+        return args[i];
+    }
+
+    private static double parseDouble(String opt, String v) throws Main.Milestone3Exception {
+        try { return Double.parseDouble(v.trim()); }
+        catch (NumberFormatException ex) { throw new Main.Milestone3Exception("Not a number for " + opt + ": " + v, ex); }
+    }
+
+    // ===================== Run =====================
+    public static void run(Options o) throws Exception {
+        if (o.fakeBackend) Traci.install(new FakeSumoGateway());
+        TraciGateway traci = Traci.gw();
+        List<String> cmd = LiveConnectionSumo.buildSumoCommand(o.sumoBinary, false);
+        Logging.LOG.info("Starting SUMO (headless): " + cmd);
+        traci.start(cmd);
+
+        EdgeStatsCollector edgeStats = new EdgeStatsCollector(traci, Main.EDGE_STATS_LANES);
+        LiveConnectionSumo.subscribeEdgeStats(edgeStats);
+
+        TrafficControl trafficControl = new TrafficControl(null, null);
+        trafficControl.rebuildTrafficLightDropdown();
+        if (o.ruleBasedTls) trafficControl.setRuleBasedTlsEnabled(true);
+
+        VehicleInjection.rebuildAllowedRoutesAndDropdown(null);
+        int injected = injectInitialDemand(o);
+        Logging.LOG.info("Headless demand injected: " + injected + " vehicles over "
+                + VehicleInjection.ALLOWED_ROUTES.size() + " scenarios");
+
+        VehicleCollector collector = new VehicleCollector(
+                Main.USE_TRACI_SUBSCRIPTIONS ? VehicleCollector.Mode.SUBSCRIPTION : VehicleCollector.Mode.POLLING);
+        double stepLength = traci.deltaT();
+        MetricsAggregator aggregator = new MetricsAggregator();
+        MetricsAggregator.StepMetrics m = new MetricsAggregator.StepMetrics();
+        MetricsStore store = o.columnarPath == null && o.pdfPath == null
+                ? null : new MetricsStore(Main.METRICS_MEMORY_BUDGET_BYTES);
+
+        long samples = 0, arrivedTotal = 0;
+        double simTime = traci.time();
+        long t0 = System.nanoTime();
+        PhaseStats phases = new PhaseStats();
+
+        File out = new File(o.outPath);
+        FrameRecorder recorder = o.recordPath == null ? null : FrameRecorder.open(new File(o.recordPath), traci);
+        IntFunction<String> idOf = collector::idOf;
+        StringBuilder csv = new StringBuilder(1 << 17);
+        try (Utf8ChannelWriter csvOut = new Utf8ChannelWriter(out, 1 << 20)) {
+            LiveConnectionSumo.appendCsvHeader(csv);
+            try {
+                while (true) {
+                    JfrEvents.SimulationStep stepEvent = new JfrEvents.SimulationStep();
+                    stepEvent.begin();
+                    long loopStart = System.nanoTime();
+                    simTime = LiveConnectionSumo.advanceToNextSample(simTime, o.sampleEverySimSec);
+                    samples++;
+                    long tStep = System.nanoTime();
+
+                    trafficControl.applyPerStep(simTime);
+                    long tTls = System.nanoTime();
+
+                    VehicleFrame frame = collector.collect(simTime);
+                    long arrivedBefore = arrivedTotal;
+                    arrivedTotal = LiveConnectionSumo.arrivedTotal(arrivedTotal, collector);
+                    edgeStats.collect(simTime);
+                    if (recorder != null) recorder.record(frame, idOf, arrivedTotal, traci);
+                    long tCollect = System.nanoTime();
+                    LiveConnectionSumo.commitStepEvent(stepEvent, simTime, frame.size, arrivedTotal - arrivedBefore,
+                            tStep - loopStart, tTls - tStep, 0L, tCollect - tTls);
+                    aggregator.compute(frame, arrivedTotal, null, m);
+                    long tAggregate = System.nanoTime();
+                    if (store != null) store.append(m, 0, trafficControl.isRuleBasedTlsEnabled());
+
+                    LiveConnectionSumo.appendCsvRow(csv,
+                            LiveConnectionSumo.MetricRow.from(m, 0, trafficControl.isRuleBasedTlsEnabled()),
+                            "", 0.0);
+                    if (csv.length() >= (1 << 16)) {
+                        csvOut.write(csv);
+                        csv.setLength(0);
+                    }
+                    long tEnd = System.nanoTime();
+                    phases.record(PhaseStats.Phase.STEP, tStep - loopStart);
+                    phases.record(PhaseStats.Phase.TLS, tTls - tStep);
+                    phases.record(PhaseStats.Phase.COLLECT, tCollect - tTls);
+                    phases.record(PhaseStats.Phase.AGGREGATE, tAggregate - tCollect);
+                    phases.record(PhaseStats.Phase.METRICS, tEnd - tAggregate);
+                    phases.record(PhaseStats.Phase.LOOP, tEnd - loopStart);
+
+                    if (o.untilSimSec > 0) {
+                        if (simTime >= o.untilSimSec) break;
+                    } else if (traci.minExpectedNumber() <= 0) {
+                        break;
+                    }
+                }
+            } finally {
+                csvOut.write(csv);   // rows of an aborted run are kept
+            }
+        } finally {
+            if (store != null) store.close();   // exports below still read it
+            if (recorder != null) recorder.close();
+            traci.close();
+        }
+
+        double wallSec = Math.max(1e-9, (System.nanoTime() - t0) / 1e9);
+        double steps = simTime / Math.max(1e-9, stepLength);
+        String summary = String.format(Locale.US,
+                "Headless run done: %.0f steps (%d samples), sim time %.1f s, wall %.2f s, %.1f steps/s, "
+                        + "%.1fx real time, %d arrivals -> %s",
+                steps, samples, simTime, wallSec, steps / wallSec, simTime / wallSec, arrivedTotal, out.getAbsolutePath());
+        Logging.LOG.info(summary);
+        Logging.LOG.info("TraCI calls: " + traci.callCounts().summary());
+        PhaseStats.Snapshot phaseSnap = phases.snapshot();
+        Logging.LOG.info("Phase latency:" + phaseSnap.describe());
+        Logging.LOG.info("Throughput:" + aggregator.throughput().describe(VehicleInjection.scenarioNames()));
+        Logging.LOG.info("Bottleneck edges over run (mean halting/occupancy): "
+                + edgeStats.edges(new EdgeStatsCollector.Snapshot()).describeBottlenecks(5, true));
+        if (o.columnarPath != null) {
+            File f = new File(o.columnarPath);
+            long bytes = MetricsColumnFile.write(f, store.snapshot(),
+                    LiveConnectionSumo.exportMeta("", true, true, true, 0.0), ExportJob.NO_PROGRESS);
+            Logging.LOG.info("Columnar metrics: " + store.describe() + ", " + (bytes >> 10) + " KB -> " + f.getAbsolutePath());
+        }
+        if (o.pdfPath != null) {
+            SummaryReport.Inputs in = new SummaryReport.Inputs();
+            in.context.add("Headless run: --inject " + o.injectPerScenario + " --type " + o.type
+                    + " --sample " + o.sampleEverySimSec + (o.ruleBasedTls ? " --rule-tls" : ""));
+            in.context.add(summary);
+            in.metrics = store.snapshot();
+            edgeStats.edges(in.edges);
+            in.throughput = aggregator.throughput().summary();
+            in.routeNames = VehicleInjection.scenarioNames();
+            in.tls = trafficControl.tlsInfo();
+            in.phases = phaseSnap;
+            File f = new File(o.pdfPath);
+            long t1 = System.nanoTime();
+            long bytes = SummaryReport.write(f, "Traffic Simulation - Headless Run Report", in, ExportJob.NO_PROGRESS);
+            Logging.LOG.info(String.format(Locale.US, "Summary PDF: %d KB in %.0f ms -> %s",
+                    bytes >> 10, (System.nanoTime() - t1) / 1e6, f.getAbsolutePath()));
+        }
+        if (o.edgesPath != null) {
+            LiveConnectionSumo.writeEdgesCsv(edgeStats, new File(o.edgesPath));
+            Logging.LOG.info("Edge stats written to " + new File(o.edgesPath).getAbsolutePath());
+        }
+        System.out.println(summary);
+    }
+
+    private static int injectInitialDemand(Options o) {
+        String[] types = o.type.equals("mix")
+                ? new String[]{Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS}
+                : new String[]{o.type};
+
+        int total = 0;
+        synchronized (VehicleInjection.ALLOWED_ROUTES) {
+            for (VehicleInjection.RouteDef rd : VehicleInjection.ALLOWED_ROUTES) {
+                for (int i = 0; i < types.length; i++) {
+                    // spread the per-scenario count over the chosen types
+                    int n = o.injectPerScenario / types.length + (i < o.injectPerScenario % types.length ? 1 : 0);
+                    if (n <= 0) continue;
+                    int added = VehicleInjection.spawnVehicles(types[i], rd, n);
+                    if (added > 0) total += added;
+                    else Logging.LOG.warning("No long routes for " + rd.name + " type=" + types[i]);
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,111 @@
+// ===================== JfrEvents.java =====================
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events of the application, for lining SUMO, TraCI and rendering latency up with
+// GC and JIT in Mission Control. No stack traces, only counts and ids, so enabled events stay cheap;
+// without a running recording begin()/shouldCommit() cost one branch and the event object is
+// scalar-replaced. TraCI calls can run into the thousands per second: they are recorded from 50 us
+// by default, lower it with e.g. -XX:StartFlightRecording:settings=profile,+org.example.TraciCall#threshold=0ms
+public final class JfrEvents {
+
+    private JfrEvents() {}
+
+    private static final String APP = "Traffic Simulation";
+
+    @Name("org.example.SimulationStep")
+    @Label("Simulation Step")
+    @Description("One iteration of the simulation loop: SUMO step(s) up to the next sample, TLS control, pacing and data collection")
+    @Category({APP, "Simulation"})
+    @StackTrace(false)
+    public static final class SimulationStep extends Event {
+        @Label("Simulation Time") @Description("Sim seconds after the step")
+        public double simTime;
+        @Label("Vehicles") @Description("Vehicles in the network")
+        public int vehicles;
+        @Label("Arrivals") @Description("Vehicles that finished their trip in this step")
+        public int arrivals;
+        @Label("SUMO Step") @Timespan(Timespan.NANOSECONDS)
+        public long stepTime;
+        @Label("TLS Control") @Timespan(Timespan.NANOSECONDS)
+        public long tlsTime;
+        @Label("Pacing Sleep") @Timespan(Timespan.NANOSECONDS)
+        public long sleepTime;
+        @Label("Collect") @Timespan(Timespan.NANOSECONDS)
+        public long collectTime;
+    }
+
+    @Name("org.example.TraciCall")
+    @Label("TraCI Call")
+    @Description("One TraCI round trip through the TraciGateway")
+    @Category({APP, "TraCI"})
+    @StackTrace(false)
+    @Threshold("50 us")
+    public static final class TraciCall extends Event {
+        @Label("Command")
+        public String command;
+        @Label("Entity") @Description("Vehicle, edge, lane, route or traffic light id; empty for simulation-level calls")
+        public String entityId;
+        @Label("Results") @Description("Entities returned or delivered to the sink, -1 when not a list")
+        public int results;
+    }
+
+    @Name("org.example.MapPaint")
+    @Label("Map Paint")
+    @Description("MapPanel.paintComponent: background, roads, traffic lights and vehicles")
+    @Category({APP, "Rendering"})
+    @StackTrace(false)
+    public static final class MapPaint extends Event {
+        @Label("Vehicles in Frame")
+        public int vehicles;
+        @Label("Vehicles Drawn") @Description("After the type / speed filter")
+        public int vehiclesDrawn;
+        @Label("Lane Shapes")
+        public int laneShapes;
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+    }
+
+    @Name("org.example.NetLoad")
+    @Label("Net Load Phase")
+    @Description("One phase of reading the SUMO network file")
+    @Category({APP, "Startup"})
+    @StackTrace(false)
+    public static final class NetLoad extends Event {
+        @Label("Phase")
+        public String phase;
+        @Label("File")
+        public String file;
+        @Label("File Size") @DataAmount
+        public long fileSize;
+        @Label("Items") @Description("Bounds (1), lane shapes or traffic lights read")
+        public int items;
+    }
+
+    @Name("org.example.RouteVariants")
+    @Label("Long Route Variants")
+    @Description("buildAndInstallLongVariants for one scenario and vehicle type")
+    @Category({APP, "Simulation"})
+    @StackTrace(false)
+    public static final class RouteVariants extends Event {
+        @Label("Route")
+        public String route;
+        @Label("Vehicle Type")
+        public String vehicleType;
+        @Label("Variants")
+        public int variants;
+        @Label("TraCI Calls") @Description("Issued while building, 0 when served from the cache")
+        public long traciCalls;
+    }
+}
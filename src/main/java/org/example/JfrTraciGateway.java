@@ -0,0 +1,323 @@
+// ===================== JfrTraciGateway.java =====================
+package org.example;
+
+import java.util.List;
+
+import static org.example.TraciGateway.Command.*;
+
+// Decorator that turns every TraCI call into a JfrEvents.TraciCall (command, entity id, duration,
+// result count). Traci installs it around whichever backend is active; without a recording each
+// call costs one extra interface hop and a disabled-event branch. Calls that throw are not recorded.
+final class JfrTraciGateway implements TraciGateway {
+
+    private final TraciGateway g;
+
+    private JfrTraciGateway(TraciGateway g) { this.g = g; }
+
+    static TraciGateway wrap(TraciGateway g) {
+        return g instanceof JfrTraciGateway ? g : new JfrTraciGateway(g);
+    }
+
+    private static JfrEvents.TraciCall begin() {
+        JfrEvents.TraciCall e = new JfrEvents.TraciCall();
+        e.begin();
+        return e;
+    }
+
+    private static void end(JfrEvents.TraciCall e, Command c, String id, int results) {
+        if (!e.shouldCommit()) return;
+        e.command = c.name();
+        e.entityId = id == null ? "" : id;
+        e.results = results;
+        e.commit();
+    }
+
+    private static int size(List<?> l) { return l == null ? -1 : l.size(); }
+
+    @Override public CallCounts callCounts() { return g.callCounts(); }
+
+    // ===================== Lifecycle / clock =====================
+    @Override
+    public void start(List<String> cmd) throws Exception {
+        JfrEvents.TraciCall e = begin();
+        g.start(cmd);
+        end(e, SIM_START, null, -1);
+    }
+
+    @Override
+    public void close() {
+        JfrEvents.TraciCall e = begin();
+        g.close();
+        end(e, SIM_CLOSE, null, -1);
+    }
+
+    @Override
+    public void step(double targetTime) {
+        JfrEvents.TraciCall e = begin();
+        g.step(targetTime);
+        end(e, SIM_STEP, null, -1);
+    }
+
+    @Override
+    public double time() {
+        JfrEvents.TraciCall e = begin();
+        double v = g.time();
+        end(e, SIM_TIME, null, -1);
+        return v;
+    }
+
+    @Override
+    public double deltaT() {
+        JfrEvents.TraciCall e = begin();
+        double v = g.deltaT();
+        end(e, SIM_DELTA_T, null, -1);
+        return v;
+    }
+
+    @Override
+    public int minExpectedNumber() {
+        JfrEvents.TraciCall e = begin();
+        int v = g.minExpectedNumber();
+        end(e, SIM_MIN_EXPECTED, null, v);
+        return v;
+    }
+
+    @Override
+    public List<String> departedIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.departedIds();
+        end(e, SIM_DEPARTED_IDS, null, size(v));
+        return v;
+    }
+
+    @Override
+    public List<String> arrivedIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.arrivedIds();
+        end(e, SIM_ARRIVED_IDS, null, size(v));
+        return v;
+    }
+
+    @Override
+    public boolean subscribeDepartArrive() {
+        JfrEvents.TraciCall e = begin();
+        boolean v = g.subscribeDepartArrive();
+        end(e, SIM_SUBSCRIBE, null, -1);
+        return v;
+    }
+
+    @Override
+    public boolean readDepartArrive(List<String> departedOut, List<String> arrivedOut) {
+        int before = departedOut.size() + arrivedOut.size();
+        JfrEvents.TraciCall e = begin();
+        boolean v = g.readDepartArrive(departedOut, arrivedOut);
+        end(e, SIM_SUBSCRIPTION_RESULTS, null, departedOut.size() + arrivedOut.size() - before);
+        return v;
+    }
+
+    // ===================== Vehicles =====================
+    @Override
+    public List<String> vehicleIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.vehicleIds();
+        end(e, VEH_ID_LIST, null, size(v));
+        return v;
+    }
+
+    @Override
+    public int vehicleCount() {
+        JfrEvents.TraciCall e = begin();
+        int v = g.vehicleCount();
+        end(e, VEH_ID_COUNT, null, v);
+        return v;
+    }
+
+    @Override
+    public void subscribeVehicle(String vehId) {
+        JfrEvents.TraciCall e = begin();
+        g.subscribeVehicle(vehId);
+        end(e, VEH_SUBSCRIBE, vehId, -1);
+    }
+
+    @Override
+    public int readVehicleSubscriptions(VehicleSink sink) {
+        JfrEvents.TraciCall e = begin();
+        int v = g.readVehicleSubscriptions(sink);
+        end(e, VEH_SUBSCRIPTION_RESULTS, null, v);
+        return v;
+    }
+
+    @Override
+    public boolean readVehicleSubscription(String vehId, VehicleSink sink) {
+        JfrEvents.TraciCall e = begin();
+        boolean v = g.readVehicleSubscription(vehId, sink);
+        end(e, VEH_SUBSCRIPTION_RESULTS, vehId, v ? 1 : 0);
+        return v;
+    }
+
+    // position + speed (+ waiting time) polled one by one, recorded as one call
+    @Override
+    public boolean readVehicle(String vehId, VehicleSink sink) {
+        JfrEvents.TraciCall e = begin();
+        boolean v = g.readVehicle(vehId, sink);
+        end(e, VEH_POSITION, vehId, v ? 1 : 0);
+        return v;
+    }
+
+    @Override
+    public void addVehicle(String vehId, String routeId, String typeId) throws Exception {
+        JfrEvents.TraciCall e = begin();
+        g.addVehicle(vehId, routeId, typeId);
+        end(e, VEH_ADD, vehId, -1);
+    }
+
+    // ===================== Network / routes =====================
+    @Override
+    public void addRoute(String routeId, List<String> edges) throws Exception {
+        JfrEvents.TraciCall e = begin();
+        g.addRoute(routeId, edges);
+        end(e, ROUTE_ADD, routeId, edges.size());
+    }
+
+    @Override
+    public List<String> findRoute(String fromEdge, String toEdge, String vTypeId) {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.findRoute(fromEdge, toEdge, vTypeId);
+        // the "from>to" id is only built for calls that get recorded
+        if (e.shouldCommit()) end(e, SIM_FIND_ROUTE, fromEdge + ">" + toEdge, size(v));
+        return v;
+    }
+
+    @Override
+    public int edgeLaneNumber(String edgeId) {
+        JfrEvents.TraciCall e = begin();
+        int v = g.edgeLaneNumber(edgeId);
+        end(e, EDGE_LANE_NUMBER, edgeId, v);
+        return v;
+    }
+
+    @Override
+    public List<String> laneAllowed(String laneId) {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.laneAllowed(laneId);
+        end(e, LANE_ALLOWED, laneId, size(v));
+        return v;
+    }
+
+    @Override
+    public double laneLength(String laneId) {
+        JfrEvents.TraciCall e = begin();
+        double v = g.laneLength(laneId);
+        end(e, LANE_LENGTH, laneId, -1);
+        return v;
+    }
+
+    @Override
+    public int laneHalting(String laneId) {
+        JfrEvents.TraciCall e = begin();
+        int v = g.laneHalting(laneId);
+        end(e, LANE_HALTING, laneId, v);
+        return v;
+    }
+
+    // ===================== Edge / lane state =====================
+    @Override
+    public List<String> edgeIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.edgeIds();
+        end(e, EDGE_ID_LIST, null, size(v));
+        return v;
+    }
+
+    @Override
+    public List<String> laneIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.laneIds();
+        end(e, LANE_ID_LIST, null, size(v));
+        return v;
+    }
+
+    @Override
+    public void subscribeEdgeState(String edgeId) {
+        JfrEvents.TraciCall e = begin();
+        g.subscribeEdgeState(edgeId);
+        end(e, EDGE_SUBSCRIBE, edgeId, -1);
+    }
+
+    @Override
+    public void subscribeLaneState(String laneId) {
+        JfrEvents.TraciCall e = begin();
+        g.subscribeLaneState(laneId);
+        end(e, LANE_SUBSCRIBE, laneId, -1);
+    }
+
+    @Override
+    public int readEdgeStates(TrafficStateSink sink) {
+        JfrEvents.TraciCall e = begin();
+        int v = g.readEdgeStates(sink);
+        end(e, EDGE_SUBSCRIPTION_RESULTS, null, v);
+        return v;
+    }
+
+    @Override
+    public int readLaneStates(TrafficStateSink sink) {
+        JfrEvents.TraciCall e = begin();
+        int v = g.readLaneStates(sink);
+        end(e, LANE_SUBSCRIPTION_RESULTS, null, v);
+        return v;
+    }
+
+    // ===================== Traffic lights =====================
+    @Override
+    public List<String> tlsIds() {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.tlsIds();
+        end(e, TLS_ID_LIST, null, size(v));
+        return v;
+    }
+
+    @Override
+    public String tlsProgram(String tlsId) {
+        JfrEvents.TraciCall e = begin();
+        String v = g.tlsProgram(tlsId);
+        end(e, TLS_PROGRAM, tlsId, -1);
+        return v;
+    }
+
+    @Override
+    public String tlsState(String tlsId) {
+        JfrEvents.TraciCall e = begin();
+        String v = g.tlsState(tlsId);
+        end(e, TLS_STATE, tlsId, -1);
+        return v;
+    }
+
+    @Override
+    public void setTlsState(String tlsId, String state) {
+        JfrEvents.TraciCall e = begin();
+        g.setTlsState(tlsId, state);
+        end(e, TLS_SET_STATE, tlsId, -1);
+    }
+
+    @Override
+    public void setTlsProgram(String tlsId, String program) {
+        JfrEvents.TraciCall e = begin();
+        g.setTlsProgram(tlsId, program);
+        end(e, TLS_SET_PROGRAM, tlsId, -1);
+    }
+
+    @Override
+    public void setTlsPhaseDuration(String tlsId, double sec) {
+        JfrEvents.TraciCall e = begin();
+        g.setTlsPhaseDuration(tlsId, sec);
+        end(e, TLS_SET_PHASE_DURATION, tlsId, -1);
+    }
+
+    @Override
+    public List<String> tlsControlledLanes(String tlsId) {
+        JfrEvents.TraciCall e = begin();
+        List<String> v = g.tlsControlledLanes(tlsId);
+        end(e, TLS_CONTROLLED_LANES, tlsId, size(v));
+        return v;
+    }
+}
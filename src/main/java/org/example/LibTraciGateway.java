@@ -0,0 +1,523 @@
+// ===================== LibTraciGateway.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.example.TraciGateway.Command.*;
+
+// libtraci backend. Calls that exist in every supported libtraci version are direct; optional ones
+// (they differ between versions) are probed once in the constructor and bound as MethodHandles,
+// so hot paths never pay for getMethod() or a NoSuchMethodException.
+public final class LibTraciGateway implements TraciGateway {
+
+    // TraCI variable ids (see TraCIConstants)
+    static final int VAR_SPEED = 0x40;
+    static final int VAR_POSITION = 0x42;
+    static final int VAR_TYPE = 0x4f;
+    static final int VAR_WAITING_TIME = 0x7a;
+    static final int VAR_DEPARTED_VEHICLES_IDS = 0x74;    // simulation domain
+    static final int VAR_ARRIVED_VEHICLES_IDS = 0x7a;     // simulation domain
+
+    static final int LAST_STEP_VEHICLE_NUMBER = 0x10;     // edge / lane domain
+    static final int LAST_STEP_MEAN_SPEED = 0x11;
+    static final int LAST_STEP_OCCUPANCY = 0x13;
+    static final int LAST_STEP_VEHICLE_HALTING_NUMBER = 0x14;
+
+    private static final int[] TRAFFIC_STATE_VARS =
+            {LAST_STEP_MEAN_SPEED, LAST_STEP_OCCUPANCY, LAST_STEP_VEHICLE_NUMBER, LAST_STEP_VEHICLE_HALTING_NUMBER};
+
+    private static final int[] SUBSCRIBED_VARS = {VAR_POSITION, VAR_SPEED, VAR_WAITING_TIME, VAR_TYPE};
+
+    private static final MethodType STRING_TO_DOUBLE = MethodType.methodType(double.class, String.class);
+    private static final MethodType STRING_TO_INT = MethodType.methodType(int.class, String.class);
+    private static final MethodType STRING_TO_OBJECT = MethodType.methodType(Object.class, String.class);
+
+    private final CallCounts calls = new CallCounts();
+    private boolean warnedUndecodedStates = false;   // stepper thread only
+    private volatile IntVector subscribedVars = null;
+    private volatile IntVector trafficStateVars = null;
+
+    // ---- probed capabilities (null = not available in this libtraci) ----
+    private final MethodHandle waitingTime;          // (String)double
+    private final MethodHandle controlledLanes;      // (String)Object
+    private final MethodHandle laneHalting;          // (String)int
+    private final MethodHandle laneAllowed;          // (String)Object
+    private final MethodHandle laneLength;           // (String)double
+    private final MethodHandle arrivedIds;           // ()Object
+    private final MethodHandle findRoute3;           // (String,String,String)Object
+    private final MethodHandle findRoute4;           // (String,String,String,double)Object
+    private final MethodHandle routeEdges3;          // (Object)Object, null = result is the edge list
+    private final MethodHandle routeEdges4;
+    private final MethodHandle addVehicleFull;       // (String,String,String,double,String,double,double)void
+
+    public LibTraciGateway() {
+        MethodHandle wt = bindStatic(Vehicle.class, "getWaitingTime", STRING_TO_DOUBLE);
+        if (wt == null) wt = bindStatic(Vehicle.class, "getAccumulatedWaitingTime", STRING_TO_DOUBLE);
+        waitingTime = wt;
+
+        controlledLanes = bindStatic(TrafficLight.class, "getControlledLanes", STRING_TO_OBJECT);
+
+        MethodHandle lh = bindStatic(Lane.class, "getLastStepHaltingNumber", STRING_TO_INT);
+        if (lh == null) lh = bindStatic(Lane.class, "getLastStepVehicleNumber", STRING_TO_INT);
+        laneHalting = lh;
+
+        laneAllowed = bindStatic(Lane.class, "getAllowed", STRING_TO_OBJECT);
+        laneLength = bindStatic(Lane.class, "getLength", STRING_TO_DOUBLE);
+        arrivedIds = bindStatic(Simulation.class, "getArrivedIDList", MethodType.methodType(Object.class));
+
+        MethodType fr3 = MethodType.methodType(Object.class, String.class, String.class, String.class);
+        MethodType fr4 = fr3.appendParameterTypes(double.class);
+        findRoute3 = bindStatic(Simulation.class, "findRoute", fr3);
+        findRoute4 = bindStatic(Simulation.class, "findRoute", fr4);
+        routeEdges3 = edgeAccessor(Simulation.class, "findRoute", fr3);
+        routeEdges4 = edgeAccessor(Simulation.class, "findRoute", fr4);
+
+        addVehicleFull = bindStatic(Vehicle.class, "add", MethodType.methodType(void.class,
+                String.class, String.class, String.class, double.class, String.class, double.class, double.class));
+
+        Logging.LOG.info("TraCI gateway (libtraci): waitingTime=" + (waitingTime != null)
+                + " controlledLanes=" + (controlledLanes != null)
+                + " laneHalting=" + (laneHalting != null)
+                + " laneAllowed=" + (laneAllowed != null)
+                + " laneLength=" + (laneLength != null)
+                + " arrivedIds=" + (arrivedIds != null)
+                + " findRoute=" + (findRoute3 != null || findRoute4 != null)
+                + " addVehicleFull=" + (addVehicleFull != null));
+    }
+
+    @Override public CallCounts callCounts() { return calls; }
+
+    // ===================== Lifecycle / clock =====================
+    @Override
+    public void start(List<String> cmd) throws Exception {
+        calls.inc(SIM_START);
+        Simulation.preloadLibraries();
+        StringVector sv = new StringVector();
+        for (String s : cmd) sv.add(s);
+        Simulation.start(sv);
+    }
+
+    @Override
+    public void close() {
+        calls.inc(SIM_CLOSE);
+        try { Simulation.close(); } catch (Exception ignored) {}
+    }
+
+    @Override
+    public void step(double targetTime) {
+        calls.inc(SIM_STEP);
+        if (targetTime <= 0) Simulation.step();
+        else Simulation.step(targetTime);
+    }
+
+    @Override
+    public double time() {
+        calls.inc(SIM_TIME);
+        return Simulation.getTime();
+    }
+
+    @Override
+    public double deltaT() {
+        calls.inc(SIM_DELTA_T);
+        return Simulation.getDeltaT();
+    }
+
+    @Override
+    public int minExpectedNumber() {
+        calls.inc(SIM_MIN_EXPECTED);
+        return Simulation.getMinExpectedNumber();
+    }
+
+    @Override
+    public List<String> departedIds() {
+        calls.inc(SIM_DEPARTED_IDS);
+        return toList(Simulation.getDepartedIDList());
+    }
+
+    @Override
+    public List<String> arrivedIds() {
+        if (arrivedIds == null) return null;
+        calls.inc(SIM_ARRIVED_IDS);
+        try {
+            Object o = (Object) arrivedIds.invokeExact();
+            return o instanceof StringVector ? toList((StringVector) o) : null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean subscribeDepartArrive() {
+        calls.inc(SIM_SUBSCRIBE);
+        try {
+            Simulation.subscribe(new IntVector(new int[]{VAR_DEPARTED_VEHICLES_IDS, VAR_ARRIVED_VEHICLES_IDS}));
+            return true;
+        } catch (RuntimeException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Simulation subscription not supported", ex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean readDepartArrive(List<String> departedOut, List<String> arrivedOut) {
+        calls.inc(SIM_SUBSCRIPTION_RESULTS);
+        TraCIResults r = Simulation.getSubscriptionResults();
+        if (r == null) return false;
+        TraCIStringList d = stringListOf(r.get(VAR_DEPARTED_VEHICLES_IDS));
+        TraCIStringList a = stringListOf(r.get(VAR_ARRIVED_VEHICLES_IDS));
+        if (d == null || a == null) return false;
+        departedOut.addAll(d.getValue());
+        arrivedOut.addAll(a.getValue());
+        return true;
+    }
+
+    // ===================== Vehicles =====================
+    @Override
+    public List<String> vehicleIds() {
+        calls.inc(VEH_ID_LIST);
+        return toList(Vehicle.getIDList());
+    }
+
+    @Override
+    public int vehicleCount() {
+        calls.inc(VEH_ID_COUNT);
+        return Vehicle.getIDCount();
+    }
+
+    @Override
+    public void subscribeVehicle(String vehId) {
+        IntVector vars = subscribedVars;
+        if (vars == null) subscribedVars = vars = new IntVector(SUBSCRIBED_VARS);
+        calls.inc(VEH_SUBSCRIBE);
+        Vehicle.subscribe(vehId, vars);
+    }
+
+    @Override
+    public int readVehicleSubscriptions(VehicleSink sink) {
+        calls.inc(VEH_SUBSCRIPTION_RESULTS);
+        SubscriptionResults all = Vehicle.getAllSubscriptionResults();
+        int n = 0;
+        for (Map.Entry<String, TraCIResults> e : all.entrySet()) {
+            if (emit(e.getKey(), e.getValue(), sink)) n++;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean readVehicleSubscription(String vehId, VehicleSink sink) {
+        calls.inc(VEH_SUBSCRIPTION_RESULTS);
+        return emit(vehId, Vehicle.getSubscriptionResults(vehId), sink);
+    }
+
+    private static boolean emit(String id, TraCIResults r, VehicleSink sink) {
+        if (r == null || r.isEmpty()) return false;
+
+        TraCIPosition pos = positionOf(r.get(VAR_POSITION));
+        if (pos == null) {
+            throw new IllegalStateException("Unexpected subscription result for position: " + r.get(VAR_POSITION));
+        }
+        TraCIString t = stringOf(r.get(VAR_TYPE));
+
+        sink.vehicle(id, pos.getX(), pos.getY(),
+                doubleOf(r.get(VAR_SPEED), 0.0),
+                doubleOf(r.get(VAR_WAITING_TIME), Double.NaN),
+                t == null ? null : t.getValue());
+        return true;
+    }
+
+    @Override
+    public boolean readVehicle(String vehId, VehicleSink sink) {
+        TraCIPosition pos;
+        calls.inc(VEH_POSITION);
+        try { pos = Vehicle.getPosition(vehId); } catch (Exception ignore) { return false; }
+
+        double sp = 0.0;
+        calls.inc(VEH_SPEED);
+        try { sp = Vehicle.getSpeed(vehId); } catch (Exception ignore) {}
+
+        sink.vehicle(vehId, pos.getX(), pos.getY(), sp, waitingTime(vehId), null);
+        return true;
+    }
+
+    private double waitingTime(String vehId) {
+        if (waitingTime == null) return Double.NaN;
+        calls.inc(VEH_WAITING_TIME);
+        try { return (double) waitingTime.invokeExact(vehId); }
+        catch (Throwable t) { return Double.NaN; }
+    }
+
+    @Override
+    public void addVehicle(String vehId, String routeId, String typeId) throws Exception {
+        calls.inc(VEH_ADD);
+        if (addVehicleFull != null) {
+            try {
+                addVehicleFull.invokeExact(vehId, routeId, typeId, (double) Simulation.getCurrentTime(), "best", 0.0, -1.0);
+                return;
+            } catch (Throwable ignored) {}
+        }
+        Vehicle.add(vehId, routeId, typeId);
+    }
+
+    // ===================== Network / routes =====================
+    @Override
+    public void addRoute(String routeId, List<String> edges) throws Exception {
+        calls.inc(ROUTE_ADD);
+        StringVector sv = new StringVector();
+        for (String e : edges) sv.add(e);
+        Route.add(routeId, sv);
+    }
+
+    @Override
+    public List<String> findRoute(String fromEdge, String toEdge, String vTypeId) {
+        List<String> edges = null;
+        if (findRoute3 != null) {
+            calls.inc(SIM_FIND_ROUTE);
+            try { edges = routeEdges((Object) findRoute3.invokeExact(fromEdge, toEdge, vTypeId), routeEdges3); }
+            catch (Throwable ignored) {}
+        }
+        if ((edges == null || edges.isEmpty()) && findRoute4 != null) {
+            calls.inc(SIM_FIND_ROUTE);
+            try {
+                edges = routeEdges((Object) findRoute4.invokeExact(fromEdge, toEdge, vTypeId,
+                        (double) Simulation.getCurrentTime()), routeEdges4);
+            } catch (Throwable ignored) {}
+        }
+        return (edges == null || edges.isEmpty()) ? null : edges;
+    }
+
+    private static List<String> routeEdges(Object result, MethodHandle accessor) throws Throwable {
+        if (result == null) return null;
+        Object edges = accessor == null ? result : (Object) accessor.invokeExact(result);
+        return edges instanceof StringVector ? toList((StringVector) edges) : null;
+    }
+
+    @Override
+    public int edgeLaneNumber(String edgeId) {
+        calls.inc(EDGE_LANE_NUMBER);
+        return Edge.getLaneNumber(edgeId);
+    }
+
+    @Override
+    public List<String> laneAllowed(String laneId) {
+        if (laneAllowed == null) return null;
+        calls.inc(LANE_ALLOWED);
+        try {
+            Object o = (Object) laneAllowed.invokeExact(laneId);
+            return o instanceof StringVector ? toList((StringVector) o) : null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    @Override
+    public double laneLength(String laneId) {
+        if (laneLength == null) return Double.NaN;
+        calls.inc(LANE_LENGTH);
+        try { return (double) laneLength.invokeExact(laneId); }
+        catch (Throwable t) { return Double.NaN; }
+    }
+
+    @Override
+    public int laneHalting(String laneId) {
+        if (laneHalting == null) return -1;
+        calls.inc(LANE_HALTING);
+        try { return (int) laneHalting.invokeExact(laneId); }
+        catch (Throwable t) { return -1; }
+    }
+
+    @Override
+    public List<String> edgeIds() {
+        calls.inc(EDGE_ID_LIST);
+        List<String> ids = toList(Edge.getIDList());
+        ids.removeIf(id -> id.startsWith(":"));
+        return ids;
+    }
+
+    @Override
+    public List<String> laneIds() {
+        calls.inc(LANE_ID_LIST);
+        List<String> ids = toList(Lane.getIDList());
+        ids.removeIf(id -> id.startsWith(":"));
+        return ids;
+    }
+
+    @Override
+    public void subscribeEdgeState(String edgeId) {
+        calls.inc(EDGE_SUBSCRIBE);
+        Edge.subscribe(edgeId, trafficStateVars());
+    }
+
+    @Override
+    public void subscribeLaneState(String laneId) {
+        calls.inc(LANE_SUBSCRIBE);
+        Lane.subscribe(laneId, trafficStateVars());
+    }
+
+    @Override
+    public int readEdgeStates(TrafficStateSink sink) {
+        calls.inc(EDGE_SUBSCRIPTION_RESULTS);
+        return emitStates(Edge.getAllSubscriptionResults(), sink);
+    }
+
+    @Override
+    public int readLaneStates(TrafficStateSink sink) {
+        calls.inc(LANE_SUBSCRIPTION_RESULTS);
+        return emitStates(Lane.getAllSubscriptionResults(), sink);
+    }
+
+    private IntVector trafficStateVars() {
+        IntVector vars = trafficStateVars;
+        if (vars == null) trafficStateVars = vars = new IntVector(TRAFFIC_STATE_VARS);
+        return vars;
+    }
+
+    // entries without a decodable value are skipped (not reported as zeros); the caller sees the count
+    private int emitStates(SubscriptionResults all, TrafficStateSink sink) {
+        int n = 0, skipped = 0;
+        String firstSkipped = null;
+        for (Map.Entry<String, TraCIResults> e : all.entrySet()) {
+            TraCIResults r = e.getValue();
+            if (r == null || r.isEmpty()) continue;
+            double speed = doubleOf(r.get(LAST_STEP_MEAN_SPEED), Double.NaN);
+            double occupancy = doubleOf(r.get(LAST_STEP_OCCUPANCY), Double.NaN);
+            int vehicles = intOf(r.get(LAST_STEP_VEHICLE_NUMBER));
+            int halting = intOf(r.get(LAST_STEP_VEHICLE_HALTING_NUMBER));
+            if (Double.isNaN(speed) || Double.isNaN(occupancy) || vehicles < 0 || halting < 0) {
+                if (skipped++ == 0) firstSkipped = e.getKey();
+                continue;
+            }
+            sink.state(e.getKey(), speed, occupancy, vehicles, halting);
+            n++;
+        }
+        if (skipped > 0 && !warnedUndecodedStates) {
+            warnedUndecodedStates = true;
+            Logging.LOG.warning("Edge/lane subscription results without usable values: " + skipped
+                    + " of " + (n + skipped) + " skipped, first: " + firstSkipped);
+        }
+        return n;
+    }
+
+    // -1 when the result is neither an int nor a double
+    private static int intOf(TraCIResult r) {
+        if (r == null) return -1;
+        TraCIInt i = TraCIInt.cast(r);
+        if (i != null) return i.getValue();
+        TraCIDouble d = TraCIDouble.cast(r);
+        return d == null ? -1 : (int) d.getValue();
+    }
+
+    // ===================== Traffic lights =====================
+    @Override
+    public List<String> tlsIds() {
+        calls.inc(TLS_ID_LIST);
+        return toList(TrafficLight.getIDList());
+    }
+
+    @Override
+    public String tlsProgram(String tlsId) {
+        calls.inc(TLS_PROGRAM);
+        return TrafficLight.getProgram(tlsId);
+    }
+
+    @Override
+    public String tlsState(String tlsId) {
+        calls.inc(TLS_STATE);
+        return TrafficLight.getRedYellowGreenState(tlsId);
+    }
+
+    @Override
+    public void setTlsState(String tlsId, String state) {
+        calls.inc(TLS_SET_STATE);
+        TrafficLight.setRedYellowGreenState(tlsId, state);
+    }
+
+    @Override
+    public void setTlsProgram(String tlsId, String program) {
+        calls.inc(TLS_SET_PROGRAM);
+        TrafficLight.setProgram(tlsId, program);
+    }
+
+    @Override
+    public void setTlsPhaseDuration(String tlsId, double sec) {
+        calls.inc(TLS_SET_PHASE_DURATION);
+        TrafficLight.setPhaseDuration(tlsId, sec);
+    }
+
+    @Override
+    public List<String> tlsControlledLanes(String tlsId) {
+        if (controlledLanes == null) return null;
+        calls.inc(TLS_CONTROLLED_LANES);
+        try {
+            Object o = (Object) controlledLanes.invokeExact(tlsId);
+            return o instanceof StringVector ? toList((StringVector) o) : null;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    // ===================== Probing helpers =====================
+    // static method with the given parameter types, adapted to the wanted (boxed / widened) signature
+    private static MethodHandle bindStatic(Class<?> owner, String name, MethodType want) {
+        try {
+            Method m = owner.getMethod(name, want.parameterArray());
+            if (!Modifier.isStatic(m.getModifiers())) return null;
+            return MethodHandles.publicLookup().unreflect(m).asType(want);
+        } catch (Exception | LinkageError e) {
+            return null;
+        }
+    }
+
+    // (Object)Object accessor for the edge list of a findRoute result; null if the result already is one
+    private static MethodHandle edgeAccessor(Class<?> owner, String name, MethodType sig) {
+        try {
+            Class<?> ret = owner.getMethod(name, sig.parameterArray()).getReturnType();
+            if (StringVector.class.isAssignableFrom(ret)) return null;
+            for (String getter : new String[]{"getEdges", "getEdgeList"}) {
+                try {
+                    Method g = ret.getMethod(getter);
+                    return MethodHandles.publicLookup().unreflect(g)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                } catch (NoSuchMethodException ignored) {}
+            }
+        } catch (Exception | LinkageError ignored) {}
+        return null;
+    }
+
+    // ===================== Subscription results =====================
+    // TraCIResults hands out base TraCIResult proxies; the SWIG cast helpers downcast them
+    // (null when the value has another type), a Java instanceof never matches.
+    private static TraCIPosition positionOf(TraCIResult r) {
+        return r == null ? null : TraCIPosition.cast(r);
+    }
+
+    private static TraCIString stringOf(TraCIResult r) {
+        return r == null ? null : TraCIString.cast(r);
+    }
+
+    private static TraCIStringList stringListOf(TraCIResult r) {
+        return r == null ? null : TraCIStringList.cast(r);
+    }
+
+    private static double doubleOf(TraCIResult r, double dflt) {
+        TraCIDouble d = r == null ? null : TraCIDouble.cast(r);
+        return d == null ? dflt : d.getValue();
+    }
+
+    private static List<String> toList(StringVector sv) {
+        if (sv == null) return Collections.emptyList();
+        int n = sv.size();
+        ArrayList<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(sv.get(i));
+        return out;
+    }
+}
@@ -1,18 +1,16 @@
 // ===================== LiveConnectionSumo.java =====================
 package org.example;
 
-import org.eclipse.sumo.libtraci.*;
-
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
 
 public class LiveConnectionSumo implements Runnable {
 
@@ -28,8 +26,10 @@ public class LiveConnectionSumo implements Runnable {
     private final JLabel congestionLabel;
     private final JLabel throughputLabel;
     private final JLabel meanSpeedLabel;
+    private final JLabel realTimeFactorLabel;
 
     private final JLabel tlStateLabel;
+    private final JLabel bottleneckLabel;
 
     private final JComboBox<VehicleInjection.RouteDef> routeCombo;
     private final JComboBox<TrafficControl.TlsItem> tlCombo;
@@ -37,10 +37,11 @@ public class LiveConnectionSumo implements Runnable {
     private final TrafficControl trafficControl;
 
     private final Runnable onStopped;
+    private volatile String sumoBinary = Main.SUMO_GUI_BINARY;
 
     private volatile boolean started = false;
     private volatile boolean running = true;
-    private volatile int sleepMs = 50;
+    private final Pacer pacer = new Pacer(1.0);
     private volatile int latestSpeedFactorUi = 1;
 
     private int injectedCounter = 0;
@@ -58,6 +59,9 @@ public class LiveConnectionSumo implements Runnable {
         final double avgWaitSeconds;
         final double meanSpeedMps;
         final double throughputVph;
+        final double throughput1mVph, throughput15mVph, throughputRunVph;
+        final double thrCarVph, thrTruckVph, thrBusVph;
+        final double[] pct;   // MetricsAggregator.pctIndex() layout
         final int speedFactorUi;
 
         final int visibleVehicles;
@@ -69,7 +73,8 @@ public class LiveConnectionSumo implements Runnable {
 
         MetricRow(String exportLocalTime, double simTime, int activeVehicles, int stoppedVehicles,
                   double congestionIndex, double avgWaitSeconds, double meanSpeedMps,
-                  double throughputVph, int speedFactorUi,
+                  double throughputVph, double throughput1mVph, double throughput15mVph, double throughputRunVph,
+                  double thrCarVph, double thrTruckVph, double thrBusVph, double[] pct, int speedFactorUi,
                   int visibleVehicles, int visibleCars, int visibleTrucks, int visibleBuses,
                   boolean ruleBasedEnabled) {
             this.exportLocalTime = exportLocalTime;
@@ -80,6 +85,13 @@ public class LiveConnectionSumo implements Runnable {
             this.avgWaitSeconds = avgWaitSeconds;
             this.meanSpeedMps = meanSpeedMps;
             this.throughputVph = throughputVph;
+            this.throughput1mVph = throughput1mVph;
+            this.throughput15mVph = throughput15mVph;
+            this.throughputRunVph = throughputRunVph;
+            this.thrCarVph = thrCarVph;
+            this.thrTruckVph = thrTruckVph;
+            this.thrBusVph = thrBusVph;
+            this.pct = pct;
             this.speedFactorUi = speedFactorUi;
             this.visibleVehicles = visibleVehicles;
             this.visibleCars = visibleCars;
@@ -87,15 +99,50 @@ public class LiveConnectionSumo implements Runnable {
             this.visibleBuses = visibleBuses;
             this.ruleBasedEnabled = ruleBasedEnabled;
         }
+
+        static MetricRow from(MetricsAggregator.StepMetrics m, int speedFactorUi, boolean ruleBasedEnabled) {
+            return from(m, speedFactorUi, ruleBasedEnabled, Logging.nowTag());
+        }
+
+        static MetricRow from(MetricsAggregator.StepMetrics m, int speedFactorUi, boolean ruleBasedEnabled,
+                              String exportLocalTime) {
+            return new MetricRow(
+                    exportLocalTime, m.simTime, m.active, m.stopped, m.congestion,
+                    m.avgWaitSec, m.meanSpeed, m.throughputVph,
+                    m.throughput1mVph, m.throughput15mVph, m.throughputRunVph,
+                    m.thrCarVph, m.thrTruckVph, m.thrBusVph, m.pct.clone(), speedFactorUi,
+                    m.visible, m.visCar, m.visTruck, m.visBus,
+                    ruleBasedEnabled);
+        }
     }
 
-    private final List<MetricRow> metricsLog = Collections.synchronizedList(new ArrayList<>());
+    private final MetricsStore metricsLog = new MetricsStore(Main.METRICS_MEMORY_BUDGET_BYTES);
+
+    private final VehicleCollector collector = new VehicleCollector(
+            Main.USE_TRACI_SUBSCRIPTIONS ? VehicleCollector.Mode.SUBSCRIPTION : VehicleCollector.Mode.POLLING);
 
-    private final Deque<Double> arrivalTimes = new ArrayDeque<>();
-    private final Set<String> prevVehicleIds = new HashSet<>();
+    private final EdgeStatsCollector edgeStats = new EdgeStatsCollector(Traci.gw(), Main.EDGE_STATS_LANES);
+    // per-route/type rates for the report, republished by the stepper once per counter bucket
+    private volatile ThroughputCounters.Summary throughputSummary = ThroughputCounters.EMPTY;
+    // what MetricsEndpoint scrapes, republished by the metrics stage every METRICS_HTTP_PUBLISH_MS
+    private volatile MetricsEndpoint.Snapshot liveSnapshot = MetricsEndpoint.Snapshot.EMPTY;
+    // per-phase latency of the loop (Performance panel, exports)
+    private final PhaseStats phaseStats = new PhaseStats();
 
-    private double lastLoggedSimTime = -1.0;
-    private static final double LOG_EVERY_SIM_SECONDS = 0.5;
+    // ---- pipeline: stepper -> metrics stage (every sample), stepper -> UI publisher (latest frame) ----
+    private final FrameRing<StepRow> stepRing = new FrameRing<>(
+            "step->metrics", Main.METRICS_RING_SIZE, Main.METRICS_STAGE_OVERFLOW, StepRow::new);
+    private final FrameRing<UiFrame> uiRing = new FrameRing<>(
+            "step->ui", Main.PIPELINE_RING_SIZE, Main.UI_STAGE_OVERFLOW, UiFrame::new);
+    private final AtomicReference<LabelState> pendingLabels = new AtomicReference<>();
+    private final AtomicBoolean labelsScheduled = new AtomicBoolean(false);
+
+    // sim seconds between samples; SUMO advances over all steps in between with one step(target) call
+    private volatile double sampleEverySimSec = Main.SAMPLE_EVERY_SIM_SECONDS;
+
+    // optional frame recording (stepper thread only once the simulation runs)
+    private volatile File recordFile = null;
+    private volatile File streamDir = null;
 
     // Filter state source (GUI provides values)
     private final GUI.VehicleFilter filter;
@@ -112,7 +159,9 @@ public class LiveConnectionSumo implements Runnable {
             JLabel congestionLabel,
             JLabel throughputLabel,
             JLabel meanSpeedLabel,
+            JLabel realTimeFactorLabel,
             JLabel tlStateLabel,
+            JLabel bottleneckLabel,
             JComboBox<VehicleInjection.RouteDef> routeCombo,
             JComboBox<TrafficControl.TlsItem> tlCombo,
             TrafficControl trafficControl,
@@ -131,29 +180,71 @@ public class LiveConnectionSumo implements Runnable {
         this.congestionLabel = congestionLabel;
         this.throughputLabel = throughputLabel;
         this.meanSpeedLabel = meanSpeedLabel;
+        this.realTimeFactorLabel = realTimeFactorLabel;
 
         this.tlStateLabel = tlStateLabel;
+        this.bottleneckLabel = bottleneckLabel;
 
         this.routeCombo = routeCombo;
         this.tlCombo = tlCombo;
         this.trafficControl = trafficControl;
 
         this.onStopped = onStopped;
+    }
 
+    // launches SUMO and the stages; the setters marked "before connect()" must be called first
+    public void connect() {
         new Thread(this, "SUMO-Simulation-Thread").start();
     }
 
     public void startSimulation() { started = true; Logging.LOG.info("Simulation START pressed."); }
 
-    public void setSpeedDelay(int ms, int speedFactorUi) {
-        sleepMs = Math.max(1, ms);
+    // factor = sim seconds per wall second; Pacer.UNTHROTTLED = as fast as SUMO allows
+    public void setRealTimeFactor(double factor, int speedFactorUi) {
+        pacer.setTargetFactor(factor);
         latestSpeedFactorUi = speedFactorUi;
     }
 
+    public void setSampleInterval(double simSeconds) {
+        sampleEverySimSec = Math.max(0.0, simSeconds);
+    }
+
+    // before connect()
+    public void streamTo(File dir) {
+        streamDir = dir;
+    }
+
+    // before connect()
+    public void recordTo(File file) {
+        recordFile = file;
+    }
+
+    // before connect(); a binary other than sumo-gui (ScalingHarness) is started without the GUI flags
+    public void useSumoBinary(String binary) {
+        sumoBinary = binary;
+    }
+
     public void stopSimulation() { running = false; Logging.LOG.info("Simulation STOP pressed."); }
 
+    // ===================== SUMO launch (shared with HeadlessRunner) =====================
+    static List<String> buildSumoCommand(String binary, boolean guiFlags) throws IOException {
+        String manualRou = buildRoutesFileWithVTypesOnly();
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(binary);
+        cmd.add("-c"); cmd.add(Main.SUMOCFG_PATH);
+        cmd.add("--route-files"); cmd.add(manualRou);
+        if (guiFlags) {
+            cmd.add("--start");
+            cmd.add("--quit-on-end");
+        } else {
+            cmd.add("--no-step-log"); cmd.add("true");
+        }
+        return cmd;
+    }
+
     // ===================== Routing file override for manual injection only =====================
-    private String buildRoutesFileWithVTypesOnly() throws IOException {
+    private static String buildRoutesFileWithVTypesOnly() throws IOException {
         File tmp = File.createTempFile("manual_only_", ".rou.xml");
         tmp.deleteOnExit();
         try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"))) {
@@ -170,267 +261,478 @@ public class LiveConnectionSumo implements Runnable {
         return tmp.getAbsolutePath();
     }
 
-    // ===================== REAL METRICS =====================
-    private double safeVehicleWaitingTimeSec(String vehId) {
+    // ===================== Arrivals (stepper thread, TraCI) =====================
+    // Cumulative arrivals (incl. teleport removals). Normally the arrived-ids subscription already
+    // read by the collector: no extra call. When that list may be incomplete (no subscription, or
+    // a sample over several SUMO steps): every vehicle is injected by us (the route file is replaced
+    // by a vTypes-only one), so injected - (running + waiting to depart) counts all that ended.
+    static long arrivedTotal(long prevTotal, VehicleCollector collector) {
+        int listed = collector.listedArrivals();
+        if (listed >= 0) return prevTotal + listed;
+        int vanished = collector.vanishedLastStep();
         try {
-            Method m = Vehicle.class.getMethod("getWaitingTime", String.class);
-            Object o = m.invoke(null, vehId);
-            if (o instanceof Number) return ((Number) o).doubleValue();
+            long ended = VehicleInjection.injectedTotal() - Traci.gw().minExpectedNumber();
+            return Math.max(prevTotal, ended);
         } catch (Exception ignore) {}
-
-        try {
-            Method m = Vehicle.class.getMethod("getAccumulatedWaitingTime", String.class);
-            Object o = m.invoke(null, vehId);
-            if (o instanceof Number) return ((Number) o).doubleValue();
-        } catch (Exception ignore) {}
-
-        return Double.NaN;
+        return prevTotal + vanished;
     }
 
-    private double computeAvgWaitSeconds(StringVector vIds) {
-        if (vIds == null || vIds.size() == 0) return 0.0;
-
-        double sum = 0.0;
-        int cnt = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            String id = vIds.get(i);
-            double w = safeVehicleWaitingTimeSec(id);
-            if (!Double.isNaN(w) && !Double.isInfinite(w)) {
-                sum += w;
-                cnt++;
-            }
-        }
-        if (cnt == 0) return -1.0;
-        return sum / cnt;
-    }
-
-    private double computeMeanSpeed(StringVector vIds) {
-        if (vIds == null || vIds.size() == 0) return 0.0;
-        double sum = 0.0;
-        int cnt = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            try {
-                sum += Vehicle.getSpeed(vIds.get(i));
-                cnt++;
-            } catch (Exception ignore) {}
-        }
-        return cnt == 0 ? 0.0 : (sum / cnt);
+    // JFR "Simulation Step": committed only when a recording has the event enabled
+    static void commitStepEvent(JfrEvents.SimulationStep e, double simTime, int vehicles, long arrivals,
+                                long stepNanos, long tlsNanos, long sleepNanos, long collectNanos) {
+        if (!e.shouldCommit()) return;
+        e.simTime = simTime;
+        e.vehicles = vehicles;
+        e.arrivals = (int) arrivals;
+        e.stepTime = stepNanos;
+        e.tlsTime = tlsNanos;
+        e.sleepTime = sleepNanos;
+        e.collectTime = collectNanos;
+        e.commit();
     }
 
-    private int countStopped(StringVector vIds) {
-        int stopped = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            try {
-                if (Vehicle.getSpeed(vIds.get(i)) < 0.1) stopped++;
-            } catch (Exception ignore) {}
-        }
-        return stopped;
+    // Advance from simTime to the next sample time (one or more SUMO steps) and return the new sim time
+    static double advanceToNextSample(double simTime, double sampleEverySimSec) {
+        TraciGateway traci = Traci.gw();
+        traci.step(sampleEverySimSec <= 0 ? 0.0 : simTime + sampleEverySimSec);
+        return traci.time();
     }
 
-    private int recordArrivalsAndReturnCount(double simTime, Set<String> currentIdsSet) {
-        try {
-            Method m = Simulation.class.getMethod("getArrivedIDList");
-            Object o = m.invoke(null);
-            if (o instanceof StringVector) {
-                StringVector arrived = (StringVector) o;
-                int n = arrived.size();
-                for (int i = 0; i < n; i++) arrivalTimes.addLast(simTime);
-                return n;
-            }
-        } catch (Exception ignore) {}
-
-        int arrived = 0;
-        for (String oldId : prevVehicleIds) {
-            if (!currentIdsSet.contains(oldId)) {
-                arrived++;
-                arrivalTimes.addLast(simTime);
-            }
-        }
-        return arrived;
-    }
-
-    private void trimThroughputWindow(double simTime) {
-        while (!arrivalTimes.isEmpty()) {
-            double t = arrivalTimes.peekFirst();
-            if ((simTime - t) > Main.THROUGHPUT_WINDOW_SEC) arrivalTimes.removeFirst();
-            else break;
-        }
+    // ===================== Pipeline slots =====================
+    // stepper -> metrics stage: one sample's metrics, no vehicle data
+    static final class StepRow {
+        final MetricsAggregator.StepMetrics metrics = new MetricsAggregator.StepMetrics();
+        long arrivedTotal;
+        long stepNanos, steps, stepNanosTotal;      // SUMO step call: this sample, cumulative
     }
 
-    private double computeThroughputVph() {
-        double windowHours = Main.THROUGHPUT_WINDOW_SEC / 3600.0;
-        if (windowHours <= 1e-9) return 0.0;
-        return arrivalTimes.size() / windowHours;
+    // stepper -> UI publisher stage, only for samples the pacer publishes
+    static final class UiFrame {
+        final VehicleFrame frame = new VehicleFrame();
+        final MetricsAggregator.StepMetrics metrics = new MetricsAggregator.StepMetrics();
+        String tlsStatus;
     }
 
-    // ===================== Simulation loop =====================
+    // ===================== Stage 1: stepper (only waits on SUMO) =====================
     @Override public void run() {
-        try {
-            Simulation.preloadLibraries();
-
-            String manualRou = buildRoutesFileWithVTypesOnly();
+        Thread metricsThread = new Thread(this::runMetricsStage, "SUMO-Metrics-Stage");
+        Thread publisherThread = new Thread(this::runPublisherStage, "SUMO-UI-Publisher");
+        metricsThread.setDaemon(true);
+        publisherThread.setDaemon(true);
+        metricsThread.start();
+        publisherThread.start();
 
-            StringVector cmd = new StringVector();
-            cmd.add("sumo-gui");
-            cmd.add("-c"); cmd.add(Main.SUMOCFG_PATH);
-            cmd.add("--route-files"); cmd.add(manualRou);
-            cmd.add("--start");
-            cmd.add("--quit-on-end");
+        try {
+            TraciGateway traci = Traci.gw();
+            List<String> cmd = buildSumoCommand(sumoBinary, Main.SUMO_GUI_BINARY.equals(sumoBinary));
 
             Logging.LOG.info("Starting SUMO: " + cmd);
-            Simulation.start(cmd);
+            traci.start(cmd);
             Logging.LOG.info("SUMO started.");
+            subscribeEdgeStats(edgeStats);
 
             trafficControl.rebuildTrafficLightDropdown();
             VehicleInjection.rebuildAllowedRoutesAndDropdown(routeCombo);
 
+            long arrivedTotal = 0;
+            long steps = 0, stepNanosTotal = 0;
+            double simTime = traci.time();
+            MetricsAggregator aggregator = new MetricsAggregator();
+            MetricsAggregator.StepMetrics m = new MetricsAggregator.StepMetrics();
+            double nextSummaryAt = Double.NEGATIVE_INFINITY;
+            FrameRecorder recorder = openRecorder(recordFile, traci);
+            IntFunction<String> idOf = collector::idOf;
+
             while (running) {
                 if (!started) {
                     Thread.sleep(50);
                     continue;
                 }
 
-                Simulation.step();
-                double simTime = Simulation.getCurrentTime();
-
-                // 1) Rule-based TLS + manual persists
+                JfrEvents.SimulationStep stepEvent = new JfrEvents.SimulationStep();
+                stepEvent.begin();
+                long loopStart = System.nanoTime();
+                simTime = advanceToNextSample(simTime, sampleEverySimSec);
+                long tStep = System.nanoTime();
+                long stepNanos = tStep - loopStart;
+                steps++;
+                stepNanosTotal += stepNanos;
+                phaseStats.record(PhaseStats.Phase.STEP, stepNanos);
+
+                // 1) Rule-based TLS + manual persists (once per sample)
                 trafficControl.applyPerStep(simTime);
+                long tTls = System.nanoTime();
+                phaseStats.record(PhaseStats.Phase.TLS, tTls - tStep);
 
                 // 2) Auto reroute disabled
                 if (AUTO_REROUTE_ENABLED) {
                     // intentionally OFF
                 }
 
-                Thread.sleep(sleepMs);
-
-                // ---- vehicle metrics ----
-                StringVector vIds = Vehicle.getIDList();
-                int active = vIds.size();
-
-                Set<String> currentIdSet = new HashSet<>(Math.max(16, active * 2));
-                for (int i = 0; i < vIds.size(); i++) currentIdSet.add(vIds.get(i));
-
-                recordArrivalsAndReturnCount(simTime, currentIdSet);
-                trimThroughputWindow(simTime);
-                double throughputVph = computeThroughputVph();
-
-                prevVehicleIds.clear();
-                prevVehicleIds.addAll(currentIdSet);
+                // 3) Wall-clock pacing; when behind, UI publishes are skipped instead of sleeping
+                boolean publishUi = pacer.pace(simTime);
+                long tSleep = System.nanoTime();
+                phaseStats.record(PhaseStats.Phase.SLEEP, tSleep - tTls);
+
+                // 4) Collect
+                VehicleFrame frame = collector.collect(simTime);
+                long arrivedBefore = arrivedTotal;
+                arrivedTotal = arrivedTotal(arrivedTotal, collector);
+                edgeStats.collect(simTime);
+
+                if (recorder != null) {
+                    try {
+                        recorder.record(frame, idOf, arrivedTotal, traci);
+                    } catch (IOException ex) {
+                        Logging.LOG.log(java.util.logging.Level.WARNING, "Frame recording failed; recording stopped.", ex);
+                        closeRecorder(recorder);
+                        recorder = null;
+                    }
+                }
+                long tCollect = System.nanoTime();
+                phaseStats.record(PhaseStats.Phase.COLLECT, tCollect - tSleep);
+                commitStepEvent(stepEvent, simTime, frame.size, arrivedTotal - arrivedBefore,
+                        stepNanos, tTls - tStep, tSleep - tTls, tCollect - tSleep);
+
+                // 5) Aggregate: one pass over the frame just collected, so no sample needs a frame copy
+                aggregator.compute(frame, arrivedTotal, filter, m);
+                if (m.simTime >= nextSummaryAt) {
+                    throughputSummary = aggregator.throughput().summary();
+                    nextSummaryAt = m.simTime + ThroughputCounters.BUCKET_SEC;
+                }
+                long tAggregate = System.nanoTime();
+                phaseStats.record(PhaseStats.Phase.AGGREGATE, tAggregate - tCollect);
+
+                // 6) Hand off: the metrics of every sample (waits only if the store stage is a full ring behind),
+                //    the frame only when the UI gets it (never waits)
+                StepRow row = stepRing.claim();
+                if (row != null) {
+                    row.metrics.copyFrom(m);
+                    row.arrivedTotal = arrivedTotal;
+                    row.stepNanos = stepNanos;
+                    row.steps = steps;
+                    row.stepNanosTotal = stepNanosTotal;
+                    stepRing.publish();
+                }
+                UiFrame ui = publishUi ? uiRing.claim() : null;
+                if (ui != null) {
+                    ui.frame.copyFrom(frame);
+                    ui.metrics.copyFrom(m);
+                    ui.tlsStatus = trafficControl.buildTlsStatusString();
+                    uiRing.publish();
+                }
+                long tEnd = System.nanoTime();
+                phaseStats.record(PhaseStats.Phase.HANDOFF, tEnd - tAggregate);
+                phaseStats.record(PhaseStats.Phase.LOOP, tEnd - loopStart);
+            }
 
-                int stopped = countStopped(vIds);
-                double congestion = active > 0 ? (double) stopped / active : 0.0;
+            shutdownStages(metricsThread, publisherThread);
+            throughputSummary = aggregator.throughput().summary();
+            Logging.LOG.info("Throughput:" + aggregator.throughput().describe(VehicleInjection.scenarioNames()));
+            closeRecorder(recorder);
+            traci.close();
+            Logging.LOG.info("TraCI calls: " + traci.callCounts().summary());
+            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
 
-                double avgWaitSec = computeAvgWaitSeconds(vIds);
-                double meanSpeed = computeMeanSpeed(vIds);
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Simulation thread crashed", ex);
+            stepRing.close();
+            uiRing.close();
+            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+        }
+    }
 
-                Map<String, java.awt.geom.Point2D.Double> positions = new HashMap<>();
-                Map<String, String> types = new HashMap<>();
-                Map<String, Double> speeds = new HashMap<>();
+    // edge stats are optional: without them only the bottleneck label / exports stay empty
+    static void subscribeEdgeStats(EdgeStatsCollector edgeStats) {
+        try {
+            edgeStats.subscribe();
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Edge subscriptions failed; edge stats disabled.", ex);
+        }
+    }
 
-                int visibleCount = 0, visCar = 0, visTruck = 0, visBus = 0;
+    private static FrameRecorder openRecorder(File file, TraciGateway traci) {
+        if (file == null) return null;
+        try {
+            return FrameRecorder.open(file, traci);
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Cannot record frames to " + file, ex);
+            return null;
+        }
+    }
 
-                for (int i = 0; i < vIds.size(); i++) {
-                    String id = vIds.get(i);
+    private static void closeRecorder(FrameRecorder recorder) {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+            Logging.LOG.info("Recording closed: " + recorder.framesWritten() + " frames");
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Closing frame recording failed", ex);
+        }
+    }
 
-                    TraCIPosition pos = Vehicle.getPosition(id);
-                    positions.put(id, new java.awt.geom.Point2D.Double(pos.getX(), pos.getY()));
+    private void shutdownStages(Thread metricsThread, Thread publisherThread) throws InterruptedException {
+        stepRing.close();
+        uiRing.close();
+        metricsThread.join(2000);
+        publisherThread.join(2000);
+        Logging.LOG.info("Pipeline stopped. dropped: " + stepRing.name() + "=" + stepRing.droppedCount()
+                + ", " + uiRing.name() + "=" + uiRing.droppedCount()
+                + String.format(Locale.US, " | stepper waited on %s: %.1f ms",
+                        stepRing.name(), stepRing.waitedNanos() / 1e6)
+                + " | pacer skipped UI publishes=" + pacer.getSkippedPublishes()
+                + String.format(Locale.US, ", achieved factor=%.2fx", pacer.getAchievedFactor()));
+        Logging.LOG.info("Metrics store: " + metricsLog.describe());
+        Logging.LOG.info("Phase latency:" + phaseStats.snapshot().describe());
+    }
 
-                    String type;
-                    if (id.startsWith("car_")) type = Main.TYPE_CAR;
-                    else if (id.startsWith("truck_")) type = Main.TYPE_TRUCK;
-                    else if (id.startsWith("bus_")) type = Main.TYPE_BUS;
-                    else type = Main.TYPE_CAR;
+    // ===================== Stage 2: metrics =====================
+    // store, stream and endpoint snapshot of every sample; constant work per row
+    private void runMetricsStage() {
+        File dir = streamDir;
+        MetricsSink sink = dir == null ? null : MetricsSink.start(dir);
+        long nextLiveAtMs = 0, stepNanosMax = 0;
+        try {
+            StepRow in;
+            while ((in = stepRing.take()) != null) {
+                long t0 = System.nanoTime();
+                MetricsAggregator.StepMetrics m = in.metrics;
+                boolean ruleBased = trafficControl.isRuleBasedTlsEnabled();
+                metricsLog.append(m, latestSpeedFactorUi, ruleBased);
+                if (sink != null) sink.offer(m, latestSpeedFactorUi, ruleBased, filter.minSpeedMps);
+                stepNanosMax = Math.max(stepNanosMax, in.stepNanos);
+                long nowMs = System.currentTimeMillis();
+                if (nowMs >= nextLiveAtMs) {
+                    liveSnapshot = buildLiveSnapshot(m, in, stepNanosMax, nowMs);
+                    stepNanosMax = 0;
+                    nextLiveAtMs = nowMs + Main.METRICS_HTTP_PUBLISH_MS;
+                }
+                phaseStats.record(PhaseStats.Phase.METRICS, System.nanoTime() - t0);
+                stepRing.release();
+            }
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Metrics stage crashed", ex);
+        } finally {
+            stepRing.close();       // a dead metrics stage must not leave the stepper blocked in claim()
+            if (sink != null) sink.close();
+            metricsLog.close();     // releases the spill file; exports still read the rows
+        }
+    }
 
-                    types.put(id, type);
+    // metrics stage only; reads our own counters, never TraCI
+    private MetricsEndpoint.Snapshot buildLiveSnapshot(MetricsAggregator.StepMetrics m, StepRow in,
+                                                       long stepNanosMax, long nowMs) {
+        MetricsEndpoint.Snapshot s = new MetricsEndpoint.Snapshot();
+        s.publishedEpochMs = nowMs;
+        s.simTime = m.simTime;
+        s.samples = metricsLog.size();
+        s.arrived = in.arrivedTotal;
+        s.active = m.active;
+        s.stopped = m.stopped;
+        s.visible = m.visible;
+        s.congestion = m.congestion;
+        s.meanSpeed = m.meanSpeed;
+        s.avgWaitSec = m.avgWaitSec;
+        s.thr1m = m.throughput1mVph;
+        s.thr5m = m.throughputVph;
+        s.thr15m = m.throughput15mVph;
+        s.thrRun = m.throughputRunVph;
+        s.steps = in.steps;
+        s.stepSecondsSum = in.stepNanosTotal / 1e9;
+        s.stepSecondsLast = in.stepNanos / 1e9;
+        s.stepSecondsMax = stepNanosMax / 1e9;
+        s.targetFactor = pacer.getTargetFactor();
+        s.achievedFactor = pacer.getAchievedFactor();
+        s.droppedToMetrics = stepRing.droppedCount();
+        s.droppedToUi = uiRing.droppedCount();
+        s.skippedUiPublishes = pacer.getSkippedPublishes();
+        TraciGateway.CallCounts calls = Traci.gw().callCounts();
+        TraciGateway.Command[] commands = TraciGateway.Command.values();
+        for (int i = 0; i < commands.length; i++) s.traciCalls[i] = calls.get(commands[i]);
+        return s;
+    }
 
-                    double sp = 0.0;
-                    try { sp = Vehicle.getSpeed(id); } catch (Exception ignore) {}
-                    speeds.put(id, sp);
+    public MetricsEndpoint.Snapshot liveSnapshot() { return liveSnapshot; }
 
-                    if (filter.allows(type, sp)) {
-                        visibleCount++;
-                        if (Main.TYPE_CAR.equals(type)) visCar++;
-                        else if (Main.TYPE_TRUCK.equals(type)) visTruck++;
-                        else if (Main.TYPE_BUS.equals(type)) visBus++;
-                    }
-                }
+    public PhaseStats phaseStats() { return phaseStats; }
 
-                if (lastLoggedSimTime < 0 || (simTime - lastLoggedSimTime) >= LOG_EVERY_SIM_SECONDS) {
-                    lastLoggedSimTime = simTime;
-                    metricsLog.add(new MetricRow(
-                            Logging.nowTag(), simTime, active, stopped, congestion,
-                            avgWaitSec, meanSpeed, throughputVph, latestSpeedFactorUi,
-                            visibleCount, visCar, visTruck, visBus,
-                            trafficControl.isRuleBasedTlsEnabled()
-                    ));
-
-                    trendChart.addSample(
-                            avgWaitSec < 0 ? 0.0 : avgWaitSec,
-                            throughputVph,
-                            congestion
-                    );
-                }
+    // ===================== Stage 3: UI publisher =====================
+    // map, trend chart and labels at the pacer's publish rate: one chart point per published frame
+    private void runPublisherStage() {
+        EdgeStatsCollector.Snapshot edges = new EdgeStatsCollector.Snapshot();
+        try {
+            UiFrame in;
+            while ((in = uiRing.take()) != null) {
+                long t0 = System.nanoTime();
+                mapPanel.updateVehicles(in.frame);
+                MetricsAggregator.StepMetrics m = in.metrics;
+                trendChart.addSample(
+                        m.avgWaitSec < 0 ? 0.0 : m.avgWaitSec,
+                        Math.max(0.0, m.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P90)),
+                        m.throughputVph,
+                        m.congestion
+                );
+
+                String bottlenecks = edgeStats.edges(edges).describeBottlenecks(Main.BOTTLENECKS_SHOWN, false);
+                pendingLabels.set(new LabelState(m.copy(), in.tlsStatus, bottlenecks,
+                        pacer.getTargetFactor(), pacer.getAchievedFactor()));
+                if (!labelsScheduled.getAndSet(true)) SwingUtilities.invokeLater(this::applyLabels);
+                phaseStats.record(PhaseStats.Phase.PUBLISH, System.nanoTime() - t0);
+
+                uiRing.release();
+            }
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "UI publisher stage crashed", ex);
+        }
+    }
 
-                final Map<String, java.awt.geom.Point2D.Double> positionsF = positions;
-                final Map<String, String> typesF = types;
-                final Map<String, Double> speedsF = speeds;
+    private static final class LabelState {
+        final MetricsAggregator.StepMetrics m;
+        final String tlsStatus;
+        final String bottlenecks;
+        final double targetFactor, achievedFactor;
+        LabelState(MetricsAggregator.StepMetrics m, String tlsStatus, String bottlenecks,
+                   double targetFactor, double achievedFactor) {
+            this.m = m; this.tlsStatus = tlsStatus; this.bottlenecks = bottlenecks;
+            this.targetFactor = targetFactor; this.achievedFactor = achievedFactor;
+        }
+    }
 
-                final int activeF = active;
-                final int stoppedF = stopped;
-                final double congestionF = congestion;
-                final double avgWaitSecF = avgWaitSec;
-                final double throughputVphF = throughputVph;
-                final double meanSpeedF = meanSpeed;
+    // EDT: at most one pending label update; newer values overwrite older ones
+    private void applyLabels() {
+        labelsScheduled.set(false);
+        LabelState st = pendingLabels.getAndSet(null);
+        if (st == null) return;
+        MetricsAggregator.StepMetrics m = st.m;
+
+        activeVehiclesLabel.setText("Active Vehicles (all): " + m.active);
+        visibleVehiclesLabel.setText("Visible Vehicles (filtered): " + m.visible);
+        byTypeLabel.setText("By Type: car=" + m.visCar + " truck=" + m.visTruck + " bus=" + m.visBus);
+
+        if (m.avgWaitSec >= 0) {
+            avgWaitLabel.setText(String.format(Locale.US,
+                    "Avg Wait Time: %.1f s | p90 %.1f s | p99 %.1f s", m.avgWaitSec,
+                    m.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P90),
+                    m.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P99)));
+        } else {
+            double ratio = m.active > 0 ? (m.stopped / (double) m.active) : 0.0;
+            avgWaitLabel.setText(String.format(Locale.US,
+                    "Avg Wait Time: N/A (API) | stopped ratio=%.2f", ratio));
+        }
 
-                final int visibleF = visibleCount;
-                final int visCarF = visCar, visTruckF = visTruck, visBusF = visBus;
+        congestionLabel.setText(String.format(Locale.US,
+                "Congestion Index: %.2f (stopped=%d)", m.congestion, m.stopped));
 
-                final String tlsStateF = trafficControl.buildTlsStatusString();
+        throughputLabel.setText(String.format(Locale.US,
+                "Throughput: %.1f v/h (last %.0f s) | 1m %.0f | 15m %.0f",
+                m.throughputVph, Main.THROUGHPUT_WINDOW_SEC, m.throughput1mVph, m.throughput15mVph));
 
-                SwingUtilities.invokeLater(() -> {
-                    mapPanel.updateVehicles(positionsF, typesF, speedsF);
+        meanSpeedLabel.setText(String.format(Locale.US,
+                "Mean Speed: %.2f m/s", m.meanSpeed));
 
-                    activeVehiclesLabel.setText("Active Vehicles (all): " + activeF);
-                    visibleVehiclesLabel.setText("Visible Vehicles (filtered): " + visibleF);
-                    byTypeLabel.setText("By Type: car=" + visCarF + " truck=" + visTruckF + " bus=" + visBusF);
+        realTimeFactorLabel.setText(st.targetFactor > 0
+                ? String.format(Locale.US, "Real-time Factor: %.1fx (target %.0fx)", st.achievedFactor, st.targetFactor)
+                : String.format(Locale.US, "Real-time Factor: %.1fx (unthrottled)", st.achievedFactor));
 
-                    if (avgWaitSecF >= 0) {
-                        avgWaitLabel.setText(String.format(Locale.US,
-                                "Avg Wait Time: %.1f s (%.2f min)", avgWaitSecF, avgWaitSecF/60.0));
-                    } else {
-                        double ratio = activeF > 0 ? (stoppedF / (double) activeF) : 0.0;
-                        avgWaitLabel.setText(String.format(Locale.US,
-                                "Avg Wait Time: N/A (API) | stopped ratio=%.2f", ratio));
-                    }
+        tlStateLabel.setText(st.tlsStatus);
+        bottleneckLabel.setText("Bottlenecks (halting/occ): " + st.bottlenecks);
+    }
 
-                    congestionLabel.setText(String.format(Locale.US,
-                            "Congestion Index: %.2f (stopped=%d)", congestionF, stoppedF));
+    // ===================== Export CSV =====================
+    private static String csvEscape(String s) {
+        if (s == null) return "";
+        boolean needs = s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r");
+        String t = s.replace("\"", "\"\"");
+        return needs ? ("\"" + t + "\"") : t;
+    }
 
-                    throughputLabel.setText(String.format(Locale.US,
-                            "Throughput: %.1f v/h (last %.0f s)", throughputVphF, Main.THROUGHPUT_WINDOW_SEC));
+    static void appendCsvHeader(StringBuilder sb) {
+        sb.append("export_local_time,sim_time,active_vehicles,stopped_vehicles,congestion_index,avg_wait_seconds,mean_speed_mps,throughput_vph,speed_factor_ui,selected_route,visible_vehicles,visible_cars,visible_trucks,visible_buses,min_speed_filter_mps,rule_based_enabled"
+                + ",throughput_1m_vph,throughput_15m_vph,throughput_run_vph,throughput_car_vph,throughput_truck_vph,throughput_bus_vph");
+        // percentile columns: <metric>_<stat>_<group>, e.g. wait_s_p90_all (-1 = no samples)
+        for (String g : MetricsAggregator.PCT_GROUPS)
+            for (String m : MetricsAggregator.PCT_METRICS)
+                for (String st : MetricsAggregator.PCT_STATS) sb.append(',').append(m).append('_').append(st).append('_').append(g);
+        sb.append(System.lineSeparator());
+    }
 
-                    meanSpeedLabel.setText(String.format(Locale.US,
-                            "Mean Speed: %.2f m/s", meanSpeedF));
+    // same text as the former String.format version, via CsvNumbers (no per-field allocation)
+    static void appendCsvRow(StringBuilder sb, MetricRow r, String selectedRouteName, double minSpeedFilterMps) {
+        sb.append(csvEscape(r.exportLocalTime)).append(',');
+        CsvNumbers.fixed(sb, r.simTime, 2).append(',');
+        sb.append(r.activeVehicles).append(',');
+        sb.append(r.stoppedVehicles).append(',');
+        CsvNumbers.fixed(sb, r.congestionIndex, 4).append(',');
+        CsvNumbers.fixed(sb, r.avgWaitSeconds, 3).append(',');
+        CsvNumbers.fixed(sb, r.meanSpeedMps, 3).append(',');
+        CsvNumbers.fixed(sb, r.throughputVph, 2).append(',');
+        sb.append(r.speedFactorUi).append(',');
+        sb.append(csvEscape(selectedRouteName)).append(',');
+        sb.append(r.visibleVehicles).append(',');
+        sb.append(r.visibleCars).append(',');
+        sb.append(r.visibleTrucks).append(',');
+        sb.append(r.visibleBuses).append(',');
+        CsvNumbers.fixed(sb, minSpeedFilterMps, 2).append(',');
+        sb.append(r.ruleBasedEnabled ? '1' : '0').append(',');
+        CsvNumbers.fixed(sb, r.throughput1mVph, 2).append(',');
+        CsvNumbers.fixed(sb, r.throughput15mVph, 2).append(',');
+        CsvNumbers.fixed(sb, r.throughputRunVph, 2).append(',');
+        CsvNumbers.fixed(sb, r.thrCarVph, 2).append(',');
+        CsvNumbers.fixed(sb, r.thrTruckVph, 2).append(',');
+        CsvNumbers.fixed(sb, r.thrBusVph, 2);
+        for (double v : r.pct) CsvNumbers.fixed(sb.append(','), v, 2);
+        sb.append(System.lineSeparator());
+    }
 
-                    tlStateLabel.setText(tlsStateF);
-                });
+    // whole snapshot to one CSV file; text is encoded in ~64 KB slices into a 1 MB direct buffer
+    static void writeCsv(File file, MetricsStore.Snapshot snap, String selectedRouteName, double minSpeedFilterMps,
+                         ExportJob.Progress progress) throws IOException {
+        long total = snap.size(), done = 0;
+        StringBuilder sb = new StringBuilder(1 << 17);
+        try (Utf8ChannelWriter out = new Utf8ChannelWriter(file, 1 << 20)) {
+            appendCsvHeader(sb);
+            for (MetricRow r : snap) {
+                appendCsvRow(sb, r, selectedRouteName, minSpeedFilterMps);
+                if (sb.length() >= (1 << 16)) {
+                    out.write(sb);
+                    sb.setLength(0);
+                }
+                if ((++done & 1023) == 0) {
+                    progress.checkCancelled();
+                    progress.update(done, total);
+                }
             }
+            out.write(sb);
+        }
+        progress.update(total, total);
+    }
 
-            try { Simulation.close(); } catch (Exception ignored) {}
-            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+    // per-edge table of the latest sample (+ run aggregates); lanes go to <name>_lanes.csv when enabled
+    static void writeEdgesCsv(EdgeStatsCollector edgeStats, File file) throws IOException {
+        writeEdgesCsv(edgeStats, file, siblingFile(file, "_lanes.csv"));
+    }
 
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.SEVERE, "Simulation thread crashed", ex);
-            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+    static void writeEdgesCsv(EdgeStatsCollector edgeStats, File file, File lanesFile) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            edgeStats.edges(new EdgeStatsCollector.Snapshot()).writeCsv(pw);
+        }
+        if (!edgeStats.hasLanes()) return;
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(lanesFile), "UTF-8"))) {
+            edgeStats.lanes(new EdgeStatsCollector.Snapshot()).writeCsv(pw);
         }
     }
 
-    // ===================== Export CSV =====================
-    private static String csvEscape(String s) {
-        if (s == null) return "";
-        boolean needs = s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r");
-        String t = s.replace("\"", "\"\"");
-        return needs ? ("\"" + t + "\"") : t;
+    static void writePerfCsv(PhaseStats.Snapshot phases, File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            phases.writeCsv(pw);
+        }
+    }
+
+    // traffic_metrics.csv -> traffic_metrics<suffix>
+    static File siblingFile(File file, String suffix) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(file.getAbsoluteFile().getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + suffix);
     }
 
     public void exportMetricsCsv(Component parent, String selectedRouteName) {
@@ -447,43 +749,64 @@ public class LiveConnectionSumo implements Runnable {
         String path = file.getAbsolutePath();
         if (!path.toLowerCase(Locale.ROOT).endsWith(".csv")) file = new File(path + ".csv");
 
-        List<MetricRow> snap;
-        synchronized (metricsLog) { snap = new ArrayList<>(metricsLog); }
+        // snapshot + filter state are taken now; the simulation keeps appending while the job writes
+        MetricsStore.Snapshot snap = metricsLog.snapshot();
+        double minSpeed = filter.minSpeedMps;
+        File target = file;
+        ExportJob.start(parent, "CSV", target, progress -> {
+            writeCsv(progress.writes(target), snap, selectedRouteName, minSpeed, progress);
+            File edgesFile = siblingFile(target, "_edges.csv");
+            writeEdgesCsv(edgeStats, progress.writes(edgesFile),
+                    edgeStats.hasLanes() ? progress.writes(siblingFile(edgesFile, "_lanes.csv")) : null);
+            File perfFile = siblingFile(target, "_perf.csv");
+            writePerfCsv(phaseStats.snapshot(), progress.writes(perfFile));
+            return "Exported " + snap.size() + " rows to:\n" + target.getAbsolutePath()
+                    + "\nEdge stats: " + edgesFile.getAbsolutePath()
+                    + "\nPhase latency: " + perfFile.getAbsolutePath();
+        });
+    }
 
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
-            pw.println("export_local_time,sim_time,active_vehicles,stopped_vehicles,congestion_index,avg_wait_seconds,mean_speed_mps,throughput_vph,speed_factor_ui,selected_route,visible_vehicles,visible_cars,visible_trucks,visible_buses,min_speed_filter_mps,rule_based_enabled");
-            for (MetricRow r : snap) {
-                pw.print(csvEscape(r.exportLocalTime)); pw.print(",");
-                pw.print(String.format(Locale.US, "%.2f", r.simTime)); pw.print(",");
-                pw.print(r.activeVehicles); pw.print(",");
-                pw.print(r.stoppedVehicles); pw.print(",");
-                pw.print(String.format(Locale.US, "%.4f", r.congestionIndex)); pw.print(",");
-                pw.print(String.format(Locale.US, "%.3f", r.avgWaitSeconds)); pw.print(",");
-                pw.print(String.format(Locale.US, "%.3f", r.meanSpeedMps)); pw.print(",");
-                pw.print(String.format(Locale.US, "%.2f", r.throughputVph)); pw.print(",");
-                pw.print(r.speedFactorUi); pw.print(",");
-                pw.print(csvEscape(selectedRouteName)); pw.print(",");
-                pw.print(r.visibleVehicles); pw.print(",");
-                pw.print(r.visibleCars); pw.print(",");
-                pw.print(r.visibleTrucks); pw.print(",");
-                pw.print(r.visibleBuses); pw.print(",");
-                pw.print(String.format(Locale.US, "%.2f", filter.minSpeedMps)); pw.print(",");
-                pw.println(r.ruleBasedEnabled ? "1" : "0");
-            }
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.SEVERE, "Export CSV failed", ex);
-            JOptionPane.showMessageDialog(parent, "CSV export failed:\n" + ex.getMessage(),
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
+    // ===================== Export columnar (.smc) =====================
+    public void exportMetricsColumnar(Component parent, String selectedRouteName) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Save metrics (columnar)");
+        chooser.setSelectedFile(new File("traffic_metrics.smc"));
+
+        int res = chooser.showSaveDialog(parent);
+        if (res != JFileChooser.APPROVE_OPTION) return;
+
+        File file = chooser.getSelectedFile();
+        if (file == null) return;
 
-        JOptionPane.showMessageDialog(parent,
-                "Exported " + snap.size() + " rows to:\n" + file.getAbsolutePath(),
-                "Export Data", JOptionPane.INFORMATION_MESSAGE);
+        String path = file.getAbsolutePath();
+        if (!path.toLowerCase(Locale.ROOT).endsWith(".smc")) file = new File(path + ".smc");
+
+        MetricsStore.Snapshot snap = metricsLog.snapshot();
+        Map<String, String> meta = exportMeta(selectedRouteName,
+                filter.showCars, filter.showTrucks, filter.showBuses, filter.minSpeedMps);
+        File target = file;
+        ExportJob.start(parent, "SMC", target, progress -> {
+            long bytes = MetricsColumnFile.write(progress.writes(target), snap, meta, progress);
+            return "Exported " + snap.size() + " rows (" + (bytes >> 10) + " KB) to:\n" + target.getAbsolutePath();
+        });
+    }
+
+    // export context stored in the columnar file header (per-export, not per-row like in the CSV)
+    static Map<String, String> exportMeta(String selectedRouteName, boolean cars, boolean trucks, boolean buses,
+                                          double minSpeedMps) {
+        Map<String, String> meta = new LinkedHashMap<>();
+        meta.put("export_local_time", Logging.nowTag());
+        meta.put("selected_route", selectedRouteName == null ? "" : selectedRouteName);
+        meta.put("filter_cars", String.valueOf(cars));
+        meta.put("filter_trucks", String.valueOf(trucks));
+        meta.put("filter_buses", String.valueOf(buses));
+        meta.put("min_speed_filter_mps", String.format(Locale.US, "%.2f", minSpeedMps));
+        meta.put("sample_every_sim_sec", String.valueOf(Main.SAMPLE_EVERY_SIM_SECONDS));
+        return meta;
     }
 
     // ===================== Export PDF (Summary) =====================
-    public void exportSummaryPdf(JFrame parent, String selectedRouteName, BufferedImage chartImage) {
+    public void exportSummaryPdf(JFrame parent, String selectedRouteName) {
         JFileChooser chooser = new JFileChooser();
         chooser.setDialogTitle("Save summary PDF");
         chooser.setSelectedFile(new File("traffic_summary.pdf"));
@@ -497,11 +820,9 @@ public class LiveConnectionSumo implements Runnable {
         String path = file.getAbsolutePath();
         if (!path.toLowerCase(Locale.ROOT).endsWith(".pdf")) file = new File(path + ".pdf");
 
-        List<MetricRow> snap;
-        synchronized (metricsLog) { snap = new ArrayList<>(metricsLog); }
-        MetricRow last = snap.isEmpty() ? null : snap.get(snap.size() - 1);
-
-        List<String> lines = new ArrayList<>();
+        // UI state is read here on the EDT; the snapshots are lock-free, the report is built by the job
+        SummaryReport.Inputs in = new SummaryReport.Inputs();
+        List<String> lines = in.context;
         String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
 
         lines.add("Export time: " + now);
@@ -514,188 +835,17 @@ public class LiveConnectionSumo implements Runnable {
                 ", buses=" + filter.showBuses +
                 ", minSpeed(m/s)=" + String.format(Locale.US, "%.2f", filter.minSpeedMps));
 
-        if (last == null) {
-            lines.add("Metrics: (no data collected yet)");
-        } else {
-            lines.add("Sim time(s): " + String.format(Locale.US, "%.2f", last.simTime));
-            lines.add("Active vehicles: " + last.activeVehicles + " | stopped: " + last.stoppedVehicles);
-            lines.add("Congestion index: " + String.format(Locale.US, "%.4f", last.congestionIndex));
-            lines.add("Avg wait(s): " + String.format(Locale.US, "%.3f", last.avgWaitSeconds));
-            lines.add("Mean speed(m/s): " + String.format(Locale.US, "%.3f", last.meanSpeedMps));
-            lines.add("Throughput(vph): " + String.format(Locale.US, "%.2f", last.throughputVph));
-            lines.add("Speed factor(UI): " + last.speedFactorUi);
-            lines.add("Visible vehicles: " + last.visibleVehicles +
-                    " (cars " + last.visibleCars + ", trucks " + last.visibleTrucks + ", buses " + last.visibleBuses + ")");
-        }
-
-        try {
-            SimplePdfWriter.writeOnePageReport(
-                    file,
-                    "Traffic Simulation - Summary Report",
-                    lines,
-                    chartImage
-            );
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.SEVERE, "Export PDF failed", ex);
-            JOptionPane.showMessageDialog(parent, "PDF export failed:\n" + ex.getMessage(),
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        JOptionPane.showMessageDialog(parent,
-                "Exported summary PDF to:\n" + file.getAbsolutePath(),
-                "Export PDF", JOptionPane.INFORMATION_MESSAGE);
-    }
-
-    // ===================== Simple PDF Writer =====================
-    static class SimplePdfWriter {
-
-        private static byte[] toJpegBytes(BufferedImage image) throws IOException {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "jpg", baos);
-            return baos.toByteArray();
-        }
-
-        private static String pdfEscape(String s) {
-            if (s == null) return "";
-            return s.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)");
-        }
-
-        public static void writeOnePageReport(File file, String title, List<String> lines, BufferedImage chartImage) throws IOException {
-            final int pageW = 595;
-            final int pageH = 842;
-
-            byte[] jpg = null;
-            int imgW = 0, imgH = 0;
-            if (chartImage != null) {
-                imgW = chartImage.getWidth();
-                imgH = chartImage.getHeight();
-                jpg = toJpegBytes(chartImage);
-            }
-
-            final float margin = 48f;
-            final float fontSizeTitle = 16f;
-            final float fontSize = 11f;
-
-            float imgMaxW = pageW - 2 * margin;
-            float imgMaxH = 260f;
-
-            float drawImgW = 0, drawImgH = 0;
-            if (jpg != null && imgW > 0 && imgH > 0) {
-                float sx = imgMaxW / imgW;
-                float sy = imgMaxH / imgH;
-                float s = Math.min(sx, sy);
-                drawImgW = imgW * s;
-                drawImgH = imgH * s;
-            }
-
-            float y = pageH - margin;
-
-            StringBuilder content = new StringBuilder();
-
-            content.append("BT\n");
-            content.append("/F1 ").append(fontSizeTitle).append(" Tf\n");
-            content.append(margin).append(" ").append(y).append(" Td\n");
-            content.append("(").append(pdfEscape(title)).append(") Tj\n");
-            content.append("ET\n");
-
-            y -= 28f;
-
-            content.append("BT\n");
-            content.append("/F1 ").append(fontSize).append(" Tf\n");
-            content.append(margin).append(" ").append(y).append(" Td\n");
-
-            for (String line : lines) {
-                content.append("(").append(pdfEscape(line)).append(") Tj\n");
-                content.append("0 -14 Td\n");
-            }
-            content.append("ET\n");
-
-            if (jpg != null) {
-                float imgX = margin;
-                float imgY = margin;
-
-                content.append("q\n");
-                content.append(drawImgW).append(" 0 0 ").append(drawImgH).append(" ")
-                        .append(imgX).append(" ").append(imgY).append(" cm\n");
-                content.append("/Im1 Do\n");
-                content.append("Q\n");
-            }
-
-            byte[] contentBytes = content.toString().getBytes("ISO-8859-1");
-
-            ByteArrayOutputStream body = new ByteArrayOutputStream();
-            List<Integer> offsets = new ArrayList<>();
-            offsets.add(0);
-
-            class ObjWriter {
-                void obj(int id, byte[] objBody) throws IOException {
-                    offsets.add(body.size());
-                    body.write((id + " 0 obj\n").getBytes("ISO-8859-1"));
-                    body.write(objBody);
-                    body.write("\nendobj\n".getBytes("ISO-8859-1"));
-                }
-            }
-            ObjWriter w = new ObjWriter();
-
-            w.obj(1, "<< /Type /Catalog /Pages 2 0 R >>".getBytes("ISO-8859-1"));
-            w.obj(2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>".getBytes("ISO-8859-1"));
-
-            String pageObj =
-                    "<< /Type /Page /Parent 2 0 R " +
-                            "/MediaBox [0 0 " + pageW + " " + pageH + "] " +
-                            "/Resources << /Font << /F1 5 0 R >> " +
-                            (jpg != null ? "/XObject << /Im1 6 0 R >> " : "") +
-                            ">> " +
-                            "/Contents 4 0 R >>";
-            w.obj(3, pageObj.getBytes("ISO-8859-1"));
-
-            ByteArrayOutputStream contentObj = new ByteArrayOutputStream();
-            contentObj.write(("<< /Length " + contentBytes.length + " >>\nstream\n").getBytes("ISO-8859-1"));
-            contentObj.write(contentBytes);
-            contentObj.write("\nendstream".getBytes("ISO-8859-1"));
-            w.obj(4, contentObj.toByteArray());
-
-            w.obj(5, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>".getBytes("ISO-8859-1"));
-
-            if (jpg != null) {
-                ByteArrayOutputStream imgObj = new ByteArrayOutputStream();
-                imgObj.write((
-                        "<< /Type /XObject /Subtype /Image " +
-                                "/Width " + imgW + " /Height " + imgH + " " +
-                                "/ColorSpace /DeviceRGB /BitsPerComponent 8 " +
-                                "/Filter /DCTDecode " +
-                                "/Length " + jpg.length + " >>\nstream\n"
-                ).getBytes("ISO-8859-1"));
-                imgObj.write(jpg);
-                imgObj.write("\nendstream".getBytes("ISO-8859-1"));
-                w.obj(6, imgObj.toByteArray());
-            }
-
-            int xrefPos = body.size();
-            StringBuilder xref = new StringBuilder();
-            int size = offsets.size();
-
-            xref.append("xref\n");
-            xref.append("0 ").append(size).append("\n");
-            xref.append(String.format(Locale.US, "%010d 65535 f \n", 0));
-            for (int i = 1; i < size; i++) {
-                xref.append(String.format(Locale.US, "%010d 00000 n \n", offsets.get(i)));
-            }
-
-            String trailer =
-                    "trailer\n" +
-                            "<< /Size " + size + " /Root 1 0 R >>\n" +
-                            "startxref\n" +
-                            xrefPos + "\n" +
-                            "%%EOF\n";
-
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write("%PDF-1.4\n".getBytes("ISO-8859-1"));
-                fos.write(body.toByteArray());
-                fos.write(xref.toString().getBytes("ISO-8859-1"));
-                fos.write(trailer.getBytes("ISO-8859-1"));
-            }
-        }
+        in.metrics = metricsLog.snapshot();
+        edgeStats.edges(in.edges);
+        in.throughput = throughputSummary;
+        in.routeNames = VehicleInjection.scenarioNames();
+        in.tls = trafficControl.tlsInfo();
+        in.phases = phaseStats.snapshot();
+
+        File target = file;
+        ExportJob.start(parent, "PDF", target, progress -> {
+            long bytes = SummaryReport.write(progress.writes(target), "Traffic Simulation - Summary Report", in, progress);
+            return "Exported summary PDF (" + (bytes >> 10) + " KB) to:\n" + target.getAbsolutePath();
+        });
     }
 }
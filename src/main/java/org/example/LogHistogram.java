@@ -0,0 +1,90 @@
+// ===================== LogHistogram.java =====================
+package org.example;
+
+import java.util.Arrays;
+
+// Fixed-memory histogram with HDR-style log buckets: values are counted in units of `unit`;
+// below SUB_BUCKETS units every unit has its own bucket, above that each power of two is split
+// into SUB_BUCKETS/2 buckets (relative error < 1/64). Values above maxValue land in the last bucket,
+// the exact maximum is tracked separately. record() and percentiles() never allocate.
+public final class LogHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;       // 128
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final double unit;
+    private final long[] counts;
+    private long total = 0;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int lowIdx = Integer.MAX_VALUE, highIdx = -1;        // touched range, so reset() is cheap
+
+    public LogHistogram(double unit, double maxValue) {
+        this.unit = unit;
+        this.counts = new long[index((long) Math.ceil(maxValue / unit)) + 1];
+    }
+
+    public void record(double v) {
+        if (Double.isNaN(v)) return;
+        if (v < 0.0) v = 0.0;
+        int i = Math.min(counts.length - 1, index((long) (v / unit)));
+        counts[i]++;
+        total++;
+        if (v > max) max = v;
+        if (i < lowIdx) lowIdx = i;
+        if (i > highIdx) highIdx = i;
+    }
+
+    public void add(LogHistogram o) {
+        if (o.total == 0) return;
+        for (int i = o.lowIdx; i <= o.highIdx; i++) counts[i] += o.counts[i];
+        total += o.total;
+        if (o.max > max) max = o.max;
+        lowIdx = Math.min(lowIdx, o.lowIdx);
+        highIdx = Math.max(highIdx, o.highIdx);
+    }
+
+    public void reset() {
+        if (highIdx >= 0) Arrays.fill(counts, lowIdx, highIdx + 1, 0L);
+        total = 0;
+        max = Double.NEGATIVE_INFINITY;
+        lowIdx = Integer.MAX_VALUE;
+        highIdx = -1;
+    }
+
+    public long count() { return total; }
+
+    public double max() { return total == 0 ? -1.0 : max; }
+
+    // ps ascending (0..1); out[i] = value at ps[i], -1 when empty. One pass over the touched buckets.
+    public void percentiles(double[] ps, double[] out) {
+        if (total == 0) {
+            Arrays.fill(out, 0, ps.length, -1.0);
+            return;
+        }
+        long seen = 0;
+        int p = 0;
+        for (int i = lowIdx; i <= highIdx && p < ps.length; i++) {
+            seen += counts[i];
+            while (p < ps.length && seen >= Math.max(1L, (long) Math.ceil(ps[p] * total))) {
+                out[p++] = Math.min(max, midValue(i));
+            }
+        }
+        while (p < ps.length) out[p++] = max;
+    }
+
+    // ===================== Bucket math =====================
+    private static int index(long x) {
+        if (x < SUB_BUCKETS) return (int) Math.max(0L, x);
+        int shift = 63 - Long.numberOfLeadingZeros(x) - (SUB_BITS - 1);   // >= 1
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((x >> shift) - HALF);
+    }
+
+    private double midValue(int i) {
+        if (i == 0) return 0.0;          // zero speed / zero wait is the common case, report it exactly
+        if (i < SUB_BUCKETS) return (i + 0.5) * unit;
+        int shift = (i - SUB_BUCKETS) / HALF + 1;
+        long lower = ((long) ((i - SUB_BUCKETS) % HALF + HALF)) << shift;
+        return (lower + ((1L << shift) - 1) / 2.0) * unit;
+    }
+}
@@ -3,6 +3,7 @@ package org.example;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.Arrays;
 
 public class Main {
 
@@ -12,12 +13,52 @@ public class Main {
     public static final String TYPE_BUS = "bus";
 
     public static final String SUMOCFG_PATH = "final.sumocfg";
+    public static final String SUMO_GUI_BINARY = "sumo-gui";
+    public static final String SUMO_BINARY = "sumo";       // headless batch runs
 
     // IMPORTANT: previously you forced dropping 2nd route. Turn it OFF.
     public static final boolean DROP_SECOND_ROUTE = false;
 
     public static final double THROUGHPUT_WINDOW_SEC = 300.0; // 5 minutes
 
+    // Bulk vehicle reads via TraCI subscriptions (false = old per-call polling)
+    public static final boolean USE_TRACI_SUBSCRIPTIONS = true;
+    public static final boolean EDGE_STATS_LANES = false;   // lane subscriptions on top of the edge ones
+    public static final int BOTTLENECKS_SHOWN = 3;
+
+    // Metrics/MetricRow cadence in sim seconds. SUMO is advanced over all steps in between with a
+    // single Simulation.step(target); 0 = sample every SUMO step.
+    public static final double SAMPLE_EVERY_SIM_SECONDS = 0.5;
+
+    // Metric rows are kept compressed in memory up to this budget, older chunks spill to a mapped temp file
+    public static final long METRICS_MEMORY_BUDGET_BYTES = 8L << 20;
+
+    // Rows streamed to rolling CSV files during GUI runs, only with --stream DIR. A stream keeps its
+    // newest METRICS_SINK_MAX_FILES files and deletes older ones as it rotates.
+    public static final int METRICS_SINK_RING_SIZE = 1024;
+    public static final long METRICS_SINK_ROTATE_BYTES = 64L << 20;
+    public static final double METRICS_SINK_ROTATE_SEC = 3600.0;       // wall-clock
+    public static final int METRICS_SINK_MAX_FILES = 24;
+    public static final long METRICS_SINK_FSYNC_MS = 1000L;
+
+    // OpenMetrics endpoint on 127.0.0.1 during GUI runs, only with --metrics-port N (0 = off)
+    public static final int METRICS_HTTP_PORT = 0;
+    public static final int METRICS_HTTP_THREADS = 2;
+    public static final long METRICS_HTTP_PUBLISH_MS = 250L;   // snapshot refresh by the metrics stage
+    public static final int PERF_PANEL_REFRESH_MS = 1000;      // GUI "Performance" panel window
+
+    // Frame recordings (--record FILE): a keyframe every N sim seconds bounds seek cost in replay
+    public static final double RECORD_KEYFRAME_EVERY_SEC = 30.0;
+
+    // Simulation pipeline. Ring sizes are rounded up to a power of two. The stepper aggregates each
+    // sample and hands its metrics (no vehicle data) to the metrics stage (store, exports, sink,
+    // endpoint); that ring is lossless and only waits when the stage is a whole ring behind. Vehicle
+    // frames go straight to the UI publisher, which may skip them.
+    public static final int PIPELINE_RING_SIZE = 64;           // step->ui
+    public static final int METRICS_RING_SIZE = 1024;          // step->metrics, absorbs spill writes and GC pauses
+    public static final FrameRing.Overflow METRICS_STAGE_OVERFLOW = FrameRing.Overflow.BLOCK;
+    public static final FrameRing.Overflow UI_STAGE_OVERFLOW = FrameRing.Overflow.KEEP_LATEST;
+
     // ===================== VALIDATION =====================
     public static class Milestone3Exception extends Exception {
         public Milestone3Exception(String message) { super(message); }
@@ -38,10 +79,20 @@ public class Main {
 
     // ===================== MAIN (tiny) =====================
     public static void main(String[] args) {
+        boolean headless = args.length > 0 && "--headless".equals(args[0]);
+        // --scale: the live pipeline with offscreen components, see ScalingHarness
+        boolean scale = args.length > 0 && "--scale".equals(args[0]);
+        if (scale) System.setProperty("java.awt.headless", "true");
+
+        HeadlessRunner.Options headlessOptions = null;
+        ScalingHarness.Options scaleOptions = null;
         try {
             validateProjectSetup();
+            if (headless) headlessOptions = HeadlessRunner.parseArgs(Arrays.copyOfRange(args, 1, args.length));
+            if (scale) scaleOptions = ScalingHarness.parseArgs(Arrays.copyOfRange(args, 1, args.length));
         } catch (Milestone3Exception ex) {
             Logging.LOG.severe("Project setup error: " + ex.getMessage());
+            if (headless || scale) System.exit(2);
             JOptionPane.showMessageDialog(null, ex.getMessage(), "Project setup error", JOptionPane.ERROR_MESSAGE);
             return;
         }
@@ -52,6 +103,47 @@ public class Main {
         VehicleInjection.loadTripRoutesFromRou();
         MapVisualisation.initBoundsFromFiles();
 
-        GUI.launch();
+        if (headless) {
+            try {
+                HeadlessRunner.run(headlessOptions);
+            } catch (Exception ex) {
+                Logging.LOG.log(java.util.logging.Level.SEVERE, "Headless run failed", ex);
+                System.exit(1);
+            }
+            return;
+        }
+        if (scale) {
+            try {
+                ScalingHarness.run(scaleOptions);
+            } catch (Exception ex) {
+                Logging.LOG.log(java.util.logging.Level.SEVERE, "Scaling run failed", ex);
+                System.exit(1);
+            }
+            System.exit(0);     // the Swing timers and the EDT would keep the JVM alive
+        }
+
+        // GUI options: --record FILE (record the live run), --replay FILE (play a recording, no SUMO),
+        // --stream DIR (continuous metrics CSV, off by default), --metrics-port N (HTTP endpoint, off by default)
+        File recordFile = null, replayFile = null;
+        File streamDir = null;
+        int metricsPort = METRICS_HTTP_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) break;
+            else if ("--record".equals(args[i])) recordFile = new File(args[++i]);
+            else if ("--replay".equals(args[i])) replayFile = new File(args[++i]);
+            else if ("--stream".equals(args[i])) streamDir = new File(args[++i]);
+            else if ("--metrics-port".equals(args[i])) {
+                try {
+                    metricsPort = Integer.parseInt(args[++i].trim());
+                } catch (NumberFormatException ex) {
+                    Logging.LOG.warning("Ignoring --metrics-port " + args[i] + " (not a number)");
+                }
+            }
+        }
+        if (replayFile != null) {
+            GUI.launchReplay(replayFile);
+            return;
+        }
+        GUI.launch(recordFile, streamDir, metricsPort);
     }
 }
@@ -7,13 +7,13 @@ import javax.xml.parsers.DocumentBuilderFactory;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.w3c.dom.*;
 
@@ -41,12 +41,16 @@ public final class MapVisualisation {
         final boolean internal;
         final float laneWidth;
         final double[] xy;
+        final Path2D.Float path;     // world coordinates, drawn through the view transform
         RoadGeom(String edgeId, int laneIndex, boolean internal, float laneWidth, double[] xy) {
             this.edgeId = edgeId;
             this.laneIndex = laneIndex;
             this.internal = internal;
             this.laneWidth = laneWidth;
             this.xy = xy;
+            this.path = new Path2D.Float(Path2D.WIND_NON_ZERO, xy.length / 2);
+            path.moveTo(xy[0], xy[1]);
+            for (int k = 2; k < xy.length; k += 2) path.lineTo(xy[k], xy[k + 1]);
         }
     }
 
@@ -79,17 +83,21 @@ public final class MapVisualisation {
 
     public static void initBoundsFromFiles() {
         try {
-            String netPath = readNetFileFromSumocfg(Main.SUMOCFG_PATH);
-            if (netPath == null || netPath.isBlank()) netPath = "final.net.xml";
-            File netFile = resolveRelativeToSumocfg(netPath);
+            File netFile = resolveNetFile();
 
+            JfrEvents.NetLoad ev = netLoadBegin();
             Bounds b = readConvBoundaryFromNet(netFile);
+            netLoadEnd(ev, "bounds", netFile, b != null && b.sane() ? 1 : 0);
             if (b != null && b.sane()) {
                 NET_BOUNDS = addPadding(b, 0.03);
                 Logging.LOG.info("Map bounds loaded: " + netFile.getPath());
+                ev = netLoadBegin();
                 ROAD_GEOMS = loadRoadGeometriesFromNet(netFile);
+                netLoadEnd(ev, "road geometry", netFile, ROAD_GEOMS.size());
+                ev = netLoadBegin();
                 TLS_POSITIONS = loadTlsPositionsFromNet(netFile);
                 TLS_LABELS = buildTlsLabels(TLS_POSITIONS.keySet());
+                netLoadEnd(ev, "traffic lights", netFile, TLS_POSITIONS.size());
             } else {
                 Logging.LOG.warning("convBoundary not found; using fallback bounds.");
             }
@@ -98,13 +106,28 @@ public final class MapVisualisation {
         }
     }
 
+    private static JfrEvents.NetLoad netLoadBegin() {
+        JfrEvents.NetLoad e = new JfrEvents.NetLoad();
+        e.begin();
+        return e;
+    }
+
+    private static void netLoadEnd(JfrEvents.NetLoad e, String phase, File netFile, int items) {
+        if (!e.shouldCommit()) return;
+        e.phase = phase;
+        e.file = netFile == null ? "" : netFile.getPath();
+        e.fileSize = netFile == null ? 0L : netFile.length();
+        e.items = items;
+        e.commit();
+    }
+
     private static Bounds addPadding(Bounds b, double frac) {
         double dx = (b.maxX - b.minX) * frac;
         double dy = (b.maxY - b.minY) * frac;
         return new Bounds(b.minX - dx, b.minY - dy, b.maxX + dx, b.maxY + dy);
     }
 
-    private static Bounds readConvBoundaryFromNet(File netFile) {
+    static Bounds readConvBoundaryFromNet(File netFile) {
         try {
             if (netFile == null || !netFile.exists()) return null;
 
@@ -136,7 +159,7 @@ public final class MapVisualisation {
         }
     }
 
-    private static java.util.List<RoadGeom> loadRoadGeometriesFromNet(File netFile) {
+    static java.util.List<RoadGeom> loadRoadGeometriesFromNet(File netFile) {
         java.util.List<RoadGeom> out = new java.util.ArrayList<>();
         try {
             if (netFile == null || !netFile.exists()) return out;
@@ -199,7 +222,7 @@ public final class MapVisualisation {
         return out;
     }
 
-    private static Map<String, Point2D.Double> loadTlsPositionsFromNet(File netFile) {
+    static Map<String, Point2D.Double> loadTlsPositionsFromNet(File netFile) {
         try {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             dbf.setNamespaceAware(false);
@@ -297,7 +320,7 @@ public final class MapVisualisation {
         return out;
     }
 
-    private static double[] parseShape(String shape) {
+    static double[] parseShape(String shape) {
         String[] pts = shape.trim().split("\\s+");
         java.util.List<Double> coords = new java.util.ArrayList<>(pts.length * 2);
         for (String pt : pts) {
@@ -314,6 +337,13 @@ public final class MapVisualisation {
     }
 
     // ===================== SUMOCFG PARSING =====================
+    // net file referenced by Main.SUMOCFG_PATH (also read by FakeSumoGateway)
+    static File resolveNetFile() {
+        String netPath = readNetFileFromSumocfg(Main.SUMOCFG_PATH);
+        if (netPath == null || netPath.isBlank()) netPath = "final.net.xml";
+        return resolveRelativeToSumocfg(netPath);
+    }
+
     private static String readNetFileFromSumocfg(String sumocfgPath) {
         try {
             File f = new File(sumocfgPath);
@@ -354,9 +384,7 @@ public final class MapVisualisation {
     // ===================== MapPanel (Zoom/Pan/Rotation + filter-aware) =====================
     public static class MapPanel extends JPanel {
 
-        private final Map<String, Point2D.Double> vehicles = new ConcurrentHashMap<>();
-        private final Map<String, String> vehicleTypes = new ConcurrentHashMap<>();
-        private final Map<String, Double> vehicleSpeeds = new ConcurrentHashMap<>();
+        private final VehicleFrame.Buffer vehicles = new VehicleFrame.Buffer();
         private final Filter filter;
 
         private double viewZoom = 1.0;
@@ -364,6 +392,16 @@ public final class MapVisualisation {
         private double viewPanX = 0.0;
         private double viewPanY = 0.0;
 
+        private volatile PhaseStats paintStats = null;
+
+        // background + roads rendered for one view (EDT only). Rebuilt when the size, zoom, pan, rotation,
+        // device scale, bounds or road list differ from what it was rendered with; every other paint blits it.
+        private BufferedImage roadLayer = null;
+        private int roadLayerW, roadLayerH;
+        private double roadLayerZoom, roadLayerRot, roadLayerPanX, roadLayerPanY, roadLayerScale;
+        private Bounds roadLayerBounds = null;
+        private List<RoadGeom> roadLayerGeoms = null;
+
         private Point lastMouse = null;
         private boolean draggingPan = false;
         private boolean draggingRotate = false;
@@ -375,6 +413,9 @@ public final class MapVisualisation {
             installMapInteraction();
         }
 
+        // time every paint as PhaseStats.Phase.PAINT (null: off)
+        public void recordPaintTo(PhaseStats stats) { paintStats = stats; }
+
         private void installMapInteraction() {
             MouseAdapter ma = new MouseAdapter() {
                 @Override public void mousePressed(MouseEvent e) {
@@ -450,25 +491,6 @@ public final class MapVisualisation {
             return Math.max(lo, Math.min(hi, v));
         }
 
-        private Point2D.Double applyViewTransform(double x, double y) {
-            double cx = getWidth() / 2.0;
-            double cy = getHeight() / 2.0;
-
-            double bx = x - cx;
-            double by = y - cy;
-
-            double cos = Math.cos(viewRotationRad);
-            double sin = Math.sin(viewRotationRad);
-
-            double sx = bx * viewZoom;
-            double sy = by * viewZoom;
-
-            double rx = sx * cos - sy * sin;
-            double ry = sx * sin + sy * cos;
-
-            return new Point2D.Double(cx + rx + viewPanX, cy + ry + viewPanY);
-        }
-
         private Point2D.Double inverseViewTransform(double sx, double sy) {
             double cx = getWidth() / 2.0;
             double cy = getHeight() / 2.0;
@@ -508,11 +530,11 @@ public final class MapVisualisation {
             viewPanY = finalY - cy - ry;
         }
 
-        public void updateVehicles(Map<String, Point2D.Double> newPos, Map<String, String> newTypes, Map<String, Double> newSpeeds) {
-            vehicles.clear(); vehicleTypes.clear(); vehicleSpeeds.clear();
-            if (newPos != null) vehicles.putAll(newPos);
-            if (newTypes != null) vehicleTypes.putAll(newTypes);
-            if (newSpeeds != null) vehicleSpeeds.putAll(newSpeeds);
+        // safe to call from the simulation thread: copies into the back frame and hands it over
+        public void updateVehicles(VehicleFrame frame) {
+            if (frame == null) vehicles.back().clear(0.0);
+            else vehicles.back().copyFrom(frame);
+            vehicles.publish();
             repaint();
         }
 
@@ -524,13 +546,10 @@ public final class MapVisualisation {
             return Math.min(panelW / worldW, panelH / worldH) * viewZoom;
         }
 
-        private Point worldToScreen(double wx, double wy, Bounds b) {
-            Point2D.Double base = baseWorldToScreen(wx, wy, b);
-            Point2D.Double v = applyViewTransform(base.x, base.y);
-            return new Point((int) Math.round(v.x), (int) Math.round(v.y));
-        }
-
-        private Point2D.Double baseWorldToScreen(double wx, double wy, Bounds b) {
+        // world -> screen for the current view, built once per frame: fit the bounds into the panel
+        // with y up, then zoom and rotate about the panel centre and pan (inverseViewTransform undoes
+        // everything after the fit)
+        private AffineTransform viewTransform(Bounds b) {
             double panelW = Math.max(1, getWidth());
             double panelH = Math.max(1, getHeight());
 
@@ -538,28 +557,21 @@ public final class MapVisualisation {
             double worldH = Math.max(1e-9, b.maxY - b.minY);
 
             double fit = Math.min(panelW / worldW, panelH / worldH);
-            double contentW = worldW * fit;
-            double contentH = worldH * fit;
-
-            double xPad = (panelW - contentW) / 2.0;
-            double yPad = (panelH - contentH) / 2.0;
+            double xPad = (panelW - worldW * fit) / 2.0;
+            double yPad = (panelH - worldH * fit) / 2.0;
 
-            double sx = xPad + (wx - b.minX) * fit;
-            double sy = yPad + (wy - b.minY) * fit;
-
-            double screenY = panelH - sy;
-            return new Point2D.Double(sx, screenY);
-        }
+            double cx = getWidth() / 2.0;
+            double cy = getHeight() / 2.0;
 
-        private Path2D.Double buildPath(double[] xy, Bounds b) {
-            Path2D.Double path = new Path2D.Double();
-            Point p0 = worldToScreen(xy[0], xy[1], b);
-            path.moveTo(p0.x, p0.y);
-            for (int k = 2; k < xy.length; k += 2) {
-                Point pk = worldToScreen(xy[k], xy[k + 1], b);
-                path.lineTo(pk.x, pk.y);
-            }
-            return path;
+            AffineTransform at = new AffineTransform();
+            at.translate(cx + viewPanX, cy + viewPanY);
+            at.rotate(viewRotationRad);
+            at.scale(viewZoom, viewZoom);
+            at.translate(-cx, -cy);
+            at.translate(xPad, panelH - yPad);
+            at.scale(fit, -fit);
+            at.translate(-b.minX, -b.minY);
+            return at;
         }
 
         private void drawBackground(Graphics2D g2) {
@@ -567,78 +579,126 @@ public final class MapVisualisation {
             g2.fillRect(0, 0, getWidth(), getHeight());
         }
 
-        private void drawRoads(Graphics2D g2, Bounds b) {
-            if (ROAD_GEOMS == null || ROAD_GEOMS.isEmpty()) return;
-
-            double sc = currentScale(b);
-
-            Color outline = new Color(0x0B0F14);
-            Color road = new Color(0x111827);
-            Color roadInternal = new Color(0x1F2937);
-            Color shoulder = new Color(0x2A2F36);
-            Color marking = new Color(255,255,255,180);
-
-            for (RoadGeom rg : ROAD_GEOMS) {
-                if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
-                if (rg.xy.length < 4) continue;
+        private static final Color ROAD_OUTLINE = new Color(0x0B0F14);
+        private static final Color ROAD_SURFACE = new Color(0x111827);
+        private static final Color ROAD_SURFACE_INTERNAL = new Color(0x1F2937);
+        private static final Color ROAD_SHOULDER = new Color(0x2A2F36);
+        private static final Color ROAD_MARKING = new Color(255, 255, 255, 180);
 
-                float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
-                if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
+        // lane paths go through the view transform as they are; widths and dashes stay in pixels by
+        // dividing them by the transform's scale
+        private void drawRoads(Graphics2D g2, AffineTransform view, double sc) {
+            List<RoadGeom> geoms = ROAD_GEOMS;
+            if (geoms == null || geoms.isEmpty()) return;
 
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx + 6.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(outline);
-                g2.draw(path);
+            float pxToWorld = (float) (1.0 / Math.max(1e-12, sc));
+            AffineTransform saved = g2.getTransform();
+            g2.transform(view);
+            try {
+                drawRoadPass(g2, geoms, sc, pxToWorld, 6.0f, ROAD_OUTLINE, ROAD_OUTLINE);
+                drawRoadPass(g2, geoms, sc, pxToWorld, 2.0f, ROAD_SHOULDER, ROAD_SHOULDER);
+                drawRoadPass(g2, geoms, sc, pxToWorld, 0.0f, ROAD_SURFACE, ROAD_SURFACE_INTERNAL);
+                if (DRAW_LANE_MARKINGS) drawLaneMarkings(g2, geoms, sc, pxToWorld);
+            } finally {
+                g2.setTransform(saved);
             }
+        }
 
-            for (RoadGeom rg : ROAD_GEOMS) {
-                if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
-                if (rg.xy.length < 4) continue;
-
-                float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
-                if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
-
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx + 2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(shoulder);
-                g2.draw(path);
-            }
+        private static float lanePx(RoadGeom rg, double sc) {
+            float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
+            return rg.internal ? Math.max(3.0f, lanePx * 0.70f) : lanePx;
+        }
 
-            for (RoadGeom rg : ROAD_GEOMS) {
+        // one stroke per distinct width: lanes of a net share a handful of widths
+        private static void drawRoadPass(Graphics2D g2, List<RoadGeom> geoms, double sc, float pxToWorld,
+                                         float extraPx, Color color, Color internalColor) {
+            BasicStroke stroke = null;
+            Color current = null;
+            for (RoadGeom rg : geoms) {
                 if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
                 if (rg.xy.length < 4) continue;
 
-                float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
-                if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
-
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(rg.internal ? roadInternal : road);
-                g2.draw(path);
+                float w = (lanePx(rg, sc) + extraPx) * pxToWorld;
+                if (stroke == null || stroke.getLineWidth() != w) {
+                    stroke = new BasicStroke(w, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+                    g2.setStroke(stroke);
+                }
+                Color c = rg.internal ? internalColor : color;
+                if (c != current) {
+                    g2.setColor(c);
+                    current = c;
+                }
+                g2.draw(rg.path);
             }
+        }
 
-            if (DRAW_LANE_MARKINGS) {
-                for (RoadGeom rg : ROAD_GEOMS) {
-                    if (rg.internal) continue;
-                    if (rg.laneIndex != 0) continue;
-                    if (rg.xy.length < 4) continue;
-
-                    float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
-                    Path2D path = buildPath(rg.xy, b);
+        private static void drawLaneMarkings(Graphics2D g2, List<RoadGeom> geoms, double sc, float pxToWorld) {
+            g2.setColor(ROAD_MARKING);
+            BasicStroke stroke = null;
+            float strokePx = -1f;
+            for (RoadGeom rg : geoms) {
+                if (rg.internal) continue;
+                if (rg.laneIndex != 0) continue;
+                if (rg.xy.length < 4) continue;
 
+                float lanePx = lanePx(rg, sc);
+                if (stroke == null || lanePx != strokePx) {
                     float markW = Math.max(1.5f, lanePx * 0.10f);
                     float dashA = Math.max(12f, lanePx * 1.4f);
                     float dashB = Math.max(10f, lanePx * 1.1f);
-                    float[] dash = new float[]{dashA, dashB};
+                    float[] dash = new float[]{dashA * pxToWorld, dashB * pxToWorld};
+                    stroke = new BasicStroke(markW * pxToWorld, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND,
+                            10f, dash, 0f);
+                    strokePx = lanePx;
+                    g2.setStroke(stroke);
+                }
+                g2.draw(rg.path);
+            }
+        }
 
-                    g2.setStroke(new BasicStroke(markW, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10f, dash, 0f));
-                    g2.setColor(marking);
-                    g2.draw(path);
+        private void drawRoadLayer(Graphics2D g2, Bounds b, AffineTransform view) {
+            int w = getWidth(), h = getHeight();
+            if (w <= 0 || h <= 0) return;
+            AffineTransform dev = g2.getTransform();
+            double scale = Math.max(1.0, Math.max(Math.abs(dev.getScaleX()), Math.abs(dev.getScaleY())));
+            List<RoadGeom> geoms = ROAD_GEOMS;
+
+            if (roadLayer == null || w != roadLayerW || h != roadLayerH || scale != roadLayerScale
+                    || viewZoom != roadLayerZoom || viewRotationRad != roadLayerRot
+                    || viewPanX != roadLayerPanX || viewPanY != roadLayerPanY
+                    || b != roadLayerBounds || geoms != roadLayerGeoms) {
+                int iw = (int) Math.ceil(w * scale), ih = (int) Math.ceil(h * scale);
+                if (roadLayer == null || roadLayer.getWidth() != iw || roadLayer.getHeight() != ih) {
+                    GraphicsConfiguration gc = getGraphicsConfiguration();
+                    roadLayer = gc != null ? gc.createCompatibleImage(iw, ih, Transparency.OPAQUE)
+                            : new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
                 }
+                Graphics2D rg = roadLayer.createGraphics();
+                try {
+                    rg.scale(scale, scale);
+                    rg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    drawBackground(rg);
+                    drawRoads(rg, view, currentScale(b));
+                } finally {
+                    rg.dispose();
+                }
+                roadLayerW = w;
+                roadLayerH = h;
+                roadLayerScale = scale;
+                roadLayerZoom = viewZoom;
+                roadLayerRot = viewRotationRad;
+                roadLayerPanX = viewPanX;
+                roadLayerPanY = viewPanY;
+                roadLayerBounds = b;
+                roadLayerGeoms = geoms;
             }
+            g2.drawImage(roadLayer, 0, 0, w, h, null);
         }
 
-        private void drawTlsMarkers(Graphics2D g2, Bounds b) {
+        // next paint renders the roads again (benchmarks)
+        void invalidateRoadLayer() { roadLayerGeoms = null; }
+
+        private void drawTlsMarkers(Graphics2D g2, AffineTransform view) {
             Map<String, Point2D.Double> pos = TLS_POSITIONS;
             if (pos == null || pos.isEmpty()) return;
 
@@ -646,14 +706,16 @@ public final class MapVisualisation {
             Font f = oldF.deriveFont(Font.BOLD, 12f);
             g2.setFont(f);
             FontMetrics fm = g2.getFontMetrics();
+            double m00 = view.getScaleX(), m01 = view.getShearX(), m02 = view.getTranslateX();
+            double m10 = view.getShearY(), m11 = view.getScaleY(), m12 = view.getTranslateY();
 
             for (Map.Entry<String, Point2D.Double> e : pos.entrySet()) {
                 String tlsId = e.getKey();
                 Point2D.Double p = e.getValue();
                 if (p == null) continue;
 
-                Point s = worldToScreen(p.x, p.y, b);
-                int sx = s.x, sy = s.y;
+                int sx = (int) Math.round(m00 * p.x + m01 * p.y + m02);
+                int sy = (int) Math.round(m10 * p.x + m11 * p.y + m12);
 
                 String tag = TLS_LABELS != null ? TLS_LABELS.getOrDefault(tlsId, tlsId) : tlsId;
 
@@ -679,62 +741,84 @@ public final class MapVisualisation {
             g2.setFont(oldF);
         }
 
+        private static final Color VEH_SHADOW = new Color(0, 0, 0, 70);
+        private static final Color VEH_CAR = new Color(0xFB923C);
+        private static final Color VEH_TRUCK = new Color(0x94A3B8);
+        private static final Color VEH_TRUCK_CAB = new Color(0xFDE68A);
+        private static final Color VEH_BUS = new Color(0xFACC15);
+        private static final Color VEH_WHEEL = new Color(0x111827);
+
         private void drawVehicle(Graphics2D g2, int sx, int sy, String type) {
-            g2.setColor(new Color(0,0,0,70));
+            g2.setColor(VEH_SHADOW);
             g2.fillOval(sx - 8, sy + 2, 16, 8);
 
             if (Main.TYPE_CAR.equals(type)) {
-                g2.setColor(new Color(0xFB923C));
+                g2.setColor(VEH_CAR);
                 g2.fillRoundRect(sx - 7, sy - 5, 14, 10, 6, 6);
-                g2.setColor(new Color(0x111827));
+                g2.setColor(VEH_WHEEL);
                 g2.fillOval(sx - 6, sy + 4, 4, 4);
                 g2.fillOval(sx + 2, sy + 4, 4, 4);
             } else if (Main.TYPE_TRUCK.equals(type)) {
-                g2.setColor(new Color(0x94A3B8));
+                g2.setColor(VEH_TRUCK);
                 g2.fillRoundRect(sx - 12, sy - 6, 24, 12, 4, 4);
-                g2.setColor(new Color(0xFDE68A));
+                g2.setColor(VEH_TRUCK_CAB);
                 g2.fillRoundRect(sx + 2, sy - 6, 10, 12, 3, 3);
-                g2.setColor(new Color(0x111827));
+                g2.setColor(VEH_WHEEL);
                 g2.fillOval(sx - 10, sy + 5, 4, 4);
                 g2.fillOval(sx + 6, sy + 5, 4, 4);
             } else {
-                g2.setColor(new Color(0xFACC15));
+                g2.setColor(VEH_BUS);
                 g2.fillRoundRect(sx - 14, sy - 6, 28, 12, 6, 6);
-                g2.setColor(new Color(0x111827));
+                g2.setColor(VEH_WHEEL);
                 g2.fillOval(sx - 12, sy + 5, 4, 4);
                 g2.fillOval(sx + 8, sy + 5, 4, 4);
             }
         }
 
         @Override protected void paintComponent(Graphics g) {
+            long t0 = System.nanoTime();
+            JfrEvents.MapPaint paintEvent = new JfrEvents.MapPaint();
+            paintEvent.begin();
             super.paintComponent(g);
             Graphics2D g2 = (Graphics2D) g;
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
             Bounds b = getActiveBounds();
-            drawBackground(g2);
-            drawRoads(g2, b);
-            drawTlsMarkers(g2, b);
-
-            for (Map.Entry<String, Point2D.Double> e : vehicles.entrySet()) {
-                String id = e.getKey();
-                Point2D.Double p = e.getValue();
-                if (p == null) continue;
-
-                String type = vehicleTypes.getOrDefault(id, Main.TYPE_CAR);
-                double sp = vehicleSpeeds.getOrDefault(id, 0.0);
-
-                if (filter != null && !filter.allows(type, sp)) continue;
+            AffineTransform view = viewTransform(b);
+            drawRoadLayer(g2, b, view);
+            drawTlsMarkers(g2, view);
+
+            // vehicle positions through the same matrix, without allocating
+            double m00 = view.getScaleX(), m01 = view.getShearX(), m02 = view.getTranslateX();
+            double m10 = view.getShearY(), m11 = view.getScaleY(), m12 = view.getTranslateY();
+            VehicleFrame f = vehicles.front();
+            int drawn = 0;
+            for (int i = 0; i < f.size; i++) {
+                String type = VehicleFrame.typeName(f.type[i]);
+                if (filter != null && !filter.allows(type, f.speed[i])) continue;
+
+                double x = f.x[i], y = f.y[i];
+                drawVehicle(g2, (int) Math.round(m00 * x + m01 * y + m02), (int) Math.round(m10 * x + m11 * y + m12), type);
+                drawn++;
+            }
 
-                Point s = worldToScreen(p.x, p.y, b);
-                drawVehicle(g2, s.x, s.y, type);
+            if (paintEvent.shouldCommit()) {
+                paintEvent.vehicles = f.size;
+                paintEvent.vehiclesDrawn = drawn;
+                paintEvent.laneShapes = ROAD_GEOMS.size();
+                paintEvent.width = getWidth();
+                paintEvent.height = getHeight();
+                paintEvent.commit();
             }
+            PhaseStats stats = paintStats;
+            if (stats != null) stats.record(PhaseStats.Phase.PAINT, System.nanoTime() - t0);
         }
     }
 
     // ===================== Live Trend Chart =====================
     public static class TrendChartPanel extends JPanel {
         private final java.util.List<Double> avgWaitSec = new ArrayList<>();
+        private final java.util.List<Double> waitP90Sec = new ArrayList<>();
         private final java.util.List<Double> throughputVph = new ArrayList<>();
         private final java.util.List<Double> congestion = new ArrayList<>();
         private final int maxPoints;
@@ -747,15 +831,26 @@ public final class MapVisualisation {
             setBackground(new Color(0x0B1220));
         }
 
-        public void addSample(double avgWait, double thr, double cong) {
+        public void addSample(double avgWait, double waitP90, double thr, double cong) {
             synchronized (this) {
                 push(avgWaitSec, avgWait);
+                push(waitP90Sec, waitP90);
                 push(throughputVph, thr);
                 push(congestion, cong);
             }
             repaint();
         }
 
+        public void clear() {
+            synchronized (this) {
+                avgWaitSec.clear();
+                waitP90Sec.clear();
+                throughputVph.clear();
+                congestion.clear();
+            }
+            repaint();
+        }
+
         private void push(java.util.List<Double> series, double v) {
             series.add(v);
             while (series.size() > maxPoints) series.remove(0);
@@ -776,9 +871,10 @@ public final class MapVisualisation {
             g2.setColor(new Color(255,255,255,40));
             g2.drawRoundRect(chartX, chartY, chartW, chartH, 10, 10);
 
-            java.util.List<Double> a, t, c;
+            java.util.List<Double> a, p, t, c;
             synchronized (this) {
                 a = new ArrayList<>(avgWaitSec);
+                p = new ArrayList<>(waitP90Sec);
                 t = new ArrayList<>(throughputVph);
                 c = new ArrayList<>(congestion);
             }
@@ -790,13 +886,14 @@ public final class MapVisualisation {
                 return;
             }
 
-            drawSeries(g2, a, chartX, chartY, chartW, chartH, new Color(0x22C55E), "AvgWait(s)");
-            drawSeries(g2, t, chartX, chartY, chartW, chartH, new Color(0x3B82F6), "VPH");
-            drawSeries(g2, c, chartX, chartY, chartW, chartH, new Color(0xEF4444), "Cong");
+            drawSeries(g2, a, chartX, chartY, chartW, chartH, new Color(0x22C55E), "AvgWait(s)", 0);
+            drawSeries(g2, p, chartX, chartY, chartW, chartH, new Color(0xEAB308), "p90 Wait(s)", 1);
+            drawSeries(g2, t, chartX, chartY, chartW, chartH, new Color(0x3B82F6), "VPH", 2);
+            drawSeries(g2, c, chartX, chartY, chartW, chartH, new Color(0xEF4444), "Cong", 3);
         }
 
         private void drawSeries(Graphics2D g2, java.util.List<Double> series,
-                                int x, int y, int w, int h, Color col, String name) {
+                                int x, int y, int w, int h, Color col, String name, int row) {
 
             double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
             for (double v : series) {
@@ -826,8 +923,7 @@ public final class MapVisualisation {
 
             g2.setFont(new Font("SansSerif", Font.BOLD, 11));
             g2.setColor(new Color(col.getRed(), col.getGreen(), col.getBlue(), 200));
-            int yOff = name.equals("AvgWait(s)") ? 0 : name.equals("VPH") ? 14 : 28;
-            g2.drawString(name, x + 12, y + 18 + yOff);
+            g2.drawString(name, x + 12, y + 18 + row * 14);
         }
     }
 
@@ -0,0 +1,220 @@
+// ===================== MetricsAggregator.java =====================
+package org.example;
+
+import java.util.Arrays;
+
+// Turns a VehicleFrame (+ cumulative arrival count) into the per-step metric values.
+// No TraCI access: safe to run on any single thread (GUI stepper or headless loop).
+public final class MetricsAggregator {
+
+    // Mutable holder so a pipeline slot can be reused step after step
+    public static final class StepMetrics {
+        double simTime;
+        int active;
+        int stopped;
+        double congestion;
+        double avgWaitSec;     // -1 = waiting time not available
+        double meanSpeed;
+        double throughputVph;                   // THROUGHPUT_WINDOW_SEC (5 min)
+        double throughput1mVph, throughput15mVph, throughputRunVph;
+        double thrCarVph, thrTruckVph, thrBusVph;   // per type, 5 min
+        int visible, visCar, visTruck, visBus;
+        // percentiles, see pctIndex(); -1 = no samples
+        final double[] pct = new double[PCT_SIZE];
+
+        public double pct(int group, int metric, int stat) { return pct[pctIndex(group, metric, stat)]; }
+
+        public void copyFrom(StepMetrics o) {
+            simTime = o.simTime;
+            active = o.active;
+            stopped = o.stopped;
+            congestion = o.congestion;
+            avgWaitSec = o.avgWaitSec;
+            meanSpeed = o.meanSpeed;
+            throughputVph = o.throughputVph;
+            throughput1mVph = o.throughput1mVph;
+            throughput15mVph = o.throughput15mVph;
+            throughputRunVph = o.throughputRunVph;
+            thrCarVph = o.thrCarVph;
+            thrTruckVph = o.thrTruckVph;
+            thrBusVph = o.thrBusVph;
+            visible = o.visible;
+            visCar = o.visCar;
+            visTruck = o.visTruck;
+            visBus = o.visBus;
+            System.arraycopy(o.pct, 0, pct, 0, PCT_SIZE);
+        }
+
+        public StepMetrics copy() {
+            StepMetrics m = new StepMetrics();
+            m.copyFrom(this);
+            return m;
+        }
+    }
+
+    // ===================== Percentiles =====================
+    // groups: all vehicles + one per type code; wait and speed over the vehicles of the sample,
+    // trip duration over all trips finished so far in the run
+    public static final String[] PCT_GROUPS = {"all", Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS};
+    public static final String[] PCT_METRICS = {"wait_s", "speed_mps", "trip_s"};
+    public static final String[] PCT_STATS = {"p50", "p90", "p99", "max"};
+    public static final int G_ALL = 0;
+    public static final int M_WAIT = 0, M_SPEED = 1, M_TRIP = 2;
+    public static final int S_P50 = 0, S_P90 = 1, S_P99 = 2, S_MAX = 3;
+    static final int PCT_SIZE = PCT_GROUPS.length * PCT_METRICS.length * PCT_STATS.length;
+
+    private static final double[] PCT_QUANTILES = {0.50, 0.90, 0.99};
+
+    public static int pctIndex(int group, int metric, int stat) {
+        return (group * PCT_METRICS.length + metric) * PCT_STATS.length + stat;
+    }
+
+    // [group][metric]
+    private final LogHistogram[][] hist = new LogHistogram[PCT_GROUPS.length][PCT_METRICS.length];
+    {
+        for (LogHistogram[] g : hist) {
+            g[M_WAIT] = new LogHistogram(0.1, 1.0e6);
+            g[M_SPEED] = new LogHistogram(0.01, 100.0);
+            g[M_TRIP] = new LogHistogram(0.1, 1.0e6);
+        }
+    }
+    private final double[] quantileBuf = new double[PCT_QUANTILES.length];
+
+    private final ThroughputCounters throughput = new ThroughputCounters();
+    private long lastArrivedTotal = 0;
+    private final long[] lastByType = new long[3];
+    private long[] lastByRoute = new long[0];
+
+    // start over at the cumulative counts of f (replay seek), forgetting the throughput windows
+    public void reset(VehicleFrame f, long arrivedTotal) {
+        throughput.clear();
+        for (LogHistogram[] g : hist) g[M_TRIP].reset();
+        lastArrivedTotal = arrivedTotal;
+        System.arraycopy(f.arrivedByType, 0, lastByType, 0, lastByType.length);
+        lastByRoute = f.arrivedByRoute.clone();
+    }
+
+    // per-type / per-route windows (read on the thread that calls compute())
+    public ThroughputCounters throughput() { return throughput; }
+
+    // arrivedTotal is cumulative, so dropped frames never lose arrivals
+    public void compute(VehicleFrame f, long arrivedTotal, MapVisualisation.Filter filter, StepMetrics out) {
+        double simTime = f.simTime;
+
+        countArrivals(f, arrivedTotal);
+
+        int active = f.size;
+        int stopped = countStopped(f);
+
+        out.simTime = simTime;
+        out.active = active;
+        out.stopped = stopped;
+        out.congestion = active > 0 ? (double) stopped / active : 0.0;
+        out.avgWaitSec = computeAvgWaitSeconds(f);
+        out.meanSpeed = computeMeanSpeed(f);
+        out.throughputVph = throughput.vph(ThroughputCounters.W_5MIN, ThroughputCounters.ALL);
+        out.throughput1mVph = throughput.vph(ThroughputCounters.W_1MIN, ThroughputCounters.ALL);
+        out.throughput15mVph = throughput.vph(ThroughputCounters.W_15MIN, ThroughputCounters.ALL);
+        out.throughputRunVph = throughput.vph(ThroughputCounters.W_RUN, ThroughputCounters.ALL);
+        out.thrCarVph = throughput.vph(ThroughputCounters.W_5MIN, ThroughputCounters.typeKey(VehicleFrame.TYPE_CAR));
+        out.thrTruckVph = throughput.vph(ThroughputCounters.W_5MIN, ThroughputCounters.typeKey(VehicleFrame.TYPE_TRUCK));
+        out.thrBusVph = throughput.vph(ThroughputCounters.W_5MIN, ThroughputCounters.typeKey(VehicleFrame.TYPE_BUS));
+
+        int visibleCount = 0, visCar = 0, visTruck = 0, visBus = 0;
+        for (int i = 0; i < active; i++) {
+            byte t = f.type[i];
+            if (filter == null || filter.allows(VehicleFrame.typeName(t), f.speed[i])) {
+                visibleCount++;
+                if (t == VehicleFrame.TYPE_CAR) visCar++;
+                else if (t == VehicleFrame.TYPE_TRUCK) visTruck++;
+                else if (t == VehicleFrame.TYPE_BUS) visBus++;
+            }
+        }
+        out.visible = visibleCount;
+        out.visCar = visCar;
+        out.visTruck = visTruck;
+        out.visBus = visBus;
+
+        computePercentiles(f, out);
+    }
+
+    private void computePercentiles(VehicleFrame f, StepMetrics out) {
+        for (LogHistogram[] g : hist) {
+            g[M_WAIT].reset();
+            g[M_SPEED].reset();
+        }
+        for (int i = 0; i < f.size; i++) {
+            int g = 1 + f.type[i];
+            hist[G_ALL][M_WAIT].record(f.wait[i]);
+            hist[g][M_WAIT].record(f.wait[i]);
+            hist[G_ALL][M_SPEED].record(f.speed[i]);
+            hist[g][M_SPEED].record(f.speed[i]);
+        }
+        for (int i = 0; i < f.trips; i++) {
+            hist[G_ALL][M_TRIP].record(f.tripSec[i]);
+            hist[1 + f.tripType[i]][M_TRIP].record(f.tripSec[i]);
+        }
+
+        for (int g = 0; g < PCT_GROUPS.length; g++) {
+            for (int m = 0; m < PCT_METRICS.length; m++) {
+                LogHistogram h = hist[g][m];
+                h.percentiles(PCT_QUANTILES, quantileBuf);
+                int base = pctIndex(g, m, 0);
+                System.arraycopy(quantileBuf, 0, out.pct, base, PCT_QUANTILES.length);
+                out.pct[base + S_MAX] = h.max();
+            }
+        }
+    }
+
+    // ===================== REAL METRICS =====================
+    static double computeAvgWaitSeconds(VehicleFrame f) {
+        int n = f.size;
+        if (n == 0) return 0.0;
+
+        double sum = 0.0;
+        int cnt = 0;
+        for (int i = 0; i < n; i++) {
+            double w = f.wait[i];
+            if (!Double.isNaN(w) && !Double.isInfinite(w)) {
+                sum += w;
+                cnt++;
+            }
+        }
+        if (cnt == 0) return -1.0;
+        return sum / cnt;
+    }
+
+    static double computeMeanSpeed(VehicleFrame f) {
+        int n = f.size;
+        if (n == 0) return 0.0;
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) sum += f.speed[i];
+        return sum / n;
+    }
+
+    static int countStopped(VehicleFrame f) {
+        int stopped = 0;
+        for (int i = 0; i < f.size; i++) {
+            if (f.speed[i] < 0.1) stopped++;
+        }
+        return stopped;
+    }
+
+    // total from arrivedTotal (exact); per type / route from the collector's cumulative counts
+    private void countArrivals(VehicleFrame f, long arrivedTotal) {
+        throughput.advance(f.simTime);
+        throughput.add(ThroughputCounters.ALL, arrivedTotal - lastArrivedTotal);
+        lastArrivedTotal = arrivedTotal;
+
+        for (byte t = 0; t < lastByType.length; t++) {
+            throughput.add(ThroughputCounters.typeKey(t), f.arrivedByType[t] - lastByType[t]);
+            lastByType[t] = f.arrivedByType[t];
+        }
+        long[] byRoute = f.arrivedByRoute;
+        if (byRoute.length > lastByRoute.length) lastByRoute = Arrays.copyOf(lastByRoute, byRoute.length);
+        for (int r = 0; r < byRoute.length; r++) {
+            throughput.add(ThroughputCounters.routeKey(r), byRoute[r] - lastByRoute[r]);
+            lastByRoute[r] = byRoute[r];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// ===================== MetricsColumnFile.java =====================
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Typed, compressed, self-describing columnar export of the metric rows (".smc").
+//
+// File:   MAGIC | int version | int #columns, per column: type ('D' double / 'L' long), UTF name
+//         | int #meta, (UTF key, UTF value)... | blocks... | footer
+// Block:  a sealed MetricsStore chunk as is: int rows | int[#columns] column end offsets | column bytes
+//         (Gorilla XOR for doubles, delta-of-delta for longs; every column decodes on its own)
+// Footer: int #blocks, (long offset, int length)... | long footer offset | MAGIC
+//
+// Writing copies the store's sealed blocks without re-encoding (only the open tail chunk is encoded),
+// so an export costs little more than the I/O. Reader maps the file and decodes columns straight
+// from the mapping; block(i) hands out the mapped bytes without copying.
+public final class MetricsColumnFile {
+
+    static final byte[] MAGIC = "SUMOMCF1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final byte TYPE_DOUBLE = 'D';
+    static final byte TYPE_LONG = 'L';
+
+    private MetricsColumnFile() {}
+
+    // meta: free-form export context (selected route, filter state, ...), stored in insertion order
+    public static long write(File file, MetricsStore.Snapshot snap, Map<String, String> meta,
+                             ExportJob.Progress progress) throws IOException {
+        ByteArrayOutputStream hb = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(hb);
+        h.write(MAGIC);
+        h.writeInt(VERSION);
+        h.writeInt(MetricsStore.COLUMNS);
+        for (int c = 0; c < MetricsStore.COLUMNS; c++) {
+            h.writeByte(c < MetricsStore.DOUBLE_COLUMNS ? TYPE_DOUBLE : TYPE_LONG);
+            h.writeUTF(MetricsStore.COLUMN_NAMES[c]);
+        }
+        h.writeInt(meta.size());
+        for (Map.Entry<String, String> e : meta.entrySet()) {
+            h.writeUTF(e.getKey());
+            h.writeUTF(e.getValue() == null ? "" : e.getValue());
+        }
+        h.flush();
+
+        int blocks = snap.chunkCount();
+        long[] offsets = new long[blocks];
+        int[] lengths = new int[blocks];
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = writeFully(ch, ByteBuffer.wrap(hb.toByteArray()), 0);
+            for (int b = 0; b < blocks; b++) {
+                ByteBuffer block = snap.block(b);
+                offsets[b] = pos;
+                lengths[b] = block.remaining();
+                pos += writeFully(ch, block, pos);
+                progress.checkCancelled();
+                progress.update(b + 1, blocks);
+            }
+
+            ByteBuffer footer = ByteBuffer.allocate(4 + blocks * 12 + 8 + MAGIC.length);
+            footer.putInt(blocks);
+            for (int b = 0; b < blocks; b++) footer.putLong(offsets[b]).putInt(lengths[b]);
+            footer.putLong(pos).put(MAGIC).flip();
+            pos += writeFully(ch, footer, pos);
+            return pos;
+        }
+    }
+
+    private static long writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        long n = 0;
+        while (b.hasRemaining()) n += ch.write(b, pos + n);
+        return n;
+    }
+
+    // ===================== Reader =====================
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+        private final String[] names;
+        private final boolean[] isDouble;
+        private final Map<String, String> meta = new LinkedHashMap<>();
+        private final long[] blockOffset;
+        private final int[] blockLength;
+        private final long rows;
+
+        private Reader(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) throw new IOException("Metrics file over 2 GB: " + file);
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+                int tail = (int) size - MAGIC.length;
+                if (tail < MAGIC.length || !magicAt(0) || !magicAt(tail)) {
+                    throw new IOException("Not a metrics column file: " + file);
+                }
+                ByteBuffer in = map.duplicate();
+                in.position(MAGIC.length);
+                int version = in.getInt();
+                if (version != VERSION) throw new IOException("Unsupported metrics file version " + version);
+
+                int cols = in.getInt();
+                names = new String[cols];
+                isDouble = new boolean[cols];
+                for (int c = 0; c < cols; c++) {
+                    isDouble[c] = in.get() == TYPE_DOUBLE;
+                    names[c] = readUtf(in);
+                }
+                int metaCount = in.getInt();
+                for (int i = 0; i < metaCount; i++) meta.put(readUtf(in), readUtf(in));
+
+                in.position((int) map.getLong(tail - 8));
+                int blocks = in.getInt();
+                blockOffset = new long[blocks];
+                blockLength = new int[blocks];
+                long n = 0;
+                for (int b = 0; b < blocks; b++) {
+                    blockOffset[b] = in.getLong();
+                    blockLength[b] = in.getInt();
+                    n += MetricsStore.blockRows(block(b));
+                }
+                rows = n;
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        public static Reader open(File file) throws IOException { return new Reader(file); }
+
+        private boolean magicAt(int pos) {
+            for (int i = 0; i < MAGIC.length; i++) if (map.get(pos + i) != MAGIC[i]) return false;
+            return true;
+        }
+
+        // DataOutput.writeUTF format (modified UTF-8 equals UTF-8 for the names we write)
+        private static String readUtf(ByteBuffer in) {
+            int len = in.getShort() & 0xFFFF;
+            byte[] b = new byte[len];
+            in.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        public long rows() { return rows; }
+        public int columnCount() { return names.length; }
+        public String columnName(int c) { return names[c]; }
+        public boolean isDouble(int c) { return isDouble[c]; }
+        public Map<String, String> meta() { return Collections.unmodifiableMap(meta); }
+        public String meta(String key) { return meta.get(key); }
+
+        public int columnIndex(String name) {
+            for (int c = 0; c < names.length; c++) if (names[c].equals(name)) return c;
+            return -1;
+        }
+
+        public int blockCount() { return blockOffset.length; }
+        public int blockRows(int b) { return MetricsStore.blockRows(block(b)); }
+
+        // encoded bytes of block b, a view of the mapping (no copy)
+        public ByteBuffer block(int b) {
+            ByteBuffer v = map.duplicate();
+            v.position((int) blockOffset[b]).limit((int) blockOffset[b] + blockLength[b]);
+            return v.slice();
+        }
+
+        // out must hold blockRows(b) values
+        public void readDoubles(int column, int b, double[] out) {
+            if (!isDouble[column]) throw new IllegalArgumentException(names[column] + " is not a double column");
+            MetricsStore.decodeDoubles(block(b), column, out);
+        }
+
+        public void readLongs(int column, int b, long[] out) {
+            if (isDouble[column]) throw new IllegalArgumentException(names[column] + " is not a long column");
+            MetricsStore.decodeLongs(block(b), column, out);
+        }
+
+        // whole column; only that column's bytes are decoded
+        public double[] doubles(String name) {
+            int c = require(name);
+            double[] out = new double[(int) rows];
+            double[] buf = new double[MetricsStore.CHUNK_ROWS];
+            int at = 0;
+            for (int b = 0; b < blockCount(); b++) {
+                readDoubles(c, b, buf);
+                int n = blockRows(b);
+                System.arraycopy(buf, 0, out, at, n);
+                at += n;
+            }
+            return out;
+        }
+
+        public long[] longs(String name) {
+            int c = require(name);
+            long[] out = new long[(int) rows];
+            long[] buf = new long[MetricsStore.CHUNK_ROWS];
+            int at = 0;
+            for (int b = 0; b < blockCount(); b++) {
+                readLongs(c, b, buf);
+                int n = blockRows(b);
+                System.arraycopy(buf, 0, out, at, n);
+                at += n;
+            }
+            return out;
+        }
+
+        private int require(String name) {
+            int c = columnIndex(name);
+            if (c < 0) throw new IllegalArgumentException("No column '" + name + "', have " + Arrays.toString(names));
+            return c;
+        }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    }
+}
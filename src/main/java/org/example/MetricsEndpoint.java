@@ -0,0 +1,180 @@
+// ===================== MetricsEndpoint.java =====================
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Live simulation metrics as OpenMetrics text on http://127.0.0.1:<port>/metrics (JDK HttpServer,
+// small fixed thread pool). A scrape only formats the latest Snapshot handed out by the supplier;
+// LiveConnectionSumo fills a fresh one on the metrics stage and publishes it through a volatile
+// field, so scrapes never wait on the simulation and never reach TraCI.
+public final class MetricsEndpoint implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final TraciGateway.Command[] COMMANDS = TraciGateway.Command.values();
+
+    // one published state of the run. Only the metrics stage writes it, and only before publishing;
+    // readers must not modify it.
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot();
+
+        long publishedEpochMs;
+        double simTime;
+        long samples;
+        long arrived;                         // cumulative arrivals
+        int active, stopped, visible;
+        double congestion, meanSpeed, avgWaitSec;
+        double thr1m, thr5m, thr15m, thrRun;
+        long steps;                           // SUMO step calls (one per sample)
+        double stepSecondsSum, stepSecondsLast, stepSecondsMax;   // max: since the previous snapshot
+        double targetFactor, achievedFactor;
+        long droppedToMetrics, droppedToUi, skippedUiPublishes;
+        final long[] traciCalls = new long[COMMANDS.length];
+    }
+
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final Supplier<Snapshot> source;
+
+    private MetricsEndpoint(int port, int threads, Supplier<Snapshot> source) throws IOException {
+        this.source = source;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Metrics-HTTP-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(pool);
+        server.createContext("/metrics", this::handle);
+    }
+
+    // null when the port cannot be bound (the simulation runs without the endpoint)
+    public static MetricsEndpoint start(int port, int threads, Supplier<Snapshot> source) {
+        try {
+            MetricsEndpoint e = new MetricsEndpoint(port, threads, source);
+            e.server.start();
+            Logging.LOG.info("Metrics endpoint: http://" + e.server.getAddress().getHostString() + ":"
+                    + e.server.getAddress().getPort() + "/metrics");
+            return e;
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Metrics endpoint not started on port " + port, ex);
+            return null;
+        }
+    }
+
+    public int port() { return server.getAddress().getPort(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    // ===================== HTTP =====================
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String method = ex.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!"/metrics".equals(ex.getRequestURI().getPath())) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = format(source.get()).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    // ===================== OpenMetrics text =====================
+    static String format(Snapshot s) {
+        StringBuilder sb = new StringBuilder(4096);
+        gauge(sb, "sumo_sim_time_seconds", "Simulation time of the latest sample.", s.simTime);
+        counter(sb, "sumo_samples", "Metric samples taken.", s.samples);
+        gauge(sb, "sumo_active_vehicles", "Vehicles in the network.", s.active);
+        gauge(sb, "sumo_stopped_vehicles", "Vehicles standing still.", s.stopped);
+        gauge(sb, "sumo_visible_vehicles", "Vehicles passing the GUI filter.", s.visible);
+        counter(sb, "sumo_arrived_vehicles", "Vehicles that finished their trip.", s.arrived);
+        gauge(sb, "sumo_congestion_index", "Share of stopped vehicles (0..1).", s.congestion);
+        gauge(sb, "sumo_mean_speed_meters_per_second", "Mean speed of active vehicles.", s.meanSpeed);
+        gauge(sb, "sumo_avg_wait_seconds", "Mean accumulated waiting time of active vehicles.", s.avgWaitSec);
+
+        header(sb, "sumo_throughput_vehicles_per_hour", "gauge", "Arrivals per hour over a sliding window.");
+        sample(sb, "sumo_throughput_vehicles_per_hour", "window", "1m", s.thr1m);
+        sample(sb, "sumo_throughput_vehicles_per_hour", "window", "5m", s.thr5m);
+        sample(sb, "sumo_throughput_vehicles_per_hour", "window", "15m", s.thr15m);
+        sample(sb, "sumo_throughput_vehicles_per_hour", "window", "run", s.thrRun);
+
+        header(sb, "sumo_step_seconds", "summary", "Wall time of the SUMO step call per sample.");
+        sample(sb, "sumo_step_seconds_count", null, null, s.steps);
+        sample(sb, "sumo_step_seconds_sum", null, null, s.stepSecondsSum);
+        gauge(sb, "sumo_step_last_seconds", "Wall time of the latest SUMO step call.", s.stepSecondsLast);
+        gauge(sb, "sumo_step_max_seconds", "Longest SUMO step call since the previous snapshot.", s.stepSecondsMax);
+
+        gauge(sb, "sumo_real_time_factor_target", "Requested sim seconds per wall second.", s.targetFactor);
+        gauge(sb, "sumo_real_time_factor_achieved", "Achieved sim seconds per wall second.", s.achievedFactor);
+
+        header(sb, "sumo_pipeline_dropped_frames", "counter", "Frames dropped between pipeline stages.");
+        sample(sb, "sumo_pipeline_dropped_frames_total", "ring", "step_to_metrics", s.droppedToMetrics);
+        sample(sb, "sumo_pipeline_dropped_frames_total", "ring", "metrics_to_ui", s.droppedToUi);
+        counter(sb, "sumo_ui_publishes_skipped", "UI publishes skipped by the pacer.", s.skippedUiPublishes);
+
+        header(sb, "sumo_traci_calls", "counter", "TraCI calls by command.");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (s.traciCalls[i] > 0) sample(sb, "sumo_traci_calls_total", "command", COMMANDS[i].name(), s.traciCalls[i]);
+        }
+
+        gauge(sb, "sumo_snapshot_timestamp_seconds", "Wall clock (Unix time) of this snapshot.",
+                s.publishedEpochMs / 1000.0);
+        return sb.append("# EOF\n").toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double v) {
+        header(sb, name, "gauge", help);
+        sample(sb, name, null, null, v);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long v) {
+        header(sb, name, "counter", help);
+        sample(sb, name + "_total", null, null, v);
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String value, double v) {
+        sb.append(name);
+        if (label != null) sb.append('{').append(label).append("=\"").append(value).append("\"}");
+        sb.append(' ');
+        if (Double.isNaN(v)) sb.append("NaN");
+        else if (Double.isInfinite(v)) sb.append(v > 0 ? "+Inf" : "-Inf");
+        else if (v == Math.rint(v) && Math.abs(v) < 1e15) sb.append((long) v);
+        else sb.append(v);
+        sb.append('\n');
+    }
+}
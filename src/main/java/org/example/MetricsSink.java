@@ -0,0 +1,235 @@
+// ===================== MetricsSink.java =====================
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams every metric row to rolling CSV files while the simulation runs, so a crash loses at most
+// the last fsync interval instead of the whole run.
+//
+// offer() is called on the metrics stage and never blocks: rows go through a FrameRing of
+// preallocated slots. When the ring is full the newest row is parked in a single "pending" slot
+// and written as soon as there is room again; a row that replaces an already parked one is lost
+// and counted (coalescing keeps the latest state, not every sample).
+// The writer thread drains up to BATCH_ROWS rows per write, formats them with appendCsvRow, and
+// writes them through a Utf8ChannelWriter; force() runs every fsyncEveryMs. Files rotate
+// at rotateBytes or rotateEverySec, whichever comes first, each with its own header. Only the
+// newest maxFiles files of this sink are kept; files of earlier runs are never touched.
+public final class MetricsSink implements AutoCloseable {
+
+    private static final int BATCH_ROWS = 256;
+    private static final int BUFFER_BYTES = 1 << 17;
+    private static final DateTimeFormatter FILE_STAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter LOCAL_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    static final class Row {
+        final MetricsAggregator.StepMetrics m = new MetricsAggregator.StepMetrics();
+        int speedFactorUi;
+        boolean ruleBasedEnabled;
+        double minSpeedFilterMps;
+        long wallMs;
+
+        void set(MetricsAggregator.StepMetrics src, int speedFactorUi, boolean ruleBasedEnabled,
+                 double minSpeedFilterMps, long wallMs) {
+            m.copyFrom(src);
+            this.speedFactorUi = speedFactorUi;
+            this.ruleBasedEnabled = ruleBasedEnabled;
+            this.minSpeedFilterMps = minSpeedFilterMps;
+            this.wallMs = wallMs;
+        }
+
+        void set(Row o) { set(o.m, o.speedFactorUi, o.ruleBasedEnabled, o.minSpeedFilterMps, o.wallMs); }
+    }
+
+    private final File dir;
+    private final long rotateBytes;
+    private final long rotateEveryMs;
+    private final long fsyncEveryMs;
+    private final int maxFiles;
+
+    private final FrameRing<Row> ring;
+    private final Row pending = new Row();      // producer only
+    private boolean hasPending = false;
+    private final AtomicLong lost = new AtomicLong(0);
+    private volatile long delayed = 0;
+
+    private final Thread writer;
+    private volatile long written = 0;
+    private volatile int filesOpened = 0;
+    private volatile IOException failure = null;
+
+    // writer-thread state
+    private Utf8ChannelWriter out;
+    private final ArrayDeque<File> files = new ArrayDeque<>();    // oldest first
+    private volatile int filesDeleted = 0;
+    private long fileOpenedMs, lastSyncMs;
+    private final StringBuilder batch = new StringBuilder(BATCH_ROWS * 512);
+    private long lastTagSec = Long.MIN_VALUE;
+    private String lastTag = "";
+
+    public MetricsSink(File dir, int ringSize, long rotateBytes, double rotateEverySec, long fsyncEveryMs, int maxFiles) {
+        this.dir = dir;
+        this.rotateBytes = rotateBytes;
+        this.rotateEveryMs = Math.round(rotateEverySec * 1000.0);
+        this.fsyncEveryMs = fsyncEveryMs;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.ring = new FrameRing<>("metrics->sink", ringSize, FrameRing.Overflow.DROP_NEWEST, Row::new);
+        this.writer = new Thread(this::runWriter, "Metrics-Sink");
+        this.writer.setDaemon(true);
+    }
+
+    public static MetricsSink start(File dir) {
+        MetricsSink s = new MetricsSink(dir, Main.METRICS_SINK_RING_SIZE, Main.METRICS_SINK_ROTATE_BYTES,
+                Main.METRICS_SINK_ROTATE_SEC, Main.METRICS_SINK_FSYNC_MS, Main.METRICS_SINK_MAX_FILES);
+        s.writer.start();
+        Logging.LOG.info("Streaming metric rows to " + dir.getAbsolutePath());
+        return s;
+    }
+
+    // ===================== Producer (metrics stage) =====================
+    public void offer(MetricsAggregator.StepMetrics m, int speedFactorUi, boolean ruleBasedEnabled, double minSpeedFilterMps) {
+        long now = System.currentTimeMillis();
+        if (hasPending) {
+            Row slot = ring.claim();
+            if (slot != null) {
+                slot.set(pending);
+                ring.publish();
+                hasPending = false;
+            }
+        }
+        Row slot = hasPending ? null : ring.claim();
+        if (slot != null) {
+            slot.set(m, speedFactorUi, ruleBasedEnabled, minSpeedFilterMps, now);
+            ring.publish();
+            return;
+        }
+        if (hasPending) lost.incrementAndGet();
+        else delayed++;
+        pending.set(m, speedFactorUi, ruleBasedEnabled, minSpeedFilterMps, now);
+        hasPending = true;
+    }
+
+    // flushes what is queued (including a parked row) and waits for the writer
+    @Override
+    public void close() {
+        if (hasPending) {
+            Row slot;
+            while ((slot = ring.claim()) == null && writer.isAlive()) Thread.onSpinWait();
+            if (slot != null) {
+                slot.set(pending);
+                ring.publish();
+            }
+            hasPending = false;
+        }
+        ring.close();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        Logging.LOG.info("Metrics sink closed: " + describe());
+    }
+
+    public String describe() {
+        return String.format(Locale.US, "%d rows written in %d file(s) (%d oldest deleted), %d delayed while full, %d lost%s",
+                written, filesOpened, filesDeleted, delayed, lost.get(),
+                failure == null ? "" : ", failed: " + failure.getMessage());
+    }
+
+    // ===================== Writer thread =====================
+    private void runWriter() {
+        try {
+            Row r;
+            while ((r = ring.take()) != null) {
+                int n = 0;
+                do {
+                    format(r);
+                    ring.release();
+                    n++;
+                } while (n < BATCH_ROWS && (r = ring.poll()) != null);
+                writeBatch(n);
+            }
+            closeFile();
+        } catch (IOException ex) {
+            failure = ex;
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Metrics sink failed; streaming stopped.", ex);
+            drainAfterFailure();
+        }
+    }
+
+    private void format(Row r) {
+        long sec = r.wallMs / 1000L;
+        if (sec != lastTagSec) {
+            lastTag = LOCAL_TIME.format(Instant.ofEpochMilli(r.wallMs));
+            lastTagSec = sec;
+        }
+        LiveConnectionSumo.appendCsvRow(batch,
+                LiveConnectionSumo.MetricRow.from(r.m, r.speedFactorUi, r.ruleBasedEnabled, lastTag),
+                "", r.minSpeedFilterMps);
+    }
+
+    private void writeBatch(int rows) throws IOException {
+        long now = System.currentTimeMillis();
+        if (out == null || out.bytes() >= rotateBytes || now - fileOpenedMs >= rotateEveryMs) rotate(now);
+
+        out.write(batch);
+        batch.setLength(0);
+        out.flush();
+        written += rows;
+
+        if (now - lastSyncMs >= fsyncEveryMs) {
+            out.force();
+            lastSyncMs = now;
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        closeFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getAbsolutePath());
+        File f = new File(dir, "traffic_metrics_" + FILE_STAMP.format(Instant.ofEpochMilli(now))
+                + "_" + (filesOpened + 1) + ".csv");
+        out = new Utf8ChannelWriter(f, BUFFER_BYTES);
+        fileOpenedMs = now;
+        lastSyncMs = now;
+        filesOpened++;
+        files.addLast(f);
+        while (files.size() > maxFiles) {
+            File old = files.removeFirst();
+            if (old.delete()) filesDeleted++;
+            else Logging.LOG.warning("Cannot delete old metrics stream file " + old.getAbsolutePath());
+        }
+
+        StringBuilder header = new StringBuilder();
+        LiveConnectionSumo.appendCsvHeader(header);
+        out.write(header);
+        Logging.LOG.info("Metrics stream file: " + f.getAbsolutePath());
+    }
+
+    private void closeFile() throws IOException {
+        if (out == null) return;
+        try {
+            out.force();
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    // keep consuming so the producer sees no back-pressure; rows are counted as lost
+    private void drainAfterFailure() {
+        try { if (out != null) out.close(); } catch (IOException ignored) {}
+        out = null;
+        while (ring.take() != null) {
+            ring.release();
+            lost.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,537 @@
+// ===================== MetricsStore.java =====================
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+// Columnar, append-only store for the per-sample metric rows (replaces the synchronized MetricRow list).
+//
+// Rows go into a chunk of primitive columns (CHUNK_ROWS rows). A full chunk is sealed: every double
+// column is Gorilla-encoded (XOR with the previous value, leading/trailing-zero window), every long
+// column delta-of-delta encoded, each column separately so it can be decoded alone. Sealed chunks
+// stay on the heap until their bytes exceed the memory budget; the oldest are then moved into a
+// memory-mapped spill file. The sealed block is also the block format of MetricsColumnFile.
+//
+// One writer (the metrics stage). Readers call snapshot() from any thread and never block it:
+// the row count is published through a volatile after the values are written, chunks are only
+// ever appended, and a chunk's storage is swapped (raw -> heap -> mapped) by replacing one volatile.
+//
+// The writer closes the store when the run ends: the spill file's channel is closed and the file
+// deleted. Spilled chunks stay readable (a mapping outlives its channel) until the store is dropped.
+public final class MetricsStore implements AutoCloseable {
+
+    public static final int CHUNK_ROWS = 1024;
+    private static final int SPILL_SEGMENT_BYTES = 16 << 20;
+
+    // ---- column layout ----
+    static final int L_EPOCH_SEC = 0, L_ACTIVE = 1, L_STOPPED = 2, L_SPEED_FACTOR = 3, L_VISIBLE = 4,
+            L_VIS_CAR = 5, L_VIS_TRUCK = 6, L_VIS_BUS = 7, L_RULE_BASED = 8;
+    static final int LONG_COLUMNS = 9;
+
+    static final int D_SIM_TIME = 0, D_CONGESTION = 1, D_AVG_WAIT = 2, D_MEAN_SPEED = 3, D_THR = 4,
+            D_THR_1M = 5, D_THR_15M = 6, D_THR_RUN = 7, D_THR_CAR = 8, D_THR_TRUCK = 9, D_THR_BUS = 10,
+            D_PCT = 11;
+    static final int DOUBLE_COLUMNS = D_PCT + MetricsAggregator.PCT_SIZE;
+    static final int COLUMNS = DOUBLE_COLUMNS + LONG_COLUMNS;   // block order: doubles, then longs
+
+    // names as in the CSV export (percentiles: <metric>_<stat>_<group>)
+    static final String[] COLUMN_NAMES = new String[COLUMNS];
+    static {
+        String[] d = {"sim_time", "congestion_index", "avg_wait_seconds", "mean_speed_mps", "throughput_vph",
+                "throughput_1m_vph", "throughput_15m_vph", "throughput_run_vph",
+                "throughput_car_vph", "throughput_truck_vph", "throughput_bus_vph"};
+        System.arraycopy(d, 0, COLUMN_NAMES, 0, d.length);
+        int i = D_PCT;
+        for (String g : MetricsAggregator.PCT_GROUPS)
+            for (String m : MetricsAggregator.PCT_METRICS)
+                for (String st : MetricsAggregator.PCT_STATS) COLUMN_NAMES[i++] = m + "_" + st + "_" + g;
+        String[] l = {"export_epoch_sec", "active_vehicles", "stopped_vehicles", "speed_factor_ui",
+                "visible_vehicles", "visible_cars", "visible_trucks", "visible_buses", "rule_based_enabled"};
+        System.arraycopy(l, 0, COLUMN_NAMES, DOUBLE_COLUMNS, l.length);
+    }
+
+    private static final DateTimeFormatter LOCAL_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // storage of one chunk; replaced as a whole, never mutated after publication (except raw tails)
+    private static final class Raw {
+        final double[][] d = new double[DOUBLE_COLUMNS][CHUNK_ROWS];
+        final long[][] l = new long[LONG_COLUMNS][CHUNK_ROWS];
+    }
+
+    // block: int rows | int[COLUMNS] end offset of each column's bytes | column bytes
+    private static final class Sealed {
+        final ByteBuffer block;          // heap, or a read-only view of the spill region
+        final int length;
+
+        Sealed(ByteBuffer block) { this.block = block; this.length = block.limit(); }
+    }
+
+    private static final class Chunk {
+        volatile Raw raw;                // the open chunk; null once sealed
+        volatile Sealed sealed;
+    }
+
+    private final long memoryBudgetBytes;
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile long rows = 0;
+
+    // writer-side state
+    private Raw open = null;
+    private int openRows = 0;
+    private int heapChunkFrom = 0;               // oldest chunk still on the heap
+    private long heapBytes = 0, spilledBytes = 0, rawBytesSealed = 0;
+    private final BitWriter bits = new BitWriter();
+
+    private File spillFile;
+    private FileChannel spillChannel;
+    private MappedByteBuffer spillSegment;
+    private long spillSegmentStart = 0;
+    private boolean closed = false;
+
+    public MetricsStore(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    // ===================== Writer (metrics stage) =====================
+    public void append(MetricsAggregator.StepMetrics m, int speedFactorUi, boolean ruleBasedEnabled) {
+        if (open == null) openChunk();
+        int r = openRows;
+        long[][] l = open.l;
+        l[L_EPOCH_SEC][r] = System.currentTimeMillis() / 1000L;
+        l[L_ACTIVE][r] = m.active;
+        l[L_STOPPED][r] = m.stopped;
+        l[L_SPEED_FACTOR][r] = speedFactorUi;
+        l[L_VISIBLE][r] = m.visible;
+        l[L_VIS_CAR][r] = m.visCar;
+        l[L_VIS_TRUCK][r] = m.visTruck;
+        l[L_VIS_BUS][r] = m.visBus;
+        l[L_RULE_BASED][r] = ruleBasedEnabled ? 1 : 0;
+
+        double[][] d = open.d;
+        d[D_SIM_TIME][r] = m.simTime;
+        d[D_CONGESTION][r] = m.congestion;
+        d[D_AVG_WAIT][r] = m.avgWaitSec;
+        d[D_MEAN_SPEED][r] = m.meanSpeed;
+        d[D_THR][r] = m.throughputVph;
+        d[D_THR_1M][r] = m.throughput1mVph;
+        d[D_THR_15M][r] = m.throughput15mVph;
+        d[D_THR_RUN][r] = m.throughputRunVph;
+        d[D_THR_CAR][r] = m.thrCarVph;
+        d[D_THR_TRUCK][r] = m.thrTruckVph;
+        d[D_THR_BUS][r] = m.thrBusVph;
+        for (int i = 0; i < MetricsAggregator.PCT_SIZE; i++) d[D_PCT + i][r] = m.pct[i];
+
+        openRows = r + 1;
+        rows = rows + 1;                         // publish
+        if (openRows == CHUNK_ROWS) sealOpen();
+    }
+
+    private void openChunk() {
+        int idx = (int) (rows / CHUNK_ROWS);
+        Chunk[] cs = chunks;
+        if (idx >= cs.length) cs = Arrays.copyOf(cs, cs.length * 2);
+        Chunk c = new Chunk();
+        open = new Raw();
+        openRows = 0;
+        c.raw = open;
+        cs[idx] = c;
+        chunks = cs;                             // published before the first row of the chunk
+    }
+
+    private void sealOpen() {
+        Chunk c = chunks[(int) ((rows - 1) / CHUNK_ROWS)];
+        ByteBuffer enc = encodeBlock(open.d, open.l, CHUNK_ROWS, bits);
+        c.sealed = new Sealed(enc);
+        c.raw = null;
+        heapBytes += enc.limit();
+        rawBytesSealed += (long) (DOUBLE_COLUMNS + LONG_COLUMNS) * CHUNK_ROWS * 8;
+        open = null;
+        spillOverBudget();
+    }
+
+    private void spillOverBudget() {
+        if (closed) return;                      // rows appended after close() stay on the heap
+        Chunk[] cs = chunks;
+        int sealedCount = (int) (rows / CHUNK_ROWS);
+        while (heapBytes > memoryBudgetBytes && heapChunkFrom < sealedCount) {
+            Chunk c = cs[heapChunkFrom];
+            Sealed s = c.sealed;
+            try {
+                c.sealed = spill(s.block);
+            } catch (IOException ex) {
+                Logging.LOG.log(java.util.logging.Level.WARNING, "Metrics spill failed; keeping rows on the heap.", ex);
+                heapChunkFrom = sealedCount;     // stop trying; the budget is soft
+                return;
+            }
+            heapBytes -= s.length;
+            spilledBytes += s.length;
+            heapChunkFrom++;
+        }
+    }
+
+    private Sealed spill(ByteBuffer b) throws IOException {
+        if (spillChannel == null) {
+            spillFile = File.createTempFile("traffic_metrics", ".spill");
+            spillFile.deleteOnExit();
+            spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+            Logging.LOG.info("Metrics over " + (memoryBudgetBytes >> 10) + " KB in memory; spilling to " + spillFile.getAbsolutePath());
+        }
+        int len = b.limit();
+        if (spillSegment == null || spillSegment.remaining() < len) {
+            if (spillSegment != null) spillSegmentStart += spillSegment.position();
+            spillSegment = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillSegmentStart,
+                    Math.max(SPILL_SEGMENT_BYTES, len));
+        }
+        int at = spillSegment.position();
+        spillSegment.put(b.duplicate());
+        ByteBuffer view = spillSegment.duplicate();
+        view.position(at).limit(at + len);
+        return new Sealed(view.slice().asReadOnlyBuffer());
+    }
+
+    // writer thread, after the last append; idempotent
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        spillSegment = null;
+        if (spillChannel == null) return;
+        try {
+            spillChannel.close();
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Closing metrics spill file failed", ex);
+        }
+        spillChannel = null;
+        if (!spillFile.delete()) Logging.LOG.fine("Spill file stays until exit: " + spillFile.getAbsolutePath());
+    }
+
+    // ===================== Readers (any thread) =====================
+    public long size() { return rows; }
+
+    // rows [0, size()) as of now; appends after this call are not visible through it
+    public Snapshot snapshot() {
+        long n = rows;
+        return new Snapshot(chunks, n);
+    }
+
+    public String describe() {
+        long sealedRaw = rawBytesSealed, stored = heapBytes + spilledBytes;
+        return String.format(Locale.US, "%d rows, %d KB on heap, %d KB spilled, compression %.1fx",
+                rows, heapBytes >> 10, spilledBytes >> 10, stored == 0 ? 1.0 : sealedRaw / (double) stored);
+    }
+
+    public static final class Snapshot implements Iterable<LiveConnectionSumo.MetricRow> {
+        private final Chunk[] chunks;
+        private final long rows;
+
+        Snapshot(Chunk[] chunks, long rows) { this.chunks = chunks; this.rows = rows; }
+
+        public long size() { return rows; }
+
+        public int chunkCount() { return (int) ((rows + CHUNK_ROWS - 1) / CHUNK_ROWS); }
+
+        // encoded block of one chunk, limited to this snapshot's rows; sealed blocks are shared
+        // read-only (heap or mapped), the open tail is encoded on the calling thread
+        ByteBuffer block(int chunk) {
+            Chunk c = chunks[chunk];
+            int n = (int) Math.min(CHUNK_ROWS, rows - (long) chunk * CHUNK_ROWS);
+            Raw raw = c.raw;
+            if (raw != null) return encodeBlock(raw.d, raw.l, n, new BitWriter());
+            ByteBuffer b = c.sealed.block.duplicate();
+            if (n == CHUNK_ROWS) return b;
+            // sealed after this snapshot was taken: cut it back to the snapshot
+            double[][] d = new double[DOUBLE_COLUMNS][CHUNK_ROWS];
+            long[][] l = new long[LONG_COLUMNS][CHUNK_ROWS];
+            decodeBlock(b, d, l);
+            return encodeBlock(d, l, n, new BitWriter());
+        }
+
+        public LiveConnectionSumo.MetricRow last() {
+            if (rows == 0) return null;
+            Cursor c = new Cursor();
+            c.load((int) ((rows - 1) / CHUNK_ROWS));
+            return c.row((int) ((rows - 1) % CHUNK_ROWS));
+        }
+
+        // one whole column (D_* index); sealed chunks decode only that column's bytes
+        public double[] doubles(int column) {
+            double[] out = new double[(int) rows];
+            double[] buf = null;
+            for (int k = 0, at = 0; k < chunkCount(); k++, at += CHUNK_ROWS) {
+                int n = (int) Math.min(CHUNK_ROWS, rows - at);
+                Chunk c = chunks[k];
+                Raw raw = c.raw;
+                if (raw != null) {
+                    System.arraycopy(raw.d[column], 0, out, at, n);
+                    continue;
+                }
+                if (buf == null) buf = new double[CHUNK_ROWS];
+                decodeDoubles(c.sealed.block, column, buf);
+                System.arraycopy(buf, 0, out, at, n);
+            }
+            return out;
+        }
+
+        // one whole column (L_* index)
+        public long[] longs(int column) {
+            long[] out = new long[(int) rows];
+            long[] buf = null;
+            for (int k = 0, at = 0; k < chunkCount(); k++, at += CHUNK_ROWS) {
+                int n = (int) Math.min(CHUNK_ROWS, rows - at);
+                Chunk c = chunks[k];
+                Raw raw = c.raw;
+                if (raw != null) {
+                    System.arraycopy(raw.l[column], 0, out, at, n);
+                    continue;
+                }
+                if (buf == null) buf = new long[CHUNK_ROWS];
+                decodeLongs(c.sealed.block, DOUBLE_COLUMNS + column, buf);
+                System.arraycopy(buf, 0, out, at, n);
+            }
+            return out;
+        }
+
+        @Override
+        public Iterator<LiveConnectionSumo.MetricRow> iterator() {
+            return new Iterator<LiveConnectionSumo.MetricRow>() {
+                final Cursor c = new Cursor();
+                long next = 0;
+                int loaded = -1;
+
+                @Override public boolean hasNext() { return next < rows; }
+
+                @Override
+                public LiveConnectionSumo.MetricRow next() {
+                    if (next >= rows) throw new NoSuchElementException();
+                    int chunk = (int) (next / CHUNK_ROWS);
+                    if (chunk != loaded) { c.load(chunk); loaded = chunk; }
+                    return c.row((int) (next++ % CHUNK_ROWS));
+                }
+            };
+        }
+
+        // one decoded chunk (raw chunks are read in place)
+        private final class Cursor {
+            double[][] d;
+            long[][] l;
+            private double[][] dBuf;
+            private long[][] lBuf;
+            private long lastEpoch = Long.MIN_VALUE;
+            private String lastTag;
+
+            void load(int chunk) {
+                Chunk c = chunks[chunk];
+                Raw raw = c.raw;
+                if (raw != null) {               // rows below the snapshot size are final
+                    d = raw.d;
+                    l = raw.l;
+                    return;
+                }
+                if (dBuf == null) {
+                    dBuf = new double[DOUBLE_COLUMNS][CHUNK_ROWS];
+                    lBuf = new long[LONG_COLUMNS][CHUNK_ROWS];
+                }
+                decodeBlock(c.sealed.block, dBuf, lBuf);
+                d = dBuf;
+                l = lBuf;
+            }
+
+            LiveConnectionSumo.MetricRow row(int r) {
+                long epoch = l[L_EPOCH_SEC][r];
+                if (epoch != lastEpoch) {
+                    lastTag = LOCAL_TIME.format(Instant.ofEpochSecond(epoch));
+                    lastEpoch = epoch;
+                }
+                double[] pct = new double[MetricsAggregator.PCT_SIZE];
+                for (int i = 0; i < pct.length; i++) pct[i] = d[D_PCT + i][r];
+                return new LiveConnectionSumo.MetricRow(lastTag, d[D_SIM_TIME][r],
+                        (int) l[L_ACTIVE][r], (int) l[L_STOPPED][r],
+                        d[D_CONGESTION][r], d[D_AVG_WAIT][r], d[D_MEAN_SPEED][r],
+                        d[D_THR][r], d[D_THR_1M][r], d[D_THR_15M][r], d[D_THR_RUN][r],
+                        d[D_THR_CAR][r], d[D_THR_TRUCK][r], d[D_THR_BUS][r], pct, (int) l[L_SPEED_FACTOR][r],
+                        (int) l[L_VISIBLE][r], (int) l[L_VIS_CAR][r], (int) l[L_VIS_TRUCK][r], (int) l[L_VIS_BUS][r],
+                        l[L_RULE_BASED][r] != 0);
+            }
+        }
+    }
+
+    // ===================== Chunk codec =====================
+    private static final int BLOCK_HEADER = 4 + 4 * COLUMNS;
+
+    static ByteBuffer encodeBlock(double[][] d, long[][] l, int n, BitWriter w) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BLOCK_HEADER + n * COLUMNS);
+        out.write(new byte[BLOCK_HEADER], 0, BLOCK_HEADER);
+        int[] end = new int[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            w.reset();
+            if (c < DOUBLE_COLUMNS) encodeDoubles(w, d[c], n);
+            else encodeLongs(w, l[c - DOUBLE_COLUMNS], n);
+            byte[] b = w.toBytes();
+            out.write(b, 0, b.length);
+            end[c] = out.size() - BLOCK_HEADER;
+        }
+        ByteBuffer block = ByteBuffer.wrap(out.toByteArray());
+        block.putInt(0, n);
+        for (int c = 0; c < COLUMNS; c++) block.putInt(4 + 4 * c, end[c]);
+        return block;
+    }
+
+    static int blockRows(ByteBuffer block) { return block.getInt(0); }
+
+    // one column of a block; reads straight from the (possibly mapped) buffer
+    static void decodeDoubles(ByteBuffer block, int column, double[] out) {
+        decodeDoubles(columnReader(block, column), out, blockRows(block));
+    }
+
+    static void decodeLongs(ByteBuffer block, int column, long[] out) {
+        decodeLongs(columnReader(block, column), out, blockRows(block));
+    }
+
+    private static BitReader columnReader(ByteBuffer block, int column) {
+        int start = column == 0 ? 0 : block.getInt(4 + 4 * (column - 1));
+        return new BitReader(block, BLOCK_HEADER + start);
+    }
+
+    private static void decodeBlock(ByteBuffer block, double[][] d, long[][] l) {
+        for (int c = 0; c < DOUBLE_COLUMNS; c++) decodeDoubles(block, c, d[c]);
+        for (int c = 0; c < LONG_COLUMNS; c++) decodeLongs(block, DOUBLE_COLUMNS + c, l[c]);
+    }
+
+    // Gorilla: '0' same value | '10' meaningful bits inside the previous window | '11' 6b leading, 6b length, bits
+    private static void encodeDoubles(BitWriter w, double[] v, int n) {
+        long prev = Double.doubleToRawLongBits(v[0]);
+        w.write(prev, 64);
+        int prevLead = -1, prevTrail = 0;
+        for (int i = 1; i < n; i++) {
+            long cur = Double.doubleToRawLongBits(v[i]);
+            long x = cur ^ prev;
+            prev = cur;
+            if (x == 0) { w.write(0, 1); continue; }
+            int lead = Long.numberOfLeadingZeros(x), trail = Long.numberOfTrailingZeros(x);
+            if (prevLead >= 0 && lead >= prevLead && trail >= prevTrail) {
+                w.write(0b10, 2);
+                w.write(x >>> prevTrail, 64 - prevLead - prevTrail);
+            } else {
+                int len = 64 - lead - trail;     // 1..64, stored as len - 1
+                w.write(0b11, 2);
+                w.write(lead, 6);
+                w.write(len - 1, 6);
+                w.write(x >>> trail, len);
+                prevLead = lead;
+                prevTrail = trail;
+            }
+        }
+    }
+
+    private static void decodeDoubles(BitReader r, double[] out, int n) {
+        long prev = r.read(64);
+        out[0] = Double.longBitsToDouble(prev);
+        int lead = 0, trail = 0;
+        for (int i = 1; i < n; i++) {
+            if (r.read(1) != 0) {
+                if (r.read(1) != 0) {
+                    lead = (int) r.read(6);
+                    trail = 64 - lead - ((int) r.read(6) + 1);
+                }
+                prev ^= r.read(64 - lead - trail) << trail;
+            }
+            out[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    // delta-of-delta, zigzag, in '0' | '10'+7b | '110'+12b | '1110'+20b | '1111'+64b
+    private static void encodeLongs(BitWriter w, long[] v, int n) {
+        w.write(v[0], 64);
+        long prevDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long delta = v[i] - v[i - 1];
+            long z = FrameRecorder.zigzag(delta - prevDelta);
+            prevDelta = delta;
+            if (z == 0) w.write(0, 1);
+            else if (z < (1L << 7)) { w.write(0b10, 2); w.write(z, 7); }
+            else if (z < (1L << 12)) { w.write(0b110, 3); w.write(z, 12); }
+            else if (z < (1L << 20)) { w.write(0b1110, 4); w.write(z, 20); }
+            else { w.write(0b1111, 4); w.write(z, 64); }
+        }
+    }
+
+    private static void decodeLongs(BitReader r, long[] out, int n) {
+        out[0] = r.read(64);
+        long prevDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long z;
+            if (r.read(1) == 0) z = 0;
+            else if (r.read(1) == 0) z = r.read(7);
+            else if (r.read(1) == 0) z = r.read(12);
+            else if (r.read(1) == 0) z = r.read(20);
+            else z = r.read(64);
+            prevDelta += FrameRecorder.unzigzag(z);
+            out[i] = out[i - 1] + prevDelta;
+        }
+    }
+
+    static final class BitWriter {
+        private long[] words = new long[1 << 12];
+        private long bitPos = 0;
+
+        void reset() {
+            Arrays.fill(words, 0, (int) ((bitPos + 63) >>> 6), 0L);
+            bitPos = 0;
+        }
+
+        // low `n` bits of v, most significant first (n = 1..64)
+        void write(long v, int n) {
+            if (n < 64) v &= (1L << n) - 1;
+            int wi = (int) (bitPos >>> 6), used = (int) (bitPos & 63);
+            if (wi + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+            int free = 64 - used;
+            if (n <= free) {
+                words[wi] |= v << (free - n);
+            } else {
+                words[wi] |= v >>> (n - free);
+                words[wi + 1] |= v << (64 - (n - free));
+            }
+            bitPos += n;
+        }
+
+        byte[] toBytes() {
+            int len = (int) ((bitPos + 7) >>> 3);
+            byte[] b = new byte[len];
+            for (int i = 0; i < len; i++) b[i] = (byte) (words[i >>> 3] >>> (56 - 8 * (i & 7)));
+            return b;
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer b;
+        private long bitPos;
+
+        BitReader(ByteBuffer b, int byteOffset) { this.b = b; this.bitPos = (long) byteOffset << 3; }
+
+        long read(int n) {
+            long v = 0;
+            while (n > 0) {
+                int bi = (int) (bitPos >>> 3), off = (int) (bitPos & 7);
+                int take = Math.min(n, 8 - off);
+                int bitsOfByte = ((b.get(bi) & 0xFF) >>> (8 - off - take)) & ((1 << take) - 1);
+                v = (v << take) | bitsOfByte;
+                n -= take;
+                bitPos += take;
+            }
+            return v;
+        }
+    }
+}
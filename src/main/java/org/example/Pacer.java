@@ -0,0 +1,114 @@
+// ===================== Pacer.java =====================
+package org.example;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Keeps sim time in step with the wall clock at a target real-time factor (sim seconds per wall second).
+// Sleeps only for the time the step did not already use. When behind schedule it never sleeps and
+// tells the caller to skip UI publishes until it has caught up; lag beyond MAX_LAG_SEC is forgiven
+// (re-anchored) instead of being accumulated.
+public final class Pacer {
+
+    public static final double UNTHROTTLED = 0.0;
+
+    private static final double BEHIND_TOLERANCE_SEC = 0.050;
+    private static final double MAX_LAG_SEC = 1.0;
+    private static final long MIN_PUBLISH_INTERVAL_NS = 100_000_000L;   // keep the UI alive when behind
+    private static final long UNTHROTTLED_PUBLISH_INTERVAL_NS = 16_000_000L;   // ~60 fps
+    private static final long REPORT_WINDOW_NS = 1_000_000_000L;
+
+    private volatile double targetFactor;
+    private volatile boolean reanchor = true;
+
+    private long anchorWallNs;
+    private double anchorSimTime;
+    private long lastPublishNs = 0;
+
+    private long windowWallNs = -1;
+    private double windowSimTime;
+    private volatile double achievedFactor = 0.0;
+    private long skippedPublishes = 0;
+
+    public Pacer(double targetFactor) {
+        setTargetFactor(targetFactor);
+    }
+
+    // <= 0 (or UNTHROTTLED) = run as fast as possible
+    public void setTargetFactor(double factor) {
+        targetFactor = (factor > 0 && Double.isFinite(factor)) ? factor : UNTHROTTLED;
+        reanchor = true;
+    }
+
+    public double getTargetFactor() { return targetFactor; }
+    public boolean isUnthrottled() { return targetFactor <= 0; }
+    public double getAchievedFactor() { return achievedFactor; }
+    public long getSkippedPublishes() { return skippedPublishes; }
+
+    // Call once per step after Simulation.step(). Returns true if this step should be published to the UI.
+    public boolean pace(double simTime) throws InterruptedException {
+        long now = System.nanoTime();
+        updateAchieved(now, simTime);
+
+        double factor = targetFactor;
+        if (factor <= 0) return publishEvery(now, UNTHROTTLED_PUBLISH_INTERVAL_NS);
+
+        if (reanchor) {
+            reanchor = false;
+            anchorWallNs = now;
+            anchorSimTime = simTime;
+        }
+
+        long deadline = anchorWallNs + (long) ((simTime - anchorSimTime) / factor * 1e9);
+        long ahead = deadline - now;
+        if (ahead > 0) {
+            sleepNanos(ahead);
+            lastPublishNs = System.nanoTime();
+            return true;
+        }
+
+        double lagSec = -ahead / 1e9;
+        if (lagSec > MAX_LAG_SEC) {
+            anchorWallNs = now;
+            anchorSimTime = simTime;
+        }
+        if (lagSec <= BEHIND_TOLERANCE_SEC) {
+            lastPublishNs = now;
+            return true;
+        }
+        return publishEvery(now, MIN_PUBLISH_INTERVAL_NS);
+    }
+
+    private boolean publishEvery(long now, long intervalNs) {
+        if (now - lastPublishNs >= intervalNs) {
+            lastPublishNs = now;
+            return true;
+        }
+        skippedPublishes++;
+        return false;
+    }
+
+    private void updateAchieved(long now, double simTime) {
+        if (windowWallNs < 0 || simTime < windowSimTime) {
+            windowWallNs = now;
+            windowSimTime = simTime;
+            return;
+        }
+        long dt = now - windowWallNs;
+        if (dt >= REPORT_WINDOW_NS) {
+            achievedFactor = (simTime - windowSimTime) / (dt / 1e9);
+            windowWallNs = now;
+            windowSimTime = simTime;
+        }
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        long end = System.nanoTime() + nanos;
+        while (true) {
+            long left = end - System.nanoTime();
+            if (left <= 0) return;
+            if (left > 2_000_000L) Thread.sleep((left - 1_000_000L) / 1_000_000L);
+            else LockSupport.parkNanos(left);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+}
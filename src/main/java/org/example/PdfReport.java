@@ -0,0 +1,313 @@
+// ===================== PdfReport.java =====================
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+// Streaming PDF 1.4 writer: A4 pages of text, lines, rectangles and paths (replaces SimplePdfWriter).
+//
+// Objects go to the FileChannel as soon as they are complete; only the xref offsets (one long per
+// object) and the page ids stay in memory. A page's content is built in one reused StringBuilder
+// and Flate-compressed straight into the output buffer. Its compressed size is known only after
+// that, so /Length is an indirect object written right behind the stream. Fonts, page tree and
+// catalog follow at close(). Fonts are the standard Helvetica / Helvetica-Bold (nothing embedded,
+// WinAnsi text; chars outside Latin-1 print as '?').
+public final class PdfReport implements Closeable {
+
+    public static final float PAGE_W = 595f, PAGE_H = 842f;   // A4 in points
+
+    private static final int CATALOG = 1, PAGES = 2, FONT = 3, FONT_BOLD = 4, INFO = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+    private long flushed = 0;
+    private long[] offsets = new long[64];       // file offset by object id
+    private int nextId = INFO + 1;
+    private int[] pageIds = new int[16];
+    private int pageCount = 0;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] zIn = new byte[1 << 15];
+    private final byte[] zOut = new byte[1 << 15];
+    private final Page page = new Page();
+    private boolean pageOpen = false;
+    private final String title;
+
+    public PdfReport(File file, String title) throws IOException {
+        this.title = title;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ascii("%PDF-1.4\n");
+        out.put(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});   // "binary" marker
+    }
+
+    public int pageCount() { return pageCount; }
+
+    // bytes written so far, including what is still buffered
+    public long bytes() { return flushed + out.position(); }
+
+    // ===================== Pages =====================
+    // the returned Page is reused: draw on it, then finishPage()
+    public Page newPage() {
+        if (pageOpen) throw new IllegalStateException("Previous page not finished");
+        page.c.setLength(0);
+        pageOpen = true;
+        return page;
+    }
+
+    public void finishPage() throws IOException {
+        if (!pageOpen) return;
+        int contentId = nextId++, lengthId = nextId++, pageId = nextId++;
+
+        beginObject(contentId);
+        ascii("<< /Length " + lengthId + " 0 R /Filter /FlateDecode >>\nstream\n");
+        long start = bytes();
+        deflate(page.c);
+        long length = bytes() - start;
+        ascii("\nendstream");
+        endObject();
+        object(lengthId, Long.toString(length));
+
+        object(pageId, "<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 595 842] /Resources << /Font << /F1 "
+                + FONT + " 0 R /F2 " + FONT_BOLD + " 0 R >> >> /Contents " + contentId + " 0 R >>");
+        if (pageCount == pageIds.length) pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+        pageIds[pageCount++] = pageId;
+        pageOpen = false;
+    }
+
+    private void deflate(StringBuilder sb) throws IOException {
+        deflater.reset();
+        for (int i = 0, n = sb.length(); i < n; ) {
+            int k = Math.min(zIn.length, n - i);
+            for (int j = 0; j < k; j++) {
+                char ch = sb.charAt(i + j);
+                zIn[j] = ch < 256 ? (byte) ch : (byte) '?';
+            }
+            i += k;
+            deflater.setInput(zIn, 0, k);
+            while (!deflater.needsInput()) put(zOut, deflater.deflate(zOut));
+        }
+        deflater.finish();
+        while (!deflater.finished()) put(zOut, deflater.deflate(zOut));
+    }
+
+    // ===================== Close: fonts, page tree, catalog, xref =====================
+    @Override
+    public void close() throws IOException {
+        try {
+            finishPage();
+            object(FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+            object(FONT_BOLD, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+
+            StringBuilder kids = new StringBuilder("<< /Type /Pages /Kids [");
+            for (int i = 0; i < pageCount; i++) kids.append(i == 0 ? "" : " ").append(pageIds[i]).append(" 0 R");
+            kids.append("] /Count ").append(pageCount).append(" >>");
+            object(PAGES, kids.toString());
+            object(INFO, "<< /Title (" + escape(new StringBuilder(), title) + ") /Producer (SUMO traffic GUI) >>");
+            object(CATALOG, "<< /Type /Catalog /Pages " + PAGES + " 0 R >>");
+
+            long xref = bytes();
+            StringBuilder sb = new StringBuilder(32 + nextId * 20);
+            sb.append("xref\n0 ").append(nextId).append("\n0000000000 65535 f \n");
+            for (int id = 1; id < nextId; id++) {
+                String off = Long.toString(offsets[id]);
+                for (int p = off.length(); p < 10; p++) sb.append('0');
+                sb.append(off).append(" 00000 n \n");
+            }
+            sb.append("trailer\n<< /Size ").append(nextId).append(" /Root ").append(CATALOG).append(" 0 R /Info ")
+                    .append(INFO).append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+            ascii(sb);
+            drain();
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    // ===================== Output =====================
+    private void beginObject(int id) throws IOException {
+        if (id >= offsets.length) offsets = Arrays.copyOf(offsets, Math.max(id + 1, offsets.length * 2));
+        offsets[id] = bytes();
+        ascii(id + " 0 obj\n");
+    }
+
+    private void endObject() throws IOException { ascii("\nendobj\n"); }
+
+    private void object(int id, String body) throws IOException {
+        beginObject(id);
+        ascii(body);
+        endObject();
+    }
+
+    private void ascii(CharSequence s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (!out.hasRemaining()) drain();
+            char ch = s.charAt(i);
+            out.put(ch < 256 ? (byte) ch : (byte) '?');
+        }
+    }
+
+    private void put(byte[] b, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            if (!out.hasRemaining()) drain();
+            int k = Math.min(len - off, out.remaining());
+            out.put(b, off, k);
+            off += k;
+        }
+    }
+
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) flushed += channel.write(out);
+        out.clear();
+    }
+
+    static StringBuilder escape(StringBuilder sb, String s) {
+        if (s == null) return sb;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' || ch == '(' || ch == ')') sb.append('\\');
+            sb.append(ch < 32 ? ' ' : ch);
+        }
+        return sb;
+    }
+
+    // ===================== Text metrics =====================
+    // Helvetica advance widths (1/1000 em) for ' '..'~'; bold is approximated from the regular face
+    private static final short[] HELVETICA = {
+            278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+            1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+            333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+            556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};
+
+    public static float textWidth(String s, float size, boolean bold) {
+        int units = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            units += (ch >= 32 && ch <= 126) ? HELVETICA[ch - 32] : 556;
+        }
+        return units * size / 1000f * (bold ? 1.05f : 1f);
+    }
+
+    // ===================== Page content =====================
+    // thin wrapper over the content-stream operators; coordinates in points from the bottom left
+    public static final class Page {
+        final StringBuilder c = new StringBuilder(1 << 16);
+
+        private Page() {}
+
+        public Page text(float x, float y, float size, boolean bold, String s) {
+            c.append("BT /").append(bold ? "F2 " : "F1 ");
+            num(size).append(" Tf ");
+            num(x).append(' ');
+            num(y).append(" Td (");
+            escape(c, s).append(") Tj ET\n");
+            return this;
+        }
+
+        public Page textRight(float xRight, float y, float size, boolean bold, String s) {
+            return text(xRight - textWidth(s, size, bold), y, size, bold, s);
+        }
+
+        public Page strokeColor(float[] rgb) {
+            num(rgb[0]).append(' ');
+            num(rgb[1]).append(' ');
+            num(rgb[2]).append(" RG\n");
+            return this;
+        }
+
+        public Page fillColor(float[] rgb) {
+            num(rgb[0]).append(' ');
+            num(rgb[1]).append(' ');
+            num(rgb[2]).append(" rg\n");
+            return this;
+        }
+
+        public Page lineWidth(float w) {
+            num(w).append(" w\n");
+            return this;
+        }
+
+        // on <= 0: solid
+        public Page dash(float on, float off) {
+            if (on <= 0f) {
+                c.append("[] 0 d\n");
+            } else {
+                c.append('[');
+                num(on).append(' ');
+                num(off).append("] 0 d\n");
+            }
+            return this;
+        }
+
+        public Page line(float x1, float y1, float x2, float y2) {
+            moveTo(x1, y1);
+            lineTo(x2, y2);
+            return stroke();
+        }
+
+        public Page rect(float x, float y, float w, float h, boolean filled) {
+            num(x).append(' ');
+            num(y).append(' ');
+            num(w).append(' ');
+            num(h).append(filled ? " re f\n" : " re S\n");
+            return this;
+        }
+
+        public Page moveTo(float x, float y) {
+            num(x).append(' ');
+            num(y).append(" m\n");
+            return this;
+        }
+
+        public Page lineTo(float x, float y) {
+            num(x).append(' ');
+            num(y).append(" l\n");
+            return this;
+        }
+
+        public Page stroke() {
+            c.append("S\n");
+            return this;
+        }
+
+        // q + clip to the rectangle; pair with restore()
+        public Page saveClip(float x, float y, float w, float h) {
+            c.append("q ");
+            num(x).append(' ');
+            num(y).append(' ');
+            num(w).append(' ');
+            num(h).append(" re W n\n");
+            return this;
+        }
+
+        public Page restore() {
+            c.append("Q\n");
+            return this;
+        }
+
+        // at most two decimals, no trailing zeros: coordinates are most of a chart page
+        private StringBuilder num(double v) {
+            long u = Math.round(v * 100.0);
+            if (u < 0) {
+                c.append('-');
+                u = -u;
+            }
+            c.append(u / 100);
+            int f = (int) (u % 100);
+            if (f != 0) {
+                c.append('.').append(f / 10);
+                if (f % 10 != 0) c.append(f % 10);
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+// ===================== PhaseStats.java =====================
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histograms of the simulation loop, one per phase, in nanoseconds.
+//
+// Buckets are log-linear (16 per power of two, < 6.3% relative error) over 1 ns .. ~18 min, so
+// record() is a bit scan plus three array writes: no allocation, no lock. Every phase is recorded
+// by exactly one thread (see Phase), which makes a plain read-increment-lazySet safe; readers on
+// any thread take a Snapshot (racy by at most the samples in flight) and diff two snapshots for a
+// recent window.
+public final class PhaseStats {
+
+    // writer thread in brackets; only stepper phases are part of LOOP and have a loop share
+    public enum Phase {
+        STEP("SUMO step", true),               // [stepper] Simulation.step over one sample
+        TLS("TLS control", true),              // [stepper] trafficControl.applyPerStep
+        SLEEP("pacing sleep", true),           // [stepper] pacer.pace
+        COLLECT("collect", true),              // [stepper] vehicles, arrivals, edge stats, recording
+        AGGREGATE("aggregate", true),          // [stepper] MetricsAggregator.compute over the collected frame
+        HANDOFF("handoff", true),              // [stepper] metrics row (waits when the ring is full) + UI frame copy
+        METRICS("metrics", false),             // [metrics stage] store, sink, endpoint snapshot
+        PUBLISH("UI publish", false),          // [publisher stage] map frame, trend chart, label state
+        PAINT("map paint", false),             // [EDT] MapPanel.paintComponent, when the panel records to us
+        LOOP("loop total", true);              // [stepper] one whole iteration of run()
+
+        public final String label;
+        public final boolean inLoop;
+
+        Phase(String label, boolean inLoop) {
+            this.label = label;
+            this.inLoop = inLoop;
+        }
+    }
+
+    static final Phase[] PHASES = Phase.values();
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 36;                  // 2^40 ns
+    static final int BUCKETS = SUB * MAX_SHIFT + 2 * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES.length * BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(PHASES.length * 3);   // count, sum, max
+
+    // owning thread of the phase only
+    public void record(Phase p, long nanos) {
+        if (nanos < 0) nanos = 0;
+        int i = p.ordinal() * BUCKETS + bucket(nanos);
+        counts.lazySet(i, counts.get(i) + 1);
+        int t = p.ordinal() * 3;
+        totals.lazySet(t, totals.get(t) + 1);
+        totals.lazySet(t + 1, totals.get(t + 1) + nanos);
+        if (nanos > totals.get(t + 2)) totals.lazySet(t + 2, nanos);
+    }
+
+    static int bucket(long v) {
+        if (v < 2 * SUB) return (int) v;
+        int shift = Math.min(MAX_SHIFT, 63 - Long.numberOfLeadingZeros(v) - SUB_BITS);
+        long sub = Math.min(2 * SUB - 1, v >>> shift);
+        return SUB * shift + (int) sub;
+    }
+
+    // middle of the bucket's value range
+    static long bucketValue(int b) {
+        if (b < 2 * SUB) return b;
+        int shift = b / SUB - 1;
+        long low = (long) (b - SUB * shift) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        for (int i = 0; i < s.counts.length; i++) s.counts[i] = counts.get(i);
+        for (int p = 0; p < PHASES.length; p++) {
+            s.count[p] = totals.get(p * 3);
+            s.sumNs[p] = totals.get(p * 3 + 1);
+            s.maxNs[p] = totals.get(p * 3 + 2);
+        }
+        return s;
+    }
+
+    // ===================== Snapshot =====================
+    public static final class Snapshot {
+        final long[] counts = new long[PHASES.length * BUCKETS];
+        final long[] count = new long[PHASES.length];
+        final long[] sumNs = new long[PHASES.length];
+        final long[] maxNs = new long[PHASES.length];
+
+        public long count(Phase p) { return count[p.ordinal()]; }
+        public long sumNs(Phase p) { return sumNs[p.ordinal()]; }
+        public long maxNs(Phase p) { return maxNs[p.ordinal()]; }
+
+        public double meanMs(Phase p) {
+            long n = count[p.ordinal()];
+            return n == 0 ? 0.0 : sumNs[p.ordinal()] / (double) n / 1e6;
+        }
+
+        // q in 0..1, from the buckets
+        public double percentileMs(Phase p, double q) {
+            long n = count[p.ordinal()];
+            if (n == 0) return 0.0;
+            long rank = Math.max(1, (long) Math.ceil(q * n));
+            int base = p.ordinal() * BUCKETS;
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[base + b];
+                if (seen >= rank) return Math.min(bucketValue(b), maxNs[p.ordinal()]) / 1e6;
+            }
+            return maxNs[p.ordinal()] / 1e6;
+        }
+
+        // share of the stepper loop's wall time; NaN for phases on other threads, which overlap the loop
+        public double loopShare(Phase p) {
+            if (!p.inLoop) return Double.NaN;
+            long loop = sumNs[Phase.LOOP.ordinal()];
+            return loop == 0 ? 0.0 : sumNs[p.ordinal()] / (double) loop;
+        }
+
+        // "12.3%" or "n/a"
+        public String loopSharePercent(Phase p, int decimals) {
+            double share = loopShare(p);
+            return Double.isNaN(share) ? "n/a" : String.format(Locale.US, "%." + decimals + "f%%", 100.0 * share);
+        }
+
+        // samples recorded after `earlier`; the max is the highest bucket hit in between
+        public Snapshot since(Snapshot earlier) {
+            Snapshot d = new Snapshot();
+            for (int i = 0; i < counts.length; i++) d.counts[i] = counts[i] - earlier.counts[i];
+            for (int p = 0; p < PHASES.length; p++) {
+                d.count[p] = count[p] - earlier.count[p];
+                d.sumNs[p] = sumNs[p] - earlier.sumNs[p];
+                for (int b = BUCKETS - 1; b >= 0; b--) {
+                    if (d.counts[p * BUCKETS + b] > 0) {
+                        d.maxNs[p] = Math.min(maxNs[p], bucketValue(b));
+                        break;
+                    }
+                }
+            }
+            return d;
+        }
+
+        // one line per phase with samples: "name n=.. mean=.. p50=.. p99=.. max=.. ms share=..%"
+        public String describe() {
+            StringBuilder sb = new StringBuilder();
+            for (Phase p : PHASES) {
+                if (count(p) == 0) continue;
+                sb.append(String.format(Locale.US, "%n  %-13s n=%d mean=%.3f p50=%.3f p99=%.3f max=%.3f ms share=%s",
+                        p.label, count(p), meanMs(p), percentileMs(p, 0.50), percentileMs(p, 0.99),
+                        maxNs(p) / 1e6, loopSharePercent(p, 1)));
+            }
+            return sb.toString();
+        }
+
+        // loop_share is empty for phases outside the stepper loop
+        public void writeCsv(PrintWriter pw) throws IOException {
+            pw.println("phase,count,total_s,mean_ms,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,loop_share");
+            for (Phase p : PHASES) {
+                double share = loopShare(p);
+                pw.println(String.format(Locale.US, "%s,%d,%.6f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%s",
+                        p.name().toLowerCase(Locale.ROOT), count(p), sumNs(p) / 1e9, meanMs(p),
+                        percentileMs(p, 0.50), percentileMs(p, 0.90), percentileMs(p, 0.99),
+                        percentileMs(p, 0.999), maxNs(p) / 1e6,
+                        Double.isNaN(share) ? "" : String.format(Locale.US, "%.4f", share)));
+            }
+            if (pw.checkError()) throw new IOException("Writing phase timings failed");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+// ===================== ReplayPlayer.java =====================
+package org.example;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Plays a FrameReplay into MapPanel / TrendChartPanel at a real-time factor, with pause and seek.
+// Metrics are recomputed from the recorded frames with the live MetricsAggregator. A seek re-reads
+// THROUGHPUT_WINDOW_SEC of history before the target so throughput is exact right away.
+public final class ReplayPlayer implements Runnable {
+
+    // called on the player thread; implementations hop to the EDT themselves
+    public interface View {
+        void show(MetricsAggregator.StepMetrics m, FrameReplay replay, double achievedFactor);
+        void ended();
+    }
+
+    private final FrameReplay replay;
+    private final MapVisualisation.MapPanel mapPanel;
+    private final MapVisualisation.TrendChartPanel trendChart;
+    private final MapVisualisation.Filter filter;
+    private final View view;
+
+    private final Pacer pacer = new Pacer(1.0);
+    private final AtomicReference<Double> seekTo = new AtomicReference<>();
+    private volatile boolean playing = false;
+    private volatile boolean closed = false;
+
+    private final VehicleFrame frame = new VehicleFrame();
+    private final MetricsAggregator.StepMetrics metrics = new MetricsAggregator.StepMetrics();
+    private MetricsAggregator aggregator = new MetricsAggregator();
+
+    public ReplayPlayer(FrameReplay replay, MapVisualisation.MapPanel mapPanel,
+                        MapVisualisation.TrendChartPanel trendChart, MapVisualisation.Filter filter, View view) {
+        this.replay = replay;
+        this.mapPanel = mapPanel;
+        this.trendChart = trendChart;
+        this.filter = filter;
+        this.view = view;
+    }
+
+    public void start() {
+        Thread t = new Thread(this, "Replay-Player");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void setPlaying(boolean p) {
+        playing = p;
+        pacer.setTargetFactor(pacer.getTargetFactor());   // re-anchor after a pause
+    }
+
+    public boolean isPlaying() { return playing; }
+    public void setRealTimeFactor(double factor) { pacer.setTargetFactor(factor); }
+    public void seek(double simTime) { seekTo.set(simTime); }
+    public void close() { closed = true; }
+
+    @Override
+    public void run() {
+        try {
+            seekTo.compareAndSet(null, replay.startTime());
+            while (!closed) {
+                Double target = seekTo.getAndSet(null);
+                if (target != null) {
+                    seekInternal(target);
+                    continue;
+                }
+                if (!playing) {
+                    Thread.sleep(20);
+                    continue;
+                }
+                if (!replay.next(frame)) {
+                    playing = false;
+                    view.ended();
+                    continue;
+                }
+                compute();
+                if (pacer.pace(frame.simTime)) publish();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Replay failed", ex);
+            view.ended();
+        } finally {
+            try { replay.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void seekInternal(double target) throws IOException {
+        replay.seek(Math.max(0.0, target - Main.THROUGHPUT_WINDOW_SEC));
+        aggregator = new MetricsAggregator();
+        trendChart.clear();
+
+        boolean first = true, any = false;
+        while (replay.next(frame)) {
+            if (first) {
+                aggregator.reset(frame, replay.arrivedTotal());
+                first = false;
+            }
+            compute();
+            any = true;
+            if (frame.simTime >= target) break;
+        }
+        if (any) publish();
+        pacer.setTargetFactor(pacer.getTargetFactor());
+    }
+
+    private void compute() {
+        aggregator.compute(frame, replay.arrivedTotal(), filter, metrics);
+        trendChart.addSample(
+                metrics.avgWaitSec < 0 ? 0.0 : metrics.avgWaitSec,
+                Math.max(0.0, metrics.pct(MetricsAggregator.G_ALL, MetricsAggregator.M_WAIT, MetricsAggregator.S_P90)),
+                metrics.throughputVph,
+                metrics.congestion
+        );
+    }
+
+    private void publish() {
+        mapPanel.updateVehicles(frame);
+        view.show(metrics.copy(), replay, pacer.getAchievedFactor());
+    }
+}
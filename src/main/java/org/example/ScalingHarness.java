@@ -0,0 +1,305 @@
+// ===================== ScalingHarness.java =====================
+package org.example;
+
+import javax.swing.*;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end scaling run: the complete LiveConnectionSumo pipeline (stepper, metrics stage, UI publisher,
+// label updates, map paint into an offscreen image) without a window and unthrottled, while the fleet is
+// held at increasing levels. Per level it measures SUMO steps per wall second, per-phase latency, heap,
+// allocation rate and GC, logs one line and appends one CSV row, so the fleet size at which a phase
+// stops keeping up shows in a single file.
+// Usage: java -jar app.jar --scale [--levels 100,200,...] [--settle SEC] [--measure SEC] [--seed N]
+//                                   [--fake] [--sumo BINARY] [--out FILE] [--no-paint]
+public final class ScalingHarness {
+
+    private ScalingHarness() {}
+
+    private static final String[] TYPES = {Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS};
+    private static final long POLL_MS = 250L;                // fleet top-up + sampling cadence
+    private static final int MIN_SAMPLES = 20;               // per measured level, however slow the steps
+    private static final int PAINT_W = 1280, PAINT_H = 800;
+
+    static final class Options {
+        int[] levels = {100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000};
+        double settleSec = 5.0;            // fleet top-up before measuring
+        double measureSec = 15.0;
+        long seed = 42L;
+        boolean fakeBackend = false;
+        String sumoBinary = Main.SUMO_BINARY;
+        String outPath = "scaling_results.csv";
+        boolean paint = true;
+    }
+
+    static Options parseArgs(String[] args) throws Main.Milestone3Exception {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--levels": o.levels = parseLevels(value(args, ++i, a)); break;
+                case "--settle": o.settleSec = Math.max(0.0, parseDouble(a, value(args, ++i, a))); break;
+                case "--measure": o.measureSec = Math.max(1.0, parseDouble(a, value(args, ++i, a))); break;
+                case "--seed": o.seed = (long) parseDouble(a, value(args, ++i, a)); break;
+                case "--fake": o.fakeBackend = true; break;
+                case "--sumo": o.sumoBinary = value(args, ++i, a); break;
+                case "--out": o.outPath = value(args, ++i, a); break;
+                case "--no-paint": o.paint = false; break;
+                default: throw new Main.Milestone3Exception("Unknown scaling option: " + a);
+            }
+        }
+        return o;
+    }
+
+    private static int[] parseLevels(String v) throws Main.Milestone3Exception {
+        String[] parts = v.split(",");
+        int[] levels = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            levels[i] = (int) parseDouble("--levels", parts[i]);
+            if (levels[i] <= 0) throw new Main.Milestone3Exception("--levels must be positive vehicle counts: " + v);
+        }
+        return levels;
+    }
+
+    private static String value(String[] args, int i, String opt) throws Main.Milestone3Exception {
+        if (i >= args.length) throw new Main.Milestone3Exception("Missing value for " + opt);
+        return args[i];
+    }
+
+    private static double parseDouble(String opt, String v) throws Main.Milestone3Exception {
+        try { return Double.parseDouble(v.trim()); }
+        catch (NumberFormatException ex) { throw new Main.Milestone3Exception("Not a number for " + opt + ": " + v, ex); }
+    }
+
+    // ===================== Run =====================
+    public static void run(Options o) throws Exception {
+        if (o.fakeBackend) Traci.install(new FakeSumoGateway());
+        VehicleInjection.seed(o.seed);
+
+        // the GUI's components, never shown
+        MapVisualisation.MapPanel mapPanel = new MapVisualisation.MapPanel(null);
+        mapPanel.setSize(PAINT_W, PAINT_H);
+        MapVisualisation.TrendChartPanel trendChart = new MapVisualisation.TrendChartPanel(120);
+        JLabel tlStateLabel = new JLabel();
+        JComboBox<TrafficControl.TlsItem> tlCombo = new JComboBox<>();
+        TrafficControl trafficControl = new TrafficControl(tlCombo, tlStateLabel);
+        CountDownLatch stopped = new CountDownLatch(1);
+
+        LiveConnectionSumo live = new LiveConnectionSumo(null, mapPanel, trendChart, new GUI.VehicleFilter(),
+                new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(),
+                new JLabel(), tlStateLabel, new JLabel(), new JComboBox<>(), tlCombo, trafficControl,
+                stopped::countDown);
+        live.useSumoBinary(o.fakeBackend ? Main.SUMO_BINARY : o.sumoBinary);
+        live.setRealTimeFactor(Pacer.UNTHROTTLED, 0);
+        mapPanel.recordPaintTo(live.phaseStats());
+        live.connect();
+
+        long deadline = System.currentTimeMillis() + 120_000L;
+        while (!VehicleInjection.isReady()) {
+            if (stopped.getCount() == 0 || System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Simulation did not come up (no routable scenarios or SUMO failed)");
+            }
+            Thread.sleep(50);
+        }
+        double stepLength = Traci.gw().deltaT();
+
+        BufferedImage canvas = new BufferedImage(PAINT_W, PAINT_H, BufferedImage.TYPE_INT_RGB);
+        Timer painter = new Timer(16, e -> {
+            Graphics2D g = canvas.createGraphics();
+            try { mapPanel.paint(g); } finally { g.dispose(); }
+        });
+        if (o.paint) painter.start();
+
+        live.startSimulation();
+        Logging.LOG.info("Scaling run: levels=" + java.util.Arrays.toString(o.levels) + " settle=" + o.settleSec
+                + "s measure=" + o.measureSec + "s seed=" + o.seed + (o.fakeBackend ? " (fake backend)" : "")
+                + (o.paint ? "" : " (no paint)"));
+
+        File out = new File(o.outPath);
+        List<String> lines = new ArrayList<>();
+        try (PrintWriter csv = new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF-8"))) {
+            csv.println(csvHeader());
+            for (int level : o.levels) {
+                if (stopped.getCount() == 0) {
+                    Logging.LOG.warning("Simulation stopped; remaining levels skipped");
+                    break;
+                }
+                holdFleet(live, level, o.settleSec, stopped);
+                Level r = measure(live, level, o.measureSec, stepLength, stopped);
+                csv.println(r.csvRow());
+                csv.flush();
+                lines.add(r.describe());
+                Logging.LOG.info("Scaling level " + r.describe());
+            }
+            if (csv.checkError()) throw new IOException("Writing " + out + " failed");
+        } finally {
+            painter.stop();
+            live.stopSimulation();
+            if (!stopped.await(30, TimeUnit.SECONDS)) Logging.LOG.warning("Simulation thread did not stop in time");
+        }
+
+        StringBuilder sb = new StringBuilder("Scaling run done -> ").append(out.getAbsolutePath());
+        for (String l : lines) sb.append(System.lineSeparator()).append("  ").append(l);
+        Logging.LOG.info(sb.toString());
+        System.out.println(sb);
+    }
+
+    // ===================== Fleet =====================
+    private static void holdFleet(LiveConnectionSumo live, int level, double seconds, CountDownLatch stopped)
+            throws InterruptedException {
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        do {
+            topUp(live, level);
+        } while (!stopped.await(POLL_MS, TimeUnit.MILLISECONDS) && System.nanoTime() < end);
+    }
+
+    // vehicles in flight (inserted or still waiting for insertion) = injected - arrived
+    private static void topUp(LiveConnectionSumo live, int level) {
+        long inFlight = VehicleInjection.injectedTotal() - live.liveSnapshot().arrived;
+        int deficit = (int) Math.max(0L, level - inFlight);
+        if (deficit == 0) return;
+        List<VehicleInjection.RouteDef> routes;
+        synchronized (VehicleInjection.ALLOWED_ROUTES) {
+            routes = new ArrayList<>(VehicleInjection.ALLOWED_ROUTES);
+        }
+        int slots = routes.size() * TYPES.length;
+        for (int k = 0; k < slots && deficit > 0; k++) {
+            int n = (int) Math.ceil(deficit / (double) (slots - k));
+            int added = VehicleInjection.spawnVehicles(TYPES[k % TYPES.length], routes.get(k / TYPES.length), n);
+            if (added > 0) deficit -= added;
+        }
+    }
+
+    // ===================== Measurement =====================
+    private static Level measure(LiveConnectionSumo live, int level, double seconds, double stepLength,
+                                 CountDownLatch stopped) throws InterruptedException {
+        Probe start = Probe.take(live);
+        long activeSum = 0, polls = 0;
+        int activeMax = 0;
+        long minEnd = start.wallNs + (long) (seconds * 1e9), maxEnd = start.wallNs + (long) (10 * seconds * 1e9);
+        while (!stopped.await(POLL_MS, TimeUnit.MILLISECONDS)) {
+            topUp(live, level);
+            int active = live.liveSnapshot().active;
+            activeSum += active;
+            activeMax = Math.max(activeMax, active);
+            polls++;
+            long now = System.nanoTime();
+            long samples = live.phaseStats().snapshot().count(PhaseStats.Phase.LOOP) - start.phases.count(PhaseStats.Phase.LOOP);
+            if (now >= maxEnd || (now >= minEnd && samples >= MIN_SAMPLES)) break;
+        }
+        Probe end = Probe.take(live);
+        return new Level(level, start, end, stepLength, polls == 0 ? 0.0 : activeSum / (double) polls, activeMax);
+    }
+
+    // process-wide counters at one instant
+    private static final class Probe {
+        long wallNs;
+        PhaseStats.Snapshot phases;
+        MetricsEndpoint.Snapshot live;
+        long allocatedBytes, gcCount, gcMs;
+        MemoryUsage heap;
+
+        static Probe take(LiveConnectionSumo live) {
+            Probe p = new Probe();
+            p.wallNs = System.nanoTime();
+            p.phases = live.phaseStats().snapshot();
+            p.live = live.liveSnapshot();
+            p.allocatedBytes = allocatedBytes();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                p.gcCount += Math.max(0L, gc.getCollectionCount());
+                p.gcMs += Math.max(0L, gc.getCollectionTime());
+            }
+            p.heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            return p;
+        }
+
+        // summed over live threads (HotSpot); threads that ended in between are not counted
+        private static long allocatedBytes() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1L;
+            com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+            if (!t.isThreadAllocatedMemorySupported() || !t.isThreadAllocatedMemoryEnabled()) return -1L;
+            long sum = 0;
+            for (long b : t.getThreadAllocatedBytes(t.getAllThreadIds())) if (b > 0) sum += b;
+            return sum;
+        }
+    }
+
+    private static final class Level {
+        final int target;
+        final double wallSec, simSec, stepsPerSec, activeMean;
+        final int activeMax;
+        final PhaseStats.Snapshot phases;
+        final double heapUsedMb, heapCommittedMb, allocMbPerSec, gcPerSec, gcShare;
+        final long droppedToMetrics, droppedToUi;
+
+        Level(int target, Probe a, Probe b, double stepLength, double activeMean, int activeMax) {
+            this.target = target;
+            this.wallSec = Math.max(1e-9, (b.wallNs - a.wallNs) / 1e9);
+            this.simSec = b.live.simTime - a.live.simTime;
+            this.stepsPerSec = simSec / Math.max(1e-9, stepLength) / wallSec;
+            this.activeMean = activeMean;
+            this.activeMax = activeMax;
+            this.phases = b.phases.since(a.phases);
+            this.heapUsedMb = b.heap.getUsed() / 1048576.0;
+            this.heapCommittedMb = b.heap.getCommitted() / 1048576.0;
+            this.allocMbPerSec = a.allocatedBytes < 0 || b.allocatedBytes < 0
+                    ? -1.0 : Math.max(0L, b.allocatedBytes - a.allocatedBytes) / 1048576.0 / wallSec;
+            this.gcPerSec = (b.gcCount - a.gcCount) / wallSec;
+            this.gcShare = (b.gcMs - a.gcMs) / 1000.0 / wallSec;
+            this.droppedToMetrics = b.live.droppedToMetrics - a.live.droppedToMetrics;
+            this.droppedToUi = b.live.droppedToUi - a.live.droppedToUi;
+        }
+
+        String describe() {
+            return String.format(Locale.US,
+                    "fleet=%d active=%.0f (max %d): %.1f steps/s, step p50=%.2f p99=%.2f ms, loop p99=%.2f ms, "
+                            + "heap %.0f/%.0f MB, alloc %.1f MB/s, gc %.1f/s (%.1f%%), dropped %d/%d",
+                    target, activeMean, activeMax, stepsPerSec,
+                    phases.percentileMs(PhaseStats.Phase.STEP, 0.50), phases.percentileMs(PhaseStats.Phase.STEP, 0.99),
+                    phases.percentileMs(PhaseStats.Phase.LOOP, 0.99), heapUsedMb, heapCommittedMb, allocMbPerSec,
+                    gcPerSec, 100.0 * gcShare, droppedToMetrics, droppedToUi);
+        }
+
+        String csvRow() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(target).append(',');
+            CsvNumbers.fixed(sb, activeMean, 1).append(',').append(activeMax).append(',');
+            CsvNumbers.fixed(sb, wallSec, 3).append(',');
+            CsvNumbers.fixed(sb, simSec, 2).append(',');
+            CsvNumbers.fixed(sb, stepsPerSec, 2).append(',');
+            sb.append(phases.count(PhaseStats.Phase.LOOP));
+            for (PhaseStats.Phase p : PhaseStats.PHASES) {
+                CsvNumbers.fixed(sb.append(','), phases.meanMs(p), 4);
+                CsvNumbers.fixed(sb.append(','), phases.percentileMs(p, 0.99), 4);
+            }
+            CsvNumbers.fixed(sb.append(','), heapUsedMb, 1);
+            CsvNumbers.fixed(sb.append(','), heapCommittedMb, 1);
+            CsvNumbers.fixed(sb.append(','), allocMbPerSec, 2);
+            CsvNumbers.fixed(sb.append(','), gcPerSec, 3);
+            CsvNumbers.fixed(sb.append(','), gcShare, 4);
+            sb.append(',').append(droppedToMetrics).append(',').append(droppedToUi);
+            return sb.toString();
+        }
+    }
+
+    private static String csvHeader() {
+        StringBuilder sb = new StringBuilder("fleet_target,active_mean,active_max,wall_s,sim_s,steps_per_s,samples");
+        for (PhaseStats.Phase p : PhaseStats.PHASES) {
+            String n = p.name().toLowerCase(Locale.ROOT);
+            sb.append(',').append(n).append("_mean_ms,").append(n).append("_p99_ms");
+        }
+        return sb.append(",heap_used_mb,heap_committed_mb,alloc_mb_per_s,gc_per_s,gc_time_share"
+                + ",dropped_to_metrics,dropped_to_ui").toString();
+    }
+}
@@ -0,0 +1,497 @@
+// ===================== SummaryReport.java =====================
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Multi-page summary PDF: run context and latest sample, the full time series as vector line
+// charts, then throughput per route, per-TLS state and the bottleneck edges as tables.
+//
+// A chart never draws more than two points per point of plot width: each series is reduced to
+// the min and max of every width/1pt bucket of sim time (kept in time order, so spikes survive).
+// A 12 h run sampled every 0.5 s (86,400 rows) therefore costs about as much as a short one; the
+// work is decoding the charted columns from the store.
+public final class SummaryReport {
+
+    private static final float MARGIN = 48f;
+    private static final float BODY = 9.5f, LINE = 12.5f;
+    private static final float CHART_H = 200f, CHART_GAP = 22f, AXIS_W = 46f;
+    private static final float ROW_H = 13f;
+    private static final int BOTTLENECK_ROWS = 15;
+
+    private static final float[] BLACK = {0f, 0f, 0f};
+    private static final float[] GREY = {0.45f, 0.45f, 0.45f};
+    private static final float[] GRID = {0.85f, 0.85f, 0.85f};
+    private static final float[] SHADE = {0.94f, 0.95f, 0.97f};
+    private static final float[][] PALETTE = {
+            {0.12f, 0.47f, 0.71f}, {1.0f, 0.50f, 0.05f}, {0.17f, 0.63f, 0.17f}, {0.84f, 0.15f, 0.16f}};
+    private static final double[] TIME_STEPS =
+            {10, 30, 60, 120, 300, 600, 900, 1800, 3600, 7200, 10800, 21600, 43200, 86400};
+
+    // what the report shows; UI state is captured by the caller (EDT), the rest are lock-free snapshots
+    public static final class Inputs {
+        public final List<String> context = new ArrayList<>();
+        public MetricsStore.Snapshot metrics;
+        public EdgeStatsCollector.Snapshot edges = new EdgeStatsCollector.Snapshot();
+        public ThroughputCounters.Summary throughput = ThroughputCounters.EMPTY;
+        public String[] routeNames = new String[0];
+        public List<TrafficControl.TlsInfo> tls = Collections.emptyList();
+        public PhaseStats.Snapshot phases;           // null: no latency table
+    }
+
+    private final PdfReport pdf;
+    private final String title;
+    private PdfReport.Page page;
+    private float y;
+
+    private SummaryReport(PdfReport pdf, String title) {
+        this.pdf = pdf;
+        this.title = title;
+    }
+
+    // returns the file size in bytes
+    public static long write(File file, String title, Inputs in, ExportJob.Progress progress) throws IOException {
+        PdfReport pdf = new PdfReport(file, title);
+        try {
+            SummaryReport r = new SummaryReport(pdf, title);
+            r.render(in, progress);
+        } finally {
+            pdf.close();
+        }
+        return file.length();
+    }
+
+    private void render(Inputs in, ExportJob.Progress progress) throws IOException {
+        MetricsStore.Snapshot snap = in.metrics;
+        LiveConnectionSumo.MetricRow last = snap.last();
+        int steps = 9, done = 0;
+
+        newPage();
+        page.text(MARGIN, y - 16f, 16f, true, title);
+        y -= 30f;
+        paragraph(in.context);
+        y -= 6f;
+        heading("Latest sample");
+        paragraph(latestLines(last));
+        progress.update(++done, steps);
+
+        if (snap.size() >= 2) {
+            double[] t = snap.doubles(MetricsStore.D_SIM_TIME);
+            progress.checkCancelled();
+            heading("Time series (" + snap.size() + " samples, sim time " + clock(t[0]) + " - "
+                    + clock(t[t.length - 1]) + ")");
+
+            chart("Vehicles", t, new String[]{"active", "stopped", "visible"}, new double[][]{
+                    asDoubles(snap.longs(MetricsStore.L_ACTIVE)),
+                    asDoubles(snap.longs(MetricsStore.L_STOPPED)),
+                    asDoubles(snap.longs(MetricsStore.L_VISIBLE))});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Waiting time (s)", t, new String[]{"avg", "p90", "p99"}, new double[][]{
+                    snap.doubles(MetricsStore.D_AVG_WAIT),
+                    pct(snap, MetricsAggregator.M_WAIT, MetricsAggregator.S_P90),
+                    pct(snap, MetricsAggregator.M_WAIT, MetricsAggregator.S_P99)});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Speed (m/s)", t, new String[]{"mean", "p50", "p90"}, new double[][]{
+                    snap.doubles(MetricsStore.D_MEAN_SPEED),
+                    pct(snap, MetricsAggregator.M_SPEED, MetricsAggregator.S_P50),
+                    pct(snap, MetricsAggregator.M_SPEED, MetricsAggregator.S_P90)});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Congestion index", t, new String[]{"congestion"}, new double[][]{
+                    snap.doubles(MetricsStore.D_CONGESTION)});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Throughput (veh/h)", t, new String[]{"1m", "5m", "15m", "run"}, new double[][]{
+                    snap.doubles(MetricsStore.D_THR_1M),
+                    snap.doubles(MetricsStore.D_THR),
+                    snap.doubles(MetricsStore.D_THR_15M),
+                    snap.doubles(MetricsStore.D_THR_RUN)});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Throughput by type, 5m (veh/h)", t, new String[]{"car", "truck", "bus"}, new double[][]{
+                    snap.doubles(MetricsStore.D_THR_CAR),
+                    snap.doubles(MetricsStore.D_THR_TRUCK),
+                    snap.doubles(MetricsStore.D_THR_BUS)});
+            progress.update(++done, steps);
+            progress.checkCancelled();
+
+            chart("Trip time of finished trips (s)", t, new String[]{"p50", "p90", "p99"}, new double[][]{
+                    pct(snap, MetricsAggregator.M_TRIP, MetricsAggregator.S_P50),
+                    pct(snap, MetricsAggregator.M_TRIP, MetricsAggregator.S_P90),
+                    pct(snap, MetricsAggregator.M_TRIP, MetricsAggregator.S_P99)});
+            progress.update(++done, steps);
+        } else {
+            heading("Time series");
+            paragraph(Collections.singletonList("(fewer than two samples collected)"));
+        }
+        progress.checkCancelled();
+
+        routeTable(in.throughput, in.routeNames);
+        tlsTable(in.tls, in.edges);
+        bottleneckTable(in.edges);
+        if (in.phases != null) phaseTable(in.phases);
+        progress.update(steps, steps);
+    }
+
+    // values of the "latest sample" block (the former one-page report)
+    static List<String> latestLines(LiveConnectionSumo.MetricRow last) {
+        List<String> lines = new ArrayList<>();
+        if (last == null) {
+            lines.add("Metrics: (no data collected yet)");
+            return lines;
+        }
+        lines.add("Sim time(s): " + String.format(Locale.US, "%.2f", last.simTime));
+        lines.add("Active vehicles: " + last.activeVehicles + " | stopped: " + last.stoppedVehicles);
+        lines.add("Congestion index: " + String.format(Locale.US, "%.4f", last.congestionIndex));
+        lines.add("Avg wait(s): " + String.format(Locale.US, "%.3f", last.avgWaitSeconds));
+        lines.add("Mean speed(m/s): " + String.format(Locale.US, "%.3f", last.meanSpeedMps));
+        lines.add("Throughput(vph): " + String.format(Locale.US, "%.2f (1m %.2f, 15m %.2f, run %.2f)",
+                last.throughputVph, last.throughput1mVph, last.throughput15mVph, last.throughputRunVph));
+        lines.add("Throughput by type(vph, 5m): " + String.format(Locale.US, "car %.2f, truck %.2f, bus %.2f",
+                last.thrCarVph, last.thrTruckVph, last.thrBusVph));
+        for (int mi = 0; mi < MetricsAggregator.PCT_METRICS.length; mi++) {
+            StringBuilder sb = new StringBuilder(MetricsAggregator.PCT_METRICS[mi] + " p50/p90/p99/max:");
+            for (int g = 0; g < MetricsAggregator.PCT_GROUPS.length; g++) {
+                int base = MetricsAggregator.pctIndex(g, mi, 0);
+                sb.append(String.format(Locale.US, " %s %.1f/%.1f/%.1f/%.1f", MetricsAggregator.PCT_GROUPS[g],
+                        last.pct[base], last.pct[base + 1], last.pct[base + 2], last.pct[base + 3]));
+            }
+            lines.add(sb.toString());
+        }
+        lines.add("Speed factor(UI): " + last.speedFactorUi);
+        lines.add("Visible vehicles: " + last.visibleVehicles +
+                " (cars " + last.visibleCars + ", trucks " + last.visibleTrucks + ", buses " + last.visibleBuses + ")");
+        return lines;
+    }
+
+    // ===================== Layout =====================
+    private void newPage() throws IOException {
+        pdf.finishPage();
+        page = pdf.newPage();
+        page.fillColor(GREY);
+        page.text(MARGIN, MARGIN - 24f, 8f, false, title);
+        page.textRight(PdfReport.PAGE_W - MARGIN, MARGIN - 24f, 8f, false, "Page " + (pdf.pageCount() + 1));
+        page.fillColor(BLACK);
+        y = PdfReport.PAGE_H - MARGIN;
+    }
+
+    private void ensure(float height) throws IOException {
+        if (y - height < MARGIN) newPage();
+    }
+
+    private void heading(String text) throws IOException {
+        ensure(22f + LINE);
+        y -= 16f;
+        page.text(MARGIN, y, 12f, true, text);
+        y -= 8f;
+    }
+
+    // long lines wrap at word boundaries to the text width
+    private void paragraph(List<String> lines) throws IOException {
+        float width = PdfReport.PAGE_W - 2 * MARGIN;
+        for (String line : lines) {
+            String rest = line;
+            while (!rest.isEmpty()) {
+                String part = fit(rest, width, BODY, false, true);
+                ensure(LINE);
+                y -= LINE;
+                page.text(MARGIN, y, BODY, false, part);
+                rest = rest.substring(part.length()).trim();
+            }
+        }
+    }
+
+    // longest prefix of s that fits; at word boundaries when atWord (unless one word is too wide)
+    private static String fit(String s, float width, float size, boolean bold, boolean atWord) {
+        if (PdfReport.textWidth(s, size, bold) <= width) return s;
+        int lo = 1, hi = s.length();
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (PdfReport.textWidth(s.substring(0, mid), size, bold) <= width) lo = mid;
+            else hi = mid - 1;
+        }
+        if (atWord) {
+            int sp = s.lastIndexOf(' ', lo);
+            if (sp > 0) return s.substring(0, sp);
+        }
+        return s.substring(0, lo);
+    }
+
+    // ===================== Charts =====================
+    private void chart(String name, double[] t, String[] names, double[][] series) throws IOException {
+        ensure(CHART_H + CHART_GAP);
+        float left = MARGIN + AXIS_W, right = PdfReport.PAGE_W - MARGIN;
+        float top = y - 18f, bottom = y - CHART_H + 16f;
+        float plotW = right - left, plotH = top - bottom;
+
+        page.text(MARGIN, y - 11f, 10.5f, true, name);
+        float lx = right;
+        for (int s = names.length - 1; s >= 0; s--) {
+            lx -= PdfReport.textWidth(names[s], 8f, false);
+            page.fillColor(PALETTE[s % PALETTE.length]).text(lx, y - 11f, 8f, false, names[s]);
+            lx -= 16f;
+            page.strokeColor(PALETTE[s % PALETTE.length]).lineWidth(1.5f).line(lx, y - 8f, lx + 12f, y - 8f);
+            lx -= 10f;
+        }
+        page.fillColor(BLACK);
+
+        // value range over all series, grown to whole tick steps
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double[] s : series) {
+            for (double v : s) {
+                if (!Double.isFinite(v)) continue;
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+        }
+        if (min > max) { min = 0.0; max = 1.0; }
+        min = Math.min(0.0, min);
+        double step = niceStep((max - min) / 5.0);
+        double y0 = Math.floor(min / step) * step, y1 = Math.max(y0 + step, Math.ceil(max / step) * step);
+
+        page.lineWidth(0.4f).strokeColor(GRID).fillColor(GREY);
+        for (double v = y0; v <= y1 + step * 1e-6; v += step) {
+            float py = bottom + (float) ((v - y0) / (y1 - y0)) * plotH;
+            page.line(left, py, right, py);
+            page.textRight(left - 4f, py - 2.5f, 7f, false, tick(v, step));
+        }
+        double t0 = t[0], t1 = Math.max(t[t.length - 1], t0 + 1e-9);
+        double tStep = TIME_STEPS[TIME_STEPS.length - 1];
+        for (double s : TIME_STEPS) if ((t1 - t0) / s <= 8.0) { tStep = s; break; }
+        for (double v = Math.ceil(t0 / tStep) * tStep; v <= t1; v += tStep) {
+            float px = left + (float) ((v - t0) / (t1 - t0)) * plotW;
+            page.line(px, bottom, px, top);
+            String label = clock(v);
+            page.text(px - PdfReport.textWidth(label, 7f, false) / 2f, bottom - 10f, 7f, false, label);
+        }
+        page.fillColor(BLACK).strokeColor(GREY).rect(left, bottom, plotW, plotH, false);
+
+        page.saveClip(left, bottom, plotW, plotH).lineWidth(0.8f);
+        int buckets = Math.max(1, (int) plotW);
+        for (int s = 0; s < series.length; s++) {
+            page.strokeColor(PALETTE[s % PALETTE.length]);
+            polyline(t, series[s], t0, t1, y0, y1, left, bottom, plotW, plotH, buckets);
+        }
+        page.restore();
+        y -= CHART_H + CHART_GAP;
+    }
+
+    // min/max per time bucket, in time order; non-finite values break the line
+    private void polyline(double[] t, double[] v, double t0, double t1, double v0, double v1,
+                          float left, float bottom, float w, float h, int buckets) {
+        int bucket = -1, lo = -1, hi = -1;
+        boolean penDown = false;
+        int drawn = 0;
+        for (int i = 0; i <= v.length; i++) {
+            boolean end = i == v.length;
+            boolean valid = !end && Double.isFinite(v[i]);
+            int b = valid ? (int) Math.min(buckets - 1, Math.max(0, (t[i] - t0) / (t1 - t0) * buckets)) : -1;
+            if (lo >= 0 && (!valid || b != bucket)) {
+                int first = Math.min(lo, hi), second = Math.max(lo, hi);
+                for (int k = 0; k < (first == second ? 1 : 2); k++) {
+                    int j = k == 0 ? first : second;
+                    float px = left + (float) ((t[j] - t0) / (t1 - t0)) * w;
+                    float py = bottom + (float) ((v[j] - v0) / (v1 - v0)) * h;
+                    if (penDown) page.lineTo(px, py);
+                    else page.moveTo(px, py);
+                    penDown = true;
+                    drawn++;
+                }
+                lo = hi = -1;
+            }
+            if (!valid) {
+                if (drawn > 0) page.stroke();
+                penDown = false;
+                drawn = 0;
+                continue;
+            }
+            if (lo < 0) {
+                bucket = b;
+                lo = hi = i;
+            } else {
+                if (v[i] < v[lo]) lo = i;
+                if (v[i] > v[hi]) hi = i;
+            }
+        }
+    }
+
+    // percentile column of all vehicles; -1 (no samples yet) becomes a gap
+    private static double[] pct(MetricsStore.Snapshot snap, int metric, int stat) {
+        double[] v = snap.doubles(MetricsStore.D_PCT + MetricsAggregator.pctIndex(MetricsAggregator.G_ALL, metric, stat));
+        for (int i = 0; i < v.length; i++) if (v[i] < 0) v[i] = Double.NaN;
+        return v;
+    }
+
+    private static double[] asDoubles(long[] l) {
+        double[] d = new double[l.length];
+        for (int i = 0; i < l.length; i++) d[i] = l[i];
+        return d;
+    }
+
+    // 1, 2 or 5 x 10^k, at least raw
+    private static double niceStep(double raw) {
+        if (!(raw > 0)) return 1.0;
+        double p = Math.pow(10, Math.floor(Math.log10(raw)));
+        double f = raw / p;
+        return (f <= 1 ? 1 : f <= 2 ? 2 : f <= 5 ? 5 : 10) * p;
+    }
+
+    private static String tick(double v, double step) {
+        int decimals = step >= 1 ? 0 : (int) Math.ceil(-Math.log10(step) - 1e-9);
+        return String.format(Locale.US, "%." + decimals + "f", Math.abs(v) < step * 1e-6 ? 0.0 : v);
+    }
+
+    // sim seconds as h:mm:ss (m:ss below an hour)
+    private static String clock(double sec) {
+        long s = Math.round(sec);
+        if (s < 3600) return String.format(Locale.US, "%d:%02d", s / 60, s % 60);
+        return String.format(Locale.US, "%d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+    }
+
+    // ===================== Tables =====================
+    // first column left-aligned, the rest right-aligned unless listed in textColumns
+    private void table(String[] headers, float[] widths, int textColumns, List<String[]> rows) throws IOException {
+        ensure(ROW_H * 3);
+        tableHeader(headers, widths, textColumns);
+        for (int r = 0; r < rows.size(); r++) {
+            if (y - ROW_H < MARGIN) {
+                newPage();
+                tableHeader(headers, widths, textColumns);
+            }
+            y -= ROW_H;
+            if ((r & 1) == 1) {
+                float total = 0f;
+                for (float w : widths) total += w;
+                page.fillColor(SHADE).rect(MARGIN, y - 3.5f, total, ROW_H, true).fillColor(BLACK);
+            }
+            cells(rows.get(r), widths, textColumns, false);
+        }
+        y -= 6f;
+    }
+
+    private void tableHeader(String[] headers, float[] widths, int textColumns) {
+        y -= ROW_H;
+        cells(headers, widths, textColumns, true);
+        float total = 0f;
+        for (float w : widths) total += w;
+        page.strokeColor(GREY).lineWidth(0.6f).line(MARGIN, y - 4f, MARGIN + total, y - 4f);
+    }
+
+    private void cells(String[] cells, float[] widths, int textColumns, boolean bold) {
+        float x = MARGIN;
+        for (int c = 0; c < cells.length; c++) {
+            String s = fit(cells[c] == null ? "" : cells[c], widths[c] - 6f, 8f, bold, false);
+            if (c < textColumns) page.text(x + 2f, y, 8f, bold, s);
+            else page.textRight(x + widths[c] - 4f, y, 8f, bold, s);
+            x += widths[c];
+        }
+    }
+
+    private void routeTable(ThroughputCounters.Summary thr, String[] routeNames) throws IOException {
+        heading("Throughput by vehicle type and route");
+        List<String[]> rows = new ArrayList<>();
+        rows.add(routeRow(thr, "all vehicles", ThroughputCounters.ALL));
+        for (byte tc = 0; tc < 3; tc++) rows.add(routeRow(thr, VehicleFrame.typeName(tc), ThroughputCounters.typeKey(tc)));
+        int routes = Math.max(thr.routeCount(), routeNames.length);
+        for (int r = 0; r < routes; r++) {
+            String name = r < routeNames.length ? routeNames[r] : ("route " + r);
+            rows.add(routeRow(thr, name, ThroughputCounters.routeKey(r)));
+        }
+        table(new String[]{"Scenario / type", "Arrivals", "1m veh/h", "5m veh/h", "15m veh/h", "Run veh/h"},
+                new float[]{179f, 64f, 64f, 64f, 64f, 64f}, 1, rows);
+    }
+
+    private static String[] routeRow(ThroughputCounters.Summary thr, String name, int key) {
+        return new String[]{name, Long.toString(thr.runTotal(key)),
+                f1(thr.vph(ThroughputCounters.W_1MIN, key)), f1(thr.vph(ThroughputCounters.W_5MIN, key)),
+                f1(thr.vph(ThroughputCounters.W_15MIN, key)), f1(thr.vph(ThroughputCounters.W_RUN, key))};
+    }
+
+    // halting summed over the TLS's incoming edges (now and run mean); occupancy averaged over them
+    private void tlsTable(List<TrafficControl.TlsInfo> tls, EdgeStatsCollector.Snapshot edges) throws IOException {
+        heading("Traffic lights (incoming edges)");
+        if (tls.isEmpty()) {
+            paragraph(Collections.singletonList("(no traffic lights)"));
+            return;
+        }
+        Map<String, Integer> edgeIndex = new HashMap<>();
+        for (int i = 0; i < edges.size(); i++) edgeIndex.put(edges.id(i), i);
+        Map<String, String> labels = MapVisualisation.getTlsLabels();
+
+        List<String[]> rows = new ArrayList<>();
+        for (TrafficControl.TlsInfo info : tls) {
+            int haltNow = 0, peak = 0, known = 0;
+            double haltMean = 0.0, occ = 0.0;
+            for (String e : info.edges) {
+                Integer i = edgeIndex.get(e);
+                if (i == null) continue;
+                known++;
+                haltNow += edges.halting(i);
+                haltMean += edges.runMeanHalting(i);
+                peak = Math.max(peak, edges.haltingMax(i));
+                occ += edges.runMeanOccupancy(i);
+            }
+            String label = labels == null ? "" : labels.getOrDefault(info.id, "");
+            rows.add(new String[]{info.id, label.equals(info.id) ? "" : label, info.mode,
+                    Integer.toString(info.ruleRedHolds), Integer.toString(info.edges.length),
+                    known == 0 ? "-" : Integer.toString(haltNow), known == 0 ? "-" : f2(haltMean),
+                    known == 0 ? "-" : Integer.toString(peak), known == 0 ? "-" : f1(occ / known)});
+        }
+        table(new String[]{"TLS", "Label", "Mode", "Rule reds", "Edges", "Halt now", "Halt mean", "Peak edge",
+                        "Occ mean %"},
+                new float[]{78f, 86f, 62f, 42f, 34f, 44f, 48f, 48f, 57f}, 3, rows);
+    }
+
+    private void bottleneckTable(EdgeStatsCollector.Snapshot edges) throws IOException {
+        heading("Bottleneck edges over the run (by mean halting)");
+        int[] idx = new int[BOTTLENECK_ROWS];
+        int n = edges.topBottlenecks(BOTTLENECK_ROWS, true, idx);
+        if (n == 0) {
+            paragraph(Collections.singletonList("(no edge statistics)"));
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            int i = idx[k];
+            rows.add(new String[]{edges.id(i), f2(edges.runMeanHalting(i)), Integer.toString(edges.haltingMax(i)),
+                    f1(edges.runMeanOccupancy(i)), Integer.toString(edges.halting(i)),
+                    Integer.toString(edges.vehicles(i)), f1(edges.meanSpeed(i))});
+        }
+        table(new String[]{"Edge", "Halt mean", "Halt max", "Occ mean %", "Halt now", "Veh now", "Speed m/s"},
+                new float[]{139f, 60f, 60f, 60f, 60f, 60f, 60f}, 1, rows);
+    }
+
+    private void phaseTable(PhaseStats.Snapshot phases) throws IOException {
+        heading("Simulation loop latency by phase (ms)");
+        List<String[]> rows = new ArrayList<>();
+        for (PhaseStats.Phase p : PhaseStats.PHASES) {
+            if (phases.count(p) == 0) continue;
+            rows.add(new String[]{p.label, Long.toString(phases.count(p)), f3(phases.meanMs(p)),
+                    f3(phases.percentileMs(p, 0.50)), f3(phases.percentileMs(p, 0.99)),
+                    f3(phases.maxNs(p) / 1e6), phases.loopSharePercent(p, 1)});
+        }
+        if (rows.isEmpty()) {
+            paragraph(Collections.singletonList("(no loop timings)"));
+            return;
+        }
+        table(new String[]{"Phase", "Samples", "Mean", "p50", "p99", "Max", "Loop"},
+                new float[]{139f, 60f, 60f, 60f, 60f, 60f, 60f}, 1, rows);
+    }
+
+    private static String f1(double v) { return String.format(Locale.US, "%.1f", v); }
+    private static String f2(double v) { return String.format(Locale.US, "%.2f", v); }
+    private static String f3(double v) { return String.format(Locale.US, "%.3f", v); }
+}
@@ -0,0 +1,152 @@
+// ===================== ThroughputCounters.java =====================
+package org.example;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Sliding-window arrival counts over several windows at once, per key, in fixed memory.
+// Time is cut into BUCKET_SEC buckets; one int ring per key covers the longest window, and every
+// window keeps a running sum per key (the bucket leaving a window is subtracted as the head moves).
+// Keys: ALL, one per vehicle type code, then one per scenario (grows on demand).
+// Single-threaded, like MetricsAggregator.
+public final class ThroughputCounters {
+
+    public static final double BUCKET_SEC = 10.0;
+    public static final double[] WINDOWS_SEC = {60.0, Main.THROUGHPUT_WINDOW_SEC, 900.0};
+    public static final String[] WINDOW_NAMES = {"1m", "5m", "15m", "run"};
+    public static final int W_1MIN = 0, W_5MIN = 1, W_15MIN = 2, W_RUN = 3;
+
+    public static final int ALL = 0;
+    private static final int TYPE_KEYS = 3;   // VehicleFrame.TYPE_CAR..TYPE_BUS
+    private static final int ROUTE_BASE = 1 + TYPE_KEYS;
+
+    private static final int[] WINDOW_BUCKETS = new int[WINDOWS_SEC.length];
+    private static final int RING;
+    static {
+        int max = 1;
+        for (int w = 0; w < WINDOWS_SEC.length; w++) {
+            WINDOW_BUCKETS[w] = Math.max(1, (int) Math.round(WINDOWS_SEC[w] / BUCKET_SEC));
+            max = Math.max(max, WINDOW_BUCKETS[w]);
+        }
+        RING = max;
+    }
+
+    private int keys = ROUTE_BASE;
+    private int[][] ring = new int[keys][RING];                 // [key][bucket % RING]
+    private long[][] windowSum = new long[WINDOWS_SEC.length][keys];
+    private long[] runTotal = new long[keys];
+
+    private long head = Long.MIN_VALUE;   // absolute index of the newest bucket
+    private double firstTime = Double.NaN, lastTime = 0.0;
+
+    public static int typeKey(byte typeCode) { return 1 + typeCode; }
+    public static int routeKey(int scenarioIndex) { return ROUTE_BASE + scenarioIndex; }
+
+    public int routeCount() { return keys - ROUTE_BASE; }
+
+    public void clear() {
+        for (int[] r : ring) Arrays.fill(r, 0);
+        for (long[] s : windowSum) Arrays.fill(s, 0L);
+        Arrays.fill(runTotal, 0L);
+        head = Long.MIN_VALUE;
+        firstTime = Double.NaN;
+        lastTime = 0.0;
+    }
+
+    // move the head to the bucket of simTime, expiring what falls out of each window
+    public void advance(double simTime) {
+        if (Double.isNaN(firstTime)) firstTime = simTime;
+        lastTime = simTime;
+        long b = (long) Math.floor(simTime / BUCKET_SEC);
+        if (head == Long.MIN_VALUE) { head = b; return; }
+        if (b <= head) return;
+
+        if (b - head >= RING) {
+            for (int[] r : ring) Arrays.fill(r, 0);
+            for (long[] s : windowSum) Arrays.fill(s, 0L);
+            head = b;
+            return;
+        }
+        while (head < b) {
+            head++;
+            int slot = (int) Math.floorMod(head, (long) RING);
+            for (int w = 0; w < WINDOW_BUCKETS.length; w++) {
+                int leaving = (int) Math.floorMod(head - WINDOW_BUCKETS[w], (long) RING);
+                long[] sum = windowSum[w];
+                for (int k = 0; k < keys; k++) sum[k] -= ring[k][leaving];
+            }
+            for (int k = 0; k < keys; k++) ring[k][slot] = 0;
+        }
+    }
+
+    // n arrivals at the current head (call advance() first)
+    public void add(int key, long n) {
+        if (n <= 0 || head == Long.MIN_VALUE) return;
+        ensureKeys(key + 1);
+        ring[key][(int) Math.floorMod(head, (long) RING)] += (int) n;
+        for (long[] sum : windowSum) sum[key] += n;
+        runTotal[key] += n;
+    }
+
+    // vehicles per hour over window w (W_RUN = since the first sample); a window that has not
+    // filled yet is divided by the time covered so far
+    public double vph(int w, int key) {
+        if (key >= keys || Double.isNaN(firstTime)) return 0.0;
+        double elapsed = Math.max(BUCKET_SEC, lastTime - firstTime);
+        if (w == W_RUN) return runTotal[key] / (elapsed / 3600.0);
+        return windowSum[w][key] / (Math.min(WINDOWS_SEC[w], elapsed) / 3600.0);
+    }
+
+    public long runTotal(int key) { return key < keys ? runTotal[key] : 0L; }
+
+    // immutable copy of every key's rates and totals, for readers on other threads
+    public static final class Summary {
+        private final double[][] vph;       // [window incl. W_RUN][key]
+        private final long[] total;
+
+        private Summary(double[][] vph, long[] total) { this.vph = vph; this.total = total; }
+
+        public int routeCount() { return total.length - ROUTE_BASE; }
+        public double vph(int w, int key) { return key < total.length ? vph[w][key] : 0.0; }
+        public long runTotal(int key) { return key < total.length ? total[key] : 0L; }
+    }
+
+    public static final Summary EMPTY = new ThroughputCounters().summary();
+
+    public Summary summary() {
+        double[][] v = new double[WINDOW_NAMES.length][keys];
+        for (int w = 0; w < v.length; w++)
+            for (int k = 0; k < keys; k++) v[w][k] = vph(w, k);
+        return new Summary(v, Arrays.copyOf(runTotal, keys));
+    }
+
+    // one line per key: "name: 1m=.. 5m=.. 15m=.. run=.. v/h (n total)"
+    public String describe(String[] routeNames) {
+        StringBuilder sb = new StringBuilder();
+        describeKey(sb, "all", ALL);
+        for (byte t = 0; t < TYPE_KEYS; t++) describeKey(sb, VehicleFrame.typeName(t), typeKey(t));
+        for (int r = 0; r < routeCount(); r++) {
+            String name = (routeNames != null && r < routeNames.length) ? routeNames[r] : ("route " + r);
+            describeKey(sb, name, routeKey(r));
+        }
+        return sb.toString();
+    }
+
+    private void describeKey(StringBuilder sb, String name, int key) {
+        sb.append(String.format(Locale.US, "%n  %-24s", name));
+        for (int w = 0; w < WINDOW_NAMES.length; w++) {
+            sb.append(String.format(Locale.US, " %s=%.1f", WINDOW_NAMES[w], vph(w, key)));
+        }
+        sb.append(" v/h (").append(runTotal(key)).append(" total)");
+    }
+
+    private void ensureKeys(int n) {
+        if (n <= keys) return;
+        int cap = n;   // a handful of scenarios; routeCount() is derived from the key count
+        ring = Arrays.copyOf(ring, cap);
+        for (int k = keys; k < cap; k++) ring[k] = new int[RING];
+        for (int w = 0; w < windowSum.length; w++) windowSum[w] = Arrays.copyOf(windowSum[w], cap);
+        runTotal = Arrays.copyOf(runTotal, cap);
+        keys = cap;
+    }
+}
@@ -0,0 +1,26 @@
+// ===================== Traci.java =====================
+package org.example;
+
+// Process-wide TraCI backend. Defaults to libtraci; another backend can be installed before SUMO starts.
+// Either one is wrapped in JfrTraciGateway so every call shows up in Flight Recorder.
+public final class Traci {
+
+    private static volatile TraciGateway gateway;
+
+    private Traci() {}
+
+    public static TraciGateway gw() {
+        TraciGateway g = gateway;
+        if (g == null) {
+            synchronized (Traci.class) {
+                if (gateway == null) gateway = JfrTraciGateway.wrap(new LibTraciGateway());
+                g = gateway;
+            }
+        }
+        return g;
+    }
+
+    public static synchronized void install(TraciGateway g) {
+        gateway = JfrTraciGateway.wrap(g);
+    }
+}
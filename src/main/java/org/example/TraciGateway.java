@@ -0,0 +1,117 @@
+// ===================== TraciGateway.java =====================
+package org.example;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Every TraCI round trip of the application goes through this interface (see Traci.gw()).
+// Only plain Java types cross it, so a backend does not need the native libtraci classes.
+// "Unknown" results are reported as null / NaN / -1 instead of exceptions.
+public interface TraciGateway {
+
+    // one entry per TraCI command the application issues (for the call counters)
+    enum Command {
+        SIM_START, SIM_CLOSE, SIM_STEP, SIM_TIME, SIM_DELTA_T, SIM_MIN_EXPECTED,
+        SIM_DEPARTED_IDS, SIM_ARRIVED_IDS, SIM_SUBSCRIBE, SIM_SUBSCRIPTION_RESULTS, SIM_FIND_ROUTE,
+        VEH_ID_LIST, VEH_ID_COUNT, VEH_POSITION, VEH_SPEED, VEH_WAITING_TIME,
+        VEH_SUBSCRIBE, VEH_SUBSCRIPTION_RESULTS, VEH_ADD,
+        ROUTE_ADD, EDGE_LANE_NUMBER, LANE_ALLOWED, LANE_LENGTH, LANE_HALTING,
+        EDGE_ID_LIST, LANE_ID_LIST, EDGE_SUBSCRIBE, EDGE_SUBSCRIPTION_RESULTS, LANE_SUBSCRIBE, LANE_SUBSCRIPTION_RESULTS,
+        TLS_ID_LIST, TLS_PROGRAM, TLS_STATE, TLS_SET_STATE, TLS_SET_PROGRAM, TLS_SET_PHASE_DURATION,
+        TLS_CONTROLLED_LANES
+    }
+
+    // receives vehicle state; typeId may be null when the backend does not know it
+    interface VehicleSink {
+        void vehicle(String id, double x, double y, double speed, double waitSec, String typeId);
+    }
+
+    // receives last-step edge or lane state (occupancy in %)
+    interface TrafficStateSink {
+        void state(String id, double meanSpeed, double occupancy, int vehicles, int halting);
+    }
+
+    // ---- lifecycle / clock ----
+    void start(List<String> cmd) throws Exception;
+    void close();
+    void step(double targetTime);           // <= 0: exactly one step
+    double time();                          // sim seconds
+    double deltaT();
+    int minExpectedNumber();                // running + waiting to depart
+    List<String> departedIds();             // last step only
+    List<String> arrivedIds();              // last step only, null if not supported
+    boolean subscribeDepartArrive();        // simulation-level subscription to both lists, false if not supported
+    // last step's departed/arrived ids from that subscription, one round trip; false = no result
+    boolean readDepartArrive(List<String> departedOut, List<String> arrivedOut);
+
+    // ---- vehicles ----
+    List<String> vehicleIds();
+    int vehicleCount();
+    void subscribeVehicle(String vehId);    // position, speed, waiting time, type
+    int readVehicleSubscriptions(VehicleSink sink);
+    boolean readVehicleSubscription(String vehId, VehicleSink sink);
+    boolean readVehicle(String vehId, VehicleSink sink);    // per-value polling, type not queried
+    void addVehicle(String vehId, String routeId, String typeId) throws Exception;
+
+    // ---- network / routes ----
+    void addRoute(String routeId, List<String> edges) throws Exception;
+    List<String> findRoute(String fromEdge, String toEdge, String vTypeId);   // null if none
+    int edgeLaneNumber(String edgeId);
+    List<String> laneAllowed(String laneId);    // null if unknown, empty = all allowed
+    double laneLength(String laneId);           // NaN if unknown
+    int laneHalting(String laneId);             // -1 if unknown
+
+    // ---- edge / lane state (mean speed, occupancy, vehicle number, halting number) ----
+    List<String> edgeIds();                     // without internal (":") edges
+    List<String> laneIds();                     // lanes of those edges
+    void subscribeEdgeState(String edgeId);
+    void subscribeLaneState(String laneId);
+    int readEdgeStates(TrafficStateSink sink);  // all subscribed edges, one round trip
+    int readLaneStates(TrafficStateSink sink);
+
+    // ---- traffic lights ----
+    List<String> tlsIds();
+    String tlsProgram(String tlsId);
+    String tlsState(String tlsId);
+    void setTlsState(String tlsId, String state);
+    void setTlsProgram(String tlsId, String program);
+    void setTlsPhaseDuration(String tlsId, double sec);
+    List<String> tlsControlledLanes(String tlsId);   // null if unknown
+
+    CallCounts callCounts();
+
+    // ===================== Call counters =====================
+    final class CallCounts {
+        private static final Command[] COMMANDS = Command.values();
+        private final AtomicLongArray n = new AtomicLongArray(COMMANDS.length);
+
+        public void inc(Command c) { n.incrementAndGet(c.ordinal()); }
+        public long get(Command c) { return n.get(c.ordinal()); }
+
+        public long total() {
+            long t = 0;
+            for (int i = 0; i < COMMANDS.length; i++) t += n.get(i);
+            return t;
+        }
+
+        public Map<Command, Long> snapshot() {
+            EnumMap<Command, Long> m = new EnumMap<>(Command.class);
+            for (Command c : COMMANDS) {
+                long v = n.get(c.ordinal());
+                if (v > 0) m.put(c, v);
+            }
+            return m;
+        }
+
+        // "total=1234 | VEH_SUBSCRIPTION_RESULTS=600 SIM_STEP=600 ..." sorted by count
+        public String summary() {
+            StringBuilder sb = new StringBuilder("total=").append(total()).append(" |");
+            snapshot().entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                    .forEach(e -> sb.append(' ').append(e.getKey()).append('=').append(e.getValue()));
+            return sb.toString();
+        }
+    }
+}
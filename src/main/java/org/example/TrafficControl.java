@@ -1,10 +1,7 @@
 // ===================== TrafficControl.java =====================
 package org.example;
 
-import org.eclipse.sumo.libtraci.*;
-
 import javax.swing.*;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -44,12 +41,37 @@ public class TrafficControl {
     private final ConcurrentHashMap<String, RuleState> ruleStates = new ConcurrentHashMap<>();
     private final Map<String, String> ruleOriginalPrograms = new ConcurrentHashMap<>();
     private final Set<String> ruleTouchedTls = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Integer> ruleRedHolds = new ConcurrentHashMap<>();   // whole run
+
+    // edges of each TLS's controlled (incoming) lanes, read once with the TLS list
+    private volatile Map<String, String[]> tlsEdges = Collections.emptyMap();
+
+    // per-TLS state for the summary report
+    public static final class TlsInfo {
+        public final String id;
+        public final String mode;
+        public final int ruleRedHolds;
+        public final String[] edges;
+
+        TlsInfo(String id, String mode, int ruleRedHolds, String[] edges) {
+            this.id = id;
+            this.mode = mode;
+            this.ruleRedHolds = ruleRedHolds;
+            this.edges = edges;
+        }
+    }
 
+    // combo/label may be null (headless runs)
     public TrafficControl(JComboBox<TlsItem> tlComboRef, JLabel tlStateLabel) {
         this.tlComboRef = tlComboRef;
         this.tlStateLabel = tlStateLabel;
     }
 
+    private void showStatus(String text) {
+        if (tlStateLabel == null) return;
+        SwingUtilities.invokeLater(() -> tlStateLabel.setText(text));
+    }
+
     public boolean isRuleBasedTlsEnabled() { return ruleBasedTlsEnabled; }
 
     public void setSelectedTls(String tlsId) { this.selectedTlsId = tlsId; }
@@ -57,17 +79,21 @@ public class TrafficControl {
     public void setRuleBasedTlsEnabled(boolean enabled) {
         this.ruleBasedTlsEnabled = enabled;
         if (!enabled) restoreRuleBasedToAuto();
-        SwingUtilities.invokeLater(() -> tlStateLabel.setText(enabled ? "Rule-based TLS: ON" : "Rule-based TLS: OFF"));
+        showStatus(enabled ? "Rule-based TLS: ON" : "Rule-based TLS: OFF");
     }
 
     // ===================== TLS dropdown populate =====================
     public void rebuildTrafficLightDropdown() {
         try {
-            StringVector ids = TrafficLight.getIDList();
-            final java.util.List<String> list = new ArrayList<>();
-            for (int i = 0; i < ids.size(); i++) list.add(ids.get(i));
+            final java.util.List<String> list = new ArrayList<>(Traci.gw().tlsIds());
 
             tlsIdsCached = new ArrayList<>(list);
+            tlsEdges = readControlledEdges(list);
+
+            if (tlComboRef == null) {
+                selectedTlsId = list.isEmpty() ? null : list.get(0);
+                return;
+            }
 
             SwingUtilities.invokeLater(() -> {
                 tlComboRef.removeAllItems();
@@ -84,6 +110,7 @@ public class TrafficControl {
             });
         } catch (Exception ex) {
             Logging.LOG.log(java.util.logging.Level.WARNING, "Failed to read traffic light IDs", ex);
+            if (tlComboRef == null) return;
             SwingUtilities.invokeLater(() -> {
                 tlComboRef.removeAllItems();
                 tlComboRef.setEnabled(false);
@@ -92,6 +119,42 @@ public class TrafficControl {
         }
     }
 
+    private static Map<String, String[]> readControlledEdges(java.util.List<String> ids) {
+        Map<String, String[]> out = new HashMap<>();
+        for (String id : ids) {
+            java.util.List<String> lanes;
+            try { lanes = Traci.gw().tlsControlledLanes(id); } catch (Exception ex) { lanes = null; }
+            Set<String> edges = new LinkedHashSet<>();
+            if (lanes != null) {
+                for (String lane : lanes) {
+                    if (lane == null || lane.startsWith(":")) continue;   // internal junction lanes
+                    int cut = lane.lastIndexOf('_');
+                    edges.add(cut > 0 ? lane.substring(0, cut) : lane);
+                }
+            }
+            out.put(id, edges.toArray(new String[0]));
+        }
+        return out;
+    }
+
+    // any thread; mode is the current manual / rule-based override, "program" when neither applies
+    public java.util.List<TlsInfo> tlsInfo() {
+        java.util.List<TlsInfo> out = new ArrayList<>();
+        Map<String, String[]> edges = tlsEdges;
+        for (String id : tlsIdsCached) {
+            ManualTlsMode mm = manualTlsMode.getOrDefault(id, ManualTlsMode.NONE);
+            RuleState rs = ruleStates.get(id);
+            String mode;
+            if (mm == ManualTlsMode.FORCE_RED) mode = "forced red";
+            else if (mm == ManualTlsMode.FORCE_GREEN) mode = "forced green";
+            else if (ruleBasedTlsEnabled && rs != null && rs.phase == RulePhase.HOLD_RED) mode = "rule: red";
+            else if (ruleBasedTlsEnabled && rs != null && rs.phase == RulePhase.HOLD_GREEN) mode = "rule: green";
+            else mode = "program";
+            out.add(new TlsInfo(id, mode, ruleRedHolds.getOrDefault(id, 0), edges.getOrDefault(id, new String[0])));
+        }
+        return out;
+    }
+
     // ===================== Per-step apply =====================
     public void applyPerStep(double simTime) {
         applyRuleBasedTls(simTime);
@@ -103,7 +166,7 @@ public class TrafficControl {
         if (tlsId == null) return;
         if (originalTlsPrograms.containsKey(tlsId)) return;
         try {
-            String prog = TrafficLight.getProgram(tlsId);
+            String prog = Traci.gw().tlsProgram(tlsId);
             originalTlsPrograms.put(tlsId, (prog == null || prog.isBlank()) ? "0" : prog);
         } catch (Exception ex) {
             originalTlsPrograms.put(tlsId, "0");
@@ -117,14 +180,14 @@ public class TrafficControl {
             if (mode == null || mode == ManualTlsMode.NONE) continue;
 
             try {
-                String current = TrafficLight.getRedYellowGreenState(tlsId);
+                String current = Traci.gw().tlsState(tlsId);
                 int n = current.length();
                 StringBuilder sb = new StringBuilder(n);
 
                 if (mode == ManualTlsMode.FORCE_RED) for (int i = 0; i < n; i++) sb.append('r');
                 else if (mode == ManualTlsMode.FORCE_GREEN) for (int i = 0; i < n; i++) sb.append('G');
 
-                TrafficLight.setRedYellowGreenState(tlsId, sb.toString());
+                Traci.gw().setTlsState(tlsId, sb.toString());
             } catch (Exception ignored) {}
         }
     }
@@ -134,16 +197,16 @@ public class TrafficControl {
             rememberOriginalProgram(tlsId);
             manualTlsMode.put(tlsId, ManualTlsMode.FORCE_RED);
 
-            String current = TrafficLight.getRedYellowGreenState(tlsId);
+            String current = Traci.gw().tlsState(tlsId);
             int n = current.length();
             StringBuilder sb = new StringBuilder(n);
             for (int i = 0; i < n; i++) sb.append('r');
-            TrafficLight.setRedYellowGreenState(tlsId, sb.toString());
+            Traci.gw().setTlsState(tlsId, sb.toString());
 
-            SwingUtilities.invokeLater(() -> tlStateLabel.setText("TL " + tlsId + " forced RED (persistent)"));
+            showStatus("TL " + tlsId + " forced RED (persistent)");
         } catch (Exception ex) {
             Logging.LOG.log(java.util.logging.Level.WARNING, "forceTrafficLightRed failed for " + tlsId, ex);
-            SwingUtilities.invokeLater(() -> tlStateLabel.setText("TL " + tlsId + " error (red)"));
+            showStatus("TL " + tlsId + " error (red)");
         }
     }
 
@@ -152,16 +215,16 @@ public class TrafficControl {
             rememberOriginalProgram(tlsId);
             manualTlsMode.put(tlsId, ManualTlsMode.FORCE_GREEN);
 
-            String current = TrafficLight.getRedYellowGreenState(tlsId);
+            String current = Traci.gw().tlsState(tlsId);
             int n = current.length();
             StringBuilder sb = new StringBuilder(n);
             for (int i = 0; i < n; i++) sb.append('G');
-            TrafficLight.setRedYellowGreenState(tlsId, sb.toString());
+            Traci.gw().setTlsState(tlsId, sb.toString());
 
-            SwingUtilities.invokeLater(() -> tlStateLabel.setText("TL " + tlsId + " forced GREEN (persistent)"));
+            showStatus("TL " + tlsId + " forced GREEN (persistent)");
         } catch (Exception ex) {
             Logging.LOG.log(java.util.logging.Level.WARNING, "forceTrafficLightGreen failed for " + tlsId, ex);
-            SwingUtilities.invokeLater(() -> tlStateLabel.setText("TL " + tlsId + " error (green)"));
+            showStatus("TL " + tlsId + " error (green)");
         }
     }
 
@@ -174,8 +237,8 @@ public class TrafficControl {
                 String prog = originalTlsPrograms.get(tlsId);
                 if (prog == null || prog.isBlank()) prog = "0";
 
-                TrafficLight.setProgram(tlsId, prog);
-                try { TrafficLight.setPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
+                Traci.gw().setTlsProgram(tlsId, prog);
+                try { Traci.gw().setTlsPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
 
                 manualTlsMode.put(tlsId, ManualTlsMode.NONE);
                 ok++;
@@ -188,12 +251,9 @@ public class TrafficControl {
         manualTlsMode.entrySet().removeIf(e -> e.getValue() == ManualTlsMode.NONE);
         originalTlsPrograms.clear();
 
-        final int okF = ok, failF = fail;
-        SwingUtilities.invokeLater(() -> {
-            if (okF > 0 && failF == 0) tlStateLabel.setText("TL Reset: all back to NORMAL (" + okF + ")");
-            else if (okF > 0) tlStateLabel.setText("TL Reset: normal=" + okF + ", failed=" + failF);
-            else tlStateLabel.setText("TL Reset: nothing to reset");
-        });
+        if (ok > 0 && fail == 0) showStatus("TL Reset: all back to NORMAL (" + ok + ")");
+        else if (ok > 0) showStatus("TL Reset: normal=" + ok + ", failed=" + fail);
+        else showStatus("TL Reset: nothing to reset");
     }
 
     // ===================== Rule-based TLS =====================
@@ -201,7 +261,7 @@ public class TrafficControl {
         if (tlsId == null) return;
         if (ruleOriginalPrograms.containsKey(tlsId)) return;
         try {
-            String prog = TrafficLight.getProgram(tlsId);
+            String prog = Traci.gw().tlsProgram(tlsId);
             ruleOriginalPrograms.put(tlsId, (prog == null || prog.isBlank()) ? "0" : prog);
         } catch (Exception ex) {
             ruleOriginalPrograms.put(tlsId, "0");
@@ -213,8 +273,8 @@ public class TrafficControl {
             try {
                 String prog = ruleOriginalPrograms.get(tlsId);
                 if (prog == null || prog.isBlank()) prog = "0";
-                TrafficLight.setProgram(tlsId, prog);
-                try { TrafficLight.setPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
+                Traci.gw().setTlsProgram(tlsId, prog);
+                try { Traci.gw().setTlsPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
             } catch (Exception ignore) {}
         }
         ruleTouchedTls.clear();
@@ -222,55 +282,26 @@ public class TrafficControl {
         ruleStates.clear();
     }
 
-    private StringVector safeGetControlledLanes(String tlsId) {
-        try {
-            Method m = TrafficLight.class.getMethod("getControlledLanes", String.class);
-            Object o = m.invoke(null, tlsId);
-            if (o instanceof StringVector) return (StringVector) o;
-        } catch (Exception ignore) {}
-        return null;
-    }
-
     private int haltingVehiclesNearTls(String tlsId) {
-        StringVector lanes = safeGetControlledLanes(tlsId);
-        if (lanes == null || lanes.size() == 0) return 0;
+        java.util.List<String> lanes = Traci.gw().tlsControlledLanes(tlsId);
+        if (lanes == null || lanes.isEmpty()) return 0;
 
         int sum = 0;
-        int any = 0;
-
-        for (int i = 0; i < lanes.size(); i++) {
-            String laneId = lanes.get(i);
-
-            Integer h = tryInvokeInt(Lane.class, "getLastStepHaltingNumber",
-                    new Class<?>[]{String.class}, new Object[]{laneId});
-            if (h != null) { sum += h; any++; continue; }
-
-            Integer v = tryInvokeInt(Lane.class, "getLastStepVehicleNumber",
-                    new Class<?>[]{String.class}, new Object[]{laneId});
-            if (v != null) { sum += v; any++; }
+        for (String laneId : lanes) {
+            int h = Traci.gw().laneHalting(laneId);
+            if (h > 0) sum += h;
         }
-
-        if (any == 0) return 0;
         return sum;
     }
 
-    private static Integer tryInvokeInt(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).intValue();
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     private void setTlsAll(String tlsId, char c) {
         try {
-            String current = TrafficLight.getRedYellowGreenState(tlsId);
+            String current = Traci.gw().tlsState(tlsId);
             if (current == null) return;
             int n = current.length();
             StringBuilder sb = new StringBuilder(n);
             for (int i = 0; i < n; i++) sb.append(c);
-            TrafficLight.setRedYellowGreenState(tlsId, sb.toString());
+            Traci.gw().setTlsState(tlsId, sb.toString());
         } catch (Exception ignore) {}
     }
 
@@ -292,8 +323,8 @@ public class TrafficControl {
                     try {
                         String prog = ruleOriginalPrograms.get(tlsId);
                         if (prog == null || prog.isBlank()) prog = "0";
-                        TrafficLight.setProgram(tlsId, prog);
-                        try { TrafficLight.setPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
+                        Traci.gw().setTlsProgram(tlsId, prog);
+                        try { Traci.gw().setTlsPhaseDuration(tlsId, 0.0); } catch (Exception ignore) {}
                     } catch (Exception ignore) {}
                     rs.phase = RulePhase.AUTO;
                     rs.untilSimTime = -1.0;
@@ -308,6 +339,7 @@ public class TrafficControl {
                 rs.phase = RulePhase.HOLD_RED;
                 rs.untilSimTime = simTime + RULE_STOP_SEC;
                 setTlsAll(tlsId, 'r');
+                ruleRedHolds.merge(tlsId, 1, Integer::sum);
                 continue;
             }
 
@@ -320,6 +352,7 @@ public class TrafficControl {
                     rs.phase = RulePhase.HOLD_RED;
                     rs.untilSimTime = simTime + RULE_STOP_SEC;
                     setTlsAll(tlsId, 'r');
+                    ruleRedHolds.merge(tlsId, 1, Integer::sum);
                 }
             }
         }
@@ -335,7 +368,7 @@ public class TrafficControl {
         }
 
         try {
-            String ry = TrafficLight.getRedYellowGreenState(tlsShow);
+            String ry = Traci.gw().tlsState(tlsShow);
             ManualTlsMode mm = manualTlsMode.getOrDefault(tlsShow, ManualTlsMode.NONE);
             String mmTxt = (mm == ManualTlsMode.NONE) ? "AUTO" : (mm == ManualTlsMode.FORCE_RED ? "FORCED RED" : "FORCED GREEN");
             String rbTxt = ruleBasedTlsEnabled ? "RULE=ON" : "RULE=OFF";
@@ -0,0 +1,66 @@
+// ===================== Utf8ChannelWriter.java =====================
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Text output for the CSV writers: chars are UTF-8 encoded straight into one large direct buffer
+// that is drained into a FileChannel, no intermediate byte[] / String per write.
+public final class Utf8ChannelWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+    private long flushed = 0;
+
+    public Utf8ChannelWriter(File file, int bufferBytes) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buf = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    public void write(CharSequence cs) throws IOException {
+        CharBuffer cb = CharBuffer.wrap(cs);
+        utf8.reset();
+        while (true) {
+            CoderResult cr = utf8.encode(cb, buf, true);
+            if (cr.isOverflow()) { drain(); continue; }
+            if (cr.isError()) cr.throwException();
+            return;
+        }
+    }
+
+    // bytes written so far, including what is still buffered
+    public long bytes() { return flushed + buf.position(); }
+
+    public void flush() throws IOException { drain(); }
+
+    // flush and fsync (data only)
+    public void force() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) flushed += channel.write(buf);
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+// ===================== VehicleCollector.java =====================
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Per-step vehicle state (position, speed, waiting time, type).
+// SUBSCRIPTION: each vehicle is subscribed once on departure, values are read in bulk after step().
+// Departures/arrivals come from a simulation-level subscription, so the id table is updated per change
+// instead of being diffed against the whole fleet.
+// POLLING: old path, one TraCI call per vehicle per value (fallback).
+public final class VehicleCollector {
+
+    public enum Mode { SUBSCRIPTION, POLLING }
+
+    private final TraciGateway traci;
+    private volatile Mode mode;
+    private boolean subscribedExisting = false;
+    private boolean listsSubscribed = false;   // departed/arrived via simulation subscription
+    private final ArrayList<String> departedBuf = new ArrayList<>();
+    private final ArrayList<String> arrivedBuf = new ArrayList<>();
+    private double stepLength = 0.0;           // SUMO step length, read once with the subscriptions
+    private double lastCollectTime = Double.NaN;
+    private int listedArrivals = -1;
+
+    // ---- double-buffered frames: cur = last collected step, prev = the one before ----
+    private VehicleFrame cur = new VehicleFrame();
+    private VehicleFrame prev = new VehicleFrame();
+    private int vanishedLastStep = 0;
+    private int releasedThisStep = 0;
+    private final long[] arrivedByType = new long[3];
+    private long[] arrivedByRoute = new long[0];
+
+    // ---- vehicle id <-> int handle ----
+    private final HashMap<String, Integer> handleById = new HashMap<>();
+    private String[] idByHandle = new String[256];
+    private int[] seenStamp = new int[256];
+    private byte[] typeByHandle = new byte[256];
+    private double[] firstSeenByHandle = new double[256];
+    private int[] freeHandles = new int[64];
+    private int freeCount = 0;
+    private int nextHandle = 0;
+    private int stamp = 0;
+
+    // gateway callback: appends to the frame being collected
+    private VehicleFrame fill;
+    private final TraciGateway.VehicleSink sink = (id, x, y, speed, waitSec, typeId) -> {
+        int h = handleFor(id);
+        byte t = VehicleFrame.typeCode(normalizeType(typeId, id));
+        typeByHandle[h] = t;
+        fill.add(h, x, y, speed, waitSec, t);
+    };
+
+    public VehicleCollector(Mode mode) {
+        this(Traci.gw(), mode);
+    }
+
+    public VehicleCollector(TraciGateway traci, Mode mode) {
+        this.traci = traci;
+        this.mode = mode == null ? Mode.POLLING : mode;
+    }
+
+    public Mode getMode() { return mode; }
+
+    public VehicleFrame current() { return cur; }
+
+    // vehicles that left the network since the previous frame
+    public int vanishedLastStep() { return vanishedLastStep; }
+
+    // Arrivals of the last collect from the arrived-ids subscription, or -1 when that list may be
+    // incomplete: no list subscription (polling), or the sample spanned several SUMO steps and the
+    // list only covers the last one.
+    public int listedArrivals() { return listedArrivals; }
+
+    public String idOf(int handle) {
+        return (handle >= 0 && handle < idByHandle.length) ? idByHandle[handle] : null;
+    }
+
+    // ===================== Collect =====================
+    public VehicleFrame collect(double simTime) {
+        VehicleFrame t = prev;
+        prev = cur;
+        cur = t;
+        cur.clear(simTime);
+        stamp++;
+        listedArrivals = -1;
+        boolean singleStep = stepLength > 0.0 && simTime - lastCollectTime <= stepLength * 1.5;
+        lastCollectTime = simTime;
+
+        if (mode == Mode.SUBSCRIPTION) {
+            try {
+                collectSubscribed(cur, singleStep);
+                releaseVanished();
+                return cur;
+            } catch (Exception ex) {
+                Logging.LOG.log(java.util.logging.Level.WARNING,
+                        "Vehicle subscriptions failed; falling back to per-call polling.", ex);
+                mode = Mode.POLLING;
+                listedArrivals = -1;
+                cur.clear(simTime);
+            }
+        }
+        collectPolling(cur);
+        releaseVanished();
+        return cur;
+    }
+
+    private void collectSubscribed(VehicleFrame out, boolean singleStep) {
+        fill = out;
+        if (!subscribedExisting) {
+            for (String id : traci.vehicleIds()) traci.subscribeVehicle(id);
+            listsSubscribed = traci.subscribeDepartArrive();
+            stepLength = traci.deltaT();
+            subscribedExisting = true;
+        }
+
+        departedBuf.clear();
+        arrivedBuf.clear();
+        boolean haveArrived = listsSubscribed && traci.readDepartArrive(departedBuf, arrivedBuf);
+        for (String id : haveArrived ? departedBuf : traci.departedIds()) traci.subscribeVehicle(id);
+
+        int n = traci.readVehicleSubscriptions(sink);
+
+        // One SUMO step since the last sample: the lists are complete, no count check needed.
+        // Otherwise step(target) advanced several steps and the departed list only covers the last
+        // one: vehicles that departed in between show up as a count mismatch -> subscribe them.
+        boolean listsComplete = haveArrived && singleStep;
+        if (listsComplete) listedArrivals = arrivedBuf.size();
+        else if (traci.vehicleCount() > n) {
+            List<String> present = traci.vehicleIds();
+            out.ensureCapacity(present.size());
+            for (String id : present) {
+                Integer h = handleById.get(id);
+                if (h != null && seenStamp[h] == stamp) continue;
+                traci.subscribeVehicle(id);
+                if (!traci.readVehicleSubscription(id, sink)) traci.readVehicle(id, sink);
+            }
+        }
+
+        // arrivals release their handles directly (after the reads, so a handle is never reused within a step)
+        if (haveArrived) {
+            for (String id : arrivedBuf) {
+                Integer h = handleById.get(id);
+                if (h != null) release(h);
+                else countUnseenArrival(id);
+            }
+        }
+    }
+
+    private void collectPolling(VehicleFrame out) {
+        fill = out;
+        List<String> vIds = traci.vehicleIds();
+        out.ensureCapacity(vIds.size());
+        for (String id : vIds) traci.readVehicle(id, sink);
+    }
+
+    // ===================== Handles =====================
+    private int handleFor(String id) {
+        Integer h = handleById.get(id);
+        int hv;
+        if (h != null) {
+            hv = h;
+        } else {
+            hv = (freeCount > 0) ? freeHandles[--freeCount] : nextHandle++;
+            if (hv >= idByHandle.length) {
+                int cap = Math.max(hv + 1, idByHandle.length * 2);
+                idByHandle = Arrays.copyOf(idByHandle, cap);
+                seenStamp = Arrays.copyOf(seenStamp, cap);
+                typeByHandle = Arrays.copyOf(typeByHandle, cap);
+                firstSeenByHandle = Arrays.copyOf(firstSeenByHandle, cap);
+            }
+            idByHandle[hv] = id;
+            firstSeenByHandle[hv] = fill.simTime;
+            handleById.put(id, hv);
+        }
+        seenStamp[hv] = stamp;
+        return hv;
+    }
+
+    // Releases handles of vehicles that left without being reported (polling, or arrivals in a skipped
+    // step of step(target)). Only then is prev scanned: the active set is every stamped handle.
+    private void releaseVanished() {
+        if (handleById.size() > cur.size) {
+            for (int i = 0; i < prev.size; i++) {
+                int h = prev.handles[i];
+                if (seenStamp[h] != stamp && idByHandle[h] != null) release(h);
+            }
+        }
+        vanishedLastStep = releasedThisStep;
+        releasedThisStep = 0;
+        cur.copyArrivals(arrivedByType, arrivedByRoute);
+    }
+
+    // a released handle is an arrival: count it by type and scenario and record its trip time
+    // (first seen -> gone, so accurate to one sample interval)
+    private void release(int h) {
+        arrivedByType[typeByHandle[h]]++;
+        cur.addTrip(cur.simTime - firstSeenByHandle[h], typeByHandle[h]);
+        countRoute(VehicleInjection.takeScenarioOf(idByHandle[h]));
+        handleById.remove(idByHandle[h]);
+        idByHandle[h] = null;
+        if (freeCount == freeHandles.length) freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        freeHandles[freeCount++] = h;
+        releasedThisStep++;
+    }
+
+    // Departed and arrived inside one multi-step sample, so it never got a handle: counted by type
+    // (from the id) and scenario, which also drops its scenario entry. No trip time.
+    private void countUnseenArrival(String id) {
+        arrivedByType[VehicleFrame.typeCode(normalizeType(null, id))]++;
+        countRoute(VehicleInjection.takeScenarioOf(id));
+    }
+
+    private void countRoute(int scenario) {
+        if (scenario < 0) return;
+        if (scenario >= arrivedByRoute.length) arrivedByRoute = Arrays.copyOf(arrivedByRoute, scenario + 1);
+        arrivedByRoute[scenario]++;
+    }
+
+    // ===================== Helpers =====================
+    static String normalizeType(String typeId, String vehId) {
+        if (typeId != null) {
+            if (Main.TYPE_CAR.equals(typeId)) return Main.TYPE_CAR;
+            if (Main.TYPE_TRUCK.equals(typeId)) return Main.TYPE_TRUCK;
+            if (Main.TYPE_BUS.equals(typeId)) return Main.TYPE_BUS;
+        }
+        if (vehId != null) {
+            if (vehId.startsWith("truck_")) return Main.TYPE_TRUCK;
+            if (vehId.startsWith("bus_")) return Main.TYPE_BUS;
+        }
+        return Main.TYPE_CAR;
+    }
+}
@@ -0,0 +1,155 @@
+// ===================== VehicleFrame.java =====================
+package org.example;
+
+import java.util.Arrays;
+
+// One step of vehicle state as parallel primitive arrays (no per-vehicle objects).
+// Frames are reused: writers call clear() + add(), arrays only ever grow.
+public final class VehicleFrame {
+
+    public static final byte TYPE_CAR = 0;
+    public static final byte TYPE_TRUCK = 1;
+    public static final byte TYPE_BUS = 2;
+
+    private static final String[] TYPE_NAMES = {Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS};
+
+    double simTime = 0.0;
+    int size = 0;
+    int[] handles;
+    double[] x;
+    double[] y;
+    double[] speed;
+    double[] wait;   // NaN = not available
+    byte[] type;
+
+    // cumulative arrivals seen by the collector, per type code / per scenario index
+    // (cumulative like arrivedTotal, so a dropped frame loses nothing)
+    long[] arrivedByType = new long[TYPE_NAMES.length];
+    long[] arrivedByRoute = new long[0];
+
+    // trips that ended since the previous collected frame: duration (first seen -> gone) and type
+    int trips = 0;
+    double[] tripSec = new double[16];
+    byte[] tripType = new byte[16];
+
+    public VehicleFrame() { this(256); }
+
+    public VehicleFrame(int capacity) {
+        int cap = Math.max(16, capacity);
+        handles = new int[cap];
+        x = new double[cap];
+        y = new double[cap];
+        speed = new double[cap];
+        wait = new double[cap];
+        type = new byte[cap];
+    }
+
+    public int size() { return size; }
+    public double simTime() { return simTime; }
+
+    public static byte typeCode(String type) {
+        if (Main.TYPE_TRUCK.equals(type)) return TYPE_TRUCK;
+        if (Main.TYPE_BUS.equals(type)) return TYPE_BUS;
+        return TYPE_CAR;
+    }
+
+    public static String typeName(byte code) {
+        return (code >= 0 && code < TYPE_NAMES.length) ? TYPE_NAMES[code] : Main.TYPE_CAR;
+    }
+
+    public void clear(double simTime) {
+        this.simTime = simTime;
+        this.size = 0;
+        this.trips = 0;
+    }
+
+    public void addTrip(double durationSec, byte t) {
+        if (trips == tripSec.length) {
+            tripSec = Arrays.copyOf(tripSec, trips * 2);
+            tripType = Arrays.copyOf(tripType, trips * 2);
+        }
+        tripSec[trips] = durationSec;
+        tripType[trips++] = t;
+    }
+
+    public void add(int handle, double px, double py, double sp, double w, byte t) {
+        if (size == handles.length) grow(size + 1);
+        int i = size++;
+        handles[i] = handle;
+        x[i] = px;
+        y[i] = py;
+        speed[i] = sp;
+        wait[i] = w;
+        type[i] = t;
+    }
+
+    public void ensureCapacity(int n) {
+        if (n > handles.length) grow(n);
+    }
+
+    private void grow(int n) {
+        int cap = Math.max(n, handles.length * 2);
+        handles = Arrays.copyOf(handles, cap);
+        x = Arrays.copyOf(x, cap);
+        y = Arrays.copyOf(y, cap);
+        speed = Arrays.copyOf(speed, cap);
+        wait = Arrays.copyOf(wait, cap);
+        type = Arrays.copyOf(type, cap);
+    }
+
+    public void copyFrom(VehicleFrame src) {
+        ensureCapacity(src.size);
+        int n = src.size;
+        System.arraycopy(src.handles, 0, handles, 0, n);
+        System.arraycopy(src.x, 0, x, 0, n);
+        System.arraycopy(src.y, 0, y, 0, n);
+        System.arraycopy(src.speed, 0, speed, 0, n);
+        System.arraycopy(src.wait, 0, wait, 0, n);
+        System.arraycopy(src.type, 0, type, 0, n);
+        size = n;
+        simTime = src.simTime;
+        copyArrivals(src.arrivedByType, src.arrivedByRoute);
+        if (tripSec.length < src.trips) {
+            tripSec = new double[src.tripSec.length];
+            tripType = new byte[src.tripSec.length];
+        }
+        System.arraycopy(src.tripSec, 0, tripSec, 0, src.trips);
+        System.arraycopy(src.tripType, 0, tripType, 0, src.trips);
+        trips = src.trips;
+    }
+
+    void copyArrivals(long[] byType, long[] byRoute) {
+        System.arraycopy(byType, 0, arrivedByType, 0, arrivedByType.length);
+        if (arrivedByRoute.length != byRoute.length) arrivedByRoute = new long[byRoute.length];
+        System.arraycopy(byRoute, 0, arrivedByRoute, 0, byRoute.length);
+    }
+
+    // ===================== Producer -> consumer hand-off =====================
+    // Producer fills back() and calls publish(); consumer reads front().
+    // A third "pending" frame sits between them so neither side ever sees a frame the other is writing.
+    public static final class Buffer {
+        private VehicleFrame back = new VehicleFrame();
+        private VehicleFrame pending = new VehicleFrame();
+        private VehicleFrame front = new VehicleFrame();
+        private boolean fresh = false;
+
+        public VehicleFrame back() { return back; }
+
+        public synchronized void publish() {
+            VehicleFrame t = pending;
+            pending = back;
+            back = t;
+            fresh = true;
+        }
+
+        public synchronized VehicleFrame front() {
+            if (fresh) {
+                VehicleFrame t = front;
+                front = pending;
+                pending = t;
+                fresh = false;
+            }
+            return front;
+        }
+    }
+}
@@ -1,14 +1,11 @@
 // ===================== VehicleInjection.java =====================
 package org.example;
 
-import org.eclipse.sumo.libtraci.*;
-
 import javax.swing.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import java.io.File;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -67,6 +64,31 @@ public final class VehicleInjection {
 
     private static volatile boolean ready = false;
 
+    // every Vehicle.add that succeeded (used for exact cumulative arrival counts)
+    private static final java.util.concurrent.atomic.AtomicLong INJECTED_TOTAL = new java.util.concurrent.atomic.AtomicLong();
+
+    public static long injectedTotal() { return INJECTED_TOTAL.get(); }
+
+    // id suffix of injected vehicles: unique for the session and the same from run to run
+    private static final java.util.concurrent.atomic.AtomicLong NEXT_VEHICLE_ID = new java.util.concurrent.atomic.AtomicLong();
+
+    // scenario (index in ALLOWED_ROUTES) of every vehicle still in the network, for per-route throughput
+    private static final ConcurrentHashMap<String, Integer> SCENARIO_BY_VEHICLE = new ConcurrentHashMap<>();
+
+    // removes the entry: called once when the vehicle arrives; -1 if not injected by us
+    static int takeScenarioOf(String vehId) {
+        Integer s = SCENARIO_BY_VEHICLE.remove(vehId);
+        return s == null ? -1 : s;
+    }
+
+    public static String[] scenarioNames() {
+        synchronized (ALLOWED_ROUTES) {
+            String[] names = new String[ALLOWED_ROUTES.size()];
+            for (int i = 0; i < names.length; i++) names[i] = ALLOWED_ROUTES.get(i).name;
+            return names;
+        }
+    }
+
     public static boolean isReady() { return ready; }
 
     // ===================== SUMOCFG PARSING =====================
@@ -176,32 +198,6 @@ public final class VehicleInjection {
         }
     }
 
-    // ===================== Reflection helpers =====================
-    private static Object tryInvokeRet(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            return m.invoke(null, args);
-        } catch (Exception ignored) { return null; }
-    }
-
-    private static Double tryInvokeDouble(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).doubleValue();
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private static Integer tryInvokeInt(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).intValue();
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     // ===================== Long-route building helpers =====================
     private static void buildViaPoolOnce() {
         if (!viaPool.isEmpty()) return;
@@ -232,71 +228,33 @@ public final class VehicleInjection {
         pool.add(e);
     }
 
-    private static java.util.List<String> toList(StringVector sv) {
-        if (sv == null || sv.size() == 0) return null;
-        ArrayList<String> out = new ArrayList<>(sv.size());
-        for (int i = 0; i < sv.size(); i++) {
-            String e = sv.get(i);
+    private static java.util.List<String> toList(java.util.List<String> edges) {
+        if (edges == null || edges.isEmpty()) return null;
+        ArrayList<String> out = new ArrayList<>(edges.size());
+        for (String e : edges) {
             if (e != null && !e.isBlank() && !e.startsWith(":")) out.add(e);
         }
         return out.isEmpty() ? null : out;
     }
 
-    private static StringVector extractEdgesFromFindRouteResult(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof StringVector) return (StringVector) obj;
-
-        try {
-            Method m = obj.getClass().getMethod("getEdges");
-            Object edges = m.invoke(obj);
-            if (edges instanceof StringVector) return (StringVector) edges;
-        } catch (Exception ignored) {}
-
-        try {
-            Method m = obj.getClass().getMethod("getEdgeList");
-            Object edges = m.invoke(obj);
-            if (edges instanceof StringVector) return (StringVector) edges;
-        } catch (Exception ignored) {}
-
-        return null;
-    }
-
-    private static StringVector findRouteEdges(String fromEdge, String toEdge, String vTypeId) {
-        Object r2 = tryInvokeRet(Simulation.class, "findRoute",
-                new Class<?>[]{String.class, String.class, String.class},
-                new Object[]{fromEdge, toEdge, vTypeId});
-        StringVector sv = extractEdgesFromFindRouteResult(r2);
-        if (sv != null && sv.size() > 0) return sv;
-
-        Object r3 = tryInvokeRet(Simulation.class, "findRoute",
-                new Class<?>[]{String.class, String.class, String.class, double.class},
-                new Object[]{fromEdge, toEdge, vTypeId, Simulation.getCurrentTime()});
-        sv = extractEdgesFromFindRouteResult(r3);
-        if (sv != null && sv.size() > 0) return sv;
-
-        return null;
+    private static java.util.List<String> findRouteEdges(String fromEdge, String toEdge, String vTypeId) {
+        return Traci.gw().findRoute(fromEdge, toEdge, vTypeId);
     }
 
     private static boolean edgeAllowsVType(String edgeId, String vTypeId) {
         try {
-            int ln = Edge.getLaneNumber(edgeId);
+            int ln = Traci.gw().edgeLaneNumber(edgeId);
             if (ln <= 0) return true;
 
-            String laneId = edgeId + "_0";
-            Method m = Lane.class.getMethod("getAllowed", String.class);
-            Object allowedObj = m.invoke(null, laneId);
-
-            if (!(allowedObj instanceof StringVector)) return true;
-            StringVector allowed = (StringVector) allowedObj;
-
-            if (allowed.size() == 0) return true;
+            java.util.List<String> allowed = Traci.gw().laneAllowed(edgeId + "_0");
+            if (allowed == null || allowed.isEmpty()) return true;
 
             String want = "passenger";
             if (Main.TYPE_TRUCK.equals(vTypeId)) want = "truck";
             if (Main.TYPE_BUS.equals(vTypeId)) want = "bus";
 
-            for (int i = 0; i < allowed.size(); i++) {
-                if (want.equalsIgnoreCase(allowed.get(i))) return true;
+            for (String a : allowed) {
+                if (want.equalsIgnoreCase(a)) return true;
             }
             return false;
         } catch (Exception ex) {
@@ -306,9 +264,8 @@ public final class VehicleInjection {
 
     private static double safeEdgeLengthMeters(String edgeId) {
         try {
-            String lane0 = edgeId + "_0";
-            Double len = tryInvokeDouble(Lane.class, "getLength", new Class<?>[]{String.class}, new Object[]{lane0});
-            if (len != null && len > 0 && Double.isFinite(len)) return len;
+            double len = Traci.gw().laneLength(edgeId + "_0");
+            if (len > 0 && Double.isFinite(len)) return len;
         } catch (Exception ignore) {}
         return 5.0;
     }
@@ -347,7 +304,31 @@ public final class VehicleInjection {
         return true;
     }
 
-    private static java.util.List<RouteVariant> buildAndInstallLongVariants(RouteDef rd, String typeId) {
+    static java.util.List<RouteVariant> buildAndInstallLongVariants(RouteDef rd, String typeId) {
+        JfrEvents.RouteVariants ev = new JfrEvents.RouteVariants();
+        ev.begin();
+        long callsBefore = Traci.gw().callCounts().total();
+        java.util.List<RouteVariant> vars = installLongVariants(rd, typeId);
+        if (ev.shouldCommit()) {
+            ev.route = rd.baseId;
+            ev.vehicleType = typeId;
+            ev.variants = vars.size();
+            ev.traciCalls = Traci.gw().callCounts().total() - callsBefore;
+            ev.commit();
+        }
+        return vars;
+    }
+
+    // fixed seed for variant search and variant picks (ScalingHarness)
+    static void seed(long seed) { RNG.setSeed(seed); }
+
+    // benchmarks: forget built variants (installed routes stay known) and make the search repeatable
+    static void resetLongVariantCache(long seed) {
+        variantsByScenarioType.clear();
+        seed(seed);
+    }
+
+    private static java.util.List<RouteVariant> installLongVariants(RouteDef rd, String typeId) {
         String key = rd.baseId + "|" + typeId;
         java.util.List<RouteVariant> cached = variantsByScenarioType.get(key);
         if (cached != null && cached.size() >= 4) return cached;
@@ -492,9 +473,7 @@ public final class VehicleInjection {
         for (RouteVariant v : top) {
             if (installedRoutes.contains(v.routeId)) continue;
             try {
-                StringVector sv = new StringVector();
-                for (String e : v.edges) sv.add(e);
-                Route.add(v.routeId, sv);
+                Traci.gw().addRoute(v.routeId, v.edges);
                 installedRoutes.add(v.routeId);
             } catch (Exception ex) {
                 Logging.LOG.warning("Route.add failed for " + v.routeId + " (" + v.label + "): " + ex.getMessage());
@@ -525,6 +504,7 @@ public final class VehicleInjection {
     }
 
     // ===================== Build dropdown scenarios (called after SUMO starts) =====================
+    // routeCombo may be null (headless runs)
     public static void rebuildAllowedRoutesAndDropdown(JComboBox<RouteDef> routeCombo) {
         ALLOWED_ROUTES.clear();
 
@@ -545,7 +525,7 @@ public final class VehicleInjection {
             else ALLOWED_ROUTES.get(i).name = "Route " + (i + 1);
         }
 
-        SwingUtilities.invokeLater(() -> {
+        if (routeCombo != null) SwingUtilities.invokeLater(() -> {
             DefaultComboBoxModel<RouteDef> model = new DefaultComboBoxModel<>();
             for (RouteDef rd : ALLOWED_ROUTES) model.addElement(rd);
             routeCombo.setModel(model);
@@ -565,20 +545,6 @@ public final class VehicleInjection {
     }
 
     // ===================== Vehicle injection =====================
-    private static void addVehicleRobust(String vehId, String routeId, String typeId) throws Exception {
-        boolean used = false;
-        try {
-            Method m = Vehicle.class.getMethod("add",
-                    String.class, String.class, String.class,
-                    double.class, String.class, double.class, double.class);
-            m.invoke(null, vehId, routeId, typeId,
-                    Simulation.getCurrentTime(),
-                    "best", 0.0, -1.0);
-            used = true;
-        } catch (Exception ignored) {}
-        if (!used) Vehicle.add(vehId, routeId, typeId);
-    }
-
     public static void injectVehicles(JFrame owner, String typeId, RouteDef rd, int n) {
         if (!ready) {
             JOptionPane.showMessageDialog(owner, "Not ready yet. Press Start Simulation first.",
@@ -587,25 +553,35 @@ public final class VehicleInjection {
         }
         if (rd == null) return;
 
-        java.util.List<RouteVariant> vars = buildAndInstallLongVariants(rd, typeId);
-        if (vars == null || vars.isEmpty()) {
+        if (spawnVehicles(typeId, rd, n) < 0) {
             JOptionPane.showMessageDialog(owner,
                     "Could not build long routes for this scenario/type.\nTry another scenario.",
                     "No Long Routes", JOptionPane.ERROR_MESSAGE);
-            return;
         }
+    }
+
+    // UI-free injection; returns vehicles added, or -1 if no long routes exist for this scenario/type
+    public static int spawnVehicles(String typeId, RouteDef rd, int n) {
+        java.util.List<RouteVariant> vars = buildAndInstallLongVariants(rd, typeId);
+        if (vars == null || vars.isEmpty()) return -1;
 
+        int scenario = ALLOWED_ROUTES.indexOf(rd);
+        int added = 0;
         for (int i = 0; i < n; i++) {
             int idx = pickVariantIndex();
             if (idx >= vars.size()) idx = vars.size() - 1;
             RouteVariant chosen = vars.get(idx);
 
-            String vehId = typeId + "_" + (System.nanoTime() & 0x7FFFFFFF);
+            String vehId = typeId + "_" + NEXT_VEHICLE_ID.incrementAndGet();
             try {
-                addVehicleRobust(vehId, chosen.routeId, typeId);
+                Traci.gw().addVehicle(vehId, chosen.routeId, typeId);
+                INJECTED_TOTAL.incrementAndGet();
+                if (scenario >= 0) SCENARIO_BY_VEHICLE.put(vehId, scenario);
+                added++;
             } catch (Exception ex) {
                 Logging.LOG.log(java.util.logging.Level.SEVERE, "Vehicle.add failed for " + vehId + " route=" + chosen.routeId, ex);
             }
         }
+        return added;
     }
 }